@@ -29,6 +29,7 @@ mainDependencies {
 
 testDependencies {
    api(ihmc.sourceSetProject("main"))
+   api(ihmc.sourceSetProject("visualizers"))
 
    api("org.ejml:ejml-simple:0.39")
    api("net.sf.trove4j:trove4j:3.0.3")
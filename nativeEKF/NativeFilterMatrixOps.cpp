@@ -13,6 +13,146 @@ using Eigen::MatrixXd;
 
 typedef Eigen::Map<Eigen::Matrix<double, Eigen::Dynamic, Eigen::Dynamic, Eigen::RowMajor>> JMatrixMap;
 
+// Fixed size kernels for the common filter dimensions. For these sizes all temporaries live on the stack and Eigen
+// can fully unroll the products. States are up to 21 (pose plus two bias states), measurements are up to 9 rows.
+template<int Rows, int Cols>
+using FixedMatrixMap = Eigen::Map<Eigen::Matrix<double, Rows, Cols, (Cols == 1 && Rows != 1) ? Eigen::ColMajor : Eigen::RowMajor>>;
+
+template<int N>
+void predictErrorCovarianceFixed(double *result, double *fData, double *pData, double *qData)
+{
+   FixedMatrixMap<N, N> F(fData);
+   FixedMatrixMap<N, N> P(pData);
+   FixedMatrixMap<N, N> Q(qData);
+   FixedMatrixMap<N, N> errorCovariance(result);
+
+   Eigen::Matrix<double, N, N> FP;
+   FP.noalias() = F * P.template selfadjointView<Eigen::Upper>();
+   errorCovariance.noalias() = FP * F.transpose();
+   errorCovariance.diagonal() += Q.diagonal();
+}
+
+bool predictErrorCovarianceFixedSize(double *result, double *fData, double *pData, double *qData, int n)
+{
+   switch (n)
+   {
+   case 15:
+      predictErrorCovarianceFixed<15>(result, fData, pData, qData);
+      return true;
+   case 18:
+      predictErrorCovarianceFixed<18>(result, fData, pData, qData);
+      return true;
+   case 21:
+      predictErrorCovarianceFixed<21>(result, fData, pData, qData);
+      return true;
+   default:
+      return false;
+   }
+}
+
+template<int N, int M>
+void correctFixed(double *xResult, double *pResult, double *kResult, double *xData, double *pData, double *hData, double *rData, double *residualData)
+{
+   FixedMatrixMap<M, 1> x(xData);
+   FixedMatrixMap<M, M> P(pData);
+   FixedMatrixMap<N, M> H(hData);
+   FixedMatrixMap<N, N> R(rData);
+   FixedMatrixMap<N, 1> residual(residualData);
+   FixedMatrixMap<M, 1> state(xResult);
+   FixedMatrixMap<M, M> errorCovariance(pResult);
+   FixedMatrixMap<M, N> gain(kResult);
+
+   Eigen::Matrix<double, M, N> PHt;
+   PHt.noalias() = P.template selfadjointView<Eigen::Upper>() * H.transpose();
+   Eigen::Matrix<double, N, N> toInvert;
+   toInvert.noalias() = H * PHt;
+   toInvert.diagonal() += R.diagonal();
+   gain.noalias() = PHt * toInvert.inverse();
+   state.noalias() = x + gain * residual;
+   errorCovariance.noalias() = P - gain * PHt.transpose();
+}
+
+template<int N>
+bool correctFixedState(double *xResult, double *pResult, double *kResult, double *xData, double *pData, double *hData, double *rData, double *residualData,
+      int m)
+{
+   switch (m)
+   {
+   case 15:
+      correctFixed<N, 15>(xResult, pResult, kResult, xData, pData, hData, rData, residualData);
+      return true;
+   case 18:
+      correctFixed<N, 18>(xResult, pResult, kResult, xData, pData, hData, rData, residualData);
+      return true;
+   case 21:
+      correctFixed<N, 21>(xResult, pResult, kResult, xData, pData, hData, rData, residualData);
+      return true;
+   default:
+      return false;
+   }
+}
+
+bool correctFixedSize(double *xResult, double *pResult, double *kResult, double *xData, double *pData, double *hData, double *rData, double *residualData,
+      int n, int m)
+{
+   switch (n)
+   {
+   case 3:
+      return correctFixedState<3>(xResult, pResult, kResult, xData, pData, hData, rData, residualData, m);
+   case 6:
+      return correctFixedState<6>(xResult, pResult, kResult, xData, pData, hData, rData, residualData, m);
+   case 9:
+      return correctFixedState<9>(xResult, pResult, kResult, xData, pData, hData, rData, residualData, m);
+   default:
+      return false;
+   }
+}
+
+// Plain C entry points for the calls made every estimator tick. The JNI functions below forward to these and the
+// Java Foreign Function & Memory backend (ForeignFilterMatrixOps) calls them directly.
+extern "C" JNIEXPORT void NativeFilterMatrixOps_predictErrorCovariance(double *result, double *fData, double *pData, double *qData, int n)
+{
+   if (!predictErrorCovarianceFixedSize(result, fData, pData, qData, n))
+   {
+      JMatrixMap F(fData, n, n);
+      JMatrixMap P(pData, n, n);
+      JMatrixMap Q(qData, n, n);
+      JMatrixMap errorCovariance(result, n, n);
+
+      MatrixXd Qdiag = Q.diagonal().asDiagonal();
+      errorCovariance.noalias() = F * P.selfadjointView<Eigen::Upper>() * F.transpose() + Qdiag;
+   }
+}
+
+// Same as computeKalmanGain, updateState, and updateErrorCovariance but with a single transition into native code.
+extern "C" JNIEXPORT void NativeFilterMatrixOps_correct(double *xResult, double *pResult, double *kResult, double *xData, double *pData, double *hData,
+      double *rData, double *residualData, int n, int m)
+{
+   if (!correctFixedSize(xResult, pResult, kResult, xData, pData, hData, rData, residualData, n, m))
+   {
+      JMatrixMap x(xData, m, 1);
+      JMatrixMap P(pData, m, m);
+      JMatrixMap H(hData, n, m);
+      JMatrixMap R(rData, n, n);
+      JMatrixMap residual(residualData, n, 1);
+      JMatrixMap state(xResult, m, 1);
+      JMatrixMap errorCovariance(pResult, m, m);
+      JMatrixMap gain(kResult, m, n);
+
+      MatrixXd PHt = P.selfadjointView<Eigen::Upper>() * H.transpose();
+      MatrixXd Rdiag = R.diagonal().asDiagonal();
+      MatrixXd toInvert = H * PHt + Rdiag;
+      gain.noalias() = PHt * toInvert.inverse();
+      state.noalias() = x + gain * residual;
+      errorCovariance.noalias() = P - gain * PHt.transpose();
+   }
+}
+
+JNIEXPORT jboolean JNICALL Java_us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper_hasFixedSizeKernels(JNIEnv *env, jobject thisObj)
+{
+   return JNI_TRUE;
+}
+
 JNIEXPORT void JNICALL Java_us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper_computeABAt(JNIEnv *env, jobject thisObj, jdoubleArray result,
       jdoubleArray aData, jdoubleArray bData, jint n, jint m)
 {
@@ -39,13 +179,7 @@ JNIEXPORT void JNICALL Java_us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper_pred
    jdouble *qDataArray = (jdouble*) env->GetPrimitiveArrayCritical(qData, NULL);
    jdouble *resultDataArray = (jdouble*) env->GetPrimitiveArrayCritical(result, NULL);
 
-   JMatrixMap F(fDataArray, n, n);
-   JMatrixMap P(pDataArray, n, n);
-   JMatrixMap Q(qDataArray, n, n);
-   JMatrixMap errorCovariance(resultDataArray, n, n);
-
-   MatrixXd Qdiag = Q.diagonal().asDiagonal();
-   errorCovariance.noalias() = F * P.selfadjointView<Eigen::Upper>() * F.transpose() + Qdiag;
+   NativeFilterMatrixOps_predictErrorCovariance(resultDataArray, fDataArray, pDataArray, qDataArray, n);
 
    env->ReleasePrimitiveArrayCritical(fData, fDataArray, 0);
    env->ReleasePrimitiveArrayCritical(pData, pDataArray, 0);
@@ -118,3 +252,28 @@ JNIEXPORT void JNICALL Java_us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper_upda
    env->ReleasePrimitiveArrayCritical(rData, rDataArray, 0);
    env->ReleasePrimitiveArrayCritical(result, resultDataArray, 0);
 }
+
+JNIEXPORT void JNICALL Java_us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper_correct
+  (JNIEnv *env, jobject thisObj, jdoubleArray xResult, jdoubleArray pResult, jdoubleArray kResult, jdoubleArray xData, jdoubleArray pData,
+        jdoubleArray hData, jdoubleArray rData, jdoubleArray residualData, jint n, jint m)
+{
+   jdouble *xDataArray = (jdouble*) env->GetPrimitiveArrayCritical(xData, NULL);
+   jdouble *pDataArray = (jdouble*) env->GetPrimitiveArrayCritical(pData, NULL);
+   jdouble *hDataArray = (jdouble*) env->GetPrimitiveArrayCritical(hData, NULL);
+   jdouble *rDataArray = (jdouble*) env->GetPrimitiveArrayCritical(rData, NULL);
+   jdouble *residualDataArray = (jdouble*) env->GetPrimitiveArrayCritical(residualData, NULL);
+   jdouble *xResultArray = (jdouble*) env->GetPrimitiveArrayCritical(xResult, NULL);
+   jdouble *pResultArray = (jdouble*) env->GetPrimitiveArrayCritical(pResult, NULL);
+   jdouble *kResultArray = (jdouble*) env->GetPrimitiveArrayCritical(kResult, NULL);
+
+   NativeFilterMatrixOps_correct(xResultArray, pResultArray, kResultArray, xDataArray, pDataArray, hDataArray, rDataArray, residualDataArray, n, m);
+
+   env->ReleasePrimitiveArrayCritical(xData, xDataArray, 0);
+   env->ReleasePrimitiveArrayCritical(pData, pDataArray, 0);
+   env->ReleasePrimitiveArrayCritical(hData, hDataArray, 0);
+   env->ReleasePrimitiveArrayCritical(rData, rDataArray, 0);
+   env->ReleasePrimitiveArrayCritical(residualData, residualDataArray, 0);
+   env->ReleasePrimitiveArrayCritical(xResult, xResultArray, 0);
+   env->ReleasePrimitiveArrayCritical(pResult, pResultArray, 0);
+   env->ReleasePrimitiveArrayCritical(kResult, kResultArray, 0);
+}
@@ -47,6 +47,22 @@ JNIEXPORT void JNICALL Java_us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper_comp
 JNIEXPORT void JNICALL Java_us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper_updateState
   (JNIEnv *, jobject, jdoubleArray, jdoubleArray, jdoubleArray, jdoubleArray, jint, jint);
 
+/*
+ * Class:     us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper
+ * Method:    hasFixedSizeKernels
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper_hasFixedSizeKernels
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper
+ * Method:    correct
+ * Signature: ([D[D[D[D[D[D[D[DII)V
+ */
+JNIEXPORT void JNICALL Java_us_ihmc_ekf_filter_NativeFilterMatrixOpsWrapper_correct
+  (JNIEnv *, jobject, jdoubleArray, jdoubleArray, jdoubleArray, jdoubleArray, jdoubleArray, jdoubleArray, jdoubleArray, jdoubleArray, jint, jint);
+
 #ifdef __cplusplus
 }
 #endif
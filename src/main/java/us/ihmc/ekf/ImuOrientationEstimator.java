@@ -7,10 +7,15 @@ import java.util.List;
 import us.ihmc.commons.Conversions;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.publishing.EstimatePublisher;
+import us.ihmc.ekf.filter.publishing.EstimateSnapshotLayout.CovarianceMode;
+import us.ihmc.ekf.filter.publishing.EstimatorTelemetry;
+import us.ihmc.ekf.filter.publishing.StateTelemetryGroup;
+import us.ihmc.ekf.filter.publishing.TelemetryGroup;
 import us.ihmc.ekf.filter.sensor.Sensor;
-import us.ihmc.ekf.filter.sensor.implementations.AngularVelocitySensor;
-import us.ihmc.ekf.filter.sensor.implementations.LinearAccelerationSensor;
-import us.ihmc.ekf.filter.sensor.implementations.LinearVelocitySensor;
+import us.ihmc.ekf.filter.sensor.implementations.RigidBodyAngularVelocitySensor;
+import us.ihmc.ekf.filter.sensor.implementations.RigidBodyLinearAccelerationSensor;
+import us.ihmc.ekf.filter.sensor.implementations.RigidBodyLinearVelocitySensor;
 import us.ihmc.ekf.filter.state.implementations.PoseState;
 import us.ihmc.euclid.referenceFrame.FrameQuaternion;
 import us.ihmc.euclid.referenceFrame.FrameVector3D;
@@ -20,11 +25,8 @@ import us.ihmc.euclid.referenceFrame.interfaces.FrameVector3DReadOnly;
 import us.ihmc.euclid.transform.RigidBodyTransform;
 import us.ihmc.euclid.tuple3D.Vector3D;
 import us.ihmc.euclid.tuple3D.interfaces.Vector3DReadOnly;
+import us.ihmc.euclid.tuple4D.Quaternion;
 import us.ihmc.euclid.tuple4D.interfaces.QuaternionReadOnly;
-import us.ihmc.mecano.frames.MovingReferenceFrame;
-import us.ihmc.mecano.multiBodySystem.RigidBody;
-import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
-import us.ihmc.mecano.multiBodySystem.interfaces.RigidBodyBasics;
 import us.ihmc.mecano.spatial.Twist;
 import us.ihmc.yoVariables.euclid.referenceFrame.YoFrameVector3D;
 import us.ihmc.yoVariables.euclid.referenceFrame.YoFrameYawPitchRoll;
@@ -39,19 +41,30 @@ import us.ihmc.yoVariables.variable.YoDouble;
  * (no magnetometer) to provide an orientation estimate. As the yaw is not observable small drift in the yaw estimate is
  * expected.
  * </p>
+ * <p>
+ * Since the IMU is modeled as a single free floating body the sensors used here are the closed form
+ * {@link RigidBodyAngularVelocitySensor}, {@link RigidBodyLinearVelocitySensor}, and
+ * {@link RigidBodyLinearAccelerationSensor}. This avoids maintaining a multi body model and its reference frames in
+ * every estimation tick. Only the IMU frame is updated once per tick so the estimates can be used with other frames.
+ * </p>
  *
  * @author Georg Wiedebach
  */
 public class ImuOrientationEstimator
 {
+   /** The debug variables are written to the telemetry every this many ticks. */
+   private static final int telemetryDecimation = 10;
+
    private final YoRegistry registry = new YoRegistry(getClass().getSimpleName());
 
    private final PoseState poseState;
-   private final LinearAccelerationSensor linearAccelerationSensor;
-   private final AngularVelocitySensor angularVelocitySensor;
-   private final LinearVelocitySensor linearVelocitySensor;
+   private final RigidBodyLinearAccelerationSensor linearAccelerationSensor;
+   private final RigidBodyAngularVelocitySensor angularVelocitySensor;
+   private final RigidBodyLinearVelocitySensor linearVelocitySensor;
 
    private final StateEstimator stateEstimator;
+   private final EstimatePublisher estimatePublisher;
+   private final EstimatorTelemetry telemetry;
 
    private final Vector3D zeroLinearVelocityMeasurement = new Vector3D();
 
@@ -61,7 +74,7 @@ public class ImuOrientationEstimator
 
    private final RigidBodyTransform imuTransform = new RigidBodyTransform();
    private final Twist imuTwist = new Twist();
-   private final SixDoFJoint imuJoint;
+   private final ReferenceFrame imuFrame;
 
    private final YoDouble orientationEstimationTime;
    private final YoFrameYawPitchRoll yoOrientation;
@@ -91,30 +104,45 @@ public class ImuOrientationEstimator
     */
    public ImuOrientationEstimator(double dt, boolean estimateAngularVelocityBias, boolean estimateLiearAccelerationBias, YoRegistry parentRegistry)
    {
-      // Create a "dummy" inverse dynamics structure for the estimator consisting of an IMU body and a floating joint
-      // connecting it to the world:
-      RigidBodyBasics elevator = new RigidBody("elevator", ReferenceFrame.getWorldFrame());
-      imuJoint = new SixDoFJoint("imu_joint", elevator);
-      RigidBodyBasics imuBody = new RigidBody("imu_body", imuJoint, 0.1, 0.1, 0.1, 1.0, new Vector3D());
-      MovingReferenceFrame imuFrame = imuJoint.getFrameAfterJoint();
+      // Create the IMU frame. It is only updated once the estimation is complete in each tick.
+      imuFrame = new ReferenceFrame("imu_frame", ReferenceFrame.getWorldFrame())
+      {
+         @Override
+         protected void updateTransformToParent(RigidBodyTransform transformToParent)
+         {
+            poseState.getTransform(transformToParent);
+         }
+      };
+
+      // Create the state:
+      poseState = new PoseState("imu_body", dt, imuFrame, registry);
 
       // Create all the sensors:
       // We use a "fake" linear velocity sensor to make the filter tend towards assuming the IMU is not moving.
-      angularVelocitySensor = new AngularVelocitySensor("AngularVelocity", dt, imuBody, imuFrame, estimateAngularVelocityBias, registry);
-      linearVelocitySensor = new LinearVelocitySensor("LinearVelocity", dt, imuBody, imuFrame, false, registry);
-      linearAccelerationSensor = new LinearAccelerationSensor("LinearAcceleration", dt, imuBody, imuFrame, estimateLiearAccelerationBias, registry);
+      angularVelocitySensor = new RigidBodyAngularVelocitySensor("AngularVelocity", dt, estimateAngularVelocityBias, registry);
+      linearVelocitySensor = new RigidBodyLinearVelocitySensor("LinearVelocity", dt, false, registry);
+      linearAccelerationSensor = new RigidBodyLinearAccelerationSensor("LinearAcceleration", dt, poseState, estimateLiearAccelerationBias, registry);
       List<Sensor> sensors = Arrays.asList(new Sensor[] {angularVelocitySensor, linearVelocitySensor, linearAccelerationSensor});
 
-      // Create the state and the estimator:
-      poseState = new PoseState(imuBody.getName(), dt, imuFrame, registry);
+      // Create the estimator:
       RobotState robotState = new RobotState(poseState, Collections.emptyList());
       stateEstimator = new StateEstimator(sensors, robotState, registry);
+      estimatePublisher = new EstimatePublisher(stateEstimator, CovarianceMode.NONE);
 
       // Create some debugging / benchmarking variables:
       orientationEstimationTime = new YoDouble("OrientationEstimationTime", registry);
       yoOrientation = new YoFrameYawPitchRoll("EKFOrientation", ReferenceFrame.getWorldFrame(), registry);
       yoAngularVelocity = new YoFrameVector3D("EKFAngularVelocityInIMUFrame", imuFrame, parentRegistry);
       yoAngularAcceleration = new YoFrameVector3D("EKFAngularAccelerationInIMUFrame", imuFrame, parentRegistry);
+      telemetry = new EstimatorTelemetry(registry);
+      telemetry.addGroup(new ImuTelemetryGroup(), telemetryDecimation);
+      for (Sensor sensor : sensors)
+      {
+         if (sensor.getSensorState() != null)
+         {
+            telemetry.addGroup(new StateTelemetryGroup(sensor.getSensorState().getName(), sensor.getSensorState(), registry), telemetryDecimation);
+         }
+      }
       parentRegistry.addChild(registry);
    }
 
@@ -130,31 +158,54 @@ public class ImuOrientationEstimator
       // Record the start time of the computation to measure the total time the estimation takes.
       long startTime = System.nanoTime();
 
-      // First step of the filter: integrate the current state. Then update the robot.
+      // First step of the filter: integrate the current state.
       stateEstimator.predict();
-      updateRobot();
 
       // Update the sensors with the newest measurement.
       linearAccelerationSensor.setMeasurement(linearAccelerationMeasurement);
       angularVelocitySensor.setMeasurement(angularVelocityMeasurement);
       linearVelocitySensor.setMeasurement(zeroLinearVelocityMeasurement);
 
-      // Second step of the filter: use the measurement to correct the integrated state. Then update the robot.
+      // Second step of the filter: use the measurement to correct the integrated state. Then update the IMU frame.
       stateEstimator.correct();
-      updateRobot();
+      imuFrame.update();
 
       // Update the local variables of the estimate and debugging variables.
       poseState.getOrientation(orientationEstimate);
       poseState.getAngularVelocity(angularVelocityEstimate);
       poseState.getAngularAcceleration(angularAccelerationEstimate);
-      yoOrientation.set(orientationEstimate);
-      yoAngularVelocity.set(angularVelocityEstimate);
-      yoAngularAcceleration.set(angularAccelerationEstimate);
+      estimatePublisher.publish(startTime);
+      telemetry.update();
 
       // Measure the time the estimation took.
       orientationEstimationTime.set(Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime)));
    }
 
+   /**
+    * Get the publisher that provides the estimate to other threads. The getters of this class return objects that are
+    * modified in each {@link #update} and should only be used on the thread calling {@link #update}. Other threads
+    * should create an {@link us.ihmc.ekf.filter.publishing.EstimateSnapshot} from the publisher and read the latest
+    * estimate into it.
+    *
+    * @return the publisher of this estimator.
+    */
+   public EstimatePublisher getEstimatePublisher()
+   {
+      return estimatePublisher;
+   }
+
+   /**
+    * Get the telemetry that updates the debug variables of this estimator. By default the variables are updated in
+    * {@link #update(Vector3DReadOnly, Vector3DReadOnly)}. Call {@link EstimatorTelemetry#start(long)} to move this off
+    * the estimator thread.
+    *
+    * @return the telemetry of this estimator.
+    */
+   public EstimatorTelemetry getTelemetry()
+   {
+      return telemetry;
+   }
+
    /**
     * Get the most recent estimate of the IMUs orientation in world frame.
     *
@@ -194,24 +245,48 @@ public class ImuOrientationEstimator
    public void initialize(QuaternionReadOnly orientation)
    {
       imuTransform.setRotationAndZeroTranslation(orientation);
-      imuTwist.setToZero(imuJoint.getFrameAfterJoint(), imuJoint.getFrameBeforeJoint(), imuJoint.getFrameAfterJoint());
+      imuTwist.setToZero(imuFrame, imuFrame.getParent(), imuFrame);
       poseState.initialize(imuTransform, imuTwist);
+      imuFrame.update();
 
       linearAccelerationSensor.resetBias();
       angularVelocitySensor.resetBias();
    }
 
    /**
-    * Helper method to update the robots inverse dynamics structure from the robot state. This needs to be called after
-    * each time the state estimation updates the robot state. Some of the sensors and states use the inverse dynamics
-    * structure internally so this makes sure the sensors stay up to date with the latest robot state estimate.
+    * Copies the estimate on the estimator thread. The conversion to yaw, pitch, and roll happens on the telemetry thread.
     */
-   private void updateRobot()
+   private class ImuTelemetryGroup implements TelemetryGroup
    {
-      poseState.getTransform(imuTransform);
-      imuJoint.setJointConfiguration(imuTransform);
-      poseState.getTwist(imuTwist);
-      imuJoint.setJointTwist(imuTwist);
-      imuJoint.updateFramesRecursively();
+      private final Quaternion orientation = new Quaternion();
+
+      @Override
+      public String getName()
+      {
+         return "EKFImu";
+      }
+
+      @Override
+      public int getSize()
+      {
+         return 10;
+      }
+
+      @Override
+      public void write(double[] dataToPack)
+      {
+         orientationEstimate.get(0, dataToPack);
+         angularVelocityEstimate.get(4, dataToPack);
+         angularAccelerationEstimate.get(7, dataToPack);
+      }
+
+      @Override
+      public void publish(double[] data)
+      {
+         orientation.set(0, data);
+         yoOrientation.set(orientation);
+         yoAngularVelocity.set(data[4], data[5], data[6]);
+         yoAngularAcceleration.set(data[7], data[8], data[9]);
+      }
    }
 }
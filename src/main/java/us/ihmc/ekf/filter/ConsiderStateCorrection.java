@@ -0,0 +1,323 @@
+package us.ihmc.ekf.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
+
+import us.ihmc.ekf.filter.state.State;
+
+/**
+ * Performs the correction step of a Schmidt-Kalman filter.
+ * <p>
+ * Some states, e.g. slowly varying sensor biases, can be marked as consider states. Their covariance and their
+ * correlation with the other states is tracked so the uncertainty they introduce is accounted for, but the consider
+ * states themselves are not corrected. With {@code s} the estimated and {@code c} the consider states and
+ * {@code D = K_s * H * P} the update is
+ *
+ * <pre>
+ * x_s = x_s + K_s * r        x_c = x_c
+ * P_ss = P_ss - D_s          P_sc = P_sc - D_c       P_cc = P_cc
+ * </pre>
+ *
+ * which only requires the rows of the gain that belong to the estimated states. As {@code P_ss - D_s} is symmetric only
+ * half of it is computed.
+ * </p>
+ * <p>
+ * Consider states are usually constant, e.g. biases. This is exploited in the prediction of the covariance as well, see
+ * {@link #predictErrorCovariance(DMatrix1Row, DMatrix1Row, DMatrix1Row, DMatrix1Row)}.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class ConsiderStateCorrection
+{
+   private final RobotState robotState;
+   private final List<State> considerStates = new ArrayList<>();
+
+   private boolean[] isConsidered = new boolean[0];
+   private int[] estimatedIndices = new int[0];
+   private int[] considerIndices = new int[0];
+
+   private final LinearSolverDense<DMatrixRMaj> solver = LinearSolverFactory_DDRM.symmPosDef(0);
+   private final DMatrixRMaj PHt = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj S = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj estimatedPHt = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj estimatedKt = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj estimatedK = new DMatrixRMaj(0, 0);
+
+   private final DMatrixRMaj Fss = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj Pss = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj Qss = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj Psc = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj predictedPss = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj predictedPsc = new DMatrixRMaj(0, 0);
+
+   public ConsiderStateCorrection(RobotState robotState)
+   {
+      this.robotState = robotState;
+      updateIndices();
+   }
+
+   /**
+    * Marks a sub-state of the robot state as consider state.
+    *
+    * @param state the state to consider. If {@code null} nothing is done.
+    */
+   public void addConsiderState(State state)
+   {
+      if (state == null || considerStates.contains(state))
+      {
+         return;
+      }
+      considerStates.add(state);
+      updateIndices();
+   }
+
+   public boolean hasConsiderStates()
+   {
+      return considerIndices.length > 0;
+   }
+
+   /**
+    * @return for each entry of the robot state whether it is a consider state.
+    */
+   boolean[] getConsideredMask()
+   {
+      return isConsidered;
+   }
+
+   private void updateIndices()
+   {
+      isConsidered = new boolean[robotState.getSize()];
+      int considerSize = 0;
+      for (State state : considerStates)
+      {
+         int startIndex = robotState.getStartIndex(state);
+         for (int i = 0; i < state.getSize(); i++)
+         {
+            isConsidered[startIndex + i] = true;
+         }
+         considerSize += state.getSize();
+      }
+
+      estimatedIndices = new int[robotState.getSize() - considerSize];
+      considerIndices = new int[considerSize];
+      int estimatedIdx = 0;
+      int considerIdx = 0;
+      for (int i = 0; i < isConsidered.length; i++)
+      {
+         if (isConsidered[i])
+         {
+            considerIndices[considerIdx++] = i;
+         }
+         else
+         {
+            estimatedIndices[estimatedIdx++] = i;
+         }
+      }
+   }
+
+   /**
+    * Computes the Schmidt-Kalman update of the state and the error covariance.
+    */
+   public void correct(DMatrix1Row xResult, DMatrix1Row PResult, DMatrix1Row x, DMatrix1Row P, DMatrix1Row H, DMatrix1Row R, DMatrix1Row r)
+   {
+      if (H.numCols != P.numRows || P.numRows != P.numCols || H.numRows != R.numRows || R.numRows != R.numCols || x.numRows != P.numRows
+            || r.numRows != H.numRows || P.numRows != robotState.getSize())
+      {
+         throw new RuntimeException("Incompatible Dimensions!");
+      }
+
+      int n = P.numRows;
+      int m = H.numRows;
+      int estimatedSize = estimatedIndices.length;
+
+      // S = H * P * H' + R
+      PHt.reshape(n, m);
+      CommonOps_DDRM.multTransB(P, H, PHt);
+      S.reshape(m, m);
+      CommonOps_DDRM.mult(H, PHt, S);
+      CommonOps_DDRM.addEquals(S, R);
+      if (!solver.setA(S))
+      {
+         throw new FilterDivergenceException("Innovation covariance is not positive definite.");
+      }
+
+      // K_s' = inverse(S) * (P * H')_s'
+      estimatedPHt.reshape(m, estimatedSize);
+      for (int s = 0; s < estimatedSize; s++)
+      {
+         int row = estimatedIndices[s];
+         for (int j = 0; j < m; j++)
+         {
+            estimatedPHt.unsafe_set(j, s, PHt.unsafe_get(row, j));
+         }
+      }
+      estimatedKt.reshape(m, estimatedSize);
+      solver.solve(estimatedPHt, estimatedKt);
+
+      xResult.reshape(n, 1);
+      System.arraycopy(x.data, 0, xResult.data, 0, n);
+      for (int s = 0; s < estimatedSize; s++)
+      {
+         double correction = 0.0;
+         for (int j = 0; j < m; j++)
+         {
+            correction += estimatedKt.unsafe_get(j, s) * r.data[j];
+         }
+         xResult.data[estimatedIndices[s]] += correction;
+      }
+
+      // D = K_s * H * P = K_s * (P * H')' is only needed in the rows of the estimated states. The consider block of the
+      // covariance is not changed.
+      estimatedK.reshape(estimatedSize, m);
+      CommonOps_DDRM.transpose(estimatedKt, estimatedK);
+      PResult.reshape(n, n);
+      System.arraycopy(P.data, 0, PResult.data, 0, n * n);
+      for (int a = 0; a < estimatedSize; a++)
+      {
+         int row = estimatedIndices[a];
+         for (int b = a; b < estimatedSize; b++)
+         {
+            int col = estimatedIndices[b];
+            double value = PResult.unsafe_get(row, col) - dot(estimatedK, a, PHt, col, m);
+            PResult.unsafe_set(row, col, value);
+            PResult.unsafe_set(col, row, value);
+         }
+         for (int c = 0; c < considerIndices.length; c++)
+         {
+            int col = considerIndices[c];
+            double value = PResult.unsafe_get(row, col) - dot(estimatedK, a, PHt, col, m);
+            PResult.unsafe_set(row, col, value);
+            PResult.unsafe_set(col, row, value);
+         }
+      }
+   }
+
+   /**
+    * Computes {@code F * P * F' + Q} exploiting the structure of the consider states. If the rows and columns of
+    * {@code F} that belong to the consider states are those of the identity the consider states are constant and
+    *
+    * <pre>
+    * P_ss = F_ss * P_ss * F_ss' + Q_ss
+    * P_sc = F_ss * P_sc + Q_sc
+    * P_cc = P_cc + Q_cc
+    * </pre>
+    *
+    * so the consider block of the covariance does not need to be propagated.
+    *
+    * @return whether the prediction was computed. If {@code false} there are no constant consider states and the full
+    *         prediction must be used.
+    */
+   public boolean predictErrorCovariance(DMatrix1Row PResult, DMatrix1Row F, DMatrix1Row P, DMatrix1Row Q)
+   {
+      if (F.numCols != P.numRows || P.numRows != P.numCols || F.numRows != Q.numRows || Q.numRows != Q.numCols || F.numCols != F.numRows
+            || P.numRows != robotState.getSize())
+      {
+         throw new RuntimeException("Incompatible Dimensions!");
+      }
+      if (!hasConsiderStates() || !areConsiderStatesConstant(F))
+      {
+         return false;
+      }
+
+      int n = P.numRows;
+      int estimatedSize = estimatedIndices.length;
+      int considerSize = considerIndices.length;
+
+      PResult.reshape(n, n);
+      for (int c = 0; c < considerSize; c++)
+      {
+         int row = considerIndices[c];
+         for (int d = 0; d < considerSize; d++)
+         {
+            int col = considerIndices[d];
+            PResult.unsafe_set(row, col, P.unsafe_get(row, col) + Q.unsafe_get(row, col));
+         }
+      }
+      if (estimatedSize == 0)
+      {
+         return true;
+      }
+
+      Fss.reshape(estimatedSize, estimatedSize);
+      Pss.reshape(estimatedSize, estimatedSize);
+      Qss.reshape(estimatedSize, estimatedSize);
+      Psc.reshape(estimatedSize, considerSize);
+      for (int a = 0; a < estimatedSize; a++)
+      {
+         int row = estimatedIndices[a];
+         for (int b = 0; b < estimatedSize; b++)
+         {
+            int col = estimatedIndices[b];
+            Fss.unsafe_set(a, b, F.unsafe_get(row, col));
+            Pss.unsafe_set(a, b, P.unsafe_get(row, col));
+            Qss.unsafe_set(a, b, Q.unsafe_get(row, col));
+         }
+         for (int c = 0; c < considerSize; c++)
+         {
+            Psc.unsafe_set(a, c, P.unsafe_get(row, considerIndices[c]));
+         }
+      }
+
+      NativeFilterMatrixOps.predictErrorCovariance(predictedPss, Fss, Pss, Qss);
+      predictedPsc.reshape(estimatedSize, considerSize);
+      CommonOps_DDRM.mult(Fss, Psc, predictedPsc);
+
+      for (int a = 0; a < estimatedSize; a++)
+      {
+         int row = estimatedIndices[a];
+         for (int b = 0; b < estimatedSize; b++)
+         {
+            PResult.unsafe_set(row, estimatedIndices[b], predictedPss.unsafe_get(a, b));
+         }
+         for (int c = 0; c < considerSize; c++)
+         {
+            int col = considerIndices[c];
+            double value = predictedPsc.unsafe_get(a, c) + Q.unsafe_get(row, col);
+            PResult.unsafe_set(row, col, value);
+            PResult.unsafe_set(col, row, value);
+         }
+      }
+      return true;
+   }
+
+   private boolean areConsiderStatesConstant(DMatrix1Row F)
+   {
+      int n = F.numRows;
+      for (int c = 0; c < considerIndices.length; c++)
+      {
+         int index = considerIndices[c];
+         for (int j = 0; j < n; j++)
+         {
+            double expected = j == index ? 1.0 : 0.0;
+            if (F.unsafe_get(index, j) != expected || F.unsafe_get(j, index) != expected)
+            {
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+
+   /**
+    * @return the dot product of row {@code rowA} of {@code A} and row {@code rowB} of {@code B} over the first
+    *         {@code length} columns.
+    */
+   private static double dot(DMatrix1Row A, int rowA, DMatrix1Row B, int rowB, int length)
+   {
+      int offsetA = rowA * A.numCols;
+      int offsetB = rowB * B.numCols;
+      double sum = 0.0;
+      for (int j = 0; j < length; j++)
+      {
+         sum += A.data[offsetA + j] * B.data[offsetB + j];
+      }
+      return sum;
+   }
+}
@@ -0,0 +1,80 @@
+package us.ihmc.ekf.filter;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+
+/**
+ * A read-only view of a block of the error covariance of a {@link StateEstimator}. The view reads the entries of the
+ * estimator covariance directly so it always reflects the latest estimate and never copies the full matrix. Obtain it
+ * from {@link StateEstimator#getCovarianceView(us.ihmc.ekf.filter.state.State)} once and reuse it. Like the estimator
+ * the view must only be used on the estimator thread.
+ *
+ * @author Georg Wiedebach
+ */
+public class CovarianceView
+{
+   private final DMatrixRMaj covariance;
+   private final int startRow;
+   private final int startCol;
+   private final int numRows;
+   private final int numCols;
+
+   CovarianceView(DMatrixRMaj covariance, int startRow, int startCol, int numRows, int numCols)
+   {
+      if (startRow < 0 || startCol < 0 || numRows < 1 || numCols < 1 || startRow + numRows > covariance.getNumRows()
+            || startCol + numCols > covariance.getNumCols())
+      {
+         throw new RuntimeException("Block (" + startRow + ", " + startCol + ", " + numRows + "x" + numCols + ") exceeds the covariance of size "
+               + covariance.getNumRows() + "x" + covariance.getNumCols());
+      }
+      this.covariance = covariance;
+      this.startRow = startRow;
+      this.startCol = startCol;
+      this.numRows = numRows;
+      this.numCols = numCols;
+   }
+
+   public int getNumRows()
+   {
+      return numRows;
+   }
+
+   public int getNumCols()
+   {
+      return numCols;
+   }
+
+   public double get(int row, int col)
+   {
+      if (row < 0 || row >= numRows || col < 0 || col >= numCols)
+      {
+         throw new RuntimeException("Entry (" + row + ", " + col + ") is outside the " + numRows + "x" + numCols + " block.");
+      }
+      return covariance.unsafe_get(startRow + row, startCol + col);
+   }
+
+   /**
+    * Copies the block into the provided matrix.
+    */
+   public void get(DMatrix1Row blockToPack)
+   {
+      blockToPack.reshape(numRows, numCols);
+      CommonOps_DDRM.extract(covariance, startRow, startRow + numRows, startCol, startCol + numCols, blockToPack, 0, 0);
+   }
+
+   /**
+    * Copies the block row by row into the provided array.
+    *
+    * @param dataToPack where the block is stored.
+    * @param offset the index in the array where the first entry of the block is stored.
+    */
+   public void get(double[] dataToPack, int offset)
+   {
+      int covarianceCols = covariance.getNumCols();
+      for (int row = 0; row < numRows; row++)
+      {
+         System.arraycopy(covariance.data, (startRow + row) * covarianceCols + startCol, dataToPack, offset + row * numCols, numCols);
+      }
+   }
+}
@@ -0,0 +1,337 @@
+package us.ihmc.ekf.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
+
+import us.ihmc.commons.Conversions;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.euclid.referenceFrame.FrameQuaternion;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple4D.Quaternion;
+import us.ihmc.yoVariables.registry.YoRegistry;
+import us.ihmc.yoVariables.variable.YoDouble;
+
+/**
+ * Runs a set of independent {@link StateEstimator}s (e.g. one per limb of a humanoid) that all estimate the same
+ * floating base and fuses their estimates of the base once per tick.
+ * <p>
+ * Each sub-filter has its own {@link RobotState} with its own {@link PoseState} and the {@link JointState}s of one limb.
+ * Since the cost of a filter update is cubic in the state size this scales roughly linearly with the number of limbs
+ * rather than cubically with the total number of joints. The sub-filters are updated in parallel on the provided
+ * executor. This requires that the sensors of a sub-filter only use joints of that sub-filter and that they do not
+ * share a robot model with other sub-filters: each sub-filter can provide a model updater that is called on the worker
+ * thread whenever its state changes, similar to what is done in a single filter setup after predict and correct.
+ * </p>
+ * <p>
+ * After the update the base estimates are fused using fast covariance intersection. This is consistent for unknown
+ * correlations between the sub-filters at the cost of some optimality compared to a single filter. The orientations are
+ * compared as error rotations with respect to the orientation of the first sub-filter. The fused base estimate is then
+ * passed back to each sub-filter keeping the correlation of the limb states with the base, i.e. the limb states are
+ * conditioned on the new base estimate.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class FederatedStateEstimator
+{
+   private static final int poseSize = PoseState.size;
+
+   private final ExecutorService executor;
+   private final List<SubFilter> subFilters = new ArrayList<>();
+   private final List<Future<Void>> futures = new ArrayList<>();
+
+   private final YoDouble filterTime;
+   private final YoDouble fusionTime;
+
+   private final LinearSolverDense<DMatrixRMaj> solver = LinearSolverFactory_DDRM.symmPosDef(poseSize);
+   private final DMatrixRMaj fusedInformation = new DMatrixRMaj(poseSize, poseSize);
+   private final DMatrixRMaj fusedInformationVector = new DMatrixRMaj(poseSize, 1);
+   private final DMatrixRMaj fusedCovariance = new DMatrixRMaj(poseSize, poseSize);
+   private final DMatrixRMaj fusedPose = new DMatrixRMaj(poseSize, 1);
+   private final DMatrixRMaj tempPoseVector = new DMatrixRMaj(poseSize, 1);
+   private final DMatrixRMaj tempPoseMatrix = new DMatrixRMaj(poseSize, poseSize);
+
+   private final FrameQuaternion referenceOrientation = new FrameQuaternion();
+   private final FrameQuaternion subFilterOrientation = new FrameQuaternion();
+   private final Quaternion fusedOrientation = new Quaternion();
+   private final Quaternion tempOrientation = new Quaternion();
+   private final Vector3D rotationVector = new Vector3D();
+
+   /**
+    * Creates a federated estimator.
+    *
+    * @param executor used to update the sub-filters in parallel. Should have at least one thread per sub-filter. If
+    *           {@code null} the sub-filters are updated one after the other on the calling thread.
+    * @param registry the registry to add timing variables to.
+    */
+   public FederatedStateEstimator(ExecutorService executor, YoRegistry registry)
+   {
+      this.executor = executor;
+
+      filterTime = new YoDouble("FederatedFilterTimeMs", registry);
+      fusionTime = new YoDouble("FederatedFusionTimeMs", registry);
+   }
+
+   /**
+    * Adds a sub-filter. The robot state of the filter must be floating. Sub-filters should be created with separate
+    * registries to avoid name clashes of their variables.
+    *
+    * @param estimator the filter of a limb.
+    * @param modelUpdater called after each change of the state of the filter. Can be {@code null}.
+    */
+   public void addSubFilter(StateEstimator estimator, Runnable modelUpdater)
+   {
+      if (estimator.getRobotState().getPoseState() == null)
+      {
+         throw new RuntimeException("Sub-filters of a " + getClass().getSimpleName() + " must estimate the floating base with a PoseState.");
+      }
+      subFilters.add(new SubFilter(estimator, modelUpdater));
+   }
+
+   /**
+    * Performs the predict and correct step of all sub-filters and fuses their base estimates afterwards.
+    */
+   public void update()
+   {
+      long startTime = System.nanoTime();
+
+      if (executor == null)
+      {
+         for (int i = 0; i < subFilters.size(); i++)
+         {
+            subFilters.get(i).call();
+         }
+      }
+      else
+      {
+         futures.clear();
+         for (int i = 0; i < subFilters.size(); i++)
+         {
+            futures.add(executor.submit(subFilters.get(i)));
+         }
+         for (int i = 0; i < futures.size(); i++)
+         {
+            waitFor(futures.get(i));
+         }
+      }
+
+      long fusionStartTime = System.nanoTime();
+      fuse();
+
+      long endTime = System.nanoTime();
+      filterTime.set(Conversions.nanosecondsToMilliseconds((double) (fusionStartTime - startTime)));
+      fusionTime.set(Conversions.nanosecondsToMilliseconds((double) (endTime - fusionStartTime)));
+   }
+
+   private static void waitFor(Future<Void> future)
+   {
+      try
+      {
+         future.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException("Interrupted while waiting for a sub-filter.", e);
+      }
+      catch (ExecutionException e)
+      {
+         throw new RuntimeException("Sub-filter update failed.", e.getCause());
+      }
+   }
+
+   /**
+    * Fuses the base estimates of all sub-filters and passes the result back to the sub-filters.
+    */
+   void fuse()
+   {
+      if (subFilters.size() < 2)
+      {
+         return;
+      }
+
+      subFilters.get(0).poseState.getOrientation(referenceOrientation);
+
+      // Fast covariance intersection: weight the information of each filter by the inverse trace of its covariance.
+      double weightSum = 0.0;
+      for (int i = 0; i < subFilters.size(); i++)
+      {
+         SubFilter subFilter = subFilters.get(i);
+         if (!subFilter.extractPose(referenceOrientation))
+         {
+            // Right after a reset the covariance is singular. Skip the fusion until the filters have settled.
+            return;
+         }
+         weightSum += 1.0 / CommonOps_DDRM.trace(subFilter.poseCovariance);
+      }
+
+      fusedInformation.zero();
+      fusedInformationVector.zero();
+      for (int i = 0; i < subFilters.size(); i++)
+      {
+         SubFilter subFilter = subFilters.get(i);
+         double weight = 1.0 / (CommonOps_DDRM.trace(subFilter.poseCovariance) * weightSum);
+         CommonOps_DDRM.addEquals(fusedInformation, weight, subFilter.poseInformation);
+         CommonOps_DDRM.mult(subFilter.poseInformation, subFilter.pose, tempPoseVector);
+         CommonOps_DDRM.addEquals(fusedInformationVector, weight, tempPoseVector);
+      }
+
+      if (!invert(fusedInformation, fusedCovariance))
+      {
+         throw new RuntimeException("Fused information of the floating base is not positive definite.");
+      }
+      CommonOps_DDRM.mult(fusedCovariance, fusedInformationVector, fusedPose);
+
+      rotationVector.set(PoseState.orientationStart, fusedPose);
+      fusedOrientation.setRotationVector(rotationVector);
+      fusedOrientation.multiply(referenceOrientation);
+
+      for (int i = 0; i < subFilters.size(); i++)
+      {
+         subFilters.get(i).applyFusedPose(fusedPose, fusedCovariance, fusedOrientation);
+      }
+   }
+
+   private boolean invert(DMatrixRMaj matrix, DMatrixRMaj inverseToPack)
+   {
+      tempPoseMatrix.set(matrix);
+      if (!solver.setA(tempPoseMatrix))
+      {
+         return false;
+      }
+      solver.invert(inverseToPack);
+      return true;
+   }
+
+   /**
+    * Packs the error covariance of the fused floating base estimate.
+    */
+   public void getFusedPoseCovariance(DMatrix1Row covarianceToPack)
+   {
+      covarianceToPack.set(fusedCovariance);
+   }
+
+   public int getNumberOfSubFilters()
+   {
+      return subFilters.size();
+   }
+
+   public StateEstimator getSubFilter(int index)
+   {
+      return subFilters.get(index).estimator;
+   }
+
+   private class SubFilter implements Callable<Void>
+   {
+      private final StateEstimator estimator;
+      private final Runnable modelUpdater;
+      private final RobotState robotState;
+      private final PoseState poseState;
+      private final int poseStart;
+
+      private final DMatrixRMaj covariance = new DMatrixRMaj(0, 0);
+      private final DMatrixRMaj state = new DMatrixRMaj(0, 0);
+      private final DMatrixRMaj pose = new DMatrixRMaj(poseSize, 1);
+      private final DMatrixRMaj poseCovariance = new DMatrixRMaj(poseSize, poseSize);
+      private final DMatrixRMaj poseInformation = new DMatrixRMaj(poseSize, poseSize);
+      private final DMatrixRMaj crossCovariance = new DMatrixRMaj(0, 0);
+      private final DMatrixRMaj gain = new DMatrixRMaj(0, 0);
+      private final DMatrixRMaj poseCorrection = new DMatrixRMaj(poseSize, 1);
+      private final DMatrixRMaj covarianceCorrection = new DMatrixRMaj(poseSize, poseSize);
+      private final DMatrixRMaj tempMatrix = new DMatrixRMaj(0, 0);
+
+      public SubFilter(StateEstimator estimator, Runnable modelUpdater)
+      {
+         this.estimator = estimator;
+         this.modelUpdater = modelUpdater;
+         this.robotState = estimator.getRobotState();
+         this.poseState = robotState.getPoseState();
+         this.poseStart = robotState.findOrientationIndex();
+      }
+
+      @Override
+      public Void call()
+      {
+         estimator.predict();
+         updateModel();
+         estimator.correct();
+         updateModel();
+         return null;
+      }
+
+      private void updateModel()
+      {
+         if (modelUpdater != null)
+         {
+            modelUpdater.run();
+         }
+      }
+
+      /**
+       * Extracts the base estimate with the orientation expressed as error w.r.t. the provided reference.
+       *
+       * @return whether the covariance of the base is positive definite.
+       */
+      private boolean extractPose(FrameQuaternion referenceOrientation)
+      {
+         estimator.getCovariance(covariance);
+         robotState.getStateVector(state);
+
+         CommonOps_DDRM.extract(covariance, poseStart, poseStart + poseSize, poseStart, poseStart + poseSize, poseCovariance, 0, 0);
+         CommonOps_DDRM.extract(state, poseStart, poseStart + poseSize, 0, 1, pose, 0, 0);
+
+         poseState.getOrientation(subFilterOrientation);
+         tempOrientation.set(subFilterOrientation);
+         tempOrientation.multiplyConjugateOther(referenceOrientation);
+         tempOrientation.getRotationVector(rotationVector);
+         rotationVector.get(PoseState.orientationStart, pose);
+
+         return invert(poseCovariance, poseInformation);
+      }
+
+      /**
+       * Sets the base estimate of this filter to the fused one. The remaining states are conditioned on the base:
+       * with {@code G = P[:, pose] * inverse(P[pose, pose])} the state is corrected by {@code G * (fused - pose)} and
+       * the covariance by {@code G * (fusedCovariance - P[pose, pose]) * G'}.
+       */
+      private void applyFusedPose(DMatrixRMaj fusedPose, DMatrixRMaj fusedCovariance, Quaternion fusedOrientation)
+      {
+         int size = robotState.getSize();
+
+         crossCovariance.reshape(size, poseSize);
+         CommonOps_DDRM.extract(covariance, 0, size, poseStart, poseStart + poseSize, crossCovariance, 0, 0);
+         gain.reshape(size, poseSize);
+         CommonOps_DDRM.mult(crossCovariance, poseInformation, gain);
+
+         CommonOps_DDRM.subtract(fusedPose, pose, poseCorrection);
+         CommonOps_DDRM.multAdd(gain, poseCorrection, state);
+
+         // Use the exact orientation difference rather than the linearized one.
+         poseState.getOrientation(subFilterOrientation);
+         tempOrientation.set(fusedOrientation);
+         tempOrientation.multiplyConjugateOther(subFilterOrientation);
+         tempOrientation.getRotationVector(rotationVector);
+         rotationVector.get(poseStart + PoseState.orientationStart, state);
+         robotState.setStateVector(state);
+
+         CommonOps_DDRM.subtract(fusedCovariance, poseCovariance, covarianceCorrection);
+         tempMatrix.reshape(size, poseSize);
+         CommonOps_DDRM.mult(gain, covarianceCorrection, tempMatrix);
+         CommonOps_DDRM.multAddTransB(tempMatrix, gain, covariance);
+         estimator.setCovariance(covariance);
+
+         updateModel();
+      }
+   }
+}
@@ -0,0 +1,17 @@
+package us.ihmc.ekf.filter;
+
+/**
+ * Thrown by the estimator if a matrix that must be positive definite is not. This happens when the filter diverged,
+ * e.g. because of badly chosen variances, and not because of a programming error.
+ *
+ * @author Georg Wiedebach
+ */
+public class FilterDivergenceException extends RuntimeException
+{
+   private static final long serialVersionUID = 1L;
+
+   public FilterDivergenceException(String message)
+   {
+      super(message);
+   }
+}
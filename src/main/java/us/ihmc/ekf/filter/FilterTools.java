@@ -56,15 +56,28 @@ public class FilterTools
 
       if (indexProvider.isFloating())
       {
-         CommonOps_DDRM.extract(matrixToInsert, 0, rows, 0, 3, matrixToPack, 0, indexProvider.findAngularVelocityIndex());
-         CommonOps_DDRM.extract(matrixToInsert, 0, rows, 3, 6, matrixToPack, 0, indexProvider.findLinearVelocityIndex());
+         // With a strapdown pose state some of these are inputs rather than states.
+         int angularIndex = indexProvider.findAngularVelocityIndex();
+         int linearIndex = indexProvider.findLinearVelocityIndex();
+         if (angularIndex >= 0)
+         {
+            CommonOps_DDRM.extract(matrixToInsert, 0, rows, 0, 3, matrixToPack, 0, angularIndex);
+         }
+         if (linearIndex >= 0)
+         {
+            CommonOps_DDRM.extract(matrixToInsert, 0, rows, 3, 6, matrixToPack, 0, linearIndex);
+         }
          index += Twist.SIZE;
       }
 
       for (int jointIndex = 0; jointIndex < oneDofJointNames.size(); jointIndex++)
       {
          int indexInState = indexProvider.findJointVelocityIndex(oneDofJointNames.get(jointIndex));
-         CommonOps_DDRM.extract(matrixToInsert, 0, rows, index, index + 1, matrixToPack, 0, indexInState);
+         // Joints with a reduced model do not have this entry in the state.
+         if (indexInState >= 0)
+         {
+            CommonOps_DDRM.extract(matrixToInsert, 0, rows, index, index + 1, matrixToPack, 0, indexInState);
+         }
          index++;
       }
    }
@@ -98,15 +111,28 @@ public class FilterTools
 
       if (indexProvider.isFloating())
       {
-         CommonOps_DDRM.extract(matrixToInsert, 0, rows, 0, 3, matrixToPack, 0, indexProvider.findAngularAccelerationIndex());
-         CommonOps_DDRM.extract(matrixToInsert, 0, rows, 3, 6, matrixToPack, 0, indexProvider.findLinearAccelerationIndex());
+         // With a strapdown pose state some of these are inputs rather than states.
+         int angularIndex = indexProvider.findAngularAccelerationIndex();
+         int linearIndex = indexProvider.findLinearAccelerationIndex();
+         if (angularIndex >= 0)
+         {
+            CommonOps_DDRM.extract(matrixToInsert, 0, rows, 0, 3, matrixToPack, 0, angularIndex);
+         }
+         if (linearIndex >= 0)
+         {
+            CommonOps_DDRM.extract(matrixToInsert, 0, rows, 3, 6, matrixToPack, 0, linearIndex);
+         }
          index += Twist.SIZE;
       }
 
       for (int jointIndex = 0; jointIndex < oneDofJointNames.size(); jointIndex++)
       {
          int indexInState = indexProvider.findJointAccelerationIndex(oneDofJointNames.get(jointIndex));
-         CommonOps_DDRM.extract(matrixToInsert, 0, rows, index, index + 1, matrixToPack, 0, indexInState);
+         // Joints with a reduced model do not have this entry in the state.
+         if (indexInState >= 0)
+         {
+            CommonOps_DDRM.extract(matrixToInsert, 0, rows, index, index + 1, matrixToPack, 0, indexInState);
+         }
          index++;
       }
    }
@@ -133,15 +159,19 @@ public class FilterTools
       {
          int angularIndex = indexProvider.findAngularVelocityIndex();
          int linearIndex = indexProvider.findLinearVelocityIndex();
-         CommonOps_DDRM.extract(stateVector, angularIndex, angularIndex + 3, 0, 1, qdToPack, 0, 0);
-         CommonOps_DDRM.extract(stateVector, linearIndex, linearIndex + 3, 0, 1, qdToPack, 3, 0);
+         for (int axis = 0; axis < 3; axis++)
+         {
+            qdToPack.set(axis, angularIndex >= 0 ? stateVector.get(angularIndex + axis) : indexProvider.getAngularVelocityInput(axis));
+            qdToPack.set(axis + 3, stateVector.get(linearIndex + axis));
+         }
          index += 6;
       }
 
       for (int jointIndex = 0; jointIndex < oneDofJointNames.size(); jointIndex++)
       {
-         int indexInState = indexProvider.findJointVelocityIndex(oneDofJointNames.get(jointIndex));
-         qdToPack.set(index, stateVector.get(indexInState));
+         String jointName = oneDofJointNames.get(jointIndex);
+         int indexInState = indexProvider.findJointVelocityIndex(jointName);
+         qdToPack.set(index, indexInState >= 0 ? stateVector.get(indexInState) : indexProvider.getJointVelocityInput(jointName));
          index++;
       }
    }
@@ -168,15 +198,18 @@ public class FilterTools
       {
          int angularIndex = indexProvider.findAngularAccelerationIndex();
          int linearIndex = indexProvider.findLinearAccelerationIndex();
-         CommonOps_DDRM.extract(stateVector, angularIndex, angularIndex + 3, 0, 1, qddToPack, 0, 0);
-         CommonOps_DDRM.extract(stateVector, linearIndex, linearIndex + 3, 0, 1, qddToPack, 3, 0);
+         for (int axis = 0; axis < 3; axis++)
+         {
+            qddToPack.set(axis, angularIndex >= 0 ? stateVector.get(angularIndex + axis) : 0.0);
+            qddToPack.set(axis + 3, linearIndex >= 0 ? stateVector.get(linearIndex + axis) : 0.0);
+         }
          index += 6;
       }
 
       for (int jointIndex = 0; jointIndex < oneDofJointNames.size(); jointIndex++)
       {
          int indexInState = indexProvider.findJointAccelerationIndex(oneDofJointNames.get(jointIndex));
-         qddToPack.set(index, stateVector.get(indexInState));
+         qddToPack.set(index, indexInState >= 0 ? stateVector.get(indexInState) : 0.0);
          index++;
       }
    }
@@ -212,6 +245,44 @@ public class FilterTools
       CommonOps_DDRM.setIdentity(matrix);
    }
 
+   /**
+    * Packs the reference process noise for a constant velocity model with state {@code [position, velocity]} that
+    * matches the current {@link #proccessNoiseModel}. Like {@link #packQref(double, DMatrix1Row, int)} this needs to be
+    * scaled by the acceleration variance.
+    *
+    * @param dt
+    * @param Qref
+    * @param dim
+    */
+   public static void packQrefForConstantVelocity(double dt, DMatrix1Row Qref, int dim)
+   {
+      Qref.reshape(dim * 2, dim * 2);
+      Qref.zero();
+      for (int i = 0; i < dim; i++)
+      {
+         switch (proccessNoiseModel)
+         {
+            case PIECEWISE_CONTINUOUS_ACCELERATION:
+               Qref.set(0 * dim + i, 0 * dim + i, dt * dt * dt * dt / 4.0);
+               Qref.set(1 * dim + i, 0 * dim + i, dt * dt * dt / 2.0);
+               Qref.set(0 * dim + i, 1 * dim + i, dt * dt * dt / 2.0);
+               Qref.set(1 * dim + i, 1 * dim + i, dt * dt);
+               break;
+            case CONTINUOUS_ACCELERATION:
+               Qref.set(0 * dim + i, 0 * dim + i, dt * dt * dt / 3.0);
+               Qref.set(1 * dim + i, 0 * dim + i, dt * dt / 2.0);
+               Qref.set(0 * dim + i, 1 * dim + i, dt * dt / 2.0);
+               Qref.set(1 * dim + i, 1 * dim + i, dt);
+               break;
+            case ONLY_ACCELERATION_VARIANCE:
+               Qref.set(1 * dim + i, 1 * dim + i, dt * dt);
+               break;
+            default:
+               throw new RuntimeException("Implement " + proccessNoiseModel + " model.");
+         }
+      }
+   }
+
    public static void packQref(double dt, DMatrix1Row Qref, int dim)
    {
       switch (proccessNoiseModel)
@@ -306,6 +377,10 @@ public class FilterTools
       return CaseFormat.LOWER_UNDERSCORE.to(CaseFormat.UPPER_CAMEL, string);
    }
 
+   /**
+    * Gets the parameter with the given name from the registry or creates it if it does not exist. This searches all
+    * parameters of the registry, use a {@link ParameterTable} when creating many states or sensors.
+    */
    public static DoubleParameter findOrCreate(String name, YoRegistry registry, double initialValue)
    {
       Optional<YoParameter> parameter = registry.getParameters().stream().filter(p -> p.getName().equals(name)).findFirst();
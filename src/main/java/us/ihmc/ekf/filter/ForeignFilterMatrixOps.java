@@ -0,0 +1,278 @@
+package us.ihmc.ekf.filter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.Optional;
+
+/**
+ * Calls the native covariance prediction and measurement update through the Foreign Function &amp; Memory API instead of
+ * JNI. The downcalls skip the JNI transition and the pinning of every array which dominate the cost of a call for the
+ * small filters of the {@link us.ihmc.ekf.ImuOrientationEstimator}.
+ * <p>
+ * The API is final since Java {@value #MINIMUM_JAVA_VERSION} while this project is compiled for Java 8, so it is
+ * accessed reflectively once when this class is initialized and only {@link MethodHandle}s are used afterwards. On
+ * older runtimes, or if the loaded native library does not export the plain C entry points, {@link #isAvailable()}
+ * returns {@code false} and {@link NativeFilterMatrixOps} keeps using JNI. On recent runtimes the JVM should be started
+ * with {@code --enable-native-access=ALL-UNNAMED} to avoid a warning about the native access. The native library must be
+ * loaded before this class is initialized which {@link NativeFilterMatrixOps} takes care of.
+ * </p>
+ * <p>
+ * The native code works on off-heap memory. Every thread owns a {@link Workspace} with one segment per operand that is
+ * allocated in an automatic arena and grown when a larger filter is used. The operands are copied into these segments
+ * before the call and the results are copied out afterwards.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+final class ForeignFilterMatrixOps
+{
+   static final int MINIMUM_JAVA_VERSION = 22;
+
+   private static final String predictErrorCovarianceSymbol = "NativeFilterMatrixOps_predictErrorCovariance";
+   private static final String correctSymbol = "NativeFilterMatrixOps_correct";
+
+   /** {@code (Object result, Object F, Object P, Object Q, int n)void} */
+   private static final MethodHandle predictErrorCovariance;
+   /** {@code (Object xResult, Object PResult, Object K, Object x, Object P, Object H, Object R, Object r, int n, int m)void} */
+   private static final MethodHandle correct;
+   /** {@code (Object array, int arrayIndex, Object segment, long offset, int length)void} */
+   private static final MethodHandle copyToSegment;
+   /** {@code (Object segment, long offset, Object array, int arrayIndex, int length)void} */
+   private static final MethodHandle copyFromSegment;
+   /** {@code (long byteSize, long byteAlignment)Object} */
+   private static final MethodHandle allocate;
+
+   static
+   {
+      MethodHandle[] handles = link();
+      predictErrorCovariance = handles == null ? null : handles[0];
+      correct = handles == null ? null : handles[1];
+      copyToSegment = handles == null ? null : handles[2];
+      copyFromSegment = handles == null ? null : handles[3];
+      allocate = handles == null ? null : handles[4];
+   }
+
+   private static final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+   private ForeignFilterMatrixOps()
+   {
+   }
+
+   /**
+    * @return whether the runtime provides the Foreign Function &amp; Memory API.
+    */
+   static boolean isSupportedByRuntime()
+   {
+      String version = System.getProperty("java.specification.version", "1.8");
+      if (version.startsWith("1."))
+      {
+         return false;
+      }
+      try
+      {
+         return Integer.parseInt(version) >= MINIMUM_JAVA_VERSION;
+      }
+      catch (NumberFormatException e)
+      {
+         return false;
+      }
+   }
+
+   /**
+    * @return whether the downcalls were linked. This requires a supported runtime and a native library that exports the
+    *         plain C entry points.
+    */
+   static boolean isAvailable()
+   {
+      return correct != null;
+   }
+
+   /**
+    * Same as {@link NativeFilterMatrixOpsWrapper#predictErrorCovariance}.
+    */
+   static void predictErrorCovariance(double[] result, double[] fData, double[] pData, double[] qData, int n)
+   {
+      int size = n * n;
+      Workspace workspace = ForeignFilterMatrixOps.workspace.get();
+      workspace.ensureCapacity(n);
+      try
+      {
+         copyToSegment.invokeExact((Object) fData, 0, workspace.segments[0], 0L, size);
+         copyToSegment.invokeExact((Object) pData, 0, workspace.segments[1], 0L, size);
+         copyToSegment.invokeExact((Object) qData, 0, workspace.segments[2], 0L, size);
+         predictErrorCovariance.invokeExact(workspace.segments[3], workspace.segments[0], workspace.segments[1], workspace.segments[2], n);
+         copyFromSegment.invokeExact(workspace.segments[3], 0L, (Object) result, 0, size);
+      }
+      catch (Throwable e)
+      {
+         throw new RuntimeException("Foreign call to " + predictErrorCovarianceSymbol + " failed.", e);
+      }
+   }
+
+   /**
+    * Same as {@link NativeFilterMatrixOpsWrapper#correct}.
+    */
+   static void correct(double[] xResult, double[] pResult, double[] kResult, double[] xData, double[] pData, double[] hData, double[] rData,
+                       double[] residualData, int n, int m)
+   {
+      Workspace workspace = ForeignFilterMatrixOps.workspace.get();
+      workspace.ensureCapacity(Math.max(n, m));
+      Object[] segments = workspace.segments;
+      try
+      {
+         copyToSegment.invokeExact((Object) xData, 0, segments[0], 0L, m);
+         copyToSegment.invokeExact((Object) pData, 0, segments[1], 0L, m * m);
+         copyToSegment.invokeExact((Object) hData, 0, segments[2], 0L, n * m);
+         copyToSegment.invokeExact((Object) rData, 0, segments[3], 0L, n * n);
+         copyToSegment.invokeExact((Object) residualData, 0, segments[4], 0L, n);
+         correct.invokeExact(segments[5], segments[6], segments[7], segments[0], segments[1], segments[2], segments[3], segments[4], n, m);
+         copyFromSegment.invokeExact(segments[5], 0L, (Object) xResult, 0, m);
+         copyFromSegment.invokeExact(segments[6], 0L, (Object) pResult, 0, m * m);
+         copyFromSegment.invokeExact(segments[7], 0L, (Object) kResult, 0, m * n);
+      }
+      catch (Throwable e)
+      {
+         throw new RuntimeException("Foreign call to " + correctSymbol + " failed.", e);
+      }
+   }
+
+   /**
+    * Off-heap memory for the operands of the calls of one thread. Each segment holds a square matrix of the capacity.
+    */
+   private static final class Workspace
+   {
+      private final Object[] segments = new Object[8];
+      private int capacity = 0;
+
+      private void ensureCapacity(int size)
+      {
+         if (size <= capacity)
+         {
+            return;
+         }
+         try
+         {
+            for (int i = 0; i < segments.length; i++)
+            {
+               segments[i] = (Object) allocate.invokeExact((long) size * size * Double.BYTES, (long) Double.BYTES);
+            }
+         }
+         catch (Throwable e)
+         {
+            throw new RuntimeException("Failed to allocate the foreign workspace.", e);
+         }
+         capacity = size;
+      }
+   }
+
+   /**
+    * Creates the downcalls and the copy and allocation handles with all Foreign Function &amp; Memory API types erased
+    * to {@link Object}.
+    *
+    * @return the handles or {@code null} if the API or the native entry points are not available.
+    */
+   private static MethodHandle[] link()
+   {
+      if (!isSupportedByRuntime())
+      {
+         return null;
+      }
+
+      try
+      {
+         Class<?> linkerClass = Class.forName("java.lang.foreign.Linker");
+         Class<?> optionClass = Class.forName("java.lang.foreign.Linker$Option");
+         Class<?> symbolLookupClass = Class.forName("java.lang.foreign.SymbolLookup");
+         Class<?> functionDescriptorClass = Class.forName("java.lang.foreign.FunctionDescriptor");
+         Class<?> memoryLayoutClass = Class.forName("java.lang.foreign.MemoryLayout");
+         Class<?> valueLayoutClass = Class.forName("java.lang.foreign.ValueLayout");
+         Class<?> memorySegmentClass = Class.forName("java.lang.foreign.MemorySegment");
+         Class<?> arenaClass = Class.forName("java.lang.foreign.Arena");
+
+         Object linker = linkerClass.getMethod("nativeLinker").invoke(null);
+         // The loader lookup finds the symbols of the library loaded by NativeFilterMatrixOps.
+         Object lookup = symbolLookupClass.getMethod("loaderLookup").invoke(null);
+         Object address = valueLayoutClass.getField("ADDRESS").get(null);
+         Object javaInt = valueLayoutClass.getField("JAVA_INT").get(null);
+         Object javaDouble = valueLayoutClass.getField("JAVA_DOUBLE").get(null);
+
+         // The calls are short and do not call back into Java so they can skip the thread state transitions.
+         Object options = Array.newInstance(optionClass, 1);
+         Array.set(options, 0, optionClass.getMethod("critical", boolean.class).invoke(null, false));
+
+         MethodHandle[] handles = new MethodHandle[5];
+         handles[0] = downcall(linkerClass, symbolLookupClass, functionDescriptorClass, memoryLayoutClass, memorySegmentClass, linker, lookup, options,
+                               predictErrorCovarianceSymbol, address, address, address, address, javaInt);
+         handles[1] = downcall(linkerClass, symbolLookupClass, functionDescriptorClass, memoryLayoutClass, memorySegmentClass, linker, lookup, options,
+                               correctSymbol, address, address, address, address, address, address, address, address, javaInt, javaInt);
+         if (handles[0] == null || handles[1] == null)
+         {
+            return null;
+         }
+
+         MethodHandles.Lookup publicLookup = MethodHandles.publicLookup();
+         MethodHandle copyToSegment = publicLookup.findStatic(memorySegmentClass, "copy", MethodType.methodType(void.class, Object.class, int.class,
+                                                                                                                  memorySegmentClass, valueLayoutClass,
+                                                                                                                  long.class, int.class));
+         handles[2] = erase(MethodHandles.insertArguments(copyToSegment, 3, javaDouble));
+         MethodHandle copyFromSegment = publicLookup.findStatic(memorySegmentClass, "copy", MethodType.methodType(void.class, memorySegmentClass,
+                                                                                                                    valueLayoutClass, long.class,
+                                                                                                                    Object.class, int.class, int.class));
+         handles[3] = erase(MethodHandles.insertArguments(copyFromSegment, 1, javaDouble));
+
+         // Memory of an automatic arena is released once the segments of a workspace are no longer reachable.
+         Object arena = arenaClass.getMethod("ofAuto").invoke(null);
+         MethodHandle allocate = publicLookup.findVirtual(arenaClass, "allocate", MethodType.methodType(memorySegmentClass, long.class, long.class));
+         handles[4] = erase(allocate.bindTo(arena));
+         return handles;
+      }
+      catch (ReflectiveOperationException | RuntimeException e)
+      {
+         return null;
+      }
+   }
+
+   private static MethodHandle downcall(Class<?> linkerClass, Class<?> symbolLookupClass, Class<?> functionDescriptorClass, Class<?> memoryLayoutClass,
+                                        Class<?> memorySegmentClass, Object linker, Object lookup, Object options, String symbolName, Object... argumentLayouts)
+         throws ReflectiveOperationException
+   {
+      Optional<?> symbol = (Optional<?>) symbolLookupClass.getMethod("find", String.class).invoke(lookup, symbolName);
+      if (!symbol.isPresent())
+      {
+         return null;
+      }
+
+      Object layouts = Array.newInstance(memoryLayoutClass, argumentLayouts.length);
+      for (int i = 0; i < argumentLayouts.length; i++)
+      {
+         Array.set(layouts, i, argumentLayouts[i]);
+      }
+      Object descriptor = functionDescriptorClass.getMethod("ofVoid", layouts.getClass()).invoke(null, layouts);
+      MethodHandle handle = (MethodHandle) linkerClass.getMethod("downcallHandle", memorySegmentClass, functionDescriptorClass, options.getClass())
+                                                      .invoke(linker, symbol.get(), descriptor, options);
+      return erase(handle);
+   }
+
+   /**
+    * Changes all reference types in the signature of the handle to {@link Object} so it can be invoked exactly from
+    * code that does not know the Foreign Function &amp; Memory API types.
+    */
+   private static MethodHandle erase(MethodHandle handle)
+   {
+      MethodType type = handle.type();
+      for (int i = 0; i < type.parameterCount(); i++)
+      {
+         if (!type.parameterType(i).isPrimitive())
+         {
+            type = type.changeParameterType(i, Object.class);
+         }
+      }
+      if (!type.returnType().isPrimitive())
+      {
+         type = type.changeReturnType(Object.class);
+      }
+      return handle.asType(type);
+   }
+}
@@ -0,0 +1,41 @@
+package us.ihmc.ekf.filter;
+
+/**
+ * Describes what a model matrix of a {@link us.ihmc.ekf.filter.state.State} or {@link us.ihmc.ekf.filter.sensor.Sensor}
+ * depends on. This allows the composed states and sensors to cache matrices that do not change between estimation
+ * ticks.
+ *
+ * @author Georg Wiedebach
+ */
+public enum ModelDependency
+{
+   /**
+    * The matrix never changes after construction, e.g. the identity transition of a bias.
+    */
+   CONSTANT,
+   /**
+    * The matrix only changes when a tuning parameter changes, e.g. a noise covariance scaled by a variance parameter.
+    */
+   PARAMETERS,
+   /**
+    * The matrix depends on the state or on measurements and must be recomputed every tick.
+    */
+   STATE;
+
+   /**
+    * @return the weaker of the two dependencies, i.e. the one requiring more frequent updates.
+    */
+   public ModelDependency combine(ModelDependency other)
+   {
+      return compareTo(other) >= 0 ? this : other;
+   }
+
+   /**
+    * @param cacheParameterDependentModels whether parameter dependent matrices are cached.
+    * @return whether a matrix with this dependency needs to be recomputed every tick.
+    */
+   public boolean requiresUpdate(boolean cacheParameterDependentModels)
+   {
+      return this == STATE || (this == PARAMETERS && !cacheParameterDependentModels);
+   }
+}
@@ -6,14 +6,85 @@ import us.ihmc.tools.nativelibraries.NativeLibraryLoader;
 
 public class NativeFilterMatrixOps
 {
+   private static boolean hasFusedCorrection;
+   private static boolean hasFixedSizeKernels;
    private static final NativeFilterMatrixOpsWrapper wrapper = load();
 
+   /**
+    * System property that can be set to {@code false} to keep using JNI on runtimes that support the Foreign Function
+    * &amp; Memory API.
+    */
+   public static final String FOREIGN_BACKEND_PROPERTY = "ekf.native.foreign";
+   private static final boolean useForeignBackend = Boolean.parseBoolean(System.getProperty(FOREIGN_BACKEND_PROPERTY, "true"))
+         && ForeignFilterMatrixOps.isAvailable();
+
    private static NativeFilterMatrixOpsWrapper load()
    {
       NativeLibraryLoader.loadLibrary("", "NativeFilterMatrixOps");
-      return new NativeFilterMatrixOpsWrapper();
+      NativeFilterMatrixOpsWrapper wrapper = new NativeFilterMatrixOpsWrapper();
+      hasFusedCorrection = probeFusedCorrection(wrapper);
+      hasFixedSizeKernels = probeFixedSizeKernels(wrapper);
+      return wrapper;
+   }
+
+   /**
+    * Builds of the native library that predate the fused measurement update do not export {@code correct}. JNI resolves
+    * the symbol on the first call so this is checked once with a trivial problem and the separate calls are used if it
+    * is missing.
+    */
+   private static boolean probeFusedCorrection(NativeFilterMatrixOpsWrapper wrapper)
+   {
+      try
+      {
+         double[] one = {1.0};
+         wrapper.correct(new double[1], new double[1], new double[1], new double[1], one, one, one, new double[1], 1, 1);
+         return true;
+      }
+      catch (UnsatisfiedLinkError e)
+      {
+         return false;
+      }
    }
 
+   private static boolean probeFixedSizeKernels(NativeFilterMatrixOpsWrapper wrapper)
+   {
+      try
+      {
+         return wrapper.hasFixedSizeKernels();
+      }
+      catch (UnsatisfiedLinkError e)
+      {
+         return false;
+      }
+   }
+
+   /**
+    * @return whether the loaded native library provides the fused {@link #correct} call. If not {@link #correct} falls
+    *         back to the separate native calls.
+    */
+   public static boolean hasFusedCorrection()
+   {
+      return hasFusedCorrection;
+   }
+
+   /**
+    * @return whether the covariance prediction and the measurement update call the native library through the Foreign
+    *         Function &amp; Memory API instead of JNI. This is selected automatically on Java
+    *         {@value ForeignFilterMatrixOps#MINIMUM_JAVA_VERSION} and newer.
+    */
+   public static boolean isUsingForeignBackend()
+   {
+      return useForeignBackend;
+   }
+
+   /**
+    * @return whether the loaded native library dispatches the state sizes 15, 18, and 21 and the measurement sizes 3,
+    *         6, and 9 to fixed size kernels. Older builds compute the same results with the dynamic implementation.
+    */
+   public static boolean hasFixedSizeKernels()
+   {
+      return hasFixedSizeKernels;
+   }
 
    /**
     * Computes {@code A * B * A'} and stores the result in the provided matrix.
@@ -38,6 +109,11 @@ public class NativeFilterMatrixOps
          throw new RuntimeException("Incompatible Dimensions!");
       }
       result.reshape(Q.numRows, Q.numRows);
+      if (useForeignBackend)
+      {
+         ForeignFilterMatrixOps.predictErrorCovariance(result.data, F.data, P.data, Q.data, F.numRows);
+         return;
+      }
       wrapper.predictErrorCovariance(result.data, F.data, P.data, Q.data, F.numRows);
    }
 
@@ -79,4 +155,42 @@ public class NativeFilterMatrixOps
       result.reshape(x.numRows, 1);
       wrapper.updateState(result.data, x.data, K.data, r.data, x.numRows, r.numRows);
    }
+
+   /**
+    * Performs the complete measurement update in one native call:
+    * <ul>
+    * <li>{@code K = P * H' * inverse(H * P * H' + R)}
+    * <li>{@code xResult = x + K * r}
+    * <li>{@code PResult = (identity - K * H) * P}
+    * </ul>
+    * This is equivalent to calling {@link #computeKalmanGain}, {@link #updateState}, and
+    * {@link #updateErrorCovariance} but avoids the repeated transitions into native code and pinning of the arrays
+    * which dominate the cost for small filters. If the loaded library does not provide the fused call the separate calls
+    * are used. The results must not alias the inputs. See {@link #isUsingForeignBackend()} for how the library is called.
+    */
+   public static void correct(DMatrix1Row xResult, DMatrix1Row PResult, DMatrix1Row K, DMatrix1Row x, DMatrix1Row P, DMatrix1Row H, DMatrix1Row R,
+                              DMatrix1Row r)
+   {
+      if (H.numCols != P.numRows || P.numRows != P.numCols || H.numRows != R.numRows || R.numRows != R.numCols || x.numRows != P.numRows
+            || r.numRows != H.numRows || x.numCols != 1 || r.numCols != 1)
+      {
+         throw new RuntimeException("Incompatible Dimensions!");
+      }
+      xResult.reshape(P.numRows, 1);
+      PResult.reshape(P.numRows, P.numRows);
+      K.reshape(P.numRows, R.numRows);
+      if (useForeignBackend)
+      {
+         ForeignFilterMatrixOps.correct(xResult.data, PResult.data, K.data, x.data, P.data, H.data, R.data, r.data, R.numRows, P.numRows);
+         return;
+      }
+      if (!hasFusedCorrection)
+      {
+         wrapper.computeKalmanGain(K.data, P.data, H.data, R.data, R.numRows, P.numRows);
+         wrapper.updateState(xResult.data, x.data, K.data, r.data, x.numRows, r.numRows);
+         wrapper.updateErrorCovariance(PResult.data, K.data, H.data, P.data, H.numRows, P.numRows);
+         return;
+      }
+      wrapper.correct(xResult.data, PResult.data, K.data, x.data, P.data, H.data, R.data, r.data, R.numRows, P.numRows);
+   }
 }
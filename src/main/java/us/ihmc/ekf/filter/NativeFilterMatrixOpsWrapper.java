@@ -54,4 +54,28 @@ public class NativeFilterMatrixOpsWrapper
     * @param m length of the r vector
     */
    public native void updateState(double[] result, double[] xData, double[] kData, double[] rData, int n, int m);
+
+   /**
+    * Performs the complete measurement update of the filter in a single native call. This computes the kalman gain
+    * {@code K = P * H' * inverse(H * P * H' + R)}, the updated state {@code x + K * r}, and the updated error covariance
+    * {@code (identity - K * H) * P}.
+    * @param xResult where the updated state is stored
+    * @param pResult where the updated error covariance is stored
+    * @param kResult where the kalman gain is stored
+    * @param xData is the data in the x vector (length is {@code m})
+    * @param pData is the data in the P matrix (row major, size is {@code mxm}, symmetric)
+    * @param hData is the data in the H matrix (row major, size is {@code nxm})
+    * @param rData is the data in the R matrix (row major, size is {@code nxn}, diagonal)
+    * @param residualData is the data in the r vector (length is {@code n})
+    * @param n size of the measurement
+    * @param m size of the state
+    */
+   public native void correct(double[] xResult, double[] pResult, double[] kResult, double[] xData, double[] pData, double[] hData, double[] rData,
+                              double[] residualData, int n, int m);
+
+   /**
+    * Only exported by builds of the library that dispatch the small filter dimensions to the fixed size kernels.
+    * @return always {@code true}
+    */
+   public native boolean hasFixedSizeKernels();
 }
@@ -0,0 +1,81 @@
+package us.ihmc.ekf.filter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import us.ihmc.yoVariables.parameters.DoubleParameter;
+import us.ihmc.yoVariables.parameters.YoParameter;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * A name indexed view of the parameters of a registry. Creating many states and sensors with
+ * {@link FilterTools#findOrCreate(String, YoRegistry, double)} searches all parameters of the registry for every lookup
+ * which makes building a large estimator quadratic in the number of parameters. States and sensors that are created in
+ * bulk accept a table instead of the registry so the lookups are constant time.
+ * <p>
+ * The table is meant to be owned by whoever owns the registry, e.g. the {@link StateEstimatorBuilder}, and to be
+ * discarded with it. Parameters that are added to the registry without the table are picked up on the next lookup.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class ParameterTable
+{
+   private final YoRegistry registry;
+   private final Map<String, YoParameter> parametersByName = new HashMap<>();
+
+   private int indexedParameters = 0;
+   private YoParameter lastIndexedParameter = null;
+
+   public ParameterTable(YoRegistry registry)
+   {
+      this.registry = registry;
+   }
+
+   public YoRegistry getRegistry()
+   {
+      return registry;
+   }
+
+   /**
+    * Gets the parameter with the given name from the registry or creates it if it does not exist.
+    */
+   public synchronized DoubleParameter findOrCreate(String name, double initialValue)
+   {
+      updateIndex();
+      YoParameter parameter = parametersByName.get(name);
+      if (parameter == null)
+      {
+         parameter = new DoubleParameter(name, registry, initialValue);
+         updateIndex();
+      }
+      return (DoubleParameter) parameter;
+   }
+
+   private void updateIndex()
+   {
+      List<YoParameter> parameters = registry.getParameters();
+      int size = parameters.size();
+      if (size == indexedParameters && (size == 0 || parameters.get(size - 1) == lastIndexedParameter))
+      {
+         return;
+      }
+
+      // Parameters are only ever appended so new ones are indexed incrementally. If the registry was modified in any
+      // other way the index is rebuilt.
+      int start = indexedParameters;
+      if (size < indexedParameters || (indexedParameters > 0 && parameters.get(indexedParameters - 1) != lastIndexedParameter))
+      {
+         parametersByName.clear();
+         start = 0;
+      }
+      for (int i = start; i < size; i++)
+      {
+         YoParameter parameter = parameters.get(i);
+         parametersByName.putIfAbsent(parameter.getName(), parameter);
+      }
+      indexedParameters = size;
+      lastIndexedParameter = size == 0 ? null : parameters.get(size - 1);
+   }
+}
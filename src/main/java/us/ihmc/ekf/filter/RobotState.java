@@ -1,5 +1,7 @@
 package us.ihmc.ekf.filter;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -7,26 +9,47 @@ import java.util.Map;
 import org.apache.commons.lang3.mutable.MutableInt;
 
 import us.ihmc.ekf.filter.state.ComposedState;
+import us.ihmc.ekf.filter.state.State;
 import us.ihmc.ekf.filter.state.implementations.JointState;
 import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.ekf.filter.state.implementations.StrapdownPoseState;
 
 public class RobotState extends ComposedState implements RobotStateIndexProvider
 {
    public static final double GRAVITY = -9.81;
 
    private final boolean isFloating;
+   private final PoseState poseState;
+   private final StrapdownPoseState strapdownPoseState;
+   private final List<String> jointNames = new ArrayList<>();
 
    private final Map<String, JointState> jointStatesByName = new HashMap<>();
    private final Map<String, MutableInt> jointIndecesByName = new HashMap<>();
 
    public RobotState(PoseState poseState, List<JointState> jointStates)
+   {
+      this(poseState, null, jointStates);
+   }
+
+   /**
+    * Creates a floating robot state where the IMU drives the prediction of the floating base.
+    */
+   public RobotState(StrapdownPoseState strapdownPoseState, List<JointState> jointStates)
+   {
+      this(null, strapdownPoseState, jointStates);
+   }
+
+   private RobotState(PoseState poseState, StrapdownPoseState strapdownPoseState, List<JointState> jointStates)
    {
       super("RobotState");
 
-      isFloating = poseState != null;
+      this.poseState = poseState;
+      this.strapdownPoseState = strapdownPoseState;
+      State floatingState = poseState != null ? poseState : strapdownPoseState;
+      isFloating = floatingState != null;
       if (isFloating)
       {
-         addState(poseState);
+         addState(floatingState);
       }
 
       for (JointState jointState : jointStates)
@@ -36,9 +59,36 @@ public class RobotState extends ComposedState implements RobotStateIndexProvider
          String jointName = jointState.getJointName();
          jointStatesByName.put(jointName, jointState);
          jointIndecesByName.put(jointName, jointStateStartIndex);
+         jointNames.add(jointName);
       }
    }
 
+   /**
+    * @return the state of the floating base or {@code null} if this robot is not floating or uses a
+    *         {@link StrapdownPoseState}.
+    */
+   public PoseState getPoseState()
+   {
+      return poseState;
+   }
+
+   /**
+    * @return the strapdown state of the floating base or {@code null} if this robot is not floating or uses a
+    *         {@link PoseState}.
+    */
+   public StrapdownPoseState getStrapdownPoseState()
+   {
+      return strapdownPoseState;
+   }
+
+   /**
+    * @return the names of all joints in this state in the order they appear in the state vector.
+    */
+   public List<String> getJointNames()
+   {
+      return Collections.unmodifiableList(jointNames);
+   }
+
    public JointState getJointState(String jointName)
    {
       return jointStatesByName.get(jointName);
@@ -50,6 +100,74 @@ public class RobotState extends ComposedState implements RobotStateIndexProvider
       return jointIndecesByName.get(jointName).intValue();
    }
 
+   @Override
+   public int findJointVelocityIndex(String jointName)
+   {
+      int velocityIndex = jointStatesByName.get(jointName).getVelocityIndex();
+      return velocityIndex < 0 ? -1 : getJointStartIndex(jointName) + velocityIndex;
+   }
+
+   @Override
+   public int findJointAccelerationIndex(String jointName)
+   {
+      int accelerationIndex = jointStatesByName.get(jointName).getAccelerationIndex();
+      return accelerationIndex < 0 ? -1 : getJointStartIndex(jointName) + accelerationIndex;
+   }
+
+   @Override
+   public double getJointVelocityInput(String jointName)
+   {
+      return jointStatesByName.get(jointName).getQd();
+   }
+
+   @Override
+   public int findOrientationIndex()
+   {
+      checkFloating();
+      return strapdownPoseState == null ? PoseState.orientationStart : StrapdownPoseState.orientationStart;
+   }
+
+   @Override
+   public int findAngularVelocityIndex()
+   {
+      checkFloating();
+      return strapdownPoseState == null ? PoseState.angularVelocityStart : -1;
+   }
+
+   @Override
+   public int findAngularAccelerationIndex()
+   {
+      checkFloating();
+      return strapdownPoseState == null ? PoseState.angularAccelerationStart : -1;
+   }
+
+   @Override
+   public int findPositionIndex()
+   {
+      checkFloating();
+      return strapdownPoseState == null ? PoseState.positionStart : StrapdownPoseState.positionStart;
+   }
+
+   @Override
+   public int findLinearVelocityIndex()
+   {
+      checkFloating();
+      return strapdownPoseState == null ? PoseState.linearVelocityStart : StrapdownPoseState.linearVelocityStart;
+   }
+
+   @Override
+   public int findLinearAccelerationIndex()
+   {
+      checkFloating();
+      return strapdownPoseState == null ? PoseState.linearAccelerationStart : -1;
+   }
+
+   @Override
+   public double getAngularVelocityInput(int axis)
+   {
+      return strapdownPoseState == null ? 0.0 : strapdownPoseState.getAngularVelocity(axis);
+   }
+
    @Override
    public boolean isFloating()
    {
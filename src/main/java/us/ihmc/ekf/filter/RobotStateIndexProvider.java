@@ -15,28 +15,58 @@ public interface RobotStateIndexProvider
       return getJointStartIndex(jointName);
    }
 
+   /**
+    * @return the index of the joint velocity in the state or {@code -1} if the joint velocity is not estimated.
+    */
    public default int findJointVelocityIndex(String jointName)
    {
       return getJointStartIndex(jointName) + 1;
    }
 
+   /**
+    * @return the index of the joint acceleration in the state or {@code -1} if the joint acceleration is not estimated.
+    */
    public default int findJointAccelerationIndex(String jointName)
    {
       return getJointStartIndex(jointName) + 2;
    }
 
+   /**
+    * Provides the joint velocity for joints where the velocity is an input rather than a state (see
+    * {@link #findJointVelocityIndex(String)}).
+    */
+   public default double getJointVelocityInput(String jointName)
+   {
+      return 0.0;
+   }
+
+   /**
+    * Provides the angular velocity of the floating base if it is an input rather than a state (see
+    * {@link #findAngularVelocityIndex()}).
+    */
+   public default double getAngularVelocityInput(int axis)
+   {
+      return 0.0;
+   }
+
    public default int findOrientationIndex()
    {
       checkFloating();
       return PoseState.orientationStart;
    }
 
+   /**
+    * @return the index of the angular velocity in the state or {@code -1} if it is not estimated.
+    */
    public default int findAngularVelocityIndex()
    {
       checkFloating();
       return PoseState.angularVelocityStart;
    }
 
+   /**
+    * @return the index of the angular acceleration in the state or {@code -1} if it is not estimated.
+    */
    public default int findAngularAccelerationIndex()
    {
       checkFloating();
@@ -55,6 +85,9 @@ public interface RobotStateIndexProvider
       return PoseState.linearVelocityStart;
    }
 
+   /**
+    * @return the index of the linear acceleration in the state or {@code -1} if it is not estimated.
+    */
    public default int findLinearAccelerationIndex()
    {
       checkFloating();
@@ -0,0 +1,106 @@
+package us.ihmc.ekf.filter;
+
+import org.ejml.data.DMatrix1Row;
+
+import us.ihmc.ekf.filter.sensor.SelectionSensor;
+
+/**
+ * Incorporates the measurements of a {@link SelectionSensor} into the estimate.
+ * <p>
+ * Since the measurement noise is independent the measurements can be processed one at a time. For a measurement of
+ * the state entry {@code j} the Jacobian is a unit row, so the innovation covariance is {@code s = P(j,j) + R} and the
+ * gain is the column {@code P(:,j) / s}. Each update is a rank one modification of {@code P} that is computed directly
+ * from its entries without forming the measurement Jacobian.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class SelectionSensorCorrection
+{
+   private double[] column = new double[0];
+   private boolean useSyntheticMeasurements = false;
+
+   /**
+    * If enabled the measurements are replaced by the current state so the correction only updates the covariance. This
+    * is used to warm up the filter.
+    */
+   public void setUseSyntheticMeasurements(boolean useSyntheticMeasurements)
+   {
+      this.useSyntheticMeasurements = useSyntheticMeasurements;
+   }
+
+   /**
+    * Corrects the state and error covariance in place.
+    *
+    * @param x the state vector to correct. (modified)
+    * @param P the error covariance to correct. (modified)
+    * @param sensor the sensor providing the measurements.
+    * @param robotState the robot state the sensor refers to.
+    * @param isConsidered if not {@code null} marks consider states that must not be corrected (see
+    *           {@link ConsiderStateCorrection}).
+    */
+   public void correct(DMatrix1Row x, DMatrix1Row P, SelectionSensor sensor, RobotState robotState, boolean[] isConsidered)
+   {
+      int n = P.getNumRows();
+      if (x.getNumRows() != n || P.getNumCols() != n)
+      {
+         throw new RuntimeException("Incompatible Dimensions!");
+      }
+      if (column.length < n)
+      {
+         column = new double[n];
+      }
+
+      int[] stateIndices = sensor.getStateIndices(robotState);
+      for (int i = 0; i < stateIndices.length; i++)
+      {
+         int j = stateIndices[i];
+         if (j < 0)
+         {
+            continue;
+         }
+
+         for (int k = 0; k < n; k++)
+         {
+            column[k] = P.data[k * n + j];
+         }
+         double inverseInnovationCovariance = 1.0 / (column[j] + sensor.getVariance(i));
+         double residual = useSyntheticMeasurements ? 0.0 : sensor.getMeasurement(i) - x.data[j];
+         double weightedResidual = residual * inverseInnovationCovariance;
+
+         for (int k = 0; k < n; k++)
+         {
+            if (isConsidered != null && isConsidered[k])
+            {
+               continue;
+            }
+            x.data[k] += column[k] * weightedResidual;
+            double gain = column[k] * inverseInnovationCovariance;
+            int rowStart = k * n;
+            for (int l = 0; l < n; l++)
+            {
+               P.data[rowStart + l] -= gain * column[l];
+            }
+         }
+
+         // The correlation of the consider states was only updated in the rows of the estimated states.
+         if (isConsidered != null)
+         {
+            for (int c = 0; c < n; c++)
+            {
+               if (!isConsidered[c])
+               {
+                  continue;
+               }
+               for (int k = 0; k < n; k++)
+               {
+                  if (!isConsidered[k])
+                  {
+                     P.data[c * n + k] = P.data[k * n + c];
+                  }
+               }
+            }
+         }
+      }
+   }
+}
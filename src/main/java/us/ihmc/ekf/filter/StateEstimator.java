@@ -1,20 +1,53 @@
 package us.ihmc.ekf.filter;
 
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.ejml.data.DMatrix1Row;
 import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
 
 import us.ihmc.commons.Conversions;
 import us.ihmc.ekf.filter.sensor.ComposedSensor;
+import us.ihmc.ekf.filter.sensor.MeasurementQueue;
+import us.ihmc.ekf.filter.sensor.SelectionSensor;
 import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.sensor.TreeKinematicsCalculator;
+import us.ihmc.ekf.filter.state.State;
 import us.ihmc.yoVariables.registry.YoRegistry;
 import us.ihmc.yoVariables.variable.YoDouble;
 
 public class StateEstimator
 {
+   /**
+    * The formulation used in the correction step.
+    */
+   public enum CorrectionForm
+   {
+      /**
+       * Uses the information form if the measurement size exceeds the state size and the covariance form otherwise.
+       */
+      AUTOMATIC,
+      /**
+       * The standard Kalman update that inverts the innovation covariance of the size of the measurement.
+       */
+      COVARIANCE,
+      /**
+       * Accumulates the information {@code H' * inverse(R) * H} of each sensor and factors a matrix of the size of the
+       * state.
+       */
+      INFORMATION
+   }
+
    private final RobotState robotState;
    private final ComposedSensor sensor = new ComposedSensor("ComposedSensor");
+   private final List<SelectionSensor> selectionSensors = new ArrayList<>();
+   private final SelectionSensorCorrection selectionSensorCorrection = new SelectionSensorCorrection();
+   private final List<MeasurementQueue> measurementQueues = new ArrayList<>();
 
    private final YoDouble predictionTime;
    private final YoDouble correctionTime;
@@ -29,26 +62,267 @@ public class StateEstimator
    private final DMatrixRMaj Pprior = new DMatrixRMaj(0);
    private final DMatrixRMaj Xposterior = new DMatrixRMaj(0);
    private final DMatrixRMaj Pposterior = new DMatrixRMaj(0);
+   private final DMatrixRMaj Xselection = new DMatrixRMaj(0);
+   private final DMatrixRMaj Pselection = new DMatrixRMaj(0);
+
+   private CorrectionForm correctionForm = CorrectionForm.AUTOMATIC;
+   private final DMatrixRMaj informationMatrix = new DMatrixRMaj(0);
+   private final DMatrixRMaj informationVector = new DMatrixRMaj(0);
+   private final DMatrixRMaj informationUpdate = new DMatrixRMaj(0);
+   private final LinearSolverDense<DMatrixRMaj> solver = LinearSolverFactory_DDRM.lu(0);
+
+   private final DMatrixRMaj extrapolationF = new DMatrixRMaj(0);
+   private final DMatrixRMaj extrapolationQ = new DMatrixRMaj(0);
+   private final DMatrixRMaj extrapolationP = new DMatrixRMaj(0);
+
+   private TreeKinematicsCalculator treeKinematics = null;
+
+   private boolean computeInnovationStatistics = false;
+   private double normalizedInnovationSquared = Double.NaN;
+   private int innovationSize = 0;
+   private final DMatrixRMaj PHt = new DMatrixRMaj(0);
+   private final DMatrixRMaj innovationCovariance = new DMatrixRMaj(0);
+   private final DMatrixRMaj weightedResidual = new DMatrixRMaj(0);
+   private final LinearSolverDense<DMatrixRMaj> innovationSolver = LinearSolverFactory_DDRM.symmPosDef(0);
+
+   private final ConsiderStateCorrection considerStateCorrection;
+   private int considerStateUpdateInterval = 0;
+   private int correctionsSinceFullUpdate = 0;
+
+   /** Ticks per batch of the warm-up between checks whether the JIT compiler is still busy. */
+   private static final int warmUpBatchSize = 1000;
+   /** The C2 compiler compiles a method after roughly 10000 invocations so the warm-up never stops before this. */
+   private static final int minimumWarmUpTicks = 20000;
+   private boolean warmingUp = false;
+   private final DMatrixRMaj warmUpCovariance = new DMatrixRMaj(0);
 
    public StateEstimator(List<Sensor> sensors, RobotState robotState, YoRegistry registry)
    {
       this.robotState = robotState;
 
-      sensors.forEach(s -> sensor.addSensor(s));
+      List<Sensor> denseSensors = new ArrayList<>(sensors.size());
+      for (Sensor sensorToAdd : sensors)
+      {
+         // Sensors that measure state entries directly are not packed into the dense measurement model.
+         if (sensorToAdd instanceof SelectionSensor)
+         {
+            selectionSensors.add((SelectionSensor) sensorToAdd);
+         }
+         else
+         {
+            denseSensors.add(sensorToAdd);
+         }
+      }
+      sensor.addSensors(denseSensors);
       robotState.addState(sensor.getSensorState());
+      considerStateCorrection = new ConsiderStateCorrection(robotState);
 
-      Pposterior.reshape(robotState.getSize(), robotState.getSize());
+      preallocate();
       reset();
 
       predictionTime = new YoDouble("PredictionTimeMs", registry);
       correctionTime = new YoDouble("CorrectionTimeMs", registry);
    }
 
+   /**
+    * Adds a queue that is drained at the beginning of each {@link #correct()} call. This allows sensor drivers running
+    * on other threads to provide measurements without synchronizing with the estimator thread.
+    *
+    * @param measurementQueue the queue to drain before each correction.
+    */
+   public void addMeasurementQueue(MeasurementQueue measurementQueue)
+   {
+      measurementQueues.add(measurementQueue);
+   }
+
+   /**
+    * Sets a calculator that is shared by the sensors of this estimator. It is updated once at the beginning of each
+    * {@link #correct()} call so the sensors do not need to walk their kinematic chains individually.
+    *
+    * @param treeKinematics the calculator to update before each correction or {@code null} to disable.
+    */
+   public void setTreeKinematicsCalculator(TreeKinematicsCalculator treeKinematics)
+   {
+      this.treeKinematics = treeKinematics;
+   }
+
+   /**
+    * Enables the computation of the normalized innovation squared {@code r' * inverse(H * P * H' + R) * r} of the
+    * dense sensors in each correction. This is used to evaluate the consistency of the filter and requires an additional
+    * factorization of the size of the measurement. The statistic is not available if the correction is done in
+    * information form.
+    */
+   public void setComputeInnovationStatistics(boolean computeInnovationStatistics)
+   {
+      this.computeInnovationStatistics = computeInnovationStatistics;
+   }
+
+   /**
+    * @return the normalized innovation squared of the last correction or {@code NaN} if it was not computed.
+    */
+   public double getNormalizedInnovationSquared()
+   {
+      return normalizedInnovationSquared;
+   }
+
+   /**
+    * @return the size of the innovation used for {@link #getNormalizedInnovationSquared()}.
+    */
+   public int getInnovationSize()
+   {
+      return innovationSize;
+   }
+
+   /**
+    * Selects how the correction step is computed. By default the cheaper form is picked based on the measurement and
+    * state size.
+    */
+   public void setCorrectionForm(CorrectionForm correctionForm)
+   {
+      this.correctionForm = correctionForm;
+   }
+
+   /**
+    * Marks a state as consider state (see {@link ConsiderStateCorrection}). This is useful for slowly varying states
+    * such as sensor biases: their uncertainty is still accounted for but they do not take part in every update. For
+    * example, to consider the bias of a sensor use {@code addConsiderState(sensor.getSensorState())}.
+    *
+    * @param state the sub-state of the robot state that should no longer be corrected.
+    */
+   public void addConsiderState(State state)
+   {
+      considerStateCorrection.addConsiderState(state);
+   }
+
+   /**
+    * Sets how often the consider states are corrected.
+    *
+    * @param considerStateUpdateInterval every this many corrections a full update including the consider states is
+    *           performed. If zero the consider states are never corrected.
+    */
+   public void setConsiderStateUpdateInterval(int considerStateUpdateInterval)
+   {
+      this.considerStateUpdateInterval = considerStateUpdateInterval;
+      correctionsSinceFullUpdate = 0;
+   }
+
+   /**
+    * Enables caching of model matrices that only depend on parameters (see {@link ModelDependency#PARAMETERS}). This
+    * avoids recomputing e.g. noise covariances in every tick. If enabled {@link #invalidateModelCache()} must be called
+    * whenever a parameter of the filter changes. Constant model matrices are always cached.
+    */
+   public void setCacheParameterDependentModels(boolean cacheParameterDependentModels)
+   {
+      robotState.setCacheParameterDependentModels(cacheParameterDependentModels);
+      sensor.setCacheParameterDependentModels(cacheParameterDependentModels);
+   }
+
+   /**
+    * Forces all cached model matrices to be recomputed in the next tick.
+    */
+   public void invalidateModelCache()
+   {
+      robotState.invalidateCache();
+      sensor.invalidateCache();
+   }
+
+   /**
+    * Sizes all working matrices once so the first ticks do not allocate.
+    */
+   private void preallocate()
+   {
+      int n = robotState.getSize();
+      int m = sensor.getMeasurementSize();
+      F.reshape(n, n);
+      Q.reshape(n, n);
+      Pprior.reshape(n, n);
+      Pposterior.reshape(n, n);
+      Pselection.reshape(n, n);
+      Xprior.reshape(n, 1);
+      Xposterior.reshape(n, 1);
+      Xselection.reshape(n, 1);
+      H.reshape(m, n);
+      R.reshape(m, m);
+      K.reshape(n, m);
+      residual.reshape(m, 1);
+      informationMatrix.reshape(n, n);
+      informationVector.reshape(n, 1);
+      informationUpdate.reshape(n, n);
+      extrapolationF.reshape(n, n);
+      extrapolationQ.reshape(n, n);
+      extrapolationP.reshape(n, n);
+   }
+
    public void reset()
    {
       Pposterior.zero();
    }
 
+   /**
+    * Runs the estimator on synthetic measurements until the JIT compiler has compiled the hot paths and restores the
+    * state and covariance afterwards. This avoids slow ticks after the estimator is started. The synthetic measurements
+    * are consistent with the predicted state so the filter stays well conditioned. Measurement queues are not drained
+    * during the warm-up.
+    * <p>
+    * After a minimum number of ticks the warm-up stops as soon as the JIT compiler did not do any work for two
+    * batches of ticks. If the JVM does not provide compilation statistics all {@code maxTicks} are run.
+    * </p>
+    *
+    * @param maxTicks the maximum number of predict and correct calls.
+    * @return the number of ticks that were run.
+    */
+   public int warmUp(int maxTicks)
+   {
+      robotState.saveState();
+      warmUpCovariance.set(Pposterior);
+      int previousCorrectionsSinceFullUpdate = correctionsSinceFullUpdate;
+
+      CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+      boolean monitorCompiler = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+      long previousCompilationTime = -1;
+      int idleBatches = 0;
+      int ticks = 0;
+
+      warmingUp = true;
+      selectionSensorCorrection.setUseSyntheticMeasurements(true);
+      try
+      {
+         while (ticks < maxTicks)
+         {
+            int batchSize = Math.min(warmUpBatchSize, maxTicks - ticks);
+            for (int i = 0; i < batchSize; i++)
+            {
+               predict();
+               correct();
+            }
+            ticks += batchSize;
+
+            if (monitorCompiler)
+            {
+               long compilationTime = compiler.getTotalCompilationTime();
+               idleBatches = compilationTime == previousCompilationTime ? idleBatches + 1 : 0;
+               previousCompilationTime = compilationTime;
+               if (ticks >= minimumWarmUpTicks && idleBatches >= 2)
+               {
+                  break;
+               }
+            }
+         }
+      }
+      finally
+      {
+         warmingUp = false;
+         selectionSensorCorrection.setUseSyntheticMeasurements(false);
+         robotState.restoreState();
+         Pposterior.set(warmUpCovariance);
+         correctionsSinceFullUpdate = previousCorrectionsSinceFullUpdate;
+         normalizedInnovationSquared = Double.NaN;
+         innovationSize = 0;
+      }
+
+      return ticks;
+   }
+
    public void predict()
    {
       long startTime = System.nanoTime();
@@ -59,7 +333,11 @@ public class StateEstimator
       // Get linearized plant model and predict error covariance.
       robotState.getFMatrix(F);
       robotState.getQMatrix(Q);
-      NativeFilterMatrixOps.predictErrorCovariance(Pprior, F, Pposterior, Q);
+      // Constant consider states do not need to be propagated.
+      if (!considerStateCorrection.predictErrorCovariance(Pprior, F, Pposterior, Q))
+      {
+         NativeFilterMatrixOps.predictErrorCovariance(Pprior, F, Pposterior, Q);
+      }
 
       predictionTime.set(Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime)));
    }
@@ -68,18 +346,76 @@ public class StateEstimator
    {
       long startTime = System.nanoTime();
 
-      // From the sensor get the linearized measurement model and the measurement residual
-      sensor.getMeasurementJacobian(H, robotState);
-      sensor.getResidual(residual, robotState);
+      // Pass the latest measurements from the sensor drivers to the sensors.
+      for (int i = 0; !warmingUp && i < measurementQueues.size(); i++)
+      {
+         measurementQueues.get(i).drain();
+      }
+
+      if (treeKinematics != null)
+      {
+         treeKinematics.update();
+      }
+
+      normalizedInnovationSquared = Double.NaN;
+      innovationSize = 0;
 
-      // Compute the kalman gain and correct the state
-      sensor.getRMatrix(R);
-      NativeFilterMatrixOps.computeKalmanGain(K, Pprior, H, R);
       robotState.getStateVector(Xprior);
-      NativeFilterMatrixOps.updateState(Xposterior, Xprior, K, residual);
+      boolean useConsiderStates = useConsiderStates();
+      DMatrixRMaj x = Xprior;
+      DMatrixRMaj P = Pprior;
+      if (!selectionSensors.isEmpty())
+      {
+         // Incorporate the measurements of selection sensors one at a time by indexing into the covariance.
+         Xselection.set(Xprior);
+         Pselection.set(Pprior);
+         boolean[] isConsidered = useConsiderStates ? considerStateCorrection.getConsideredMask() : null;
+         for (int i = 0; i < selectionSensors.size(); i++)
+         {
+            selectionSensorCorrection.correct(Xselection, Pselection, selectionSensors.get(i), robotState, isConsidered);
+         }
+
+         // The remaining sensors need to be linearized around the updated state.
+         robotState.setStateVector(Xselection);
+         robotState.getStateVector(Xselection);
+         x = Xselection;
+         P = Pselection;
+      }
 
-      // Update the error covariance.
-      NativeFilterMatrixOps.updateErrorCovariance(Pposterior, K, H, Pprior);
+      if (sensor.getMeasurementSize() == 0)
+      {
+         Xposterior.set(x);
+         Pposterior.set(P);
+      }
+      else if (useConsiderStates)
+      {
+         sensor.getMeasurementJacobian(H, robotState);
+         getResidual();
+         sensor.getRMatrix(R);
+         updateInnovationStatistics(P);
+         considerStateCorrection.correct(Xposterior, Pposterior, x, P, H, R, residual);
+      }
+      else if (useInformationForm())
+      {
+         // Accumulate the information of all sensors and correct the state and error covariance.
+         sensor.getInformation(informationMatrix, informationVector, robotState);
+         if (warmingUp)
+         {
+            informationVector.zero();
+         }
+         correctInInformationForm(x, P);
+      }
+      else
+      {
+         // From the sensor get the linearized measurement model and the measurement residual
+         sensor.getMeasurementJacobian(H, robotState);
+         getResidual();
+
+         // Compute the kalman gain, correct the state, and update the error covariance.
+         sensor.getRMatrix(R);
+         updateInnovationStatistics(P);
+         NativeFilterMatrixOps.correct(Xposterior, Pposterior, K, x, P, H, R, residual);
+      }
 
       // Update the state data structure after the correction step.
       robotState.setStateVector(Xposterior);
@@ -87,8 +423,235 @@ public class StateEstimator
       correctionTime.set(Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime)));
    }
 
+   private void getResidual()
+   {
+      sensor.getResidual(residual, robotState);
+      if (warmingUp)
+      {
+         // A synthetic measurement that matches the predicted state.
+         residual.zero();
+      }
+   }
+
+   private void updateInnovationStatistics(DMatrixRMaj P)
+   {
+      if (!computeInnovationStatistics)
+      {
+         return;
+      }
+
+      innovationSize = H.getNumRows();
+      PHt.reshape(P.getNumRows(), innovationSize);
+      CommonOps_DDRM.multTransB(P, H, PHt);
+      innovationCovariance.reshape(innovationSize, innovationSize);
+      CommonOps_DDRM.mult(H, PHt, innovationCovariance);
+      CommonOps_DDRM.addEquals(innovationCovariance, R);
+
+      if (!innovationSolver.setA(innovationCovariance))
+      {
+         return;
+      }
+      weightedResidual.reshape(innovationSize, 1);
+      innovationSolver.solve(residual, weightedResidual);
+      normalizedInnovationSquared = CommonOps_DDRM.dot(residual, weightedResidual);
+   }
+
+   private boolean useConsiderStates()
+   {
+      if (!considerStateCorrection.hasConsiderStates())
+      {
+         return false;
+      }
+      if (considerStateUpdateInterval > 0 && ++correctionsSinceFullUpdate >= considerStateUpdateInterval)
+      {
+         correctionsSinceFullUpdate = 0;
+         return false;
+      }
+      return true;
+   }
+
+   private boolean useInformationForm()
+   {
+      switch (correctionForm)
+      {
+      case COVARIANCE:
+         return false;
+      case INFORMATION:
+         return true;
+      default:
+         return sensor.getMeasurementSize() > robotState.getSize();
+      }
+   }
+
+   /**
+    * Computes the posterior from the prior and the measurement information {@code Y = H' * inverse(R) * H} and
+    * {@code y = H' * inverse(R) * r}:
+    * <ul>
+    * <li>{@code Pposterior = inverse(inverse(Pprior) + Y) = inverse(identity + Pprior * Y) * Pprior}
+    * <li>{@code Xposterior = Xprior + Pposterior * y}
+    * </ul>
+    * The second form of the covariance update does not require the prior to be invertible.
+    *
+    * @param x the prior state.
+    * @param P the prior error covariance.
+    */
+   private void correctInInformationForm(DMatrixRMaj x, DMatrixRMaj P)
+   {
+      int size = P.getNumRows();
+      informationUpdate.reshape(size, size);
+      CommonOps_DDRM.mult(P, informationMatrix, informationUpdate);
+      for (int i = 0; i < size; i++)
+      {
+         informationUpdate.add(i, i, 1.0);
+      }
+
+      if (!solver.setA(informationUpdate))
+      {
+         throw new FilterDivergenceException("Failed to factor the information update.");
+      }
+      Pposterior.reshape(size, size);
+      solver.solve(P, Pposterior);
+
+      // Remove numerical asymmetry.
+      for (int row = 0; row < size; row++)
+      {
+         for (int col = row + 1; col < size; col++)
+         {
+            double average = 0.5 * (Pposterior.get(row, col) + Pposterior.get(col, row));
+            Pposterior.set(row, col, average);
+            Pposterior.set(col, row, average);
+         }
+      }
+
+      Xposterior.set(x);
+      CommonOps_DDRM.multAdd(Pposterior, informationVector, Xposterior);
+   }
+
+   public RobotState getRobotState()
+   {
+      return robotState;
+   }
+
+   /**
+    * Packs the full error covariance. This copies the whole matrix so consumers that only need the uncertainty of some
+    * states should use {@link #getCovariance(State, DMatrix1Row)} or {@link #getCovarianceView(State)}.
+    */
    public void getCovariance(DMatrix1Row covarianceToPack)
    {
       covarianceToPack.set(Pposterior);
    }
+
+   /**
+    * Packs the marginal covariance of a sub state of the {@link RobotState}, e.g. a joint or a sensor bias.
+    *
+    * @param state a state that was added to the {@link RobotState} of this estimator.
+    * @param covarianceToPack where the covariance of size {@code state.getSize()} is stored.
+    */
+   public void getCovariance(State state, DMatrix1Row covarianceToPack)
+   {
+      getCrossCovariance(state, state, covarianceToPack);
+   }
+
+   /**
+    * Packs the cross covariance between two sub states of the {@link RobotState}.
+    *
+    * @param rowState determines the rows of the block.
+    * @param colState determines the columns of the block.
+    * @param covarianceToPack where the covariance of size {@code rowState.getSize() x colState.getSize()} is stored.
+    */
+   public void getCrossCovariance(State rowState, State colState, DMatrix1Row covarianceToPack)
+   {
+      int startRow = robotState.getStartIndex(rowState);
+      int startCol = robotState.getStartIndex(colState);
+      getCovarianceBlock(startRow, startCol, rowState.getSize(), colState.getSize(), covarianceToPack);
+   }
+
+   /**
+    * Packs an arbitrary block of the error covariance. Use the index methods of the {@link RobotState} to find blocks
+    * that are part of a state, e.g. the orientation of the floating base.
+    */
+   public void getCovarianceBlock(int startRow, int startCol, int numRows, int numCols, DMatrix1Row blockToPack)
+   {
+      if (numRows < 0 || numCols < 0)
+      {
+         throw new RuntimeException("Block size " + numRows + "x" + numCols + " must not be negative.");
+      }
+      if (startRow < 0 || startCol < 0 || startRow + numRows > Pposterior.getNumRows() || startCol + numCols > Pposterior.getNumCols())
+      {
+         throw new RuntimeException("Block exceeds the covariance of size " + Pposterior.getNumRows() + "x" + Pposterior.getNumCols());
+      }
+      blockToPack.reshape(numRows, numCols);
+      CommonOps_DDRM.extract(Pposterior, startRow, startRow + numRows, startCol, startCol + numCols, blockToPack, 0, 0);
+   }
+
+   public double getCovarianceEntry(int row, int col)
+   {
+      return Pposterior.get(row, col);
+   }
+
+   /**
+    * Propagates the error covariance a number of estimator ticks into the future without modifying the estimator. The
+    * state model is linearized around the current estimate and held constant for all ticks. Use this together with a
+    * {@link us.ihmc.ekf.filter.publishing.RobotStateExtrapolator} to obtain the uncertainty of an extrapolated estimate.
+    *
+    * @param ticks the number of predictions to apply.
+    * @param covarianceToPack where the extrapolated covariance is stored.
+    */
+   public void extrapolateCovariance(int ticks, DMatrix1Row covarianceToPack)
+   {
+      if (ticks < 0)
+      {
+         throw new RuntimeException("Can not extrapolate into the past: " + ticks);
+      }
+      robotState.getFMatrix(extrapolationF);
+      robotState.getQMatrix(extrapolationQ);
+      covarianceToPack.set(Pposterior);
+      for (int i = 0; i < ticks; i++)
+      {
+         extrapolationP.set(covarianceToPack);
+         NativeFilterMatrixOps.predictErrorCovariance(covarianceToPack, extrapolationF, extrapolationP, extrapolationQ);
+      }
+   }
+
+   /**
+    * Creates a view of the marginal covariance of a sub state. The view reads the latest covariance without copying so
+    * it should be created once and reused.
+    */
+   public CovarianceView getCovarianceView(State state)
+   {
+      return getCrossCovarianceView(state, state);
+   }
+
+   /**
+    * Creates a view of the cross covariance between two sub states. See {@link #getCovarianceView(State)}.
+    */
+   public CovarianceView getCrossCovarianceView(State rowState, State colState)
+   {
+      int startRow = robotState.getStartIndex(rowState);
+      int startCol = robotState.getStartIndex(colState);
+      return new CovarianceView(Pposterior, startRow, startCol, rowState.getSize(), colState.getSize());
+   }
+
+   /**
+    * Creates a view of an arbitrary block of the error covariance. See {@link #getCovarianceView(State)}.
+    */
+   public CovarianceView getCovarianceView(int startRow, int startCol, int numRows, int numCols)
+   {
+      return new CovarianceView(Pposterior, startRow, startCol, numRows, numCols);
+   }
+
+   /**
+    * Overwrites the error covariance of the estimator. This can be used to combine the estimate of this filter with
+    * other information after the {@link #correct()} step.
+    *
+    * @param covariance the new posterior error covariance.
+    */
+   public void setCovariance(DMatrix1Row covariance)
+   {
+      if (covariance.getNumRows() != robotState.getSize() || covariance.getNumCols() != robotState.getSize())
+      {
+         throw new RuntimeException("Incompatible Dimensions!");
+      }
+      Pposterior.set(covariance);
+   }
 }
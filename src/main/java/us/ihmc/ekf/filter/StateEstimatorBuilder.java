@@ -0,0 +1,122 @@
+package us.ihmc.ekf.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import us.ihmc.ekf.filter.StateEstimator.CorrectionForm;
+import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.ekf.filter.state.implementations.StrapdownPoseState;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Collects the states and sensors of an estimator and creates it in one pass. The robot state and the dense sensor are
+ * assembled from the full lists so all offsets and matrix sizes are computed once and the working matrices of the
+ * estimator are allocated at construction.
+ * <p>
+ * The builder owns a {@link ParameterTable} of its registry. States and sensors that are created in bulk, e.g. one per
+ * joint, should be created with {@link #getParameters()} so their parameters are not searched linearly.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class StateEstimatorBuilder
+{
+   private final YoRegistry registry;
+   private final ParameterTable parameters;
+
+   private PoseState poseState = null;
+   private StrapdownPoseState strapdownPoseState = null;
+   private final List<JointState> jointStates = new ArrayList<>();
+   private final List<Sensor> sensors = new ArrayList<>();
+
+   private CorrectionForm correctionForm = CorrectionForm.AUTOMATIC;
+   private boolean cacheParameterDependentModels = false;
+
+   public StateEstimatorBuilder(YoRegistry registry)
+   {
+      this.registry = registry;
+      this.parameters = new ParameterTable(registry);
+   }
+
+   /**
+    * @return the name indexed parameters of the registry of this builder.
+    */
+   public ParameterTable getParameters()
+   {
+      return parameters;
+   }
+
+   public StateEstimatorBuilder setPoseState(PoseState poseState)
+   {
+      if (strapdownPoseState != null)
+      {
+         throw new RuntimeException("Already have a strapdown pose state.");
+      }
+      this.poseState = poseState;
+      return this;
+   }
+
+   public StateEstimatorBuilder setStrapdownPoseState(StrapdownPoseState strapdownPoseState)
+   {
+      if (poseState != null)
+      {
+         throw new RuntimeException("Already have a pose state.");
+      }
+      this.strapdownPoseState = strapdownPoseState;
+      return this;
+   }
+
+   public StateEstimatorBuilder addJointState(JointState jointState)
+   {
+      jointStates.add(jointState);
+      return this;
+   }
+
+   public StateEstimatorBuilder addJointStates(Collection<? extends JointState> jointStates)
+   {
+      this.jointStates.addAll(jointStates);
+      return this;
+   }
+
+   public StateEstimatorBuilder addSensor(Sensor sensor)
+   {
+      sensors.add(sensor);
+      return this;
+   }
+
+   public StateEstimatorBuilder addSensors(Collection<? extends Sensor> sensors)
+   {
+      this.sensors.addAll(sensors);
+      return this;
+   }
+
+   /**
+    * See {@link StateEstimator#setCorrectionForm(CorrectionForm)}.
+    */
+   public StateEstimatorBuilder setCorrectionForm(CorrectionForm correctionForm)
+   {
+      this.correctionForm = correctionForm;
+      return this;
+   }
+
+   /**
+    * See {@link StateEstimator#setCacheParameterDependentModels(boolean)}.
+    */
+   public StateEstimatorBuilder setCacheParameterDependentModels(boolean cacheParameterDependentModels)
+   {
+      this.cacheParameterDependentModels = cacheParameterDependentModels;
+      return this;
+   }
+
+   public StateEstimator build()
+   {
+      RobotState robotState = strapdownPoseState != null ? new RobotState(strapdownPoseState, jointStates) : new RobotState(poseState, jointStates);
+      StateEstimator estimator = new StateEstimator(sensors, robotState, registry);
+      estimator.setCorrectionForm(correctionForm);
+      estimator.setCacheParameterDependentModels(cacheParameterDependentModels);
+      return estimator;
+   }
+}
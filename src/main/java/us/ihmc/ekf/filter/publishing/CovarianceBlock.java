@@ -0,0 +1,40 @@
+package us.ihmc.ekf.filter.publishing;
+
+/**
+ * Describes a square block on the diagonal of the error covariance, e.g. the covariance of the orientation of the
+ * floating base. Use the index methods of the {@link us.ihmc.ekf.filter.RobotState} to find the start index.
+ *
+ * @author Georg Wiedebach
+ */
+public class CovarianceBlock
+{
+   private final String name;
+   private final int startIndex;
+   private final int size;
+
+   public CovarianceBlock(String name, int startIndex, int size)
+   {
+      if (startIndex < 0 || size < 1)
+      {
+         throw new RuntimeException("Invalid covariance block " + name + ": start " + startIndex + ", size " + size);
+      }
+      this.name = name;
+      this.startIndex = startIndex;
+      this.size = size;
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   public int getStartIndex()
+   {
+      return startIndex;
+   }
+
+   public int getSize()
+   {
+      return size;
+   }
+}
@@ -0,0 +1,115 @@
+package us.ihmc.ekf.filter.publishing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.publishing.EstimateSnapshotLayout.CovarianceMode;
+
+/**
+ * Publishes the estimate of a {@link StateEstimator} to other threads.
+ * <p>
+ * The estimator thread calls {@link #publish(long)} after each estimation tick. Any number of consumer threads can call
+ * {@link #read(EstimateSnapshot)} to obtain a consistent copy of the latest estimate. This is implemented as a seqlock:
+ * the estimator never waits for readers and neither side locks or allocates. A reader that overlaps with a publication
+ * retries, so readers may spin briefly if the estimator publishes at a very high rate.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class EstimatePublisher
+{
+   private final EstimateSnapshotLayout layout;
+   private final EstimateSnapshotWriter snapshotWriter;
+
+   /** Odd while a publication is in progress. Incremented by two for every publication. */
+   private final AtomicLong sequence = new AtomicLong();
+   private final AtomicLongArray sharedData;
+   private final AtomicLong sharedTimestamp = new AtomicLong();
+
+   private final EstimateSnapshot writerSnapshot;
+
+   public EstimatePublisher(StateEstimator estimator, CovarianceMode covarianceMode)
+   {
+      this.layout = new EstimateSnapshotLayout(estimator.getRobotState(), covarianceMode);
+      this.snapshotWriter = new EstimateSnapshotWriter(estimator, layout);
+      this.sharedData = new AtomicLongArray(layout.getSize());
+      this.writerSnapshot = new EstimateSnapshot(layout);
+   }
+
+   public EstimateSnapshotLayout getLayout()
+   {
+      return layout;
+   }
+
+   /**
+    * Creates a snapshot that can be used with {@link #read(EstimateSnapshot)}. Call this once per consumer and reuse the
+    * snapshot.
+    */
+   public EstimateSnapshot createSnapshot()
+   {
+      return new EstimateSnapshot(layout);
+   }
+
+   /**
+    * Captures the current estimate and makes it available to readers. Must only be called from the estimator thread.
+    *
+    * @param timestamp the time of the estimate that is passed on to the readers.
+    */
+   public void publish(long timestamp)
+   {
+      snapshotWriter.write(writerSnapshot);
+
+      double[] data = writerSnapshot.getData();
+      long currentSequence = sequence.get();
+      sequence.set(currentSequence + 1);
+      // The payload only needs to be ordered w.r.t. the two sequence stores so it is written without a full fence.
+      for (int i = 0; i < data.length; i++)
+      {
+         sharedData.lazySet(i, Double.doubleToRawLongBits(data[i]));
+      }
+      sharedTimestamp.lazySet(timestamp);
+      sequence.set(currentSequence + 2);
+   }
+
+   /**
+    * Packs the latest published estimate. Can be called from any thread.
+    *
+    * @param snapshotToPack where the estimate is stored. Must have been created by this publisher.
+    * @return whether an estimate was available. If {@code false} nothing was published yet.
+    */
+   public boolean read(EstimateSnapshot snapshotToPack)
+   {
+      if (snapshotToPack.getLayout() != layout)
+      {
+         throw new RuntimeException("Snapshot was not created by this publisher.");
+      }
+
+      double[] data = snapshotToPack.getData();
+      while (true)
+      {
+         long before = sequence.get();
+         if (before == 0)
+         {
+            return false;
+         }
+         if ((before & 1) != 0)
+         {
+            continue;
+         }
+
+         for (int i = 0; i < data.length; i++)
+         {
+            data[i] = Double.longBitsToDouble(sharedData.get(i));
+         }
+         long timestamp = sharedTimestamp.get();
+
+         if (sequence.get() == before)
+         {
+            snapshotToPack.setTimestamp(timestamp);
+            snapshotToPack.setSequence(before >> 1);
+            return true;
+         }
+      }
+   }
+}
@@ -0,0 +1,185 @@
+package us.ihmc.ekf.filter.publishing;
+
+import org.ejml.data.DMatrix1Row;
+
+import us.ihmc.euclid.tuple3D.interfaces.Tuple3DBasics;
+import us.ihmc.euclid.tuple4D.interfaces.QuaternionBasics;
+
+/**
+ * A flat copy of the estimator state at a point in time. The data is laid out according to an
+ * {@link EstimateSnapshotLayout}. Snapshots are filled by the {@link EstimatePublisher} and are meant to be owned by a
+ * single consumer thread that reuses it in every control tick.
+ *
+ * @author Georg Wiedebach
+ */
+public class EstimateSnapshot
+{
+   private final EstimateSnapshotLayout layout;
+   private final double[] data;
+   private long timestamp = Long.MIN_VALUE;
+   private long sequence = 0;
+
+   public EstimateSnapshot(EstimateSnapshotLayout layout)
+   {
+      this.layout = layout;
+      this.data = new double[layout.getSize()];
+   }
+
+   public EstimateSnapshotLayout getLayout()
+   {
+      return layout;
+   }
+
+   /**
+    * Provides direct access to the data of this snapshot. Use the {@link EstimateSnapshotLayout} to find the entries.
+    */
+   public double[] getData()
+   {
+      return data;
+   }
+
+   public void set(EstimateSnapshot other)
+   {
+      if (other.layout != layout)
+      {
+         throw new RuntimeException("Snapshots have different layouts.");
+      }
+      System.arraycopy(other.data, 0, data, 0, data.length);
+      timestamp = other.timestamp;
+      sequence = other.sequence;
+   }
+
+   /**
+    * @return the timestamp that was provided when this estimate was published.
+    */
+   public long getTimestamp()
+   {
+      return timestamp;
+   }
+
+   public void setTimestamp(long timestamp)
+   {
+      this.timestamp = timestamp;
+   }
+
+   /**
+    * @return the number of the publication this snapshot was taken from. Zero if this snapshot was never filled.
+    */
+   public long getSequence()
+   {
+      return sequence;
+   }
+
+   public void setSequence(long sequence)
+   {
+      this.sequence = sequence;
+   }
+
+   public void getOrientation(QuaternionBasics orientationToPack)
+   {
+      int offset = layout.getOrientationOffset();
+      orientationToPack.set(data[offset + 0], data[offset + 1], data[offset + 2], data[offset + 3]);
+   }
+
+   public void getPosition(Tuple3DBasics positionToPack)
+   {
+      get(layout.getPositionOffset(), positionToPack);
+   }
+
+   /**
+    * Packs the angular velocity of the floating base in its body frame.
+    */
+   public void getAngularVelocity(Tuple3DBasics angularVelocityToPack)
+   {
+      get(layout.getAngularVelocityOffset(), angularVelocityToPack);
+   }
+
+   /**
+    * Packs the linear velocity of the floating base in its body frame.
+    */
+   public void getLinearVelocity(Tuple3DBasics linearVelocityToPack)
+   {
+      get(layout.getLinearVelocityOffset(), linearVelocityToPack);
+   }
+
+   public void getAngularAcceleration(Tuple3DBasics angularAccelerationToPack)
+   {
+      get(layout.getAngularAccelerationOffset(), angularAccelerationToPack);
+   }
+
+   public void getLinearAcceleration(Tuple3DBasics linearAccelerationToPack)
+   {
+      get(layout.getLinearAccelerationOffset(), linearAccelerationToPack);
+   }
+
+   /**
+    * @param jointOffset as obtained from {@link EstimateSnapshotLayout#getJointOffset(String)}.
+    */
+   public double getJointPosition(int jointOffset)
+   {
+      return data[jointOffset];
+   }
+
+   /**
+    * @param jointOffset as obtained from {@link EstimateSnapshotLayout#getJointOffset(String)}.
+    */
+   public double getJointVelocity(int jointOffset)
+   {
+      return data[jointOffset + 1];
+   }
+
+   /**
+    * @param jointOffset as obtained from {@link EstimateSnapshotLayout#getJointOffset(String)}.
+    */
+   public double getJointAcceleration(int jointOffset)
+   {
+      return data[jointOffset + 2];
+   }
+
+   /**
+    * Gets an entry of the filter state vector. Use this to access sensor states such as biases.
+    */
+   public double getStateEntry(int stateIndex)
+   {
+      return data[layout.getStateOffset() + stateIndex];
+   }
+
+   /**
+    * Gets the variance of an entry in the filter state vector. Only available if the snapshot contains covariance data.
+    */
+   public double getVariance(int stateIndex)
+   {
+      switch (layout.getCovarianceMode())
+      {
+      case DIAGONAL:
+         return data[layout.getCovarianceOffset() + stateIndex];
+      case FULL:
+         return data[layout.getCovarianceOffset() + stateIndex * layout.getStateSize() + stateIndex];
+      default:
+         throw new RuntimeException("Snapshot does not contain covariance data.");
+      }
+   }
+
+   /**
+    * Packs the full error covariance. Only available if the snapshot layout contains the full covariance.
+    */
+   public void getCovariance(DMatrix1Row covarianceToPack)
+   {
+      if (layout.getCovarianceMode() != EstimateSnapshotLayout.CovarianceMode.FULL)
+      {
+         throw new RuntimeException("Snapshot does not contain the full covariance.");
+      }
+      int stateSize = layout.getStateSize();
+      covarianceToPack.reshape(stateSize, stateSize);
+      System.arraycopy(data, layout.getCovarianceOffset(), covarianceToPack.data, 0, stateSize * stateSize);
+   }
+
+   private void get(int offset, Tuple3DBasics tupleToPack)
+   {
+      if (offset < 0)
+      {
+         throw new RuntimeException("Quantity is not part of this estimate.");
+      }
+      tupleToPack.set(data[offset + 0], data[offset + 1], data[offset + 2]);
+   }
+}
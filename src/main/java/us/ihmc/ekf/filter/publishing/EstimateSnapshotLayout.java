@@ -0,0 +1,212 @@
+package us.ihmc.ekf.filter.publishing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import us.ihmc.ekf.filter.RobotState;
+
+/**
+ * Describes how the estimate of a {@link RobotState} is stored in the flat {@code double} array of an
+ * {@link EstimateSnapshot}.
+ * <p>
+ * The layout is
+ *
+ * <pre>
+ * | orientation (x, y, z, s) | state vector | joints (q, qd, qdd) | covariance |
+ * </pre>
+ *
+ * The orientation quaternion is only present if the robot is floating since the state vector only contains the
+ * orientation error. The state vector is the full filter state in the order of the {@link RobotState} containing the
+ * pose, twist, accelerations, joint states, and sensor states such as biases. Since joints with a reduced model do not
+ * have all entries in the state vector the position, velocity, and acceleration of each joint are stored again in a
+ * fixed format. The covariance part depends on the {@link CovarianceMode}.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class EstimateSnapshotLayout
+{
+   public enum CovarianceMode
+   {
+      /** No covariance is included in the snapshot. */
+      NONE,
+      /** Only the diagonal of the error covariance is included (the variances of all state entries). */
+      DIAGONAL,
+      /** The full error covariance matrix is included in row major order. */
+      FULL
+   }
+
+   public static final int QUATERNION_SIZE = 4;
+   public static final int JOINT_SIZE = 3;
+
+   private final int stateSize;
+   private final boolean isFloating;
+   private final CovarianceMode covarianceMode;
+
+   private final int orientationOffset;
+   private final int stateOffset;
+   private final int jointsOffset;
+   private final int covarianceOffset;
+   private final int size;
+
+   private final int angularVelocityOffset;
+   private final int angularAccelerationOffset;
+   private final int positionOffset;
+   private final int linearVelocityOffset;
+   private final int linearAccelerationOffset;
+
+   private final List<String> jointNames;
+   private final Map<String, Integer> jointOffsets = new HashMap<>();
+
+   public EstimateSnapshotLayout(RobotState robotState, CovarianceMode covarianceMode)
+   {
+      this.stateSize = robotState.getSize();
+      this.isFloating = robotState.isFloating();
+      this.covarianceMode = covarianceMode;
+
+      orientationOffset = 0;
+      stateOffset = isFloating ? QUATERNION_SIZE : 0;
+      jointsOffset = stateOffset + stateSize;
+      covarianceOffset = jointsOffset + JOINT_SIZE * robotState.getJointNames().size();
+
+      switch (covarianceMode)
+      {
+      case NONE:
+         size = covarianceOffset;
+         break;
+      case DIAGONAL:
+         size = covarianceOffset + stateSize;
+         break;
+      case FULL:
+         size = covarianceOffset + stateSize * stateSize;
+         break;
+      default:
+         throw new RuntimeException("Unknown covariance mode " + covarianceMode);
+      }
+
+      angularVelocityOffset = isFloating ? toOffset(stateOffset, robotState.findAngularVelocityIndex()) : -1;
+      angularAccelerationOffset = isFloating ? toOffset(stateOffset, robotState.findAngularAccelerationIndex()) : -1;
+      positionOffset = isFloating ? toOffset(stateOffset, robotState.findPositionIndex()) : -1;
+      linearVelocityOffset = isFloating ? toOffset(stateOffset, robotState.findLinearVelocityIndex()) : -1;
+      linearAccelerationOffset = isFloating ? toOffset(stateOffset, robotState.findLinearAccelerationIndex()) : -1;
+
+      jointNames = new ArrayList<>(robotState.getJointNames());
+      for (int i = 0; i < jointNames.size(); i++)
+      {
+         jointOffsets.put(jointNames.get(i), jointsOffset + JOINT_SIZE * i);
+      }
+   }
+
+   /**
+    * @return the total number of doubles in a snapshot with this layout.
+    */
+   public int getSize()
+   {
+      return size;
+   }
+
+   public int getStateSize()
+   {
+      return stateSize;
+   }
+
+   public boolean isFloating()
+   {
+      return isFloating;
+   }
+
+   public CovarianceMode getCovarianceMode()
+   {
+      return covarianceMode;
+   }
+
+   public int getOrientationOffset()
+   {
+      checkFloating();
+      return orientationOffset;
+   }
+
+   public int getStateOffset()
+   {
+      return stateOffset;
+   }
+
+   public int getJointsOffset()
+   {
+      return jointsOffset;
+   }
+
+   public int getCovarianceOffset()
+   {
+      return covarianceOffset;
+   }
+
+   public int getAngularVelocityOffset()
+   {
+      checkFloating();
+      return angularVelocityOffset;
+   }
+
+   public int getAngularAccelerationOffset()
+   {
+      checkFloating();
+      return angularAccelerationOffset;
+   }
+
+   public int getPositionOffset()
+   {
+      checkFloating();
+      return positionOffset;
+   }
+
+   public int getLinearVelocityOffset()
+   {
+      checkFloating();
+      return linearVelocityOffset;
+   }
+
+   public int getLinearAccelerationOffset()
+   {
+      checkFloating();
+      return linearAccelerationOffset;
+   }
+
+   public List<String> getJointNames()
+   {
+      return Collections.unmodifiableList(jointNames);
+   }
+
+   /**
+    * Gets the offset of the state of a joint in the snapshot. The joint position, velocity, and acceleration are stored
+    * at this offset and the following two entries. Look this up once and store it to avoid the map access.
+    *
+    * @param jointName the name of the joint.
+    * @return the offset of the joint state in the snapshot data.
+    */
+   public int getJointOffset(String jointName)
+   {
+      Integer offset = jointOffsets.get(jointName);
+      if (offset == null)
+      {
+         throw new RuntimeException("Do not have joint " + jointName);
+      }
+      return offset.intValue();
+   }
+
+   private void checkFloating()
+   {
+      if (!isFloating)
+      {
+         throw new RuntimeException("Snapshot layout is not for a floating robot.");
+      }
+   }
+
+   // Quantities that are inputs rather than states (e.g. with a strapdown pose state) have no offset.
+   private static int toOffset(int stateOffset, int stateIndex)
+   {
+      return stateIndex < 0 ? -1 : stateOffset + stateIndex;
+   }
+}
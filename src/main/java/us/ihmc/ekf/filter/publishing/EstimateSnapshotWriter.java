@@ -0,0 +1,107 @@
+package us.ihmc.ekf.filter.publishing;
+
+import org.ejml.data.DMatrixRMaj;
+
+import us.ihmc.ekf.filter.CovarianceView;
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.euclid.referenceFrame.FrameQuaternion;
+
+/**
+ * Fills {@link EstimateSnapshot}s from the current state of a {@link StateEstimator}. Must only be used on the
+ * estimator thread.
+ *
+ * @author Georg Wiedebach
+ */
+public class EstimateSnapshotWriter
+{
+   private final StateEstimator estimator;
+   private final RobotState robotState;
+   private final EstimateSnapshotLayout layout;
+   private final JointState[] jointStates;
+   private final int[] jointOffsets;
+
+   private final DMatrixRMaj stateVector = new DMatrixRMaj(0, 0);
+   private final CovarianceView covariance;
+   private final FrameQuaternion orientation = new FrameQuaternion();
+
+   public EstimateSnapshotWriter(StateEstimator estimator, EstimateSnapshotLayout layout)
+   {
+      if (estimator.getRobotState().getSize() != layout.getStateSize())
+      {
+         throw new RuntimeException("Snapshot layout does not match the estimator state.");
+      }
+      this.estimator = estimator;
+      this.robotState = estimator.getRobotState();
+      this.layout = layout;
+
+      jointStates = new JointState[layout.getJointNames().size()];
+      jointOffsets = new int[jointStates.length];
+      for (int i = 0; i < jointStates.length; i++)
+      {
+         String jointName = layout.getJointNames().get(i);
+         jointStates[i] = robotState.getJointState(jointName);
+         jointOffsets[i] = layout.getJointOffset(jointName);
+      }
+
+      int stateSize = layout.getStateSize();
+      covariance = estimator.getCovarianceView(0, 0, stateSize, stateSize);
+   }
+
+   public void write(EstimateSnapshot snapshotToPack)
+   {
+      write(snapshotToPack.getData());
+   }
+
+   /**
+    * Writes the estimate into the provided array according to the layout.
+    *
+    * @param data where the estimate is stored. Must be at least of the size of the layout.
+    */
+   public void write(double[] data)
+   {
+      if (layout.isFloating())
+      {
+         if (robotState.getPoseState() != null)
+         {
+            robotState.getPoseState().getOrientation(orientation);
+         }
+         else
+         {
+            robotState.getStrapdownPoseState().getOrientation(orientation);
+         }
+         int offset = layout.getOrientationOffset();
+         data[offset + 0] = orientation.getX();
+         data[offset + 1] = orientation.getY();
+         data[offset + 2] = orientation.getZ();
+         data[offset + 3] = orientation.getS();
+      }
+
+      robotState.getStateVector(stateVector);
+      System.arraycopy(stateVector.data, 0, data, layout.getStateOffset(), layout.getStateSize());
+
+      for (int i = 0; i < jointStates.length; i++)
+      {
+         data[jointOffsets[i] + 0] = jointStates[i].getQ();
+         data[jointOffsets[i] + 1] = jointStates[i].getQd();
+         data[jointOffsets[i] + 2] = jointStates[i].getQdd();
+      }
+
+      int stateSize = layout.getStateSize();
+      switch (layout.getCovarianceMode())
+      {
+      case DIAGONAL:
+         for (int i = 0; i < stateSize; i++)
+         {
+            data[layout.getCovarianceOffset() + i] = estimator.getCovarianceEntry(i, i);
+         }
+         break;
+      case FULL:
+         covariance.get(data, layout.getCovarianceOffset());
+         break;
+      default:
+         break;
+      }
+   }
+}
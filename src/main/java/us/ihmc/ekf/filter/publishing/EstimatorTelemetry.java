@@ -0,0 +1,273 @@
+package us.ihmc.ekf.filter.publishing;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import us.ihmc.yoVariables.registry.YoRegistry;
+import us.ihmc.yoVariables.variable.YoBoolean;
+import us.ihmc.yoVariables.variable.YoInteger;
+
+/**
+ * Publishes debug information of an estimator at a reduced rate and off the estimator thread.
+ * <p>
+ * The estimator thread calls {@link #update()} once per tick. Every {@link TelemetryGroup} that is enabled and due
+ * according to its decimation copies its values into a preallocated buffer.
+ * </p>
+ * <p>
+ * By default the groups are published right away in {@link #update()} on the estimator thread. This keeps e.g.
+ * YoVariables in sync with the estimator ticks which is required in simulations that record the variables every tick.
+ * For real-time deployments {@link #start(long)} moves the publishing to a background thread. The buffers are then
+ * handed to that thread with the same seqlock as the {@link EstimatePublisher}, the telemetry thread converts the latest
+ * values of each group, and the estimator never waits for it. A disabled group costs nothing but a check per tick.
+ * </p>
+ * <p>
+ * Each group has a YoVariable {@code <name>TelemetryEnabled} and {@code <name>TelemetryDecimation} so it can be
+ * switched at runtime.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class EstimatorTelemetry
+{
+   private final YoRegistry registry = new YoRegistry(getClass().getSimpleName());
+   private final List<GroupChannel> channels = new ArrayList<>();
+   private final Set<String> groupNames = new HashSet<>();
+
+   private ScheduledExecutorService executor = null;
+   private volatile boolean publishSynchronously = true;
+
+   public EstimatorTelemetry(YoRegistry parentRegistry)
+   {
+      parentRegistry.addChild(registry);
+   }
+
+   /**
+    * Adds a group to this telemetry. Must be called before the estimator starts.
+    *
+    * @param group the group to add.
+    * @param decimation the group is written every {@code decimation} estimator ticks.
+    */
+   public void addGroup(TelemetryGroup group, int decimation)
+   {
+      if (!groupNames.add(group.getName()))
+      {
+         throw new RuntimeException("Already have a telemetry group named " + group.getName());
+      }
+      GroupChannel channel = new GroupChannel(group, registry);
+      channel.decimation.set(checkDecimation(decimation));
+      channels.add(channel);
+   }
+
+   public void setEnabled(String groupName, boolean enabled)
+   {
+      getChannel(groupName).enabled.set(enabled);
+   }
+
+   public void setDecimation(String groupName, int decimation)
+   {
+      getChannel(groupName).decimation.set(checkDecimation(decimation));
+   }
+
+   /**
+    * Enables or disables all groups of this telemetry.
+    */
+   public void setEnabled(boolean enabled)
+   {
+      for (int i = 0; i < channels.size(); i++)
+      {
+         channels.get(i).enabled.set(enabled);
+      }
+   }
+
+   /**
+    * Writes all groups that are due and publishes them if this telemetry publishes synchronously. Must only be called
+    * from the estimator thread once per tick.
+    */
+   public void update()
+   {
+      for (int i = 0; i < channels.size(); i++)
+      {
+         channels.get(i).update();
+      }
+      if (publishSynchronously)
+      {
+         publish();
+      }
+   }
+
+   /**
+    * Sets whether the groups are published in {@link #update()} on the estimator thread. If disabled a different thread
+    * must call {@link #publish()}. This is enabled by default and disabled by {@link #start(long)}.
+    */
+   public void setPublishSynchronously(boolean publishSynchronously)
+   {
+      this.publishSynchronously = publishSynchronously;
+   }
+
+   public boolean isPublishingSynchronously()
+   {
+      return publishSynchronously;
+   }
+
+   /**
+    * Publishes the latest values of all groups that were written since the last call. Must only be called from one
+    * thread at a time. A group that is being written while this is called is skipped and published on the next call.
+    *
+    * @return the number of groups that were published.
+    */
+   public int publish()
+   {
+      int published = 0;
+      for (int i = 0; i < channels.size(); i++)
+      {
+         if (channels.get(i).publish())
+         {
+            published++;
+         }
+      }
+      return published;
+   }
+
+   /**
+    * Starts a daemon thread calling {@link #publish()} periodically. This disables the synchronous publishing in
+    * {@link #update()} until {@link #stop()} is called.
+    *
+    * @param periodMillis the time between two publications in milliseconds.
+    */
+   public synchronized void start(long periodMillis)
+   {
+      if (executor != null)
+      {
+         throw new RuntimeException("Telemetry is already running.");
+      }
+      executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+      {
+         Thread thread = new Thread(runnable, getClass().getSimpleName());
+         thread.setDaemon(true);
+         return thread;
+      });
+      publishSynchronously = false;
+      executor.scheduleAtFixedRate(this::publish, 0, periodMillis, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Stops the telemetry thread and switches back to publishing in {@link #update()}.
+    */
+   public synchronized void stop()
+   {
+      if (executor != null)
+      {
+         executor.shutdown();
+         try
+         {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+         executor = null;
+         publishSynchronously = true;
+      }
+   }
+
+   private GroupChannel getChannel(String groupName)
+   {
+      for (int i = 0; i < channels.size(); i++)
+      {
+         if (channels.get(i).group.getName().equals(groupName))
+         {
+            return channels.get(i);
+         }
+      }
+      throw new RuntimeException("No telemetry group named " + groupName);
+   }
+
+   private static int checkDecimation(int decimation)
+   {
+      if (decimation < 1)
+      {
+         throw new RuntimeException("Decimation must be positive, was " + decimation);
+      }
+      return decimation;
+   }
+
+   private static class GroupChannel
+   {
+      private final TelemetryGroup group;
+      private final YoBoolean enabled;
+      private final YoInteger decimation;
+
+      private final double[] writerData;
+      private final double[] readerData;
+      private int ticksSinceWrite = Integer.MAX_VALUE;
+
+      /** Odd while a write is in progress. Incremented by two for every write. */
+      private final AtomicLong sequence = new AtomicLong();
+      private final AtomicLongArray sharedData;
+      private long publishedSequence = 0;
+
+      public GroupChannel(TelemetryGroup group, YoRegistry registry)
+      {
+         this.group = group;
+         enabled = new YoBoolean(group.getName() + "TelemetryEnabled", registry);
+         decimation = new YoInteger(group.getName() + "TelemetryDecimation", registry);
+         enabled.set(true);
+
+         writerData = new double[group.getSize()];
+         readerData = new double[group.getSize()];
+         sharedData = new AtomicLongArray(group.getSize());
+      }
+
+      public void update()
+      {
+         if (!enabled.getValue())
+         {
+            return;
+         }
+         // The decimation can be changed from the GUI so it is not validated there.
+         if (ticksSinceWrite < decimation.getValue() - 1)
+         {
+            ticksSinceWrite++;
+            return;
+         }
+         ticksSinceWrite = 0;
+
+         group.write(writerData);
+         long currentSequence = sequence.get();
+         sequence.set(currentSequence + 1);
+         for (int i = 0; i < writerData.length; i++)
+         {
+            sharedData.lazySet(i, Double.doubleToRawLongBits(writerData[i]));
+         }
+         sequence.set(currentSequence + 2);
+      }
+
+      public boolean publish()
+      {
+         long before = sequence.get();
+         if (before == publishedSequence || (before & 1) != 0)
+         {
+            return false;
+         }
+         for (int i = 0; i < readerData.length; i++)
+         {
+            readerData[i] = Double.longBitsToDouble(sharedData.get(i));
+         }
+         if (sequence.get() != before)
+         {
+            return false;
+         }
+         publishedSequence = before;
+         group.publish(readerData);
+         return true;
+      }
+   }
+}
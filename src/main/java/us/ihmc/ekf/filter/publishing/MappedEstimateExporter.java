@@ -0,0 +1,245 @@
+package us.ihmc.ekf.filter.publishing;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import us.ihmc.ekf.filter.CovarianceView;
+import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.publishing.EstimateSnapshotLayout.CovarianceMode;
+
+/**
+ * Exports the estimate of a {@link StateEstimator} to a memory mapped file so other processes on the same machine can
+ * read it at full rate. See {@link MappedEstimateFormat} for the file layout and {@link MappedEstimateReader} for a
+ * Java implementation of a reader.
+ * <p>
+ * Call {@link #export(long)} on the estimator thread after each estimation tick. The exporter does not allocate and
+ * never waits for readers.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class MappedEstimateExporter implements AutoCloseable
+{
+   private final EstimateSnapshotLayout layout;
+   private final EstimateSnapshotWriter snapshotWriter;
+   private final List<CovarianceBlock> covarianceBlocks;
+   private final CovarianceView[] covarianceViews;
+   private final int[] blockOffsets;
+
+   private final RandomAccessFile file;
+   private final MappedByteBuffer buffer;
+   private final int dataOffset;
+   private final long generation;
+
+   private final double[] data;
+   private long sequence = 0;
+
+   /**
+    * Creates the exporter and the file. An existing file is replaced by atomically moving a new file in its place so
+    * readers that have the old file mapped are not affected. Those readers will see that their file was retired and stop
+    * reading (see {@link MappedEstimateReader#isStale()}).
+    *
+    * @param estimator the estimator to export the state of.
+    * @param path the file to write. Usually this should be on a memory backed file system such as {@code /dev/shm}.
+    * @param covarianceBlocks the blocks of the error covariance that should be exported.
+    * @throws IOException if the file can not be created.
+    */
+   public MappedEstimateExporter(StateEstimator estimator, Path path, List<CovarianceBlock> covarianceBlocks) throws IOException
+   {
+      this.layout = new EstimateSnapshotLayout(estimator.getRobotState(), CovarianceMode.NONE);
+      this.snapshotWriter = new EstimateSnapshotWriter(estimator, layout);
+      this.covarianceBlocks = new ArrayList<>(covarianceBlocks);
+
+      blockOffsets = new int[covarianceBlocks.size()];
+      covarianceViews = new CovarianceView[covarianceBlocks.size()];
+      int dataLength = layout.getSize();
+      for (int i = 0; i < covarianceBlocks.size(); i++)
+      {
+         CovarianceBlock block = covarianceBlocks.get(i);
+         if (block.getStartIndex() + block.getSize() > layout.getStateSize())
+         {
+            throw new RuntimeException("Covariance block " + block.getName() + " exceeds the state size.");
+         }
+         blockOffsets[i] = dataLength;
+         covarianceViews[i] = estimator.getCovarianceView(block.getStartIndex(), block.getStartIndex(), block.getSize(), block.getSize());
+         dataLength += block.getSize() * block.getSize();
+      }
+      data = new double[dataLength];
+
+      ByteBuffer header = createHeader(dataLength);
+      dataOffset = MappedEstimateFormat.align(header.limit());
+      int fileSize = dataOffset + MappedEstimateFormat.VALUES_OFFSET + Double.BYTES * dataLength;
+
+      generation = ThreadLocalRandom.current().nextLong(MappedEstimateFormat.RETIRED_GENERATION + 1, Long.MAX_VALUE);
+
+      // The new file is created next to the old one so it can be moved in place atomically.
+      Path absolutePath = path.toAbsolutePath();
+      Path temporaryPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+      file = new RandomAccessFile(temporaryPath.toFile(), "rw");
+      RandomAccessFile oldFile = null;
+      try
+      {
+         file.setLength(fileSize);
+         buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+         buffer.order(MappedEstimateFormat.BYTE_ORDER);
+
+         // Write the magic number last so readers never see an incomplete header.
+         header.putInt(0, 0);
+         header.putLong(MappedEstimateFormat.GENERATION_OFFSET, generation);
+         header.putInt(MappedEstimateFormat.DATA_OFFSET_OFFSET, dataOffset);
+         buffer.put(header);
+         MemoryFences.storeFence();
+         buffer.putInt(0, MappedEstimateFormat.MAGIC);
+
+         oldFile = Files.exists(absolutePath) ? new RandomAccessFile(absolutePath.toFile(), "rw") : null;
+         Files.move(temporaryPath, absolutePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+         if (oldFile != null)
+         {
+            retire(oldFile);
+         }
+      }
+      catch (IOException | RuntimeException e)
+      {
+         file.close();
+         Files.deleteIfExists(temporaryPath);
+         throw e;
+      }
+      finally
+      {
+         if (oldFile != null)
+         {
+            oldFile.close();
+         }
+      }
+   }
+
+   /**
+    * Tells readers of a replaced estimate file that it is no longer written. The file is not resized.
+    */
+   private static void retire(RandomAccessFile oldFile) throws IOException
+   {
+      int headerSize = MappedEstimateFormat.DATA_OFFSET_OFFSET;
+      if (oldFile.length() < headerSize)
+      {
+         return;
+      }
+      MappedByteBuffer oldBuffer = oldFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+      oldBuffer.order(MappedEstimateFormat.BYTE_ORDER);
+      if (oldBuffer.getInt(0) == MappedEstimateFormat.MAGIC && oldBuffer.getInt(MappedEstimateFormat.VERSION_OFFSET) == MappedEstimateFormat.VERSION)
+      {
+         oldBuffer.putLong(MappedEstimateFormat.GENERATION_OFFSET, MappedEstimateFormat.RETIRED_GENERATION);
+      }
+   }
+
+   private ByteBuffer createHeader(int dataLength)
+   {
+      List<byte[]> jointNames = new ArrayList<>();
+      int headerSize = 14 * Integer.BYTES + Long.BYTES;
+      for (String jointName : layout.getJointNames())
+      {
+         byte[] name = jointName.getBytes(StandardCharsets.UTF_8);
+         jointNames.add(name);
+         headerSize += Short.BYTES + name.length + Integer.BYTES;
+      }
+      List<byte[]> blockNames = new ArrayList<>();
+      for (CovarianceBlock block : covarianceBlocks)
+      {
+         byte[] name = block.getName().getBytes(StandardCharsets.UTF_8);
+         blockNames.add(name);
+         headerSize += Short.BYTES + name.length + 3 * Integer.BYTES;
+      }
+
+      ByteBuffer header = ByteBuffer.allocate(headerSize).order(MappedEstimateFormat.BYTE_ORDER);
+      header.putInt(MappedEstimateFormat.MAGIC);
+      header.putInt(MappedEstimateFormat.VERSION);
+      header.putLong(0L); // generation, filled in later
+      header.putInt(0); // data offset, filled in later
+      header.putInt(dataLength);
+      header.putInt(layout.getStateSize());
+      header.putInt(layout.getStateOffset());
+      boolean floating = layout.isFloating();
+      header.putInt(floating ? layout.getOrientationOffset() : -1);
+      header.putInt(floating ? layout.getPositionOffset() : -1);
+      header.putInt(floating ? layout.getAngularVelocityOffset() : -1);
+      header.putInt(floating ? layout.getLinearVelocityOffset() : -1);
+      header.putInt(floating ? layout.getAngularAccelerationOffset() : -1);
+      header.putInt(floating ? layout.getLinearAccelerationOffset() : -1);
+      header.putInt(jointNames.size());
+      header.putInt(blockNames.size());
+
+      for (int i = 0; i < jointNames.size(); i++)
+      {
+         byte[] name = jointNames.get(i);
+         header.putShort((short) name.length);
+         header.put(name);
+         header.putInt(layout.getJointOffset(layout.getJointNames().get(i)));
+      }
+      for (int i = 0; i < blockNames.size(); i++)
+      {
+         byte[] name = blockNames.get(i);
+         header.putShort((short) name.length);
+         header.put(name);
+         header.putInt(covarianceBlocks.get(i).getStartIndex());
+         header.putInt(covarianceBlocks.get(i).getSize());
+         header.putInt(blockOffsets[i]);
+      }
+
+      header.flip();
+      return header;
+   }
+
+   /**
+    * Writes the current estimate to the file. Must be called from the estimator thread.
+    *
+    * @param timestamp the time of the estimate that is passed on to the readers.
+    */
+   public void export(long timestamp)
+   {
+      snapshotWriter.write(data);
+      for (int i = 0; i < covarianceViews.length; i++)
+      {
+         covarianceViews[i].get(data, blockOffsets[i]);
+      }
+
+      buffer.putLong(dataOffset + MappedEstimateFormat.SEQUENCE_OFFSET, sequence + 1);
+      MemoryFences.storeFence();
+      buffer.putLong(dataOffset + MappedEstimateFormat.TIMESTAMP_OFFSET, timestamp);
+      int valuesOffset = dataOffset + MappedEstimateFormat.VALUES_OFFSET;
+      for (int i = 0; i < data.length; i++)
+      {
+         buffer.putDouble(valuesOffset + Double.BYTES * i, data[i]);
+      }
+      MemoryFences.storeFence();
+      sequence += 2;
+      buffer.putLong(dataOffset + MappedEstimateFormat.SEQUENCE_OFFSET, sequence);
+   }
+
+   /**
+    * @return the generation of the file that is written by this exporter.
+    */
+   public long getGeneration()
+   {
+      return generation;
+   }
+
+   public EstimateSnapshotLayout getLayout()
+   {
+      return layout;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      file.close();
+   }
+}
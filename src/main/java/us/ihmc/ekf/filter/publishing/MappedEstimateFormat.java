@@ -0,0 +1,69 @@
+package us.ihmc.ekf.filter.publishing;
+
+import java.nio.ByteOrder;
+
+/**
+ * Constants describing the memory mapped file used by the {@link MappedEstimateExporter} and
+ * {@link MappedEstimateReader}. All values are little endian.
+ *
+ * <pre>
+ * Header:
+ *   int    magic                    (see {@link #MAGIC})
+ *   int    version                  (see {@link #VERSION})
+ *   long   generation               (unique per exporter, set to {@link #RETIRED_GENERATION} when the file is replaced)
+ *   int    data offset              (bytes from the start of the file to the data section, 64 byte aligned)
+ *   int    data length              (number of doubles in the data section)
+ *   int    state size
+ *   int    state offset             (index of the state vector in the data)
+ *   int    orientation offset       (index of the quaternion x, y, z, s in the data or -1 if not floating)
+ *   int    position offset          (-1 if not floating)
+ *   int    angular velocity offset  (-1 if not floating)
+ *   int    linear velocity offset   (-1 if not floating)
+ *   int    angular acceleration offset (-1 if not floating)
+ *   int    linear acceleration offset  (-1 if not floating)
+ *   int    joint count
+ *   int    covariance block count
+ *   joint count times:
+ *     short name length, name (UTF-8), int offset (index of q, qd, qdd in the data)
+ *   covariance block count times:
+ *     short name length, name (UTF-8), int start index in the state, int size, int offset (row major block in the data)
+ * Data:
+ *   long   sequence                 (odd while the exporter is writing, incremented by two every tick)
+ *   long   timestamp
+ *   double data[data length]
+ * </pre>
+ *
+ * A reader must read the sequence, the data, and the sequence again and retry if the two sequence values do not match
+ * or are odd. The number of retries should be bounded since an exporter that dies while writing leaves the sequence odd.
+ * <p>
+ * An exporter never truncates or resizes an existing file since that would fault readers that have it mapped. Instead it
+ * creates a new file next to it and atomically moves it in place. Afterwards it sets the generation of the replaced file
+ * to {@link #RETIRED_GENERATION}. Readers must compare the generation with the value they read from the header when
+ * opening the file before every read and reopen the file if it changed.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class MappedEstimateFormat
+{
+   public static final int MAGIC = 0x45464B45;
+   public static final int VERSION = 2;
+   public static final long RETIRED_GENERATION = 0L;
+   public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+   // Offsets of the fixed header fields from the start of the file.
+   public static final int VERSION_OFFSET = 4;
+   public static final int GENERATION_OFFSET = 8;
+   public static final int DATA_OFFSET_OFFSET = 16;
+
+   // Offsets from the start of the data section.
+   public static final int ALIGNMENT = 64;
+   public static final int SEQUENCE_OFFSET = 0;
+   public static final int TIMESTAMP_OFFSET = 8;
+   public static final int VALUES_OFFSET = 16;
+
+   static int align(int position)
+   {
+      return ((position + ALIGNMENT - 1) / ALIGNMENT) * ALIGNMENT;
+   }
+}
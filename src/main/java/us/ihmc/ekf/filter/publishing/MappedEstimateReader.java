@@ -0,0 +1,330 @@
+package us.ihmc.ekf.filter.publishing;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import us.ihmc.euclid.tuple3D.interfaces.Tuple3DBasics;
+import us.ihmc.euclid.tuple4D.interfaces.QuaternionBasics;
+
+/**
+ * Reads the estimate that is exported by a {@link MappedEstimateExporter} in another process. Each instance must only
+ * be used by one thread. Call {@link #read()} once per tick and then use the getters to access the values of the most
+ * recent estimate. After construction reading does not allocate. If the exporter is restarted it replaces the file and
+ * this reader becomes {@link #isStale() stale}. In that case it must be closed and a new reader must be opened.
+ *
+ * @author Georg Wiedebach
+ */
+public class MappedEstimateReader implements AutoCloseable
+{
+   /**
+    * The number of times a read is retried while the exporter is writing. If the exporter died while writing the
+    * sequence stays odd and reading gives up after this many attempts.
+    */
+   public static final int MAX_READ_ATTEMPTS = 1000;
+
+   private final RandomAccessFile file;
+   private final MappedByteBuffer buffer;
+
+   private final long generation;
+   private final int dataOffset;
+   private final int stateSize;
+   private final int stateOffset;
+   private final int orientationOffset;
+   private final int positionOffset;
+   private final int angularVelocityOffset;
+   private final int linearVelocityOffset;
+   private final int angularAccelerationOffset;
+   private final int linearAccelerationOffset;
+   private final List<String> jointNames = new ArrayList<>();
+   private final Map<String, Integer> jointOffsets = new HashMap<>();
+   private final List<CovarianceBlock> covarianceBlocks = new ArrayList<>();
+   private final Map<String, Integer> blockOffsets = new HashMap<>();
+
+   private double[] data;
+   // Values are read into this array and swapped with the data once the read was consistent.
+   private double[] readData;
+   private long sequence = 0;
+   private long timestamp = Long.MIN_VALUE;
+   private boolean stale = false;
+
+   /**
+    * Opens the file written by a {@link MappedEstimateExporter}.
+    *
+    * @throws IOException if the file can not be opened.
+    * @throws RuntimeException if the file is not a complete estimate file of a supported version.
+    */
+   public MappedEstimateReader(Path path) throws IOException
+   {
+      file = new RandomAccessFile(path.toFile(), "r");
+      buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+      buffer.order(MappedEstimateFormat.BYTE_ORDER);
+
+      if (buffer.getInt() != MappedEstimateFormat.MAGIC)
+      {
+         file.close();
+         throw new RuntimeException("File " + path + " is not an estimate file or is not complete.");
+      }
+      MemoryFences.loadFence();
+      int version = buffer.getInt();
+      if (version != MappedEstimateFormat.VERSION)
+      {
+         file.close();
+         throw new RuntimeException("Unsupported estimate file version " + version);
+      }
+      generation = buffer.getLong();
+      if (generation == MappedEstimateFormat.RETIRED_GENERATION)
+      {
+         file.close();
+         throw new RuntimeException("File " + path + " was replaced by a new exporter.");
+      }
+
+      dataOffset = buffer.getInt();
+      int dataLength = buffer.getInt();
+      stateSize = buffer.getInt();
+      stateOffset = buffer.getInt();
+      orientationOffset = buffer.getInt();
+      positionOffset = buffer.getInt();
+      angularVelocityOffset = buffer.getInt();
+      linearVelocityOffset = buffer.getInt();
+      angularAccelerationOffset = buffer.getInt();
+      linearAccelerationOffset = buffer.getInt();
+      int jointCount = buffer.getInt();
+      int blockCount = buffer.getInt();
+
+      for (int i = 0; i < jointCount; i++)
+      {
+         String name = readName();
+         jointNames.add(name);
+         jointOffsets.put(name, buffer.getInt());
+      }
+      for (int i = 0; i < blockCount; i++)
+      {
+         String name = readName();
+         int startIndex = buffer.getInt();
+         int size = buffer.getInt();
+         covarianceBlocks.add(new CovarianceBlock(name, startIndex, size));
+         blockOffsets.put(name, buffer.getInt());
+      }
+
+      data = new double[dataLength];
+      readData = new double[dataLength];
+   }
+
+   private String readName()
+   {
+      byte[] bytes = new byte[buffer.getShort()];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Reads the latest estimate from the file.
+    *
+    * @return whether a new estimate was read. If {@code false} the exporter has not written an estimate yet, did not
+    *         finish writing within {@link #MAX_READ_ATTEMPTS} attempts, or the file was replaced (see
+    *         {@link #isStale()}). The getters keep returning the last estimate that was read.
+    */
+   public boolean read()
+   {
+      int valuesOffset = dataOffset + MappedEstimateFormat.VALUES_OFFSET;
+      for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++)
+      {
+         if (buffer.getLong(MappedEstimateFormat.GENERATION_OFFSET) != generation)
+         {
+            stale = true;
+            return false;
+         }
+         long before = buffer.getLong(dataOffset + MappedEstimateFormat.SEQUENCE_OFFSET);
+         if (before == 0)
+         {
+            return false;
+         }
+         if ((before & 1) != 0)
+         {
+            continue;
+         }
+         MemoryFences.loadFence();
+
+         long newTimestamp = buffer.getLong(dataOffset + MappedEstimateFormat.TIMESTAMP_OFFSET);
+         for (int i = 0; i < readData.length; i++)
+         {
+            readData[i] = buffer.getDouble(valuesOffset + Double.BYTES * i);
+         }
+
+         MemoryFences.loadFence();
+         if (buffer.getLong(dataOffset + MappedEstimateFormat.SEQUENCE_OFFSET) == before)
+         {
+            double[] previousData = data;
+            data = readData;
+            readData = previousData;
+            sequence = before >> 1;
+            timestamp = newTimestamp;
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * @return whether the file was replaced by a new exporter. A stale reader will never read a new estimate and should
+    *         be closed and reopened.
+    */
+   public boolean isStale()
+   {
+      return stale;
+   }
+
+   /**
+    * @return the number of the estimate that was last read. Increases by one for each estimate the exporter writes.
+    */
+   public long getSequence()
+   {
+      return sequence;
+   }
+
+   public long getTimestamp()
+   {
+      return timestamp;
+   }
+
+   public int getStateSize()
+   {
+      return stateSize;
+   }
+
+   public boolean isFloating()
+   {
+      return orientationOffset >= 0;
+   }
+
+   public double getStateEntry(int stateIndex)
+   {
+      return data[stateOffset + stateIndex];
+   }
+
+   public void getOrientation(QuaternionBasics orientationToPack)
+   {
+      checkFloating();
+      orientationToPack.set(data[orientationOffset + 0], data[orientationOffset + 1], data[orientationOffset + 2], data[orientationOffset + 3]);
+   }
+
+   public void getPosition(Tuple3DBasics positionToPack)
+   {
+      get(positionOffset, positionToPack);
+   }
+
+   public void getAngularVelocity(Tuple3DBasics angularVelocityToPack)
+   {
+      get(angularVelocityOffset, angularVelocityToPack);
+   }
+
+   public void getLinearVelocity(Tuple3DBasics linearVelocityToPack)
+   {
+      get(linearVelocityOffset, linearVelocityToPack);
+   }
+
+   public void getAngularAcceleration(Tuple3DBasics angularAccelerationToPack)
+   {
+      get(angularAccelerationOffset, angularAccelerationToPack);
+   }
+
+   public void getLinearAcceleration(Tuple3DBasics linearAccelerationToPack)
+   {
+      get(linearAccelerationOffset, linearAccelerationToPack);
+   }
+
+   public List<String> getJointNames()
+   {
+      return Collections.unmodifiableList(jointNames);
+   }
+
+   /**
+    * Gets the offset of the state of a joint. Look this up once and store it to avoid the map access.
+    */
+   public int getJointOffset(String jointName)
+   {
+      Integer offset = jointOffsets.get(jointName);
+      if (offset == null)
+      {
+         throw new RuntimeException("Do not have joint " + jointName);
+      }
+      return offset.intValue();
+   }
+
+   public double getJointPosition(int jointOffset)
+   {
+      return data[jointOffset];
+   }
+
+   public double getJointVelocity(int jointOffset)
+   {
+      return data[jointOffset + 1];
+   }
+
+   public double getJointAcceleration(int jointOffset)
+   {
+      return data[jointOffset + 2];
+   }
+
+   public List<CovarianceBlock> getCovarianceBlocks()
+   {
+      return Collections.unmodifiableList(covarianceBlocks);
+   }
+
+   /**
+    * Gets the offset of a covariance block. Look this up once and store it to avoid the map access.
+    */
+   public int getCovarianceBlockOffset(String blockName)
+   {
+      Integer offset = blockOffsets.get(blockName);
+      if (offset == null)
+      {
+         throw new RuntimeException("Do not have covariance block " + blockName);
+      }
+      return offset.intValue();
+   }
+
+   /**
+    * Gets an element of a covariance block.
+    *
+    * @param blockOffset as obtained from {@link #getCovarianceBlockOffset(String)}.
+    * @param blockSize the size of the block.
+    */
+   public double getCovarianceBlockEntry(int blockOffset, int blockSize, int row, int col)
+   {
+      return data[blockOffset + row * blockSize + col];
+   }
+
+   private void get(int offset, Tuple3DBasics tupleToPack)
+   {
+      checkFloating();
+      if (offset < 0)
+      {
+         throw new RuntimeException("Quantity is not part of this estimate.");
+      }
+      tupleToPack.set(data[offset + 0], data[offset + 1], data[offset + 2]);
+   }
+
+   private void checkFloating()
+   {
+      if (!isFloating())
+      {
+         throw new RuntimeException("Estimate is not of a floating robot.");
+      }
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      file.close();
+   }
+}
@@ -0,0 +1,46 @@
+package us.ihmc.ekf.filter.publishing;
+
+import java.lang.reflect.Field;
+
+import sun.misc.Unsafe;
+
+/**
+ * Provides explicit memory fences for data that is shared with other processes through memory mapped files. The Java
+ * memory model does not cover such memory so the ordering of the writes has to be enforced manually.
+ *
+ * @author Georg Wiedebach
+ */
+class MemoryFences
+{
+   private static final Unsafe unsafe = loadUnsafe();
+
+   private static Unsafe loadUnsafe()
+   {
+      try
+      {
+         Field field = Unsafe.class.getDeclaredField("theUnsafe");
+         field.setAccessible(true);
+         return (Unsafe) field.get(null);
+      }
+      catch (ReflectiveOperationException e)
+      {
+         throw new RuntimeException("Unable to access memory fences.", e);
+      }
+   }
+
+   /**
+    * Makes sure all stores before this call are visible before any store after this call.
+    */
+   static void storeFence()
+   {
+      unsafe.storeFence();
+   }
+
+   /**
+    * Makes sure all loads before this call complete before any load after this call.
+    */
+   static void loadFence()
+   {
+      unsafe.loadFence();
+   }
+}
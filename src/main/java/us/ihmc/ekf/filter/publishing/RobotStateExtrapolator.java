@@ -0,0 +1,174 @@
+package us.ihmc.ekf.filter.publishing;
+
+import org.ejml.data.DMatrix1Row;
+
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.ekf.filter.state.implementations.StrapdownPoseState;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple4D.Quaternion;
+
+/**
+ * Extrapolates an {@link EstimateSnapshot} into the future without touching the estimator. This can be used by a
+ * controller to compensate for actuation latency: read the latest estimate from the {@link EstimatePublisher} and
+ * extrapolate it to the time the command will take effect.
+ * <p>
+ * The extrapolation uses the motion models of the states. The joints are extrapolated in closed form and the floating
+ * base is integrated in steps of the estimator time step like in {@link PoseState#predict()}. Sensor states such as
+ * biases are constant. For a {@link StrapdownPoseState} the IMU inputs are not part of the estimate so the floating base
+ * is extrapolated with constant orientation and body velocity. The covariance part of the snapshot is copied as is, see
+ * {@link StateEstimator#extrapolateCovariance(int, DMatrix1Row)}.
+ * </p>
+ * <p>
+ * The extrapolator does not allocate and does not access the estimator after construction so it can be used on any
+ * single thread at any rate, e.g. a controller running faster than the estimator.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class RobotStateExtrapolator
+{
+   private final EstimateSnapshotLayout layout;
+   private final double dt;
+
+   private final int[] jointOffsets;
+   private final int[] jointPositionOffsets;
+   private final int[] jointVelocityOffsets;
+
+   private final Quaternion orientation = new Quaternion();
+   private final Quaternion rotation = new Quaternion();
+   private final Vector3D angularVelocity = new Vector3D();
+   private final Vector3D linearVelocity = new Vector3D();
+
+   /**
+    * @param robotState the state of the estimator that publishes the snapshots.
+    * @param layout the layout of the snapshots to extrapolate.
+    * @param dt the time step of the estimator.
+    */
+   public RobotStateExtrapolator(RobotState robotState, EstimateSnapshotLayout layout, double dt)
+   {
+      if (robotState.getSize() != layout.getStateSize())
+      {
+         throw new RuntimeException("Snapshot layout does not match the robot state.");
+      }
+      this.layout = layout;
+      this.dt = dt;
+
+      int numberOfJoints = layout.getJointNames().size();
+      jointOffsets = new int[numberOfJoints];
+      jointPositionOffsets = new int[numberOfJoints];
+      jointVelocityOffsets = new int[numberOfJoints];
+      for (int i = 0; i < numberOfJoints; i++)
+      {
+         String jointName = layout.getJointNames().get(i);
+         jointOffsets[i] = layout.getJointOffset(jointName);
+         jointPositionOffsets[i] = layout.getStateOffset() + robotState.getJointStartIndex(jointName) + JointState.positionIndex;
+         int velocityIndex = robotState.findJointVelocityIndex(jointName);
+         jointVelocityOffsets[i] = velocityIndex < 0 ? -1 : layout.getStateOffset() + velocityIndex;
+      }
+   }
+
+   /**
+    * Packs the estimate extrapolated by the given duration. The timestamp and sequence of the source are kept.
+    *
+    * @param estimate the estimate to extrapolate. Not modified.
+    * @param duration the time in seconds to extrapolate by. Must not be negative.
+    * @param extrapolatedToPack where the result is stored. Must have the same layout as the estimate and may be the
+    *           same object.
+    */
+   public void extrapolate(EstimateSnapshot estimate, double duration, EstimateSnapshot extrapolatedToPack)
+   {
+      if (estimate.getLayout() != layout)
+      {
+         throw new RuntimeException("Snapshot was not created with the layout of this extrapolator.");
+      }
+      if (duration < 0.0)
+      {
+         throw new RuntimeException("Can not extrapolate into the past: " + duration);
+      }
+      if (extrapolatedToPack != estimate)
+      {
+         extrapolatedToPack.set(estimate);
+      }
+      double[] data = extrapolatedToPack.getData();
+
+      extrapolateJoints(data, duration);
+
+      if (layout.isFloating())
+      {
+         // Count the full steps with a tolerance so a multiple of the time step does not add a tiny extra step.
+         int steps = (int) Math.floor(duration / dt + 1.0e-9);
+         for (int i = 0; i < steps; i++)
+         {
+            extrapolatePose(data, dt);
+         }
+         double remainder = duration - steps * dt;
+         if (remainder > 1.0e-9 * dt)
+         {
+            extrapolatePose(data, remainder);
+         }
+      }
+   }
+
+   private void extrapolateJoints(double[] data, double duration)
+   {
+      for (int i = 0; i < jointOffsets.length; i++)
+      {
+         int offset = jointOffsets[i];
+         double q = data[offset + 0];
+         double qd = data[offset + 1];
+         double qdd = data[offset + 2];
+
+         // Without a velocity state the acceleration is zero and the velocity is the input.
+         q += duration * qd + 0.5 * duration * duration * qdd;
+         qd += duration * qdd;
+
+         data[offset + 0] = q;
+         data[jointPositionOffsets[i]] = q;
+         if (jointVelocityOffsets[i] >= 0)
+         {
+            data[offset + 1] = qd;
+            data[jointVelocityOffsets[i]] = qd;
+         }
+      }
+   }
+
+   private void extrapolatePose(double[] data, double step)
+   {
+      int orientationOffset = layout.getOrientationOffset();
+      int angularVelocityOffset = layout.getAngularVelocityOffset();
+      int angularAccelerationOffset = layout.getAngularAccelerationOffset();
+      int positionOffset = layout.getPositionOffset();
+      int linearVelocityOffset = layout.getLinearVelocityOffset();
+      int linearAccelerationOffset = layout.getLinearAccelerationOffset();
+
+      orientation.set(orientationOffset, data);
+      linearVelocity.set(linearVelocityOffset, data);
+      orientation.transform(linearVelocity);
+
+      if (angularVelocityOffset >= 0)
+      {
+         angularVelocity.set(angularVelocityOffset, data);
+         orientation.transform(angularVelocity);
+         angularVelocity.scale(step);
+         rotation.setRotationVector(angularVelocity);
+         orientation.preMultiply(rotation);
+         orientation.get(orientationOffset, data);
+      }
+
+      for (int axis = 0; axis < 3; axis++)
+      {
+         if (angularVelocityOffset >= 0 && angularAccelerationOffset >= 0)
+         {
+            data[angularVelocityOffset + axis] += step * data[angularAccelerationOffset + axis];
+         }
+         data[positionOffset + axis] += step * linearVelocity.getElement(axis);
+         if (linearAccelerationOffset >= 0)
+         {
+            data[linearVelocityOffset + axis] += step * data[linearAccelerationOffset + axis];
+         }
+      }
+   }
+}
@@ -0,0 +1,64 @@
+package us.ihmc.ekf.filter.publishing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ejml.data.DMatrixRMaj;
+
+import us.ihmc.ekf.filter.state.State;
+import us.ihmc.yoVariables.registry.YoRegistry;
+import us.ihmc.yoVariables.variable.YoDouble;
+
+/**
+ * Publishes the state vector of a {@link State} to one {@link YoDouble} per entry named {@code <prefix><index>}. This
+ * can be used for the full robot state or for a single sensor state such as a bias.
+ *
+ * @author Georg Wiedebach
+ */
+public class StateTelemetryGroup implements TelemetryGroup
+{
+   private final String name;
+   private final State state;
+   private final DMatrixRMaj stateVector;
+   private final List<YoDouble> yoState = new ArrayList<>();
+
+   public StateTelemetryGroup(String prefix, State state, YoRegistry registry)
+   {
+      this.name = prefix;
+      this.state = state;
+      this.stateVector = new DMatrixRMaj(state.getSize(), 1);
+
+      for (int i = 0; i < state.getSize(); i++)
+      {
+         yoState.add(new YoDouble(prefix + i, registry));
+      }
+   }
+
+   @Override
+   public String getName()
+   {
+      return name;
+   }
+
+   @Override
+   public int getSize()
+   {
+      return yoState.size();
+   }
+
+   @Override
+   public void write(double[] dataToPack)
+   {
+      state.getStateVector(stateVector);
+      System.arraycopy(stateVector.data, 0, dataToPack, 0, dataToPack.length);
+   }
+
+   @Override
+   public void publish(double[] data)
+   {
+      for (int i = 0; i < data.length; i++)
+      {
+         yoState.get(i).set(data[i]);
+      }
+   }
+}
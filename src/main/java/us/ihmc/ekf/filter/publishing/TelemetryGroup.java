@@ -0,0 +1,36 @@
+package us.ihmc.ekf.filter.publishing;
+
+/**
+ * A group of estimator internals that is published for debugging by an {@link EstimatorTelemetry}. The group copies
+ * its values into a flat {@code double} array on the estimator thread and converts them to YoVariables or a log on the
+ * telemetry thread. Any expensive conversion should happen in {@link #publish(double[])}.
+ *
+ * @author Georg Wiedebach
+ */
+public interface TelemetryGroup
+{
+   /**
+    * @return the unique name of this group. Used to name the switches of the group.
+    */
+   String getName();
+
+   /**
+    * @return the number of values this group copies in each {@link #write(double[])}. Must not change.
+    */
+   int getSize();
+
+   /**
+    * Copies the current values into the provided array. Called on the estimator thread so this must not allocate or do
+    * any work beyond copying.
+    *
+    * @param dataToPack of length {@link #getSize()}.
+    */
+   void write(double[] dataToPack);
+
+   /**
+    * Publishes values previously obtained from {@link #write(double[])}. Called on the telemetry thread.
+    *
+    * @param data of length {@link #getSize()}.
+    */
+   void publish(double[] data);
+}
@@ -1,6 +1,7 @@
 package us.ihmc.ekf.filter.sensor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,7 +10,11 @@ import org.apache.commons.lang3.mutable.MutableInt;
 import org.ejml.data.DMatrix1Row;
 import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
 
+import us.ihmc.ekf.filter.FilterDivergenceException;
+import us.ihmc.ekf.filter.ModelDependency;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.state.ComposedState;
 import us.ihmc.ekf.filter.state.State;
@@ -18,10 +23,26 @@ public class ComposedSensor extends Sensor
 {
    private final List<Sensor> subSensors = new ArrayList<>();
    private final Map<Sensor, MutableInt> sensorIndexMap = new HashMap<>();
+   // The start index of each sub-sensor in the order of the sub-sensors so the per tick loops do not need map lookups.
+   private int[] startIndices = new int[0];
+   private int measurementSize = 0;
 
    private final ComposedState sensorState;
 
    private final DMatrixRMaj tempMatrix = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj tempJacobian = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj tempResidual = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj weightedJacobian = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj weightedResidual = new DMatrixRMaj(0, 0);
+   private final LinearSolverDense<DMatrixRMaj> solver = LinearSolverFactory_DDRM.symmPosDef(3);
+
+   // Matrices of sub-sensors that do not change between ticks are only inserted once.
+   private final DMatrixRMaj cachedJacobian = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj cachedRMatrix = new DMatrixRMaj(0, 0);
+   private RobotState cachedRobotState = null;
+   private boolean jacobianCacheValid = false;
+   private boolean rMatrixCacheValid = false;
+   private boolean cacheParameterDependentModels = false;
 
    private final String name;
 
@@ -37,6 +58,18 @@ public class ComposedSensor extends Sensor
       return name;
    }
 
+   /**
+    * Adds all sensors and computes their offsets in one pass.
+    */
+   public void addSensors(List<? extends Sensor> sensorsToAdd)
+   {
+      startIndices = Arrays.copyOf(startIndices, Math.max(startIndices.length, subSensors.size() + sensorsToAdd.size()));
+      for (int i = 0; i < sensorsToAdd.size(); i++)
+      {
+         addSensor(sensorsToAdd.get(i));
+      }
+   }
+
    public void addSensor(Sensor sensorToAdd)
    {
       if (sensorToAdd == null)
@@ -56,11 +89,37 @@ public class ComposedSensor extends Sensor
          return;
       }
 
-      int oldSize = getMeasurementSize();
-      sensorIndexMap.put(sensorToAdd, new MutableInt(oldSize));
+      if (startIndices.length == subSensors.size())
+      {
+         startIndices = Arrays.copyOf(startIndices, Math.max(4, 2 * startIndices.length));
+      }
+      sensorIndexMap.put(sensorToAdd, new MutableInt(measurementSize));
+      startIndices[subSensors.size()] = measurementSize;
       subSensors.add(sensorToAdd);
+      measurementSize += sensorToAdd.getMeasurementSize();
 
       sensorState.addState(sensorToAdd.getSensorState());
+      invalidateCache();
+   }
+
+   /**
+    * Enables caching of {@code H} and {@code R} blocks that only depend on parameters (see
+    * {@link ModelDependency#PARAMETERS}). If enabled {@link #invalidateCache()} must be called after parameters change.
+    * Constant blocks are always cached.
+    */
+   public void setCacheParameterDependentModels(boolean cacheParameterDependentModels)
+   {
+      this.cacheParameterDependentModels = cacheParameterDependentModels;
+      invalidateCache();
+   }
+
+   /**
+    * Forces all cached blocks of the {@code H} and {@code R} matrices to be recomputed in the next tick.
+    */
+   public void invalidateCache()
+   {
+      jacobianCacheValid = false;
+      rMatrixCacheValid = false;
    }
 
    @Override
@@ -82,29 +141,32 @@ public class ComposedSensor extends Sensor
    @Override
    public int getMeasurementSize()
    {
-      if (subSensors.isEmpty())
-      {
-         return 0;
-      }
-
-      Sensor lastSubSensor = subSensors.get(subSensors.size() - 1);
-      return getStartIndex(lastSubSensor) + lastSubSensor.getMeasurementSize();
+      return measurementSize;
    }
 
    @Override
    public void getMeasurementJacobian(DMatrix1Row jacobianToPack, RobotState robotState)
    {
-      jacobianToPack.reshape(getMeasurementSize(), robotState.getSize());
-       CommonOps_DDRM.fill(jacobianToPack, 0.0);
+      // The sensors resolve their state indices using the robot state so the cache is only valid for one state.
+      boolean rebuildCache = !jacobianCacheValid || robotState != cachedRobotState || cachedJacobian.getNumCols() != robotState.getSize();
+      if (rebuildCache)
+      {
+         cachedJacobian.reshape(getMeasurementSize(), robotState.getSize());
+         CommonOps_DDRM.fill(cachedJacobian, 0.0);
+         cachedRobotState = robotState;
+         jacobianCacheValid = true;
+      }
 
       for (int i = 0; i < subSensors.size(); i++)
       {
          Sensor subSensor = subSensors.get(i);
-         int startIndex = getStartIndex(subSensor);
-
-         subSensor.getMeasurementJacobian(tempMatrix, robotState);
-          CommonOps_DDRM.insert(tempMatrix, jacobianToPack, startIndex, 0);
+         if (rebuildCache || subSensor.getMeasurementJacobianDependency().requiresUpdate(cacheParameterDependentModels))
+         {
+            subSensor.getMeasurementJacobian(tempMatrix, robotState);
+            CommonOps_DDRM.insert(tempMatrix, cachedJacobian, startIndices[i], 0);
+         }
       }
+      jacobianToPack.set(cachedJacobian);
    }
 
    @Override
@@ -116,7 +178,7 @@ public class ComposedSensor extends Sensor
       for (int i = 0; i < subSensors.size(); i++)
       {
          Sensor subSensor = subSensors.get(i);
-         int startIndex = getStartIndex(subSensor);
+         int startIndex = startIndices[i];
 
          subSensor.getResidual(tempMatrix, robotState);
           CommonOps_DDRM.insert(tempMatrix, residualToPack, startIndex, 0);
@@ -126,16 +188,122 @@ public class ComposedSensor extends Sensor
    @Override
    public void getRMatrix(DMatrix1Row matrixToPack)
    {
-      matrixToPack.reshape(getMeasurementSize(), getMeasurementSize());
-       CommonOps_DDRM.fill(matrixToPack, 0.0);
+      boolean rebuildCache = !rMatrixCacheValid;
+      if (rebuildCache)
+      {
+         cachedRMatrix.reshape(getMeasurementSize(), getMeasurementSize());
+         CommonOps_DDRM.fill(cachedRMatrix, 0.0);
+         rMatrixCacheValid = true;
+      }
 
       for (int i = 0; i < subSensors.size(); i++)
       {
          Sensor subSensor = subSensors.get(i);
-         int startIndex = getStartIndex(subSensor);
+         if (rebuildCache || subSensor.getRMatrixDependency().requiresUpdate(cacheParameterDependentModels))
+         {
+            int startIndex = startIndices[i];
+            subSensor.getRMatrix(tempMatrix);
+            CommonOps_DDRM.insert(tempMatrix, cachedRMatrix, startIndex, startIndex);
+         }
+      }
+      matrixToPack.set(cachedRMatrix);
+   }
+
+   @Override
+   public ModelDependency getMeasurementJacobianDependency()
+   {
+      ModelDependency dependency = ModelDependency.CONSTANT;
+      for (int i = 0; i < subSensors.size(); i++)
+      {
+         dependency = dependency.combine(subSensors.get(i).getMeasurementJacobianDependency());
+      }
+      return dependency;
+   }
+
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      ModelDependency dependency = ModelDependency.CONSTANT;
+      for (int i = 0; i < subSensors.size(); i++)
+      {
+         dependency = dependency.combine(subSensors.get(i).getRMatrixDependency());
+      }
+      return dependency;
+   }
 
+   /**
+    * Computes the information that the measurements of all sub-sensors add to the estimate:
+    * <ul>
+    * <li>{@code informationMatrixToPack = H' * inverse(R) * H}
+    * <li>{@code informationVectorToPack = H' * inverse(R) * r}
+    * </ul>
+    * Since the sensors are independent {@code R} is block diagonal and the contribution of each sensor is added
+    * separately. This avoids ever forming or inverting a matrix of the full measurement size. For sensors with a diagonal
+    * noise covariance the inverse is computed element wise.
+    *
+    * @param informationMatrixToPack the measurement information matrix. (modified)
+    * @param informationVectorToPack the measurement information vector. (modified)
+    * @param robotState is the up to date state of the robot.
+    */
+   public void getInformation(DMatrix1Row informationMatrixToPack, DMatrix1Row informationVectorToPack, RobotState robotState)
+   {
+      informationMatrixToPack.reshape(robotState.getSize(), robotState.getSize());
+      informationVectorToPack.reshape(robotState.getSize(), 1);
+      CommonOps_DDRM.fill(informationMatrixToPack, 0.0);
+      CommonOps_DDRM.fill(informationVectorToPack, 0.0);
+
+      for (int i = 0; i < subSensors.size(); i++)
+      {
+         Sensor subSensor = subSensors.get(i);
+         subSensor.getMeasurementJacobian(tempJacobian, robotState);
+         subSensor.getResidual(tempResidual, robotState);
          subSensor.getRMatrix(tempMatrix);
-          CommonOps_DDRM.insert(tempMatrix, matrixToPack, startIndex, startIndex);
+
+         // Compute inverse(R) * H and inverse(R) * r.
+         if (isDiagonal(tempMatrix))
+         {
+            weightedJacobian.set(tempJacobian);
+            weightedResidual.set(tempResidual);
+            for (int row = 0; row < tempMatrix.getNumRows(); row++)
+            {
+               double inverseVariance = 1.0 / tempMatrix.get(row, row);
+               int rowStart = row * weightedJacobian.getNumCols();
+               for (int col = 0; col < weightedJacobian.getNumCols(); col++)
+               {
+                  weightedJacobian.data[rowStart + col] *= inverseVariance;
+               }
+               weightedResidual.data[row] *= inverseVariance;
+            }
+         }
+         else
+         {
+            if (!solver.setA(tempMatrix))
+            {
+               throw new FilterDivergenceException("Noise covariance of " + subSensor.getName() + " is not positive definite.");
+            }
+            weightedJacobian.reshape(tempJacobian.getNumRows(), tempJacobian.getNumCols());
+            weightedResidual.reshape(tempResidual.getNumRows(), 1);
+            solver.solve(tempJacobian, weightedJacobian);
+            solver.solve(tempResidual, weightedResidual);
+         }
+
+         CommonOps_DDRM.multAddTransA(tempJacobian, weightedJacobian, informationMatrixToPack);
+         CommonOps_DDRM.multAddTransA(tempJacobian, weightedResidual, informationVectorToPack);
+      }
+   }
+
+   private static boolean isDiagonal(DMatrix1Row matrix)
+   {
+      for (int row = 0; row < matrix.getNumRows(); row++)
+      {
+         for (int col = 0; col < matrix.getNumCols(); col++)
+         {
+            if (row != col && matrix.get(row, col) != 0.0)
+            {
+               return false;
+            }
+         }
       }
+      return true;
    }
 }
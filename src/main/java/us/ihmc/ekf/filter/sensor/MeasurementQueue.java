@@ -0,0 +1,205 @@
+package us.ihmc.ekf.filter.sensor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free single producer / single consumer ring buffer that passes measurements from a sensor driver thread to the
+ * estimator thread.
+ * <p>
+ * All memory is allocated on construction. Each slot holds a timestamp and a fixed number of doubles. The driver thread
+ * calls one of the {@code offer} methods whenever it has a new measurement. The estimator thread calls
+ * {@link #drain()} at the beginning of each correction step which forwards the most recent measurement to the
+ * {@link MeasurementSink} (usually the {@code setMeasurement} method of a sensor) and discards older ones.
+ * </p>
+ * <p>
+ * Only a single thread may call the {@code offer} methods and only a single thread may call {@link #drain()}. The
+ * producer never waits for the consumer: if the consumer does not keep up the oldest unread measurement is overwritten
+ * so the latest measurement always reaches the estimator. The consumer detects when the slot it is reading is being
+ * overwritten and reads again from the newest slot.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class MeasurementQueue
+{
+   private final int measurementSize;
+   private final int mask;
+   // The slots are read while the producer may overwrite them so the entries are accessed atomically like in the
+   // EstimatePublisher.
+   private final AtomicLongArray timestamps;
+   private final AtomicLongArray data;
+
+   private final MeasurementSink sink;
+   private final double[] latest;
+
+   /** Index of the next slot to be written. Only modified by the producer. */
+   private final AtomicLong head = new AtomicLong();
+   /** Index of the next slot to be read. Only modified by the consumer. */
+   private final AtomicLong tail = new AtomicLong();
+   /** Producer local copy of the tail to avoid reading the atomic value on every offer. */
+   private long cachedTail = 0;
+   /** Only modified by the producer but may be read from any thread. */
+   private final AtomicLong droppedMeasurements = new AtomicLong();
+
+   /**
+    * Creates a new queue.
+    *
+    * @param measurementSize the number of values in each measurement.
+    * @param capacity the number of measurements that can be queued. Will be rounded up to the next power of two and
+    *           must be at least two.
+    * @param sink where the measurements are forwarded to when draining the queue.
+    */
+   public MeasurementQueue(int measurementSize, int capacity, MeasurementSink sink)
+   {
+      if (measurementSize < 1 || capacity < 1)
+      {
+         throw new RuntimeException("Measurement size and capacity must be positive.");
+      }
+
+      // With a single slot the producer would always be writing the slot the consumer reads.
+      int slots = Math.max(2, Integer.highestOneBit(capacity));
+      if (slots < capacity)
+      {
+         slots = slots << 1;
+      }
+
+      this.measurementSize = measurementSize;
+      this.mask = slots - 1;
+      this.timestamps = new AtomicLongArray(slots);
+      this.data = new AtomicLongArray(slots * measurementSize);
+      this.sink = sink;
+      this.latest = new double[measurementSize];
+   }
+
+   /**
+    * Adds a scalar measurement to the queue. To be called from the producer thread only.
+    */
+   public void offer(long timestamp, double value)
+   {
+      checkSize(1);
+      long index = startWrite();
+      int slot = (int) (index & mask);
+      timestamps.lazySet(slot, timestamp);
+      data.lazySet(slot, Double.doubleToRawLongBits(value));
+      head.lazySet(index + 1);
+   }
+
+   /**
+    * Adds a three dimensional measurement to the queue. To be called from the producer thread only.
+    */
+   public void offer(long timestamp, double x, double y, double z)
+   {
+      checkSize(3);
+      long index = startWrite();
+      int slot = (int) (index & mask);
+      int offset = slot * 3;
+      timestamps.lazySet(slot, timestamp);
+      data.lazySet(offset + 0, Double.doubleToRawLongBits(x));
+      data.lazySet(offset + 1, Double.doubleToRawLongBits(y));
+      data.lazySet(offset + 2, Double.doubleToRawLongBits(z));
+      head.lazySet(index + 1);
+   }
+
+   /**
+    * Adds a measurement of arbitrary size to the queue. To be called from the producer thread only.
+    *
+    * @param values the measurement. Must have the length of the measurement size of this queue.
+    */
+   public void offer(long timestamp, double[] values)
+   {
+      checkSize(values.length);
+      long index = startWrite();
+      int slot = (int) (index & mask);
+      int offset = slot * measurementSize;
+      timestamps.lazySet(slot, timestamp);
+      for (int i = 0; i < measurementSize; i++)
+      {
+         data.lazySet(offset + i, Double.doubleToRawLongBits(values[i]));
+      }
+      head.lazySet(index + 1);
+   }
+
+   /**
+    * @return the index of the slot to write. Counts the measurement that is overwritten if the queue is full.
+    */
+   private long startWrite()
+   {
+      long index = head.get();
+      if (index - cachedTail > mask)
+      {
+         cachedTail = tail.get();
+         if (index - cachedTail > mask)
+         {
+            droppedMeasurements.incrementAndGet();
+         }
+      }
+      return index;
+   }
+
+   private void checkSize(int size)
+   {
+      if (size != measurementSize)
+      {
+         throw new RuntimeException("Expected measurement of size " + measurementSize + " but got " + size + ".");
+      }
+   }
+
+   /**
+    * Takes all queued measurements out of the queue and forwards the most recent one to the sink. To be called from the
+    * consumer thread only.
+    *
+    * @return the number of measurements that were offered since the last call including the ones that were overwritten.
+    */
+   public int drain()
+   {
+      long currentHead = head.get();
+      long currentTail = tail.get();
+      if (currentHead == currentTail)
+      {
+         return 0;
+      }
+
+      long timestamp;
+      while (true)
+      {
+         int slot = (int) ((currentHead - 1) & mask);
+         int offset = slot * measurementSize;
+         timestamp = timestamps.get(slot);
+         for (int i = 0; i < measurementSize; i++)
+         {
+            latest[i] = Double.longBitsToDouble(data.get(offset + i));
+         }
+
+         // The producer starts overwriting the slot once it reaches the index that is one lap ahead.
+         long headAfterRead = head.get();
+         if (headAfterRead - currentHead < mask)
+         {
+            break;
+         }
+         currentHead = headAfterRead;
+      }
+      tail.lazySet(currentHead);
+
+      sink.apply(timestamp, latest);
+      return (int) (currentHead - currentTail);
+   }
+
+   public int getMeasurementSize()
+   {
+      return measurementSize;
+   }
+
+   public int getCapacity()
+   {
+      return mask + 1;
+   }
+
+   /**
+    * @return the number of unread measurements that were overwritten since the consumer did not keep up.
+    */
+   public long getDroppedMeasurements()
+   {
+      return droppedMeasurements.get();
+   }
+}
@@ -0,0 +1,59 @@
+package us.ihmc.ekf.filter.sensor;
+
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+import us.ihmc.ekf.filter.sensor.implementations.FootVelocitySensor;
+import us.ihmc.ekf.filter.sensor.implementations.JointPositionSensor;
+import us.ihmc.ekf.filter.sensor.implementations.JointVelocitySensor;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple3D.interfaces.Vector3DReadOnly;
+
+/**
+ * Factory methods for {@link MeasurementQueue}s that forward to the sensors in this library. Register the created
+ * queues with the estimator so they are drained at the beginning of each correction step.
+ *
+ * @author Georg Wiedebach
+ */
+public class MeasurementQueues
+{
+   /**
+    * Creates a queue for three dimensional measurements such as the ones of IMU or velocity sensors. E.g.
+    * {@code createVector3DQueue(capacity, sensor::setMeasurement)}.
+    */
+   public static MeasurementQueue createVector3DQueue(int capacity, Consumer<Vector3DReadOnly> setMeasurement)
+   {
+      Vector3D measurement = new Vector3D();
+      return new MeasurementQueue(3, capacity, (timestamp, values) ->
+      {
+         measurement.set(values[0], values[1], values[2]);
+         setMeasurement.accept(measurement);
+      });
+   }
+
+   /**
+    * Creates a queue for scalar measurements, e.g. {@code createScalarQueue(capacity, sensor::setLoad)}.
+    */
+   public static MeasurementQueue createScalarQueue(int capacity, DoubleConsumer setMeasurement)
+   {
+      return new MeasurementQueue(1, capacity, (timestamp, values) -> setMeasurement.accept(values[0]));
+   }
+
+   public static MeasurementQueue createQueue(JointPositionSensor sensor, int capacity)
+   {
+      return createScalarQueue(capacity, sensor::setJointPositionMeasurement);
+   }
+
+   public static MeasurementQueue createQueue(JointVelocitySensor sensor, int capacity)
+   {
+      return createScalarQueue(capacity, sensor::setJointVelocityMeasurement);
+   }
+
+   /**
+    * Creates a queue for the load percentage of a foot as the driver of a force sensor would provide it.
+    */
+   public static MeasurementQueue createLoadQueue(FootVelocitySensor sensor, int capacity)
+   {
+      return createScalarQueue(capacity, sensor::setLoad);
+   }
+}
@@ -0,0 +1,19 @@
+package us.ihmc.ekf.filter.sensor;
+
+/**
+ * Receives a measurement that was taken out of a {@link MeasurementQueue} on the estimator thread. Usually this
+ * forwards the values to the {@code setMeasurement} method of a {@link Sensor}.
+ *
+ * @author Georg Wiedebach
+ */
+@FunctionalInterface
+public interface MeasurementSink
+{
+   /**
+    * Applies a measurement. The values array is owned by the queue and will be reused. It must not be stored.
+    *
+    * @param timestamp the time the measurement was taken as provided by the sensor driver.
+    * @param values the measured values. The length of the array is the measurement size of the queue.
+    */
+   void apply(long timestamp, double[] values);
+}
@@ -0,0 +1,127 @@
+package us.ihmc.ekf.filter.sensor;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+
+import us.ihmc.ekf.filter.ModelDependency;
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.state.State;
+
+/**
+ * A sensor that directly measures entries of the robot state with independent noise, e.g. joint encoders.
+ * <p>
+ * The measurement Jacobian of such a sensor is a selection matrix. Rather than packing it as a dense matrix the
+ * estimator can use the indices of the measured state entries and incorporate the measurements one at a time (see
+ * {@link #getStateIndices(RobotState)}). The dense {@link Sensor} methods are still implemented so this sensor can be
+ * used anywhere a regular sensor is expected.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public abstract class SelectionSensor extends Sensor
+{
+   private RobotState indexedRobotState;
+   private int indexedStateSize = -1;
+   private int[] stateIndices;
+
+   private final DMatrixRMaj stateVector = new DMatrixRMaj(0, 0);
+
+   /**
+    * A selection sensor measures the state directly and can not add states such as biases to the filter.
+    */
+   @Override
+   public final State getSensorState()
+   {
+      return null;
+   }
+
+   /**
+    * Finds the index of the state entry measured by the measurement with the provided index.
+    *
+    * @return the index in the state vector or {@code -1} if the measured quantity is not part of the state.
+    */
+   protected abstract int findStateIndex(int measurementIndex, RobotState robotState);
+
+   /**
+    * @return the measured value of the state entry.
+    */
+   public abstract double getMeasurement(int measurementIndex);
+
+   /**
+    * @return the variance of the measurement noise.
+    */
+   public abstract double getVariance(int measurementIndex);
+
+   /**
+    * Gets the indices of the measured state entries. These are stored and only recomputed if a different robot state is
+    * passed or if the size of the robot state changed, e.g. because states were added to it.
+    *
+    * @param robotState the robot state the indices refer to.
+    * @return for each measurement the index in the state or {@code -1} if it does not measure a state.
+    */
+   public int[] getStateIndices(RobotState robotState)
+   {
+      if (indexedRobotState != robotState || indexedStateSize != robotState.getSize() || stateIndices.length != getMeasurementSize())
+      {
+         stateIndices = new int[getMeasurementSize()];
+         for (int i = 0; i < stateIndices.length; i++)
+         {
+            stateIndices[i] = findStateIndex(i, robotState);
+         }
+         indexedRobotState = robotState;
+         indexedStateSize = robotState.getSize();
+      }
+      return stateIndices;
+   }
+
+   @Override
+   public void getMeasurementJacobian(DMatrix1Row jacobianToPack, RobotState robotState)
+   {
+      int[] stateIndices = getStateIndices(robotState);
+      jacobianToPack.reshape(getMeasurementSize(), robotState.getSize());
+      CommonOps_DDRM.fill(jacobianToPack, 0.0);
+      for (int i = 0; i < stateIndices.length; i++)
+      {
+         if (stateIndices[i] >= 0)
+         {
+            jacobianToPack.set(i, stateIndices[i], 1.0);
+         }
+      }
+   }
+
+   @Override
+   public void getResidual(DMatrix1Row residualToPack, RobotState robotState)
+   {
+      int[] stateIndices = getStateIndices(robotState);
+      robotState.getStateVector(stateVector);
+      residualToPack.reshape(getMeasurementSize(), 1);
+      for (int i = 0; i < stateIndices.length; i++)
+      {
+         residualToPack.set(i, stateIndices[i] >= 0 ? getMeasurement(i) - stateVector.get(stateIndices[i]) : 0.0);
+      }
+   }
+
+   @Override
+   public void getRMatrix(DMatrix1Row noiseCovarianceToPack)
+   {
+      noiseCovarianceToPack.reshape(getMeasurementSize(), getMeasurementSize());
+      CommonOps_DDRM.fill(noiseCovarianceToPack, 0.0);
+      for (int i = 0; i < getMeasurementSize(); i++)
+      {
+         noiseCovarianceToPack.set(i, i, getVariance(i));
+      }
+   }
+
+   @Override
+   public ModelDependency getMeasurementJacobianDependency()
+   {
+      return ModelDependency.CONSTANT;
+   }
+
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
+}
@@ -2,6 +2,7 @@ package us.ihmc.ekf.filter.sensor;
 
 import org.ejml.data.DMatrix1Row;
 
+import us.ihmc.ekf.filter.ModelDependency;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.sensor.implementations.AngularVelocitySensor;
 import us.ihmc.ekf.filter.sensor.implementations.JointPositionSensor;
@@ -83,6 +84,27 @@ public abstract class Sensor
     */
    public abstract void getRMatrix(DMatrix1Row noiseCovarianceToPack);
 
+   /**
+    * Declares what the measurement Jacobian of this sensor depends on. Matrices that do not depend on the state are
+    * cached by the {@link ComposedSensor} rather than recomputed in every tick.
+    *
+    * @return the dependency of the {@code H} matrix. By default {@link ModelDependency#STATE}.
+    */
+   public ModelDependency getMeasurementJacobianDependency()
+   {
+      return ModelDependency.STATE;
+   }
+
+   /**
+    * Declares what the noise covariance of this sensor depends on. See {@link #getMeasurementJacobianDependency()}.
+    *
+    * @return the dependency of the {@code R} matrix. By default {@link ModelDependency#STATE}.
+    */
+   public ModelDependency getRMatrixDependency()
+   {
+      return ModelDependency.STATE;
+   }
+
    @Override
    public int hashCode()
    {
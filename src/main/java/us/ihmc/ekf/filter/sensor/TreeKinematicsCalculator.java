@@ -0,0 +1,279 @@
+package us.ihmc.ekf.filter.sensor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixRMaj;
+
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple3D.interfaces.Tuple3DReadOnly;
+import us.ihmc.mecano.multiBodySystem.interfaces.JointReadOnly;
+import us.ihmc.mecano.multiBodySystem.interfaces.RigidBodyReadOnly;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.mecano.spatial.interfaces.TwistReadOnly;
+
+/**
+ * Computes the geometric Jacobians and convective terms of all bodies of a multi body system in a single pass over the
+ * joint tree. Sensors attached to the same robot can share one instance instead of each walking their kinematic chain
+ * from the root body with a {@link us.ihmc.mecano.algorithms.GeometricJacobianCalculator}.
+ * <p>
+ * In {@link #update()} the unit twists of all joints, the twists of all bodies, and their convective accelerations are
+ * computed in the frame of the root body. A sensor then only needs to transform the columns of its chain to its
+ * measurement frame. The results match the Jacobian and convective term of a
+ * {@link us.ihmc.mecano.algorithms.GeometricJacobianCalculator} with the root body as base.
+ * </p>
+ * <p>
+ * {@link #update()} must be called once per tick after the frames and joint velocities of the robot were updated,
+ * e.g. by passing this calculator to the {@link us.ihmc.ekf.filter.StateEstimator}.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class TreeKinematicsCalculator
+{
+   private final RigidBodyReadOnly rootBody;
+   private final ReferenceFrame rootFrame;
+
+   private final List<JointReadOnly> joints = new ArrayList<>();
+   private final Map<JointReadOnly, Integer> jointIndices = new HashMap<>();
+   private final int[] parentIndices;
+
+   // Quantities expressed in the root frame indexed by the joint preceding the body:
+   private final DMatrixRMaj[] unitTwists;
+   private final Vector3D[] angularVelocities;
+   private final Vector3D[] linearVelocities;
+   private final Vector3D[] convectiveAngularAccelerations;
+   private final Vector3D[] convectiveLinearAccelerations;
+
+   private final Map<RigidBodyReadOnly, int[]> chains = new HashMap<>();
+
+   private final Twist tempTwist = new Twist();
+   private final Vector3D jointAngularVelocity = new Vector3D();
+   private final Vector3D jointLinearVelocity = new Vector3D();
+   private final Vector3D tempAngular = new Vector3D();
+   private final Vector3D tempLinear = new Vector3D();
+   private final Vector3D tempCross = new Vector3D();
+   private final RigidBodyTransform rootToFrame = new RigidBodyTransform();
+
+   public TreeKinematicsCalculator(RigidBodyReadOnly rootBody)
+   {
+      this.rootBody = rootBody;
+      this.rootFrame = rootBody.getBodyFixedFrame();
+
+      // Collecting the joints depth first guarantees that each joint is preceded by its parent joint.
+      collectJoints(rootBody);
+
+      int numberOfJoints = joints.size();
+      parentIndices = new int[numberOfJoints];
+      unitTwists = new DMatrixRMaj[numberOfJoints];
+      angularVelocities = new Vector3D[numberOfJoints];
+      linearVelocities = new Vector3D[numberOfJoints];
+      convectiveAngularAccelerations = new Vector3D[numberOfJoints];
+      convectiveLinearAccelerations = new Vector3D[numberOfJoints];
+      for (int jointIdx = 0; jointIdx < numberOfJoints; jointIdx++)
+      {
+         JointReadOnly joint = joints.get(jointIdx);
+         JointReadOnly parentJoint = joint.getPredecessor().getParentJoint();
+         parentIndices[jointIdx] = parentJoint == null ? -1 : jointIndices.get(parentJoint);
+         unitTwists[jointIdx] = new DMatrixRMaj(Twist.SIZE, joint.getDegreesOfFreedom());
+         angularVelocities[jointIdx] = new Vector3D();
+         linearVelocities[jointIdx] = new Vector3D();
+         convectiveAngularAccelerations[jointIdx] = new Vector3D();
+         convectiveLinearAccelerations[jointIdx] = new Vector3D();
+      }
+   }
+
+   private void collectJoints(RigidBodyReadOnly body)
+   {
+      for (JointReadOnly childJoint : body.getChildrenJoints())
+      {
+         jointIndices.put(childJoint, joints.size());
+         joints.add(childJoint);
+         collectJoints(childJoint.getSuccessor());
+      }
+   }
+
+   public RigidBodyReadOnly getRootBody()
+   {
+      return rootBody;
+   }
+
+   /**
+    * Computes the unit twists of all joints and the twists and convective accelerations of all bodies in the frame of
+    * the root body.
+    * <p>
+    * The convective acceleration of a body is the acceleration it would have with zero joint accelerations. Expressed
+    * in a frame fixed to the root body it accumulates the cross product of the twist of the predecessor of each joint
+    * with the twist of the joint: {@code c_i = c_p + V_p x V_j}.
+    * </p>
+    */
+   public void update()
+   {
+      for (int jointIdx = 0; jointIdx < joints.size(); jointIdx++)
+      {
+         JointReadOnly joint = joints.get(jointIdx);
+
+         List<? extends TwistReadOnly> jointUnitTwists = joint.getUnitTwists();
+         DMatrixRMaj unitTwistMatrix = unitTwists[jointIdx];
+         for (int dofIdx = 0; dofIdx < jointUnitTwists.size(); dofIdx++)
+         {
+            tempTwist.setIncludingFrame(jointUnitTwists.get(dofIdx));
+            tempTwist.changeFrame(rootFrame);
+            setColumn(tempTwist.getAngularPart(), tempTwist.getLinearPart(), dofIdx, unitTwistMatrix);
+         }
+
+         tempTwist.setIncludingFrame(joint.getJointTwist());
+         tempTwist.changeFrame(rootFrame);
+         jointAngularVelocity.set(tempTwist.getAngularPart());
+         jointLinearVelocity.set(tempTwist.getLinearPart());
+
+         int parentIdx = parentIndices[jointIdx];
+         if (parentIdx < 0)
+         {
+            // The root body does not move so there is no convective acceleration.
+            angularVelocities[jointIdx].set(jointAngularVelocity);
+            linearVelocities[jointIdx].set(jointLinearVelocity);
+            convectiveAngularAccelerations[jointIdx].setToZero();
+            convectiveLinearAccelerations[jointIdx].setToZero();
+         }
+         else
+         {
+            Vector3D parentAngularVelocity = angularVelocities[parentIdx];
+            Vector3D parentLinearVelocity = linearVelocities[parentIdx];
+
+            Vector3D convectiveAngular = convectiveAngularAccelerations[jointIdx];
+            Vector3D convectiveLinear = convectiveLinearAccelerations[jointIdx];
+            convectiveAngular.cross(parentAngularVelocity, jointAngularVelocity);
+            convectiveLinear.cross(parentAngularVelocity, jointLinearVelocity);
+            tempCross.cross(parentLinearVelocity, jointAngularVelocity);
+            convectiveLinear.add(tempCross);
+            convectiveAngular.add(convectiveAngularAccelerations[parentIdx]);
+            convectiveLinear.add(convectiveLinearAccelerations[parentIdx]);
+
+            angularVelocities[jointIdx].add(parentAngularVelocity, jointAngularVelocity);
+            linearVelocities[jointIdx].add(parentLinearVelocity, jointLinearVelocity);
+         }
+      }
+   }
+
+   /**
+    * Packs the Jacobian relating the velocities of the joints from the root body to the provided body to the twist of
+    * the body expressed in the provided frame. The columns are ordered from the root body to the body.
+    *
+    * @param body the body to get the Jacobian for.
+    * @param jacobianFrame the frame to express the Jacobian in. Must be fixed to the body.
+    * @param jacobianToPack modified.
+    */
+   public void getJacobian(RigidBodyReadOnly body, ReferenceFrame jacobianFrame, DMatrix1Row jacobianToPack)
+   {
+      int[] chain = getChain(body);
+      rootFrame.getTransformToDesiredFrame(rootToFrame, jacobianFrame);
+
+      int degreesOfFreedom = 0;
+      for (int i = 0; i < chain.length; i++)
+      {
+         degreesOfFreedom += unitTwists[chain[i]].getNumCols();
+      }
+      jacobianToPack.reshape(Twist.SIZE, degreesOfFreedom);
+
+      int column = 0;
+      for (int i = 0; i < chain.length; i++)
+      {
+         DMatrixRMaj unitTwistMatrix = unitTwists[chain[i]];
+         for (int dofIdx = 0; dofIdx < unitTwistMatrix.getNumCols(); dofIdx++)
+         {
+            tempAngular.set(unitTwistMatrix.get(0, dofIdx), unitTwistMatrix.get(1, dofIdx), unitTwistMatrix.get(2, dofIdx));
+            tempLinear.set(unitTwistMatrix.get(3, dofIdx), unitTwistMatrix.get(4, dofIdx), unitTwistMatrix.get(5, dofIdx));
+            transformFromRootFrame(tempAngular, tempLinear);
+            setColumn(tempAngular, tempLinear, column, jacobianToPack);
+            column++;
+         }
+      }
+   }
+
+   /**
+    * Packs the convective term {@code Jd * qd} of the Jacobian of the provided body, i.e. its spatial acceleration
+    * with respect to the root body when all joint accelerations are zero.
+    *
+    * @param body the body to get the convective term for.
+    * @param frame the frame to express the convective term in. Must be fixed to the body.
+    * @param convectiveTermToPack modified.
+    */
+   public void getConvectiveTerm(RigidBodyReadOnly body, ReferenceFrame frame, DMatrix1Row convectiveTermToPack)
+   {
+      convectiveTermToPack.reshape(Twist.SIZE, 1);
+      if (body == rootBody)
+      {
+         convectiveTermToPack.zero();
+         return;
+      }
+
+      int jointIdx = getJointIndex(body.getParentJoint());
+      rootFrame.getTransformToDesiredFrame(rootToFrame, frame);
+      tempAngular.set(convectiveAngularAccelerations[jointIdx]);
+      tempLinear.set(convectiveLinearAccelerations[jointIdx]);
+      transformFromRootFrame(tempAngular, tempLinear);
+      setColumn(tempAngular, tempLinear, 0, convectiveTermToPack);
+   }
+
+   /**
+    * Changes the frame of a spatial vector from the root frame to the frame of {@link #rootToFrame}. Since the
+    * convective accelerations are derivatives of twists expressed in the fixed root frame this also holds for them as
+    * long as the desired frame is fixed to the body.
+    */
+   private void transformFromRootFrame(Vector3D angular, Vector3D linear)
+   {
+      rootToFrame.transform(angular);
+      rootToFrame.transform(linear);
+      tempCross.cross(rootToFrame.getTranslation(), angular);
+      linear.add(tempCross);
+   }
+
+   private int[] getChain(RigidBodyReadOnly body)
+   {
+      int[] chain = chains.get(body);
+      if (chain == null)
+      {
+         List<Integer> chainList = new ArrayList<>();
+         RigidBodyReadOnly currentBody = body;
+         while (currentBody != rootBody)
+         {
+            JointReadOnly parentJoint = currentBody.getParentJoint();
+            if (parentJoint == null)
+            {
+               throw new RuntimeException("Body " + body.getName() + " is not a descendant of " + rootBody.getName());
+            }
+            chainList.add(0, getJointIndex(parentJoint));
+            currentBody = parentJoint.getPredecessor();
+         }
+         chain = chainList.stream().mapToInt(Integer::intValue).toArray();
+         chains.put(body, chain);
+      }
+      return chain;
+   }
+
+   private int getJointIndex(JointReadOnly joint)
+   {
+      Integer jointIdx = jointIndices.get(joint);
+      if (jointIdx == null)
+      {
+         throw new RuntimeException("Joint " + joint.getName() + " is not part of the tree of " + rootBody.getName());
+      }
+      return jointIdx;
+   }
+
+   private static void setColumn(Tuple3DReadOnly angular, Tuple3DReadOnly linear, int column, DMatrix1Row matrix)
+   {
+      matrix.set(0, column, angular.getX());
+      matrix.set(1, column, angular.getY());
+      matrix.set(2, column, angular.getZ());
+      matrix.set(3, column, linear.getX());
+      matrix.set(4, column, linear.getY());
+      matrix.set(5, column, linear.getZ());
+   }
+}
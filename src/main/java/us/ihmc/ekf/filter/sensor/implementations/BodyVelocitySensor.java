@@ -8,8 +8,10 @@ import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
 
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.sensor.TreeKinematicsCalculator;
 import us.ihmc.ekf.filter.state.State;
 import us.ihmc.ekf.filter.state.implementations.BiasState;
 import us.ihmc.euclid.referenceFrame.FrameVector3D;
@@ -45,6 +47,7 @@ public abstract class BodyVelocitySensor extends Sensor
    private final DMatrixRMaj jacobianMatrix = new DMatrixRMaj(0, 0);
    private final DMatrixRMaj jacobianRelevantPart = new DMatrixRMaj(0, 0);
    private final GeometricJacobianCalculator robotJacobian = new GeometricJacobianCalculator();
+   private TreeKinematicsCalculator treeKinematics = null;
    private final List<String> oneDofJointNames = new ArrayList<>();
 
    private final DMatrixRMaj jacobian = new DMatrixRMaj(0, 0);
@@ -115,8 +118,7 @@ public abstract class BodyVelocitySensor extends Sensor
       jacobianToPack.reshape(getMeasurementSize(), robotState.getSize());
       jacobianToPack.zero();
 
-      robotJacobian.reset();
-      jacobianMatrix.set(robotJacobian.getJacobianMatrix());
+      updateJacobian();
 
       packRelevantJacobianPart(jacobianRelevantPart, jacobianMatrix);
       FilterTools.insertForVelocity(jacobianToPack, oneDofJointNames, jacobianRelevantPart, robotState);
@@ -152,6 +154,35 @@ public abstract class BodyVelocitySensor extends Sensor
        CommonOps_DDRM.scale(variance.getValue() * sqrtHz, matrixToPack);
    }
 
+   /**
+    * Uses the provided calculator for the kinematics of this sensor instead of walking the kinematic chain from the root
+    * body in every call. The calculator must be updated before each correction, e.g. by passing it to
+    * {@link us.ihmc.ekf.filter.StateEstimator#setTreeKinematicsCalculator(TreeKinematicsCalculator)}.
+    *
+    * @param treeKinematics the shared calculator or {@code null} to use the calculator of this sensor.
+    */
+   public void setTreeKinematicsCalculator(TreeKinematicsCalculator treeKinematics)
+   {
+      if (treeKinematics != null && treeKinematics.getRootBody() != robotJacobian.getBase())
+      {
+         throw new RuntimeException("The kinematics calculator of sensor " + getName() + " must have the root body " + robotJacobian.getBase().getName());
+      }
+      this.treeKinematics = treeKinematics;
+   }
+
+   private void updateJacobian()
+   {
+      if (treeKinematics == null)
+      {
+         robotJacobian.reset();
+         jacobianMatrix.set(robotJacobian.getJacobianMatrix());
+      }
+      else
+      {
+         treeKinematics.getJacobian(robotJacobian.getEndEffector(), robotJacobian.getJacobianFrame(), jacobianMatrix);
+      }
+   }
+
    public void setMeasurement(Vector3DReadOnly measurement)
    {
       this.measurement.set(measurement);
@@ -164,4 +195,10 @@ public abstract class BodyVelocitySensor extends Sensor
          biasState.reset();
       }
    }
+
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
 }
@@ -5,6 +5,7 @@ import org.ejml.dense.row.CommonOps_DDRM;
 
 import us.ihmc.commons.MathTools;
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
 import us.ihmc.euclid.referenceFrame.ReferenceFrame;
 import us.ihmc.euclid.tuple3D.interfaces.Vector3DReadOnly;
 import us.ihmc.mecano.multiBodySystem.interfaces.RigidBodyBasics;
@@ -87,4 +88,10 @@ public class FootVelocitySensor extends LinearVelocitySensor
        CommonOps_DDRM.scale(variance.getValue() * sqrtHz, matrixToPack);
    }
 
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      // The variance depends on the measured foot load.
+      return ModelDependency.STATE;
+   }
 }
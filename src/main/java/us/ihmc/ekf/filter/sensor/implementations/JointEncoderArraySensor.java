@@ -0,0 +1,114 @@
+package us.ihmc.ekf.filter.sensor.implementations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.sensor.SelectionSensor;
+import us.ihmc.yoVariables.providers.DoubleProvider;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Measures the positions or velocities of many joints at once. This replaces one {@link JointPositionSensor} or
+ * {@link JointVelocitySensor} per joint and allows the estimator to use the measurements without building a dense
+ * measurement Jacobian (see {@link SelectionSensor}).
+ *
+ * @author Georg Wiedebach
+ */
+public class JointEncoderArraySensor extends SelectionSensor
+{
+   /**
+    * The joint quantity measured by the encoders.
+    */
+   public enum Quantity
+   {
+      POSITION, VELOCITY
+   }
+
+   private final String name;
+   private final Quantity quantity;
+   private final List<String> jointNames;
+   private final double[] measurements;
+
+   private final DoubleProvider variance;
+
+   private final double sqrtHz;
+
+   public JointEncoderArraySensor(String name, Quantity quantity, List<String> jointNames, double dt, YoRegistry registry)
+   {
+      this(name, quantity, jointNames, FilterTools.stringToPrefix(name), dt, registry);
+   }
+
+   public JointEncoderArraySensor(String name, Quantity quantity, List<String> jointNames, String parameterGroup, double dt, YoRegistry registry)
+   {
+      this.name = FilterTools.stringToPrefix(name);
+      this.quantity = quantity;
+      this.jointNames = new ArrayList<>(jointNames);
+      this.measurements = new double[jointNames.size()];
+      this.sqrtHz = 1.0 / Math.sqrt(dt);
+
+      String parameterName = quantity == Quantity.POSITION ? "JointPositionVariance" : "JointVelocityVariance";
+      variance = FilterTools.findOrCreate(parameterGroup + parameterName, registry, 1.0);
+   }
+
+   @Override
+   public String getName()
+   {
+      return name;
+   }
+
+   public List<String> getJointNames()
+   {
+      return Collections.unmodifiableList(jointNames);
+   }
+
+   /**
+    * Sets the measurements of all joints.
+    *
+    * @param measurements the measured values in the order of {@link #getJointNames()}.
+    */
+   public void setMeasurements(double[] measurements)
+   {
+      if (measurements.length != this.measurements.length)
+      {
+         throw new RuntimeException("Expected " + this.measurements.length + " measurements but got " + measurements.length);
+      }
+      System.arraycopy(measurements, 0, this.measurements, 0, measurements.length);
+   }
+
+   @Override
+   public int getMeasurementSize()
+   {
+      return measurements.length;
+   }
+
+   @Override
+   protected int findStateIndex(int measurementIndex, RobotState robotState)
+   {
+      String jointName = jointNames.get(measurementIndex);
+      switch (quantity)
+      {
+      case POSITION:
+         return robotState.findJointPositionIndex(jointName);
+      case VELOCITY:
+         // If the joint velocity is an input the measurement does not provide information about the state.
+         return robotState.findJointVelocityIndex(jointName);
+      default:
+         throw new RuntimeException("Unknown quantity " + quantity);
+      }
+   }
+
+   @Override
+   public double getMeasurement(int measurementIndex)
+   {
+      return measurements[measurementIndex];
+   }
+
+   @Override
+   public double getVariance(int measurementIndex)
+   {
+      return variance.getValue() * sqrtHz;
+   }
+}
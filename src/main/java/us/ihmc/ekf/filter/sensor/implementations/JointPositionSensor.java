@@ -4,6 +4,8 @@ import org.ejml.data.DMatrix1Row;
 import org.ejml.dense.row.CommonOps_DDRM;
 
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
+import us.ihmc.ekf.filter.ParameterTable;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.sensor.Sensor;
 import us.ihmc.ekf.filter.state.implementations.JointState;
@@ -33,14 +35,27 @@ public class JointPositionSensor extends Sensor
    }
 
    public JointPositionSensor(String jointName, String parameterGroup, double dt, YoRegistry registry)
+   {
+      this(jointName, parameterGroup, dt, new ParameterTable(registry));
+   }
+
+   public JointPositionSensor(String jointName, double dt, ParameterTable parameters)
+   {
+      this(jointName, FilterTools.stringToPrefix(jointName), dt, parameters);
+   }
+
+   /**
+    * Use this when creating the sensors of many joints so the parameters are looked up in the table.
+    */
+   public JointPositionSensor(String jointName, String parameterGroup, double dt, ParameterTable parameters)
    {
       this.jointName = jointName;
       this.sqrtHz = 1.0 / Math.sqrt(dt);
       this.name = FilterTools.stringToPrefix(jointName + "Position");
 
-      jointPositionVariance = FilterTools.findOrCreate(parameterGroup + "JointPositionVariance", registry, 1.0);
+      jointPositionVariance = parameters.findOrCreate(parameterGroup + "JointPositionVariance", 1.0);
 
-      rawMeasurement = new YoDouble(name + "raw", registry);
+      rawMeasurement = new YoDouble(name + "raw", parameters.getRegistry());
    }
 
    @Override
@@ -83,4 +98,16 @@ public class JointPositionSensor extends Sensor
       matrixToPack.reshape(measurementSize, measurementSize);
       matrixToPack.set(0, 0, jointPositionVariance.getValue() * sqrtHz);
    }
+
+   @Override
+   public ModelDependency getMeasurementJacobianDependency()
+   {
+      return ModelDependency.CONSTANT;
+   }
+
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
 }
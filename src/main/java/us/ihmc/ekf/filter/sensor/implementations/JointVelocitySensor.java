@@ -4,6 +4,8 @@ import org.ejml.data.DMatrix1Row;
 import org.ejml.dense.row.CommonOps_DDRM;
 
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
+import us.ihmc.ekf.filter.ParameterTable;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.sensor.Sensor;
 import us.ihmc.ekf.filter.state.implementations.JointState;
@@ -33,14 +35,27 @@ public class JointVelocitySensor extends Sensor
    }
 
    public JointVelocitySensor(String jointName, String parameterGroup, double dt, YoRegistry registry)
+   {
+      this(jointName, parameterGroup, dt, new ParameterTable(registry));
+   }
+
+   public JointVelocitySensor(String jointName, double dt, ParameterTable parameters)
+   {
+      this(jointName, FilterTools.stringToPrefix(jointName), dt, parameters);
+   }
+
+   /**
+    * Use this when creating the sensors of many joints so the parameters are looked up in the table.
+    */
+   public JointVelocitySensor(String jointName, String parameterGroup, double dt, ParameterTable parameters)
    {
       this.jointName = jointName;
       this.sqrtHz = 1.0 / Math.sqrt(dt);
       this.name = FilterTools.stringToPrefix(jointName + "Velocity");
 
-      jointVelocityVariance = FilterTools.findOrCreate(parameterGroup + "JointVelocityVariance", registry, 1.0);
+      jointVelocityVariance = parameters.findOrCreate(parameterGroup + "JointVelocityVariance", 1.0);
 
-      rawMeasurement = new YoDouble(name + "raw", registry);
+      rawMeasurement = new YoDouble(name + "raw", parameters.getRegistry());
    }
 
    @Override
@@ -66,7 +81,12 @@ public class JointVelocitySensor extends Sensor
    {
       jacobianToPack.reshape(measurementSize, robotState.getSize());
        CommonOps_DDRM.fill(jacobianToPack, 0.0);
-      jacobianToPack.set(0, robotState.findJointVelocityIndex(jointName), 1.0);
+      int velocityIndex = robotState.findJointVelocityIndex(jointName);
+      // If the joint velocity is an input the measurement does not provide information about the state.
+      if (velocityIndex >= 0)
+      {
+         jacobianToPack.set(0, velocityIndex, 1.0);
+      }
    }
 
    @Override
@@ -84,4 +104,15 @@ public class JointVelocitySensor extends Sensor
       noiseCovarianceToPack.set(0, 0, jointVelocityVariance.getValue() * sqrtHz);
    }
 
+   @Override
+   public ModelDependency getMeasurementJacobianDependency()
+   {
+      return ModelDependency.CONSTANT;
+   }
+
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
 }
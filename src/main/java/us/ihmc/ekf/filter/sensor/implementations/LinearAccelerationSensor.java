@@ -8,8 +8,10 @@ import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
 
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.sensor.TreeKinematicsCalculator;
 import us.ihmc.ekf.filter.state.State;
 import us.ihmc.ekf.filter.state.implementations.BiasState;
 import us.ihmc.euclid.matrix.Matrix3D;
@@ -34,6 +36,7 @@ public class LinearAccelerationSensor extends Sensor
    private final BiasState biasState;
 
    private final GeometricJacobianCalculator robotJacobian = new GeometricJacobianCalculator();
+   private TreeKinematicsCalculator treeKinematics = null;
    private final List<String> oneDofJointNames = new ArrayList<>();
 
    private final ReferenceFrame measurementFrame;
@@ -150,8 +153,7 @@ public class LinearAccelerationSensor extends Sensor
    {
       robotState.getStateVector(tempRobotState);
 
-      robotJacobian.reset();
-      jacobianMatrix.set(robotJacobian.getJacobianMatrix());
+      updateJacobian();
 
        CommonOps_DDRM.extract(jacobianMatrix, 0, 3, 0, jacobianMatrix.getNumCols(), jacobianAngularPart, 0, 0);
        CommonOps_DDRM.extract(jacobianMatrix, 3, 6, 0, jacobianMatrix.getNumCols(), jacobianLinearPart, 0, 0);
@@ -221,8 +223,7 @@ public class LinearAccelerationSensor extends Sensor
    {
       robotState.getStateVector(tempRobotState);
 
-      robotJacobian.reset();
-      jacobianMatrix.set(robotJacobian.getJacobianMatrix());
+      updateJacobian();
 
       // Compute the residual (non-linear)
       // J * qdd
@@ -231,7 +232,14 @@ public class LinearAccelerationSensor extends Sensor
       linearJointTerm.setIncludingFrame(measurementFrame, 3, jointAccelerationTerm);
 
       // Jd * qd
-      convectiveTerm.set(robotJacobian.getConvectiveTermMatrix());
+      if (treeKinematics == null)
+      {
+         convectiveTerm.set(robotJacobian.getConvectiveTermMatrix());
+      }
+      else
+      {
+         treeKinematics.getConvectiveTerm(robotJacobian.getEndEffector(), measurementFrame, convectiveTerm);
+      }
       linearConvectiveTerm.setIncludingFrame(measurementFrame, 3, convectiveTerm);
 
       // w x v
@@ -268,6 +276,35 @@ public class LinearAccelerationSensor extends Sensor
        CommonOps_DDRM.scale(variance.getValue() * sqrtHz, matrixToPack);
    }
 
+   /**
+    * Uses the provided calculator for the kinematics of this sensor instead of walking the kinematic chain from the root
+    * body in every call. The calculator must be updated before each correction, e.g. by passing it to
+    * {@link us.ihmc.ekf.filter.StateEstimator#setTreeKinematicsCalculator(TreeKinematicsCalculator)}.
+    *
+    * @param treeKinematics the shared calculator or {@code null} to use the calculator of this sensor.
+    */
+   public void setTreeKinematicsCalculator(TreeKinematicsCalculator treeKinematics)
+   {
+      if (treeKinematics != null && treeKinematics.getRootBody() != robotJacobian.getBase())
+      {
+         throw new RuntimeException("The kinematics calculator of sensor " + getName() + " must have the root body " + robotJacobian.getBase().getName());
+      }
+      this.treeKinematics = treeKinematics;
+   }
+
+   private void updateJacobian()
+   {
+      if (treeKinematics == null)
+      {
+         robotJacobian.reset();
+         jacobianMatrix.set(robotJacobian.getJacobianMatrix());
+      }
+      else
+      {
+         treeKinematics.getJacobian(robotJacobian.getEndEffector(), measurementFrame, jacobianMatrix);
+      }
+   }
+
    public void setMeasurement(Vector3DReadOnly measurement)
    {
       this.measurement.setIncludingFrame(robotJacobian.getJacobianFrame(), measurement);
@@ -312,4 +349,10 @@ public class LinearAccelerationSensor extends Sensor
          biasState.reset();
       }
    }
+
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
 }
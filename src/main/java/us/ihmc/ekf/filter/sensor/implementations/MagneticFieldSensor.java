@@ -4,6 +4,7 @@ import org.ejml.data.DMatrix1Row;
 import org.ejml.dense.row.CommonOps_DDRM;
 
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.sensor.Sensor;
 import us.ihmc.euclid.matrix.Matrix3D;
@@ -147,4 +148,9 @@ public class MagneticFieldSensor extends Sensor
        CommonOps_DDRM.scale(variance.getValue() * sqrtHz, noiseCovarianceToPack);
    }
 
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
 }
@@ -0,0 +1,22 @@
+package us.ihmc.ekf.filter.sensor.implementations;
+
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Closed form equivalent of the {@link AngularVelocitySensor} for a sensor in the body frame of a single floating body.
+ * See {@link RigidBodyVelocitySensor}.
+ */
+public class RigidBodyAngularVelocitySensor extends RigidBodyVelocitySensor
+{
+   public RigidBodyAngularVelocitySensor(String prefix, double dt, boolean estimateBias, YoRegistry registry)
+   {
+      super(prefix, dt, estimateBias, registry);
+   }
+
+   @Override
+   protected int getVelocityIndex(RobotState robotState)
+   {
+      return robotState.findAngularVelocityIndex();
+   }
+}
@@ -0,0 +1,206 @@
+package us.ihmc.ekf.filter.sensor.implementations;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+
+import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.state.State;
+import us.ihmc.ekf.filter.state.implementations.BiasState;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.euclid.matrix.Matrix3D;
+import us.ihmc.euclid.matrix.RotationMatrix;
+import us.ihmc.euclid.referenceFrame.FrameQuaternion;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple3D.interfaces.Vector3DReadOnly;
+import us.ihmc.yoVariables.providers.DoubleProvider;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Closed form equivalent of the {@link LinearAccelerationSensor} for a sensor in the body frame of a single floating
+ * body.
+ * <p>
+ * For that case the robot Jacobian is the identity and the convective term vanishes. The measurement model is
+ * {@code z = a + w x v + R' * g + b} where {@code a}, {@code w}, and {@code v} are the linear acceleration, angular
+ * velocity, and linear velocity of the body in body frame, {@code R} is the body orientation, {@code g} the gravity
+ * vector in world, and {@code b} the optional sensor bias. The linearization of this is
+ * <ul>
+ * <li>{@code dz/da = I}
+ * <li>{@code dz/dw = -[v]x}
+ * <li>{@code dz/dv = [w]x}
+ * <li>{@code dz/dtheta = [R' * g]x * R'} for the orientation error {@code theta}
+ * <li>{@code dz/db = I}
+ * </ul>
+ * Names and parameters match the {@link LinearAccelerationSensor} so the two can be exchanged.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class RigidBodyLinearAccelerationSensor extends Sensor
+{
+   private static final int measurementSize = 3;
+
+   private final PoseState poseState;
+   private final BiasState biasState;
+
+   private final Vector3D measurement = new Vector3D();
+
+   private final double sqrtHz;
+
+   private final DoubleProvider variance;
+
+   // Temporary variables for computations:
+   private final DMatrixRMaj stateVector = new DMatrixRMaj(0, 0);
+   private final FrameQuaternion orientation = new FrameQuaternion();
+   private final RotationMatrix inverseRotation = new RotationMatrix();
+   private final Vector3D angularVelocity = new Vector3D();
+   private final Vector3D linearVelocity = new Vector3D();
+   private final Vector3D centrifugalTerm = new Vector3D();
+   private final Vector3D gravityTerm = new Vector3D();
+   private final Matrix3D tildeForm = new Matrix3D();
+
+   private final String name;
+
+   public RigidBodyLinearAccelerationSensor(String sensorName, double dt, PoseState poseState, boolean estimateBias, YoRegistry registry)
+   {
+      this.sqrtHz = 1.0 / Math.sqrt(dt);
+      this.poseState = poseState;
+      this.name = sensorName;
+      this.variance = FilterTools.findOrCreate(sensorName + "Variance", registry, 1.0);
+
+      if (estimateBias)
+      {
+         biasState = new BiasState(sensorName, dt, registry);
+      }
+      else
+      {
+         biasState = null;
+      }
+   }
+
+   @Override
+   public String getName()
+   {
+      return name;
+   }
+
+   @Override
+   public State getSensorState()
+   {
+      return biasState == null ? super.getSensorState() : biasState;
+   }
+
+   @Override
+   public int getMeasurementSize()
+   {
+      return measurementSize;
+   }
+
+   @Override
+   public void getMeasurementJacobian(DMatrix1Row jacobianToPack, RobotState robotState)
+   {
+      robotState.checkFloating();
+      robotState.getStateVector(stateVector);
+      updateVelocities(robotState);
+
+      jacobianToPack.reshape(measurementSize, robotState.getSize());
+      jacobianToPack.zero();
+
+      // a
+      int linearAccelerationIndex = robotState.findLinearAccelerationIndex();
+      for (int i = 0; i < measurementSize; i++)
+      {
+         jacobianToPack.set(i, linearAccelerationIndex + i, 1.0);
+      }
+
+      // w x v
+      tildeForm.setToTildeForm(linearVelocity);
+      tildeForm.scale(-1.0);
+      tildeForm.get(0, robotState.findAngularVelocityIndex(), jacobianToPack);
+      tildeForm.setToTildeForm(angularVelocity);
+      tildeForm.get(0, robotState.findLinearVelocityIndex(), jacobianToPack);
+
+      // R' * g
+      updateGravityTerm(robotState);
+      tildeForm.setToTildeForm(gravityTerm);
+      tildeForm.multiply(inverseRotation);
+      tildeForm.get(0, robotState.findOrientationIndex(), jacobianToPack);
+
+      if (biasState != null)
+      {
+         int biasStartIndex = robotState.getStartIndex(biasState);
+         for (int i = 0; i < measurementSize; i++)
+         {
+            jacobianToPack.set(i, biasStartIndex + i, 1.0);
+         }
+      }
+   }
+
+   @Override
+   public void getResidual(DMatrix1Row residualToPack, RobotState robotState)
+   {
+      robotState.checkFloating();
+      robotState.getStateVector(stateVector);
+      updateVelocities(robotState);
+      updateGravityTerm(robotState);
+      centrifugalTerm.cross(angularVelocity, linearVelocity);
+
+      int linearAccelerationIndex = robotState.findLinearAccelerationIndex();
+      residualToPack.reshape(measurementSize, 1);
+      residualToPack.set(0, measurement.getX() - stateVector.get(linearAccelerationIndex + 0) - centrifugalTerm.getX() - gravityTerm.getX());
+      residualToPack.set(1, measurement.getY() - stateVector.get(linearAccelerationIndex + 1) - centrifugalTerm.getY() - gravityTerm.getY());
+      residualToPack.set(2, measurement.getZ() - stateVector.get(linearAccelerationIndex + 2) - centrifugalTerm.getZ() - gravityTerm.getZ());
+
+      if (biasState != null)
+      {
+         residualToPack.set(0, residualToPack.get(0) - biasState.getBias(0));
+         residualToPack.set(1, residualToPack.get(1) - biasState.getBias(1));
+         residualToPack.set(2, residualToPack.get(2) - biasState.getBias(2));
+      }
+   }
+
+   private void updateVelocities(RobotState robotState)
+   {
+      angularVelocity.set(robotState.findAngularVelocityIndex(), stateVector);
+      linearVelocity.set(robotState.findLinearVelocityIndex(), stateVector);
+   }
+
+   private void updateGravityTerm(RobotState robotState)
+   {
+      poseState.getOrientation(orientation);
+      orientation.get(inverseRotation);
+      inverseRotation.transpose();
+      gravityTerm.set(0.0, 0.0, -robotState.getGravity());
+      inverseRotation.transform(gravityTerm);
+   }
+
+   @Override
+   public void getRMatrix(DMatrix1Row matrixToPack)
+   {
+      matrixToPack.reshape(measurementSize, measurementSize);
+      CommonOps_DDRM.setIdentity(matrixToPack);
+      CommonOps_DDRM.scale(variance.getValue() * sqrtHz, matrixToPack);
+   }
+
+   public void setMeasurement(Vector3DReadOnly measurement)
+   {
+      this.measurement.set(measurement);
+   }
+
+   public void resetBias()
+   {
+      if (biasState != null)
+      {
+         biasState.reset();
+      }
+   }
+
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
+}
@@ -0,0 +1,22 @@
+package us.ihmc.ekf.filter.sensor.implementations;
+
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Closed form equivalent of the {@link LinearVelocitySensor} for a sensor in the body frame of a single floating body.
+ * See {@link RigidBodyVelocitySensor}.
+ */
+public class RigidBodyLinearVelocitySensor extends RigidBodyVelocitySensor
+{
+   public RigidBodyLinearVelocitySensor(String prefix, double dt, boolean estimateBias, YoRegistry registry)
+   {
+      super(prefix, dt, estimateBias, registry);
+   }
+
+   @Override
+   protected int getVelocityIndex(RobotState robotState)
+   {
+      return robotState.findLinearVelocityIndex();
+   }
+}
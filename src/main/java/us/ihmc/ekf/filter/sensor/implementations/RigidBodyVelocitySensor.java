@@ -0,0 +1,151 @@
+package us.ihmc.ekf.filter.sensor.implementations;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+
+import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.state.State;
+import us.ihmc.ekf.filter.state.implementations.BiasState;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple3D.interfaces.Vector3DReadOnly;
+import us.ihmc.yoVariables.providers.DoubleProvider;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * A closed form version of the {@link BodyVelocitySensor} for a sensor that is mounted in the body frame of the
+ * floating base of a robot that has no other joints (e.g. a stand alone IMU).
+ * <p>
+ * In that case the robot Jacobian in the measurement frame is the identity and the measurement model reduces to
+ * {@code z = x_v + b} where {@code x_v} is the three dimensional velocity part of the {@code PoseState} selected by
+ * {@link #getVelocityIndex(RobotState)} and {@code b} is the optional sensor bias. This avoids the reference frame and
+ * multi body updates required by the {@link BodyVelocitySensor}. Names and parameters match the
+ * {@link BodyVelocitySensor} so the two can be exchanged.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public abstract class RigidBodyVelocitySensor extends Sensor
+{
+   private static final int measurementSize = 3;
+
+   private final Vector3D measurement = new Vector3D();
+   private final BiasState biasState;
+   private final DoubleProvider variance;
+
+   private final DMatrixRMaj stateVector = new DMatrixRMaj(0, 0);
+
+   private final double sqrtHz;
+
+   private final String name;
+
+   public RigidBodyVelocitySensor(String prefix, double dt, boolean estimateBias, YoRegistry registry)
+   {
+      this.sqrtHz = 1.0 / Math.sqrt(dt);
+      this.variance = FilterTools.findOrCreate(prefix + "Variance", registry, 1.0);
+      this.name = prefix;
+
+      if (estimateBias)
+      {
+         biasState = new BiasState(prefix, dt, registry);
+      }
+      else
+      {
+         biasState = null;
+      }
+   }
+
+   @Override
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Provides the start index of the measured velocity in the robot state vector.
+    */
+   protected abstract int getVelocityIndex(RobotState robotState);
+
+   @Override
+   public State getSensorState()
+   {
+      return biasState == null ? super.getSensorState() : biasState;
+   }
+
+   @Override
+   public int getMeasurementSize()
+   {
+      return measurementSize;
+   }
+
+   @Override
+   public void getMeasurementJacobian(DMatrix1Row jacobianToPack, RobotState robotState)
+   {
+      jacobianToPack.reshape(measurementSize, robotState.getSize());
+      jacobianToPack.zero();
+
+      int velocityIndex = getVelocityIndex(robotState);
+      for (int i = 0; i < measurementSize; i++)
+      {
+         jacobianToPack.set(i, velocityIndex + i, 1.0);
+      }
+
+      if (biasState != null)
+      {
+         int biasStartIndex = robotState.getStartIndex(biasState);
+         for (int i = 0; i < measurementSize; i++)
+         {
+            jacobianToPack.set(i, biasStartIndex + i, 1.0);
+         }
+      }
+   }
+
+   @Override
+   public void getResidual(DMatrix1Row residualToPack, RobotState robotState)
+   {
+      robotState.getStateVector(stateVector);
+      int velocityIndex = getVelocityIndex(robotState);
+
+      residualToPack.reshape(measurementSize, 1);
+      residualToPack.set(0, measurement.getX() - stateVector.get(velocityIndex + 0));
+      residualToPack.set(1, measurement.getY() - stateVector.get(velocityIndex + 1));
+      residualToPack.set(2, measurement.getZ() - stateVector.get(velocityIndex + 2));
+
+      if (biasState != null)
+      {
+         residualToPack.set(0, residualToPack.get(0) - biasState.getBias(0));
+         residualToPack.set(1, residualToPack.get(1) - biasState.getBias(1));
+         residualToPack.set(2, residualToPack.get(2) - biasState.getBias(2));
+      }
+   }
+
+   @Override
+   public void getRMatrix(DMatrix1Row matrixToPack)
+   {
+      matrixToPack.reshape(measurementSize, measurementSize);
+      CommonOps_DDRM.setIdentity(matrixToPack);
+      CommonOps_DDRM.scale(variance.getValue() * sqrtHz, matrixToPack);
+   }
+
+   public void setMeasurement(Vector3DReadOnly measurement)
+   {
+      this.measurement.set(measurement);
+   }
+
+   public void resetBias()
+   {
+      if (biasState != null)
+      {
+         biasState.reset();
+      }
+   }
+
+   @Override
+   public ModelDependency getRMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
+}
@@ -1,6 +1,7 @@
 package us.ihmc.ekf.filter.state;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,15 +11,26 @@ import org.ejml.data.DMatrix1Row;
 import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
 
+import us.ihmc.ekf.filter.ModelDependency;
+
 public class ComposedState extends State
 {
    private final List<State> subStates = new ArrayList<>();
    private final Map<State, MutableInt> stateIndexMap = new HashMap<>();
+   // The start index of each sub-state in the order of the sub-states so the per tick loops do not need map lookups.
+   private int[] startIndices = new int[0];
+   private int size = 0;
 
    private final String name;
 
    private final DMatrixRMaj tempMatrix = new DMatrixRMaj(0, 0);
 
+   // Matrices of sub-states that do not change between ticks are only inserted once.
+   private final DMatrixRMaj cachedF = new DMatrixRMaj(0, 0);
+   private final DMatrixRMaj cachedQ = new DMatrixRMaj(0, 0);
+   private boolean cacheValid = false;
+   private boolean cacheParameterDependentModels = false;
+
    public ComposedState(String name)
    {
       this.name = name;
@@ -30,6 +42,18 @@ public class ComposedState extends State
       return name;
    }
 
+   /**
+    * Adds all states and computes their offsets in one pass.
+    */
+   public void addStates(List<? extends State> statesToAdd)
+   {
+      startIndices = Arrays.copyOf(startIndices, Math.max(startIndices.length, subStates.size() + statesToAdd.size()));
+      for (int i = 0; i < statesToAdd.size(); i++)
+      {
+         addState(statesToAdd.get(i));
+      }
+   }
+
    public void addState(State stateToAdd)
    {
       if (stateToAdd == null)
@@ -49,9 +73,34 @@ public class ComposedState extends State
          return;
       }
 
-      int oldSize = getSize();
-      stateIndexMap.put(stateToAdd, new MutableInt(oldSize));
+      if (startIndices.length == subStates.size())
+      {
+         startIndices = Arrays.copyOf(startIndices, Math.max(4, 2 * startIndices.length));
+      }
+      stateIndexMap.put(stateToAdd, new MutableInt(size));
+      startIndices[subStates.size()] = size;
       subStates.add(stateToAdd);
+      size += stateToAdd.getSize();
+      cacheValid = false;
+   }
+
+   /**
+    * Enables caching of {@code F} and {@code Q} blocks that only depend on parameters (see
+    * {@link ModelDependency#PARAMETERS}). If enabled {@link #invalidateCache()} must be called after parameters change.
+    * Constant blocks are always cached.
+    */
+   public void setCacheParameterDependentModels(boolean cacheParameterDependentModels)
+   {
+      this.cacheParameterDependentModels = cacheParameterDependentModels;
+      cacheValid = false;
+   }
+
+   /**
+    * Forces all cached blocks of the {@code F} and {@code Q} matrices to be recomputed in the next tick.
+    */
+   public void invalidateCache()
+   {
+      cacheValid = false;
    }
 
    public int getStartIndex(State state)
@@ -72,20 +121,38 @@ public class ComposedState extends State
       for (int i = 0; i < subStates.size(); i++)
       {
          State subState = subStates.get(i);
-         int startIndex = getStartIndex(subState);
+         int startIndex = startIndices[i];
 
          subState.getStateVector(tempMatrix);
          System.arraycopy(tempMatrix.data, 0, vectorToPack.data, startIndex, subState.getSize());
       }
    }
 
+   @Override
+   public void saveState()
+   {
+      for (int i = 0; i < subStates.size(); i++)
+      {
+         subStates.get(i).saveState();
+      }
+   }
+
+   @Override
+   public void restoreState()
+   {
+      for (int i = 0; i < subStates.size(); i++)
+      {
+         subStates.get(i).restoreState();
+      }
+   }
+
    @Override
    public void setStateVector(DMatrix1Row newState)
    {
       for (int i = 0; i < subStates.size(); i++)
       {
          State subState = subStates.get(i);
-         int startIndex = getStartIndex(subState);
+         int startIndex = startIndices[i];
 
          tempMatrix.reshape(subState.getSize(), 1);
          System.arraycopy(newState.data, startIndex, tempMatrix.data, 0, subState.getSize());
@@ -96,13 +163,7 @@ public class ComposedState extends State
    @Override
    public int getSize()
    {
-      if (subStates.isEmpty())
-      {
-         return 0;
-      }
-
-      State lastSubState = subStates.get(subStates.size() - 1);
-      return getStartIndex(lastSubState) + lastSubState.getSize();
+      return size;
    }
 
    @Override
@@ -117,32 +178,89 @@ public class ComposedState extends State
    @Override
    public void getFMatrix(DMatrix1Row matrixToPack)
    {
-      matrixToPack.reshape(getSize(), getSize());
-       CommonOps_DDRM.fill(matrixToPack, 0.0);
+      if (!updateCache())
+      {
+         for (int i = 0; i < subStates.size(); i++)
+         {
+            State subState = subStates.get(i);
+            if (subState.getFMatrixDependency().requiresUpdate(cacheParameterDependentModels))
+            {
+               int startIndex = startIndices[i];
+               subState.getFMatrix(tempMatrix);
+               CommonOps_DDRM.insert(tempMatrix, cachedF, startIndex, startIndex);
+            }
+         }
+      }
+      matrixToPack.set(cachedF);
+   }
 
+   @Override
+   public void getQMatrix(DMatrix1Row matrixToPack)
+   {
+      if (!updateCache())
+      {
+         for (int i = 0; i < subStates.size(); i++)
+         {
+            State subState = subStates.get(i);
+            if (subState.getQMatrixDependency().requiresUpdate(cacheParameterDependentModels))
+            {
+               int startIndex = startIndices[i];
+               subState.getQMatrix(tempMatrix);
+               CommonOps_DDRM.insert(tempMatrix, cachedQ, startIndex, startIndex);
+            }
+         }
+      }
+      matrixToPack.set(cachedQ);
+   }
+
+   /**
+    * Fills the cached matrices with the blocks of all sub-states if the cache is not valid.
+    *
+    * @return whether the cache was rebuilt.
+    */
+   private boolean updateCache()
+   {
+      if (cacheValid)
+      {
+         return false;
+      }
+
+      cachedF.reshape(getSize(), getSize());
+      cachedQ.reshape(getSize(), getSize());
+      CommonOps_DDRM.fill(cachedF, 0.0);
+      CommonOps_DDRM.fill(cachedQ, 0.0);
       for (int i = 0; i < subStates.size(); i++)
       {
          State subState = subStates.get(i);
-         int startIndex = getStartIndex(subState);
-
+         int startIndex = startIndices[i];
          subState.getFMatrix(tempMatrix);
-          CommonOps_DDRM.insert(tempMatrix, matrixToPack, startIndex, startIndex);
+         CommonOps_DDRM.insert(tempMatrix, cachedF, startIndex, startIndex);
+         subState.getQMatrix(tempMatrix);
+         CommonOps_DDRM.insert(tempMatrix, cachedQ, startIndex, startIndex);
       }
+      cacheValid = true;
+      return true;
    }
 
    @Override
-   public void getQMatrix(DMatrix1Row matrixToPack)
+   public ModelDependency getFMatrixDependency()
    {
-      matrixToPack.reshape(getSize(), getSize());
-       CommonOps_DDRM.fill(matrixToPack, 0.0);
-
+      ModelDependency dependency = ModelDependency.CONSTANT;
       for (int i = 0; i < subStates.size(); i++)
       {
-         State subState = subStates.get(i);
-         int startIndex = getStartIndex(subState);
+         dependency = dependency.combine(subStates.get(i).getFMatrixDependency());
+      }
+      return dependency;
+   }
 
-         subState.getQMatrix(tempMatrix);
-          CommonOps_DDRM.insert(tempMatrix, matrixToPack, startIndex, startIndex);
+   @Override
+   public ModelDependency getQMatrixDependency()
+   {
+      ModelDependency dependency = ModelDependency.CONSTANT;
+      for (int i = 0; i < subStates.size(); i++)
+      {
+         dependency = dependency.combine(subStates.get(i).getQMatrixDependency());
       }
+      return dependency;
    }
 }
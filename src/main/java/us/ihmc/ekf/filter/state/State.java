@@ -1,7 +1,9 @@
 package us.ihmc.ekf.filter.state;
 
 import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixRMaj;
 
+import us.ihmc.ekf.filter.ModelDependency;
 import us.ihmc.ekf.filter.state.implementations.JointState;
 import us.ihmc.ekf.filter.state.implementations.PoseState;
 
@@ -16,6 +18,8 @@ import us.ihmc.ekf.filter.state.implementations.PoseState;
  */
 public abstract class State
 {
+   private final DMatrixRMaj savedStateVector = new DMatrixRMaj(0, 0);
+
    /**
     * Gets the name of the state. This is used to identify the state in the overall robot state. It
     * must be unique.
@@ -80,6 +84,45 @@ public abstract class State
     */
    public abstract void getQMatrix(DMatrix1Row noiseCovarianceToPack);
 
+   /**
+    * Declares what the {@code F} matrix of this state depends on. Matrices that do not depend on the state are cached
+    * by the {@link ComposedState} rather than recomputed in every tick.
+    *
+    * @return the dependency of the {@code F} matrix. By default {@link ModelDependency#STATE}.
+    */
+   public ModelDependency getFMatrixDependency()
+   {
+      return ModelDependency.STATE;
+   }
+
+   /**
+    * Declares what the {@code Q} matrix of this state depends on. See {@link #getFMatrixDependency()}.
+    *
+    * @return the dependency of the {@code Q} matrix. By default {@link ModelDependency#STATE}.
+    */
+   public ModelDependency getQMatrixDependency()
+   {
+      return ModelDependency.STATE;
+   }
+
+   /**
+    * Saves the complete internal state so it can be brought back with {@link #restoreState()}, e.g. after running the
+    * filter on synthetic data. The default implementation saves the state vector. States that keep values outside of
+    * the state vector, such as the orientation of an error state, must override both methods.
+    */
+   public void saveState()
+   {
+      getStateVector(savedStateVector);
+   }
+
+   /**
+    * Restores the state that was stored in the last call to {@link #saveState()}.
+    */
+   public void restoreState()
+   {
+      setStateVector(savedStateVector);
+   }
+
    @Override
    public int hashCode()
    {
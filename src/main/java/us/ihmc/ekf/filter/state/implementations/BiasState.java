@@ -1,24 +1,20 @@
 package us.ihmc.ekf.filter.state.implementations;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.ejml.data.DMatrix1Row;
 import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
 
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
 import us.ihmc.ekf.filter.state.State;
 import us.ihmc.yoVariables.providers.DoubleProvider;
 import us.ihmc.yoVariables.registry.YoRegistry;
-import us.ihmc.yoVariables.variable.YoDouble;
 
 public class BiasState extends State
 {
    private static final int size = 3;
 
    private final DMatrixRMaj bias = new DMatrixRMaj(size, 1);
-   private final List<YoDouble> yoState = new ArrayList<>();
    private final DoubleProvider variance;
 
    private final double sqrtHz;
@@ -29,11 +25,6 @@ public class BiasState extends State
    {
       this.sqrtHz = 1.0 / Math.sqrt(dt);
       this.name = prefix + "Bias";
-
-      for (int i = 0; i < size; i++)
-      {
-         yoState.add(new YoDouble(prefix + "Bias" + i, registry));
-      }
       variance = FilterTools.findOrCreate(prefix + "BiasVariance", registry, 1.0);
    }
 
@@ -53,11 +44,6 @@ public class BiasState extends State
    {
       FilterTools.checkVectorDimensions(newState, bias);
       bias.set(newState);
-
-      for (int i = 0; i < size; i++)
-      {
-         yoState.get(i).set(bias.get(i));
-      }
    }
 
    @Override
@@ -94,11 +80,18 @@ public class BiasState extends State
 
    public void reset()
    {
-      for (int i = 0; i < size; i++)
-      {
-         bias.set(i, 0.0);
-         yoState.get(i).set(bias.get(i));
-      }
+      bias.zero();
+   }
+
+   @Override
+   public ModelDependency getFMatrixDependency()
+   {
+      return ModelDependency.CONSTANT;
    }
 
+   @Override
+   public ModelDependency getQMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
 }
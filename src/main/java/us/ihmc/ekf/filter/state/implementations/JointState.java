@@ -5,51 +5,153 @@ import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
 
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
+import us.ihmc.ekf.filter.ParameterTable;
 import us.ihmc.ekf.filter.state.State;
 import us.ihmc.yoVariables.providers.DoubleProvider;
 import us.ihmc.yoVariables.registry.YoRegistry;
 
+/**
+ * The state of a one degree of freedom joint. Depending on the {@link JointModel} the state vector is
+ * {@code [q, qd, qdd]}, {@code [q, qd]}, or {@code [q]}. Reducing the joint model shrinks the filter and with it the
+ * cost of the covariance products that grow cubically with the state size.
+ */
 public class JointState extends State
 {
-   public static final int size = 3;
+   /**
+    * The motion models that can be used for a joint.
+    */
+   public enum JointModel
+   {
+      /** State {@code [q, qd, qdd]} with the acceleration modeled as a random walk. */
+      CONSTANT_ACCELERATION(3),
+      /** State {@code [q, qd]} with the velocity modeled as a random walk. */
+      CONSTANT_VELOCITY(2),
+      /** State {@code [q]} with a measured velocity provided as input to the prediction. */
+      POSITION_WITH_VELOCITY_INPUT(1);
+
+      private final int size;
+
+      private JointModel(int size)
+      {
+         this.size = size;
+      }
+
+      public int getSize()
+      {
+         return size;
+      }
+
+      public boolean hasVelocityState()
+      {
+         return size > 1;
+      }
+
+      public boolean hasAccelerationState()
+      {
+         return size > 2;
+      }
+   }
+
+   public static final int positionIndex = 0;
+   public static final int velocityIndex = 1;
+   public static final int accelerationIndex = 2;
 
    private final String jointName;
+   private final JointModel jointModel;
+   private final int size;
 
-   private final DMatrixRMaj stateVector = new DMatrixRMaj(size, 1);
-   private final DMatrixRMaj tempStateVector = new DMatrixRMaj(size, 1);
-   private final DMatrixRMaj F = new DMatrixRMaj(size, size);
+   private final DMatrixRMaj stateVector;
+   private final DMatrixRMaj tempStateVector;
+   private final DMatrixRMaj F;
 
-   private final DoubleProvider accelerationVariance;
+   private final DoubleProvider variance;
 
+   private final double dt;
    private final double sqrtHz;
 
-   private final DMatrixRMaj Qref = new DMatrixRMaj(size, size);
+   private final DMatrixRMaj Qref;
+
+   private double velocityInput = 0.0;
 
    public JointState(String jointName, double dt, YoRegistry registry)
    {
-      this(jointName, FilterTools.stringToPrefix(jointName), dt, registry);
+      this(jointName, JointModel.CONSTANT_ACCELERATION, dt, registry);
    }
 
    public JointState(String jointName, String parameterGroup, double dt, YoRegistry registry)
+   {
+      this(jointName, JointModel.CONSTANT_ACCELERATION, parameterGroup, dt, registry);
+   }
+
+   public JointState(String jointName, JointModel jointModel, double dt, YoRegistry registry)
+   {
+      this(jointName, jointModel, FilterTools.stringToPrefix(jointName), dt, registry);
+   }
+
+   public JointState(String jointName, JointModel jointModel, String parameterGroup, double dt, YoRegistry registry)
+   {
+      this(jointName, jointModel, parameterGroup, dt, new ParameterTable(registry));
+   }
+
+   public JointState(String jointName, double dt, ParameterTable parameters)
+   {
+      this(jointName, JointModel.CONSTANT_ACCELERATION, FilterTools.stringToPrefix(jointName), dt, parameters);
+   }
+
+   /**
+    * Use this when creating the states of many joints so the parameters are looked up in the table.
+    */
+   public JointState(String jointName, JointModel jointModel, String parameterGroup, double dt, ParameterTable parameters)
    {
       this.jointName = jointName;
+      this.jointModel = jointModel;
+      this.size = jointModel.getSize();
+      this.dt = dt;
       this.sqrtHz = 1.0 / Math.sqrt(dt);
 
-       CommonOps_DDRM.setIdentity(F);
-      F.set(0, 1, dt);
-      F.set(0, 2, 0.5 * dt * dt);
-      F.set(1, 2, dt);
-
-      FilterTools.packQref(dt, Qref, 1);
+      stateVector = new DMatrixRMaj(size, 1);
+      tempStateVector = new DMatrixRMaj(size, 1);
+      F = new DMatrixRMaj(size, size);
+      Qref = new DMatrixRMaj(size, size);
 
-      accelerationVariance = FilterTools.findOrCreate(parameterGroup + "AccelerationVariance", registry, 1.0);
+       CommonOps_DDRM.setIdentity(F);
+      switch (jointModel)
+      {
+      case CONSTANT_ACCELERATION:
+         F.set(0, 1, dt);
+         F.set(0, 2, 0.5 * dt * dt);
+         F.set(1, 2, dt);
+         FilterTools.packQref(dt, Qref, 1);
+         variance = parameters.findOrCreate(parameterGroup + "AccelerationVariance", 1.0);
+         break;
+      case CONSTANT_VELOCITY:
+         F.set(0, 1, dt);
+         FilterTools.packQrefForConstantVelocity(dt, Qref, 1);
+         variance = parameters.findOrCreate(parameterGroup + "AccelerationVariance", 1.0);
+         break;
+      case POSITION_WITH_VELOCITY_INPUT:
+         // The noise of the velocity input is integrated over one tick.
+         Qref.set(0, 0, dt * dt);
+         variance = parameters.findOrCreate(parameterGroup + "VelocityInputVariance", 1.0);
+         break;
+      default:
+         throw new RuntimeException("Unknown joint model " + jointModel);
+      }
    }
 
    public void initialize(double initialPosition, double initialVelocity)
    {
-      stateVector.set(0, initialPosition);
-      stateVector.set(1, initialVelocity);
-      stateVector.set(2, 0.0);
+      stateVector.zero();
+      stateVector.set(positionIndex, initialPosition);
+      if (jointModel.hasVelocityState())
+      {
+         stateVector.set(velocityIndex, initialVelocity);
+      }
+      else
+      {
+         velocityInput = initialVelocity;
+      }
    }
 
    // TODO: remove?
@@ -64,6 +166,37 @@ public class JointState extends State
       return getJointName();
    }
 
+   public JointModel getJointModel()
+   {
+      return jointModel;
+   }
+
+   /**
+    * Sets the measured joint velocity that is used to predict the joint position. Only used for a joint with
+    * {@link JointModel#POSITION_WITH_VELOCITY_INPUT}.
+    */
+   public void setVelocityInput(double velocityInput)
+   {
+      this.velocityInput = velocityInput;
+   }
+
+   /**
+    * @return the index of the velocity in the state vector of this joint or {@code -1} if the velocity is not a state.
+    */
+   public int getVelocityIndex()
+   {
+      return jointModel.hasVelocityState() ? velocityIndex : -1;
+   }
+
+   /**
+    * @return the index of the acceleration in the state vector of this joint or {@code -1} if the acceleration is not a
+    *         state.
+    */
+   public int getAccelerationIndex()
+   {
+      return jointModel.hasAccelerationState() ? accelerationIndex : -1;
+   }
+
    @Override
    public void setStateVector(DMatrix1Row newState)
    {
@@ -88,6 +221,10 @@ public class JointState extends State
    {
       tempStateVector.set(stateVector);
        CommonOps_DDRM.mult(F, tempStateVector, stateVector);
+      if (!jointModel.hasVelocityState())
+      {
+         stateVector.add(positionIndex, 0, dt * velocityInput);
+      }
    }
 
    @Override
@@ -100,21 +237,39 @@ public class JointState extends State
    public void getQMatrix(DMatrix1Row matrixToPack)
    {
       matrixToPack.set(Qref);
-       CommonOps_DDRM.scale(accelerationVariance.getValue() * sqrtHz, matrixToPack);
+       CommonOps_DDRM.scale(variance.getValue() * sqrtHz, matrixToPack);
    }
 
    public double getQ()
    {
-      return stateVector.get(0);
+      return stateVector.get(positionIndex);
    }
 
+   /**
+    * @return the estimated joint velocity or the velocity input if the velocity is not part of the state.
+    */
    public double getQd()
    {
-      return stateVector.get(1);
+      return jointModel.hasVelocityState() ? stateVector.get(velocityIndex) : velocityInput;
    }
 
+   /**
+    * @return the estimated joint acceleration or zero if the acceleration is not part of the state.
+    */
    public double getQdd()
    {
-      return stateVector.get(2);
+      return jointModel.hasAccelerationState() ? stateVector.get(accelerationIndex) : 0.0;
+   }
+
+   @Override
+   public ModelDependency getFMatrixDependency()
+   {
+      return ModelDependency.CONSTANT;
+   }
+
+   @Override
+   public ModelDependency getQMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
    }
 }
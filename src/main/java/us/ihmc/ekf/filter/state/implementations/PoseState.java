@@ -5,6 +5,7 @@ import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
 
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
 import us.ihmc.ekf.filter.state.State;
 import us.ihmc.euclid.matrix.Matrix3D;
 import us.ihmc.euclid.matrix.RotationMatrix;
@@ -87,6 +88,9 @@ public class PoseState extends State
 
    private final DMatrixRMaj stateVector = new DMatrixRMaj(size, 1);
 
+   private final DMatrixRMaj savedErrorStateVector = new DMatrixRMaj(size, 1);
+   private final Quaternion savedOrientation = new Quaternion();
+
    private final DoubleProvider angularAccelerationVariance;
    private final DoubleProvider linearAccelerationVariance;
    private final DMatrixRMaj Qref = new DMatrixRMaj(9, 9);
@@ -161,6 +165,20 @@ public class PoseState extends State
       vectorToPack.set(stateVector);
    }
 
+   @Override
+   public void saveState()
+   {
+      savedErrorStateVector.set(stateVector);
+      savedOrientation.set(orientation);
+   }
+
+   @Override
+   public void restoreState()
+   {
+      stateVector.set(savedErrorStateVector);
+      orientation.set(savedOrientation);
+   }
+
    @Override
    public int getSize()
    {
@@ -357,4 +375,9 @@ public class PoseState extends State
       }
    }
 
+   @Override
+   public ModelDependency getQMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
 }
@@ -0,0 +1,370 @@
+package us.ihmc.ekf.filter.state.implementations;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+
+import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ModelDependency;
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.state.State;
+import us.ihmc.euclid.matrix.Matrix3D;
+import us.ihmc.euclid.matrix.RotationMatrix;
+import us.ihmc.euclid.referenceFrame.FramePoint3D;
+import us.ihmc.euclid.referenceFrame.FrameQuaternion;
+import us.ihmc.euclid.referenceFrame.FrameVector3D;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple3D.interfaces.Vector3DReadOnly;
+import us.ihmc.euclid.tuple4D.Quaternion;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.mecano.spatial.interfaces.TwistReadOnly;
+import us.ihmc.yoVariables.providers.DoubleProvider;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * An alternative to the {@link PoseState} for robots with an IMU on the floating body.
+ * <p>
+ * Rather than estimating the accelerations and correcting them with IMU measurements this state uses the IMU as an
+ * input to the prediction (strapdown integration). The angular velocity and the specific force of the IMU are provided
+ * via {@link #setImuInput(Vector3DReadOnly, Vector3DReadOnly)} before each prediction. The state vector is</br>
+ *
+ * <pre>
+ *     / orientation_error  \
+ *     | position           |
+ * x = | linear_velocity    |
+ *     | gyro_bias          |
+ *     \ accelerometer_bias /
+ * </pre>
+ *
+ * Like in the {@link PoseState} the orientation is an error state, the position is expressed in world and the linear
+ * velocity in the body frame. Compared to a {@link PoseState} with two IMU bias states this removes six states and
+ * all IMU measurement rows from the filter. The process noise is computed from the noise densities of the IMU.
+ * </p>
+ * <p>
+ * The IMU is assumed to be aligned with the body frame.
+ * </p>
+ */
+public class StrapdownPoseState extends State
+{
+   public static final int orientationStart = 0;
+   public static final int positionStart = orientationStart + 3;
+   public static final int linearVelocityStart = positionStart + 3;
+   public static final int gyroBiasStart = linearVelocityStart + 3;
+   public static final int accelerometerBiasStart = gyroBiasStart + 3;
+   public static final int size = accelerometerBiasStart + 3;
+
+   private final DMatrixRMaj stateVector = new DMatrixRMaj(size, 1);
+
+   private final Quaternion orientation = new Quaternion();
+   private final Vector3D measuredAngularVelocity = new Vector3D();
+   private final Vector3D measuredSpecificForce = new Vector3D();
+   private final Vector3D gravity = new Vector3D(0.0, 0.0, RobotState.GRAVITY);
+
+   // The values used in the last prediction. The linearization is computed around these.
+   private final RotationMatrix rotation = new RotationMatrix();
+   private final Vector3D angularVelocity = new Vector3D();
+   private final Vector3D linearVelocity = new Vector3D();
+
+   private final DMatrixRMaj savedErrorStateVector = new DMatrixRMaj(size, 1);
+   private final Quaternion savedOrientation = new Quaternion();
+   private final Vector3D savedMeasuredAngularVelocity = new Vector3D();
+   private final Vector3D savedMeasuredSpecificForce = new Vector3D();
+   private final RotationMatrix savedRotation = new RotationMatrix();
+   private final Vector3D savedAngularVelocity = new Vector3D();
+   private final Vector3D savedLinearVelocity = new Vector3D();
+
+   // Temporary variables:
+   private final Vector3D rotationVector = new Vector3D();
+   private final Vector3D tempVector = new Vector3D();
+   private final Quaternion tempRotation = new Quaternion();
+   private final Matrix3D tempMatrix = new Matrix3D();
+   private final RotationMatrix inverseRotation = new RotationMatrix();
+
+   private final DoubleProvider gyroNoiseDensity;
+   private final DoubleProvider accelerometerNoiseDensity;
+   private final DoubleProvider gyroBiasRandomWalk;
+   private final DoubleProvider accelerometerBiasRandomWalk;
+
+   private final double dt;
+   private final ReferenceFrame bodyFrame;
+   private final String name;
+
+   public StrapdownPoseState(String bodyName, double dt, ReferenceFrame bodyFrame, YoRegistry registry)
+   {
+      this.dt = dt;
+      this.bodyFrame = bodyFrame;
+      this.name = FilterTools.stringToPrefix(bodyName);
+
+      gyroNoiseDensity = FilterTools.findOrCreate(name + "GyroNoiseDensity", registry, 1.0e-3);
+      accelerometerNoiseDensity = FilterTools.findOrCreate(name + "AccelerometerNoiseDensity", registry, 1.0e-2);
+      gyroBiasRandomWalk = FilterTools.findOrCreate(name + "GyroBiasRandomWalk", registry, 1.0e-5);
+      accelerometerBiasRandomWalk = FilterTools.findOrCreate(name + "AccelerometerBiasRandomWalk", registry, 1.0e-4);
+   }
+
+   @Override
+   public String getName()
+   {
+      return name;
+   }
+
+   public void initialize(RigidBodyTransform transform, TwistReadOnly twist)
+   {
+      twist.checkReferenceFrameMatch(bodyFrame, bodyFrame.getParent(), bodyFrame);
+
+      stateVector.zero();
+      orientation.set(transform.getRotation());
+      transform.getTranslation().get(positionStart, stateVector);
+      twist.getLinearPart().get(linearVelocityStart, stateVector);
+      measuredAngularVelocity.set(twist.getAngularPart());
+      orientation.inverseTransform(gravity, measuredSpecificForce);
+      measuredSpecificForce.negate();
+   }
+
+   /**
+    * Sets the IMU readings that are integrated in the next prediction.
+    *
+    * @param angularVelocity the measured angular velocity of the body w.r.t. world in body frame.
+    * @param specificForce the measured linear acceleration of the body w.r.t. world in body frame excluding gravity,
+    *           i.e. the reading of an accelerometer.
+    */
+   public void setImuInput(Vector3DReadOnly angularVelocity, Vector3DReadOnly specificForce)
+   {
+      measuredAngularVelocity.set(angularVelocity);
+      measuredSpecificForce.set(specificForce);
+   }
+
+   @Override
+   public void setStateVector(DMatrix1Row newState)
+   {
+      FilterTools.checkVectorDimensions(newState, stateVector);
+      stateVector.set(newState);
+
+      // The orientation is an error state: add the correction and reset the error to zero.
+      rotationVector.set(orientationStart, newState);
+      tempRotation.setRotationVector(rotationVector);
+      orientation.preMultiply(tempRotation);
+      stateVector.set(orientationStart + 0, 0.0);
+      stateVector.set(orientationStart + 1, 0.0);
+      stateVector.set(orientationStart + 2, 0.0);
+   }
+
+   @Override
+   public void getStateVector(DMatrix1Row vectorToPack)
+   {
+      vectorToPack.set(stateVector);
+   }
+
+   /**
+    * Saves the orientation, the IMU inputs, and the linearization point in addition to the state vector.
+    */
+   @Override
+   public void saveState()
+   {
+      savedErrorStateVector.set(stateVector);
+      savedOrientation.set(orientation);
+      savedMeasuredAngularVelocity.set(measuredAngularVelocity);
+      savedMeasuredSpecificForce.set(measuredSpecificForce);
+      savedRotation.set(rotation);
+      savedAngularVelocity.set(angularVelocity);
+      savedLinearVelocity.set(linearVelocity);
+   }
+
+   @Override
+   public void restoreState()
+   {
+      stateVector.set(savedErrorStateVector);
+      orientation.set(savedOrientation);
+      measuredAngularVelocity.set(savedMeasuredAngularVelocity);
+      measuredSpecificForce.set(savedMeasuredSpecificForce);
+      rotation.set(savedRotation);
+      angularVelocity.set(savedAngularVelocity);
+      linearVelocity.set(savedLinearVelocity);
+   }
+
+   @Override
+   public int getSize()
+   {
+      return size;
+   }
+
+   @Override
+   public void predict()
+   {
+      orientation.get(rotation);
+      angularVelocity.set(gyroBiasStart, stateVector);
+      angularVelocity.sub(measuredAngularVelocity, angularVelocity);
+      linearVelocity.set(linearVelocityStart, stateVector);
+
+      // Position: p += dt * R * v
+      rotation.transform(linearVelocity, tempVector);
+      stateVector.add(positionStart + 0, 0, dt * tempVector.getX());
+      stateVector.add(positionStart + 1, 0, dt * tempVector.getY());
+      stateVector.add(positionStart + 2, 0, dt * tempVector.getZ());
+
+      // Velocity: v += dt * (f - b_a + R' * g - w x v)
+      rotation.inverseTransform(gravity, tempVector);
+      tempVector.add(measuredSpecificForce);
+      tempVector.setX(tempVector.getX() - stateVector.get(accelerometerBiasStart + 0));
+      tempVector.setY(tempVector.getY() - stateVector.get(accelerometerBiasStart + 1));
+      tempVector.setZ(tempVector.getZ() - stateVector.get(accelerometerBiasStart + 2));
+      rotationVector.cross(angularVelocity, linearVelocity);
+      tempVector.sub(rotationVector);
+      stateVector.add(linearVelocityStart + 0, 0, dt * tempVector.getX());
+      stateVector.add(linearVelocityStart + 1, 0, dt * tempVector.getY());
+      stateVector.add(linearVelocityStart + 2, 0, dt * tempVector.getZ());
+
+      // Orientation: R = exp(dt * R * w) * R
+      rotation.transform(angularVelocity, rotationVector);
+      rotationVector.scale(dt);
+      tempRotation.setRotationVector(rotationVector);
+      orientation.preMultiply(tempRotation);
+   }
+
+   @Override
+   public void getFMatrix(DMatrix1Row matrixToPack)
+   {
+      matrixToPack.reshape(size, size);
+      CommonOps_DDRM.setIdentity(matrixToPack);
+
+      // Orientation w.r.t. gyro bias: -dt * R
+      tempMatrix.set(rotation);
+      tempMatrix.scale(-dt);
+      tempMatrix.get(orientationStart, gyroBiasStart, matrixToPack);
+
+      // Position w.r.t. orientation: -dt * [R * v]x
+      rotation.transform(linearVelocity, tempVector);
+      tempMatrix.setToTildeForm(tempVector);
+      tempMatrix.scale(-dt);
+      tempMatrix.get(positionStart, orientationStart, matrixToPack);
+
+      // Position w.r.t. velocity: dt * R
+      tempMatrix.set(rotation);
+      tempMatrix.scale(dt);
+      tempMatrix.get(positionStart, linearVelocityStart, matrixToPack);
+
+      // Velocity w.r.t. orientation: dt * R' * [g]x = dt * [R' * g]x * R'
+      inverseRotation.set(rotation);
+      inverseRotation.transpose();
+      inverseRotation.transform(gravity, tempVector);
+      tempMatrix.setToTildeForm(tempVector);
+      tempMatrix.multiply(inverseRotation);
+      tempMatrix.scale(dt);
+      tempMatrix.get(linearVelocityStart, orientationStart, matrixToPack);
+
+      // Velocity w.r.t. velocity: I - dt * [w]x
+      tempMatrix.setToTildeForm(angularVelocity);
+      tempMatrix.scale(-dt);
+      tempMatrix.get(linearVelocityStart, linearVelocityStart, matrixToPack);
+      for (int i = 0; i < 3; i++)
+      {
+         matrixToPack.add(linearVelocityStart + i, linearVelocityStart + i, 1.0);
+      }
+
+      // Velocity w.r.t. gyro bias: -dt * [v]x
+      tempMatrix.setToTildeForm(linearVelocity);
+      tempMatrix.scale(-dt);
+      tempMatrix.get(linearVelocityStart, gyroBiasStart, matrixToPack);
+
+      // Velocity w.r.t. accelerometer bias: -dt * I
+      for (int i = 0; i < 3; i++)
+      {
+         matrixToPack.set(linearVelocityStart + i, accelerometerBiasStart + i, -dt);
+      }
+   }
+
+   @Override
+   public void getQMatrix(DMatrix1Row matrixToPack)
+   {
+      matrixToPack.reshape(size, size);
+      CommonOps_DDRM.fill(matrixToPack, 0.0);
+
+      double orientationVariance = square(gyroNoiseDensity.getValue()) * dt;
+      double velocityVariance = square(accelerometerNoiseDensity.getValue()) * dt;
+      double gyroBiasVariance = square(gyroBiasRandomWalk.getValue()) * dt;
+      double accelerometerBiasVariance = square(accelerometerBiasRandomWalk.getValue()) * dt;
+      for (int i = 0; i < 3; i++)
+      {
+         matrixToPack.set(orientationStart + i, orientationStart + i, orientationVariance);
+         matrixToPack.set(linearVelocityStart + i, linearVelocityStart + i, velocityVariance);
+         matrixToPack.set(gyroBiasStart + i, gyroBiasStart + i, gyroBiasVariance);
+         matrixToPack.set(accelerometerBiasStart + i, accelerometerBiasStart + i, accelerometerBiasVariance);
+      }
+   }
+
+   private static double square(double value)
+   {
+      return value * value;
+   }
+
+   public void getOrientation(FrameQuaternion orientationToPack)
+   {
+      orientationToPack.setIncludingFrame(ReferenceFrame.getWorldFrame(), orientation);
+   }
+
+   public void getPosition(FramePoint3D positionToPack)
+   {
+      positionToPack.setToZero(ReferenceFrame.getWorldFrame());
+      positionToPack.set(positionStart, stateVector);
+   }
+
+   public void getLinearVelocity(FrameVector3D linearVelocityToPack)
+   {
+      linearVelocityToPack.setToZero(bodyFrame);
+      linearVelocityToPack.set(linearVelocityStart, stateVector);
+   }
+
+   /**
+    * Packs the angular velocity of the body which is the IMU input corrected by the estimated gyro bias.
+    */
+   public void getAngularVelocity(FrameVector3D angularVelocityToPack)
+   {
+      angularVelocityToPack.setToZero(bodyFrame);
+      angularVelocityToPack.set(gyroBiasStart, stateVector);
+      angularVelocityToPack.sub(measuredAngularVelocity, angularVelocityToPack);
+   }
+
+   /**
+    * @param axis the component of the angular velocity to get.
+    * @return the IMU input corrected by the estimated gyro bias.
+    */
+   public double getAngularVelocity(int axis)
+   {
+      return measuredAngularVelocity.getElement(axis) - stateVector.get(gyroBiasStart + axis);
+   }
+
+   public void getGyroBias(Vector3D biasToPack)
+   {
+      biasToPack.set(gyroBiasStart, stateVector);
+   }
+
+   public void getAccelerometerBias(Vector3D biasToPack)
+   {
+      biasToPack.set(accelerometerBiasStart, stateVector);
+   }
+
+   public void getTransform(RigidBodyTransform transformToPack)
+   {
+      transformToPack.getRotation().set(orientation);
+      transformToPack.getTranslation().setX(stateVector.get(positionStart + 0));
+      transformToPack.getTranslation().setY(stateVector.get(positionStart + 1));
+      transformToPack.getTranslation().setZ(stateVector.get(positionStart + 2));
+   }
+
+   public void getTwist(Twist twistToPack)
+   {
+      twistToPack.setToZero(bodyFrame, bodyFrame.getParent(), bodyFrame);
+      for (int i = 0; i < 3; i++)
+      {
+         twistToPack.getAngularPart().setElement(i, getAngularVelocity(i));
+         twistToPack.getLinearPart().setElement(i, stateVector.get(linearVelocityStart + i));
+      }
+   }
+
+   @Override
+   public ModelDependency getQMatrixDependency()
+   {
+      return ModelDependency.PARAMETERS;
+   }
+}
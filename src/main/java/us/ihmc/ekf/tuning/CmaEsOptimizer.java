@@ -0,0 +1,356 @@
+package us.ihmc.ekf.tuning;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.factory.DecompositionFactory_DDRM;
+import org.ejml.interfaces.decomposition.EigenDecomposition_F64;
+
+/**
+ * Minimizes a cost function using the covariance matrix adaptation evolution strategy (CMA-ES). The strategy samples a
+ * population of candidates from a multivariate normal distribution and adapts the mean, step size, and covariance of
+ * the distribution to the best candidates. It needs no gradients and copes with noisy costs which makes it suitable for
+ * tuning filter parameters by simulation.
+ * <p>
+ * The candidates of a generation are evaluated concurrently so the cost function must be safe to call from multiple
+ * threads. The sampling is done on the calling thread so the search is reproducible for a given seed.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class CmaEsOptimizer
+{
+   /**
+    * The function to minimize.
+    */
+   public interface CostFunction
+   {
+      double evaluate(double[] x);
+   }
+
+   private final int n;
+   private final int lambda;
+   private final int mu;
+   private final double[] weights;
+   private final double mueff;
+   private final double cc;
+   private final double cs;
+   private final double c1;
+   private final double cmu;
+   private final double damps;
+   private final double chiN;
+
+   private final Random random;
+
+   private final double[] mean;
+   private final double[] oldMean;
+   private double sigma;
+   private final double[] pc;
+   private final double[] ps;
+   private final DMatrixRMaj C;
+   private final DMatrixRMaj B;
+   private final double[] D;
+   private final EigenDecomposition_F64<DMatrixRMaj> eigenDecomposition;
+   private final DMatrixRMaj tempC;
+
+   private final double[][] candidates;
+   private final double[] costs;
+   private final Integer[] ranking;
+   private final double[] yw;
+   private final double[] temp;
+
+   private double[] bestSolution = null;
+   private double bestCost = Double.POSITIVE_INFINITY;
+   private int generation = 0;
+   private double stopTolerance = 1.0e-12;
+
+   /**
+    * Creates an optimizer with the default population size {@code 4 + 3 * ln(n)}.
+    */
+   public CmaEsOptimizer(int dimension, long seed)
+   {
+      this(dimension, 4 + (int) Math.floor(3.0 * Math.log(dimension)), seed);
+   }
+
+   /**
+    * @param dimension the number of variables.
+    * @param populationSize the number of candidates per generation. Larger populations are more robust to noise and
+    *           allow using more threads.
+    * @param seed the seed for sampling the candidates.
+    */
+   public CmaEsOptimizer(int dimension, int populationSize, long seed)
+   {
+      if (dimension < 1 || populationSize < 2)
+      {
+         throw new RuntimeException("Need at least one dimension and two candidates per generation.");
+      }
+
+      n = dimension;
+      lambda = populationSize;
+      mu = lambda / 2;
+      random = new Random(seed);
+
+      // Recombination weights favoring the better candidates:
+      weights = new double[mu];
+      double sum = 0.0;
+      for (int i = 0; i < mu; i++)
+      {
+         weights[i] = Math.log(mu + 0.5) - Math.log(i + 1.0);
+         sum += weights[i];
+      }
+      double sumOfSquares = 0.0;
+      for (int i = 0; i < mu; i++)
+      {
+         weights[i] /= sum;
+         sumOfSquares += weights[i] * weights[i];
+      }
+      mueff = 1.0 / sumOfSquares;
+
+      // Learning rates for the adaptation of the distribution:
+      cc = (4.0 + mueff / n) / (n + 4.0 + 2.0 * mueff / n);
+      cs = (mueff + 2.0) / (n + mueff + 5.0);
+      c1 = 2.0 / ((n + 1.3) * (n + 1.3) + mueff);
+      cmu = Math.min(1.0 - c1, 2.0 * (mueff - 2.0 + 1.0 / mueff) / ((n + 2.0) * (n + 2.0) + mueff));
+      damps = 1.0 + 2.0 * Math.max(0.0, Math.sqrt((mueff - 1.0) / (n + 1.0)) - 1.0) + cs;
+      chiN = Math.sqrt(n) * (1.0 - 1.0 / (4.0 * n) + 1.0 / (21.0 * n * n));
+
+      mean = new double[n];
+      oldMean = new double[n];
+      pc = new double[n];
+      ps = new double[n];
+      C = new DMatrixRMaj(n, n);
+      B = new DMatrixRMaj(n, n);
+      D = new double[n];
+      tempC = new DMatrixRMaj(n, n);
+      eigenDecomposition = DecompositionFactory_DDRM.eig(n, true, true);
+
+      candidates = new double[lambda][n];
+      costs = new double[lambda];
+      ranking = new Integer[lambda];
+      yw = new double[n];
+      temp = new double[n];
+   }
+
+   /**
+    * Sets the step size below which the search is considered converged.
+    */
+   public void setStopTolerance(double stopTolerance)
+   {
+      this.stopTolerance = stopTolerance;
+   }
+
+   /**
+    * Runs the search.
+    *
+    * @param costFunction the function to minimize.
+    * @param initialMean the starting point.
+    * @param initialStepSize the initial standard deviation of the search distribution in all directions.
+    * @param maxGenerations the maximum number of generations.
+    * @param pool the pool on which the candidates of each generation are evaluated.
+    * @return the best solution found.
+    */
+   public double[] optimize(CostFunction costFunction, double[] initialMean, double initialStepSize, int maxGenerations, ForkJoinPool pool)
+   {
+      if (initialMean.length != n)
+      {
+         throw new RuntimeException("Initial mean has dimension " + initialMean.length + " but expected " + n);
+      }
+
+      System.arraycopy(initialMean, 0, mean, 0, n);
+      sigma = initialStepSize;
+      Arrays.fill(pc, 0.0);
+      Arrays.fill(ps, 0.0);
+      C.zero();
+      B.zero();
+      for (int i = 0; i < n; i++)
+      {
+         C.set(i, i, 1.0);
+         B.set(i, i, 1.0);
+         D[i] = 1.0;
+      }
+      bestSolution = Arrays.copyOf(initialMean, n);
+      bestCost = Double.POSITIVE_INFINITY;
+
+      for (generation = 0; generation < maxGenerations; generation++)
+      {
+         sampleCandidates();
+         evaluateCandidates(costFunction, pool);
+         updateDistribution();
+
+         double maxD = 0.0;
+         for (int i = 0; i < n; i++)
+         {
+            maxD = Math.max(maxD, D[i]);
+         }
+         if (sigma * maxD < stopTolerance)
+         {
+            break;
+         }
+      }
+
+      return Arrays.copyOf(bestSolution, n);
+   }
+
+   public double[] getBestSolution()
+   {
+      return bestSolution == null ? null : Arrays.copyOf(bestSolution, n);
+   }
+
+   public double getBestCost()
+   {
+      return bestCost;
+   }
+
+   public int getGeneration()
+   {
+      return generation;
+   }
+
+   public double getStepSize()
+   {
+      return sigma;
+   }
+
+   private void sampleCandidates()
+   {
+      for (int k = 0; k < lambda; k++)
+      {
+         // x = m + sigma * B * D * z with z ~ N(0, I)
+         for (int i = 0; i < n; i++)
+         {
+            temp[i] = D[i] * random.nextGaussian();
+         }
+         for (int i = 0; i < n; i++)
+         {
+            double value = 0.0;
+            for (int j = 0; j < n; j++)
+            {
+               value += B.get(i, j) * temp[j];
+            }
+            candidates[k][i] = mean[i] + sigma * value;
+         }
+      }
+   }
+
+   private void evaluateCandidates(CostFunction costFunction, ForkJoinPool pool)
+   {
+      try
+      {
+         pool.submit(() -> IntStream.range(0, lambda).parallel().forEach(k -> costs[k] = costFunction.evaluate(candidates[k]))).get();
+      }
+      catch (InterruptedException | ExecutionException e)
+      {
+         throw new RuntimeException("Failed to evaluate candidates.", e);
+      }
+
+      for (int k = 0; k < lambda; k++)
+      {
+         ranking[k] = k;
+         if (costs[k] < bestCost)
+         {
+            bestCost = costs[k];
+            System.arraycopy(candidates[k], 0, bestSolution, 0, n);
+         }
+      }
+      Arrays.sort(ranking, (a, b) -> Double.compare(costs[a], costs[b]));
+   }
+
+   private void updateDistribution()
+   {
+      // Move the mean to the weighted average of the best candidates:
+      System.arraycopy(mean, 0, oldMean, 0, n);
+      Arrays.fill(mean, 0.0);
+      for (int i = 0; i < mu; i++)
+      {
+         double[] candidate = candidates[ranking[i]];
+         for (int j = 0; j < n; j++)
+         {
+            mean[j] += weights[i] * candidate[j];
+         }
+      }
+      for (int j = 0; j < n; j++)
+      {
+         yw[j] = (mean[j] - oldMean[j]) / sigma;
+      }
+
+      // Evolution path for the step size uses C^(-1/2) * yw = B * D^-1 * B' * yw:
+      for (int i = 0; i < n; i++)
+      {
+         double value = 0.0;
+         for (int j = 0; j < n; j++)
+         {
+            value += B.get(j, i) * yw[j];
+         }
+         temp[i] = value / D[i];
+      }
+      double psFactor = Math.sqrt(cs * (2.0 - cs) * mueff);
+      double psNorm = 0.0;
+      for (int i = 0; i < n; i++)
+      {
+         double value = 0.0;
+         for (int j = 0; j < n; j++)
+         {
+            value += B.get(i, j) * temp[j];
+         }
+         ps[i] = (1.0 - cs) * ps[i] + psFactor * value;
+         psNorm += ps[i] * ps[i];
+      }
+      psNorm = Math.sqrt(psNorm);
+
+      // Stall the covariance path if the step size path is long to avoid a fast increase of the axes of C:
+      double expectedPsNorm = Math.sqrt(1.0 - Math.pow(1.0 - cs, 2.0 * (generation + 1))) * chiN;
+      boolean hsig = psNorm / expectedPsNorm < 1.4 + 2.0 / (n + 1.0);
+      double pcFactor = hsig ? Math.sqrt(cc * (2.0 - cc) * mueff) : 0.0;
+      for (int i = 0; i < n; i++)
+      {
+         pc[i] = (1.0 - cc) * pc[i] + pcFactor * yw[i];
+      }
+
+      // Rank one and rank mu update of the covariance:
+      double oldWeight = 1.0 - c1 - cmu + (hsig ? 0.0 : c1 * cc * (2.0 - cc));
+      for (int row = 0; row < n; row++)
+      {
+         for (int col = 0; col <= row; col++)
+         {
+            double rankMu = 0.0;
+            for (int i = 0; i < mu; i++)
+            {
+               double[] candidate = candidates[ranking[i]];
+               rankMu += weights[i] * (candidate[row] - oldMean[row]) * (candidate[col] - oldMean[col]);
+            }
+            rankMu /= sigma * sigma;
+            double value = oldWeight * C.get(row, col) + c1 * pc[row] * pc[col] + cmu * rankMu;
+            C.set(row, col, value);
+            C.set(col, row, value);
+         }
+      }
+
+      sigma *= Math.exp((cs / damps) * (psNorm / chiN - 1.0));
+
+      updateEigenDecomposition();
+   }
+
+   private void updateEigenDecomposition()
+   {
+      tempC.set(C);
+      if (!eigenDecomposition.decompose(tempC))
+      {
+         throw new RuntimeException("Eigen decomposition of the covariance failed.");
+      }
+      for (int i = 0; i < n; i++)
+      {
+         // Guard against numerically negative eigenvalues of a badly conditioned covariance.
+         double eigenvalue = Math.max(eigenDecomposition.getEigenvalue(i).getReal(), 1.0e-20);
+         D[i] = Math.sqrt(eigenvalue);
+         DMatrixRMaj eigenvector = eigenDecomposition.getEigenVector(i);
+         for (int j = 0; j < n; j++)
+         {
+            B.set(j, i, eigenvector.get(j));
+         }
+      }
+   }
+}
@@ -0,0 +1,123 @@
+package us.ihmc.ekf;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.math3.util.Precision;
+
+import us.ihmc.commons.Conversions;
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.sensor.implementations.AngularVelocitySensor;
+import us.ihmc.ekf.filter.sensor.implementations.LinearAccelerationSensor;
+import us.ihmc.ekf.filter.sensor.implementations.LinearVelocitySensor;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.mecano.frames.MovingReferenceFrame;
+import us.ihmc.mecano.multiBodySystem.RigidBody;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.multiBodySystem.interfaces.RigidBodyBasics;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.yoVariables.parameters.DefaultParameterReader;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Measures the time per update of the {@link ImuOrientationEstimator} and compares it to the same filter set up with
+ * the general multi body sensors as it was done before the closed form IMU sensors were available.
+ */
+public class ImuOrientationEstimatorBenchmark
+{
+   private static final double dt = 0.001;
+   private static final int warmupIterations = 50000;
+   private static final int iterations = 200000;
+
+   public static void main(String[] args)
+   {
+      Vector3D angularVelocityMeasurement = new Vector3D(0.01, -0.02, 0.005);
+      Vector3D linearAccelerationMeasurement = new Vector3D(0.1, 0.2, -RobotState.GRAVITY);
+
+      YoRegistry registry = new YoRegistry("BenchmarkRegistry");
+      ImuOrientationEstimator estimator = new ImuOrientationEstimator(dt, true, true, registry);
+      new DefaultParameterReader().readParametersInRegistry(registry);
+      for (int i = 0; i < warmupIterations; i++)
+      {
+         estimator.update(angularVelocityMeasurement, linearAccelerationMeasurement);
+      }
+      long startTime = System.nanoTime();
+      for (int i = 0; i < iterations; i++)
+      {
+         estimator.update(angularVelocityMeasurement, linearAccelerationMeasurement);
+      }
+      double durationInMs = Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime) / iterations);
+      System.out.println("Closed form IMU update took: " + Precision.round(durationInMs, 5) + "ms");
+
+      MultiBodyImuEstimator multiBodyEstimator = new MultiBodyImuEstimator();
+      for (int i = 0; i < warmupIterations; i++)
+      {
+         multiBodyEstimator.update(angularVelocityMeasurement, linearAccelerationMeasurement);
+      }
+      startTime = System.nanoTime();
+      for (int i = 0; i < iterations; i++)
+      {
+         multiBodyEstimator.update(angularVelocityMeasurement, linearAccelerationMeasurement);
+      }
+      durationInMs = Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime) / iterations);
+      System.out.println("Multi body IMU update took: " + Precision.round(durationInMs, 5) + "ms");
+   }
+
+   private static class MultiBodyImuEstimator
+   {
+      private final SixDoFJoint imuJoint;
+      private final PoseState poseState;
+      private final AngularVelocitySensor angularVelocitySensor;
+      private final LinearVelocitySensor linearVelocitySensor;
+      private final LinearAccelerationSensor linearAccelerationSensor;
+      private final StateEstimator stateEstimator;
+
+      private final Vector3D zeroLinearVelocityMeasurement = new Vector3D();
+      private final RigidBodyTransform imuTransform = new RigidBodyTransform();
+      private final Twist imuTwist = new Twist();
+
+      public MultiBodyImuEstimator()
+      {
+         YoRegistry registry = new YoRegistry("MultiBodyRegistry");
+         RigidBodyBasics elevator = new RigidBody("elevator", ReferenceFrame.getWorldFrame());
+         imuJoint = new SixDoFJoint("imu_joint", elevator);
+         RigidBodyBasics imuBody = new RigidBody("imu_body", imuJoint, 0.1, 0.1, 0.1, 1.0, new Vector3D());
+         MovingReferenceFrame imuFrame = imuJoint.getFrameAfterJoint();
+
+         angularVelocitySensor = new AngularVelocitySensor("AngularVelocity", dt, imuBody, imuFrame, true, registry);
+         linearVelocitySensor = new LinearVelocitySensor("LinearVelocity", dt, imuBody, imuFrame, false, registry);
+         linearAccelerationSensor = new LinearAccelerationSensor("LinearAcceleration", dt, imuBody, imuFrame, true, registry);
+         List<Sensor> sensors = Arrays.asList(new Sensor[] {angularVelocitySensor, linearVelocitySensor, linearAccelerationSensor});
+
+         poseState = new PoseState(imuBody.getName(), dt, imuFrame, registry);
+         stateEstimator = new StateEstimator(sensors, new RobotState(poseState, Collections.emptyList()), registry);
+         new DefaultParameterReader().readParametersInRegistry(registry);
+      }
+
+      public void update(Vector3D angularVelocityMeasurement, Vector3D linearAccelerationMeasurement)
+      {
+         stateEstimator.predict();
+         updateRobot();
+         linearAccelerationSensor.setMeasurement(linearAccelerationMeasurement);
+         angularVelocitySensor.setMeasurement(angularVelocityMeasurement);
+         linearVelocitySensor.setMeasurement(zeroLinearVelocityMeasurement);
+         stateEstimator.correct();
+         updateRobot();
+      }
+
+      private void updateRobot()
+      {
+         poseState.getTransform(imuTransform);
+         imuJoint.setJointConfiguration(imuTransform);
+         poseState.getTwist(imuTwist);
+         imuJoint.setJointTwist(imuTwist);
+         imuJoint.updateFramesRecursively();
+      }
+   }
+}
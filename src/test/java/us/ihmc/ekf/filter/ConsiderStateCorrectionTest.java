@@ -0,0 +1,161 @@
+package us.ihmc.ekf.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.simple.SimpleMatrix;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.TestTools;
+import us.ihmc.ekf.filter.state.implementations.BiasState;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+public class ConsiderStateCorrectionTest
+{
+   private static final double EPSILON = 1.0e-10;
+   private static final double DT = 0.001;
+
+   @Test
+   public void testWithoutConsiderStates()
+   {
+      Random random = new Random(5021L);
+      RobotState robotState = createRobotState(4);
+      ConsiderStateCorrection correction = new ConsiderStateCorrection(robotState);
+
+      for (int i = 0; i < TestTools.ITERATIONS; i++)
+      {
+         int n = robotState.getSize();
+         int m = random.nextInt(10) + 1;
+         DMatrixRMaj x = TestTools.nextMatrix(n, 1, random, -1.0, 1.0);
+         DMatrixRMaj P = nextCovariance(n, random);
+         DMatrixRMaj H = TestTools.nextMatrix(m, n, random, -1.0, 1.0);
+         DMatrixRMaj R = TestTools.nextDiagonalMatrix(m, random, 0.1, 1.0);
+         DMatrixRMaj r = TestTools.nextMatrix(m, 1, random, -1.0, 1.0);
+
+         DMatrixRMaj expectedX = new DMatrixRMaj(0, 0);
+         DMatrixRMaj expectedP = new DMatrixRMaj(0, 0);
+         DMatrixRMaj K = new DMatrixRMaj(0, 0);
+         NativeFilterMatrixOps.correct(expectedX, expectedP, K, x, P, H, R, r);
+
+         DMatrixRMaj actualX = new DMatrixRMaj(0, 0);
+         DMatrixRMaj actualP = new DMatrixRMaj(0, 0);
+         correction.correct(actualX, actualP, x, P, H, R, r);
+
+         TestTools.assertEquals(expectedX, actualX, EPSILON);
+         TestTools.assertEquals(expectedP, actualP, EPSILON);
+      }
+   }
+
+   @Test
+   public void testWithConsiderStates()
+   {
+      Random random = new Random(2981L);
+      RobotState robotState = createRobotState(4);
+      ConsiderStateCorrection correction = new ConsiderStateCorrection(robotState);
+      correction.addConsiderState(robotState.getJointState("Joint1"));
+      correction.addConsiderState(robotState.getJointState("Joint3"));
+      int n = robotState.getSize();
+
+      // The gain is zero for the consider states.
+      DMatrixRMaj selection = new DMatrixRMaj(n, n);
+      CommonOps_DDRM.setIdentity(selection);
+      for (String jointName : new String[] {"Joint1", "Joint3"})
+      {
+         int startIndex = robotState.getJointStartIndex(jointName);
+         for (int i = 0; i < 3; i++)
+         {
+            selection.set(startIndex + i, startIndex + i, 0.0);
+         }
+      }
+
+      for (int i = 0; i < TestTools.ITERATIONS; i++)
+      {
+         int m = random.nextInt(10) + 1;
+         DMatrixRMaj x = TestTools.nextMatrix(n, 1, random, -1.0, 1.0);
+         DMatrixRMaj P = nextCovariance(n, random);
+         DMatrixRMaj H = TestTools.nextMatrix(m, n, random, -1.0, 1.0);
+         DMatrixRMaj R = TestTools.nextDiagonalMatrix(m, random, 0.1, 1.0);
+         DMatrixRMaj r = TestTools.nextMatrix(m, 1, random, -1.0, 1.0);
+
+         // Reference: suboptimal gain with the Joseph form of the covariance update.
+         SimpleMatrix Ps = new SimpleMatrix(P);
+         SimpleMatrix Hs = new SimpleMatrix(H);
+         SimpleMatrix Rs = new SimpleMatrix(R);
+         SimpleMatrix K = new SimpleMatrix(selection).mult(Ps).mult(Hs.transpose()).mult(Hs.mult(Ps).mult(Hs.transpose()).plus(Rs).invert());
+         SimpleMatrix IminusKH = SimpleMatrix.identity(n).minus(K.mult(Hs));
+         DMatrixRMaj expectedP = IminusKH.mult(Ps).mult(IminusKH.transpose()).plus(K.mult(Rs).mult(K.transpose())).getMatrix();
+         DMatrixRMaj expectedX = new SimpleMatrix(x).plus(K.mult(new SimpleMatrix(r))).getMatrix();
+
+         DMatrixRMaj actualX = new DMatrixRMaj(0, 0);
+         DMatrixRMaj actualP = new DMatrixRMaj(0, 0);
+         correction.correct(actualX, actualP, x, P, H, R, r);
+
+         TestTools.assertEquals(expectedX, actualX, 1.0e-8);
+         TestTools.assertEquals(expectedP, actualP, 1.0e-8);
+      }
+   }
+
+   @Test
+   public void testPrediction()
+   {
+      Random random = new Random(7702L);
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      RobotState robotState = createRobotState(3);
+      BiasState biasState = new BiasState("Bias", DT, registry);
+      robotState.addState(biasState);
+      ConsiderStateCorrection correction = new ConsiderStateCorrection(robotState);
+      int n = robotState.getSize();
+
+      DMatrixRMaj F = new DMatrixRMaj(0, 0);
+      DMatrixRMaj Q = new DMatrixRMaj(0, 0);
+      DMatrixRMaj actualP = new DMatrixRMaj(0, 0);
+      robotState.getFMatrix(F);
+      robotState.getQMatrix(Q);
+
+      // Without consider states the full prediction must be used.
+      Assertions.assertFalse(correction.predictErrorCovariance(actualP, F, nextCovariance(n, random), Q));
+
+      // The bias is constant so its block of the covariance does not need to be propagated.
+      correction.addConsiderState(biasState);
+      for (int i = 0; i < TestTools.ITERATIONS; i++)
+      {
+         DMatrixRMaj P = nextCovariance(n, random);
+         DMatrixRMaj expectedP = new DMatrixRMaj(0, 0);
+         NativeFilterMatrixOps.predictErrorCovariance(expectedP, F, P, Q);
+         Assertions.assertTrue(correction.predictErrorCovariance(actualP, F, P, Q));
+         TestTools.assertEquals(expectedP, actualP, EPSILON);
+      }
+
+      // A joint has a non-trivial model so considering it requires the full prediction.
+      correction.addConsiderState(robotState.getJointState("Joint1"));
+      Assertions.assertFalse(correction.predictErrorCovariance(actualP, F, nextCovariance(n, random), Q));
+   }
+
+   private static RobotState createRobotState(int numberOfJoints)
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      List<JointState> jointStates = new ArrayList<>();
+      for (int i = 0; i < numberOfJoints; i++)
+      {
+         jointStates.add(new JointState("Joint" + i, DT, registry));
+      }
+      return new RobotState(null, jointStates);
+   }
+
+   private static DMatrixRMaj nextCovariance(int size, Random random)
+   {
+      DMatrixRMaj A = TestTools.nextMatrix(size, random, -1.0, 1.0);
+      DMatrixRMaj covariance = new DMatrixRMaj(size, size);
+      CommonOps_DDRM.multTransB(A, A, covariance);
+      for (int i = 0; i < size; i++)
+      {
+         covariance.add(i, i, 0.1);
+      }
+      return covariance;
+   }
+}
@@ -0,0 +1,118 @@
+package us.ihmc.ekf.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.util.Precision;
+
+import us.ihmc.commons.Conversions;
+import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.sensor.implementations.JointPositionSensor;
+import us.ihmc.ekf.filter.sensor.implementations.JointVelocitySensor;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.yoVariables.parameters.DefaultParameterReader;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Measures the latency of the first estimator ticks after start-up with and without
+ * {@link StateEstimator#warmUp(int)}. Since the JIT state can not be reset each case is run in a fresh child process.
+ * The time to steady state is the number of ticks after which the average latency of a window of ticks stays below
+ * twice the steady state median.
+ */
+public class EstimatorWarmUpBenchmark
+{
+   private static final int numberOfJoints = 12;
+   private static final double dt = 0.001;
+   private static final int ticks = 30000;
+   private static final int window = 100;
+   private static final int maxWarmUpTicks = 100000;
+
+   public static void main(String[] args) throws IOException, InterruptedException
+   {
+      if (args.length > 1 && args[0].equals("child"))
+      {
+         runBenchmark(Boolean.parseBoolean(args[1]));
+         return;
+      }
+
+      String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+      String classPath = System.getProperty("java.class.path");
+      for (boolean warmUp : new boolean[] {false, true})
+      {
+         ProcessBuilder processBuilder = new ProcessBuilder(java, "-cp", classPath, EstimatorWarmUpBenchmark.class.getName(), "child", Boolean.toString(warmUp));
+         processBuilder.inheritIO();
+         processBuilder.start().waitFor();
+      }
+   }
+
+   private static void runBenchmark(boolean warmUp)
+   {
+      YoRegistry registry = new YoRegistry(EstimatorWarmUpBenchmark.class.getSimpleName());
+      List<JointState> jointStates = new ArrayList<>();
+      List<JointPositionSensor> positionSensors = new ArrayList<>();
+      List<JointVelocitySensor> velocitySensors = new ArrayList<>();
+      List<Sensor> sensors = new ArrayList<>();
+      for (int jointIdx = 0; jointIdx < numberOfJoints; jointIdx++)
+      {
+         String jointName = "Joint" + jointIdx;
+         jointStates.add(new JointState(jointName, dt, registry));
+         positionSensors.add(new JointPositionSensor(jointName, dt, registry));
+         velocitySensors.add(new JointVelocitySensor(jointName, dt, registry));
+      }
+      sensors.addAll(positionSensors);
+      sensors.addAll(velocitySensors);
+      StateEstimator estimator = new StateEstimator(sensors, new RobotState(null, jointStates), registry);
+      new DefaultParameterReader().readParametersInRegistry(registry);
+
+      long warmUpStart = System.nanoTime();
+      int warmUpTicks = warmUp ? estimator.warmUp(maxWarmUpTicks) : 0;
+      double warmUpMs = Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - warmUpStart));
+
+      double[] latencies = new double[ticks];
+      for (int tick = 0; tick < ticks; tick++)
+      {
+         double time = tick * dt;
+         for (int jointIdx = 0; jointIdx < numberOfJoints; jointIdx++)
+         {
+            double frequency = 1.0 + 0.1 * jointIdx;
+            positionSensors.get(jointIdx).setJointPositionMeasurement(Math.sin(2.0 * Math.PI * frequency * time));
+            velocitySensors.get(jointIdx).setJointVelocityMeasurement(2.0 * Math.PI * frequency * Math.cos(2.0 * Math.PI * frequency * time));
+         }
+
+         long startTime = System.nanoTime();
+         estimator.predict();
+         estimator.correct();
+         latencies[tick] = Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime));
+      }
+
+      double[] steadyState = Arrays.copyOfRange(latencies, ticks / 2, ticks);
+      Arrays.sort(steadyState);
+      double steadyStateMedian = steadyState[steadyState.length / 2];
+
+      int ticksToSteadyState = 0;
+      double maxInitialLatency = 0.0;
+      for (int start = 0; start + window <= ticks / 2; start += window)
+      {
+         double sum = 0.0;
+         for (int tick = start; tick < start + window; tick++)
+         {
+            sum += latencies[tick];
+            if (tick < 1000)
+            {
+               maxInitialLatency = Math.max(maxInitialLatency, latencies[tick]);
+            }
+         }
+         if (sum / window > 2.0 * steadyStateMedian)
+         {
+            ticksToSteadyState = start + window;
+         }
+      }
+
+      System.out.println((warmUp ? "With" : "Without") + " warm-up (" + warmUpTicks + " ticks in " + Precision.round(warmUpMs, 1) + "ms): first tick "
+            + Precision.round(latencies[0], 4) + "ms, max of first 1000 ticks " + Precision.round(maxInitialLatency, 4) + "ms, steady state "
+            + Precision.round(steadyStateMedian, 5) + "ms, ticks to steady state " + ticksToSteadyState);
+   }
+}
@@ -0,0 +1,186 @@
+package us.ihmc.ekf.filter;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.factory.DecompositionFactory_DDRM;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.TestTools;
+import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.sensor.implementations.JointPositionSensor;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.euclid.referenceFrame.FramePoint3D;
+import us.ihmc.euclid.referenceFrame.FrameQuaternion;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.tools.EuclidCoreRandomTools;
+import us.ihmc.euclid.tools.EuclidCoreTestTools;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.mecano.frames.MovingReferenceFrame;
+import us.ihmc.mecano.multiBodySystem.RigidBody;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+public class FederatedStateEstimatorTest
+{
+   private static final double DT = 0.001;
+   private static final double EPSILON = 1.0e-8;
+
+   private final SixDoFJoint rootJoint = new SixDoFJoint("rootJoint", new RigidBody("elevator", ReferenceFrame.getWorldFrame()));
+   private final MovingReferenceFrame bodyFrame = rootJoint.getFrameAfterJoint();
+
+   @Test
+   public void testFusionOfIdenticalEstimates()
+   {
+      Random random = new Random(8234L);
+      FederatedStateEstimator federatedEstimator = new FederatedStateEstimator(null, new YoRegistry("TestRegistry"));
+      RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+      DMatrixRMaj covariance = null;
+      for (int i = 0; i < 2; i++)
+      {
+         StateEstimator estimator = createLimbEstimator("limb" + i, transform);
+         if (covariance == null)
+         {
+            covariance = nextCovariance(estimator.getRobotState().getSize(), random);
+         }
+         estimator.setCovariance(covariance);
+         federatedEstimator.addSubFilter(estimator, null);
+      }
+
+      DMatrixRMaj expectedState = new DMatrixRMaj(0, 0);
+      federatedEstimator.getSubFilter(0).getRobotState().getStateVector(expectedState);
+
+      federatedEstimator.fuse();
+
+      // Covariance intersection of two identical estimates must not change them.
+      DMatrixRMaj actualState = new DMatrixRMaj(0, 0);
+      DMatrixRMaj actualCovariance = new DMatrixRMaj(0, 0);
+      for (int i = 0; i < 2; i++)
+      {
+         StateEstimator estimator = federatedEstimator.getSubFilter(i);
+         estimator.getRobotState().getStateVector(actualState);
+         estimator.getCovariance(actualCovariance);
+         TestTools.assertEquals(expectedState, actualState, EPSILON);
+         TestTools.assertEquals(covariance, actualCovariance, EPSILON);
+      }
+   }
+
+   @Test
+   public void testFusionFavorsConfidentEstimate()
+   {
+      Random random = new Random(1753L);
+      FederatedStateEstimator federatedEstimator = new FederatedStateEstimator(null, new YoRegistry("TestRegistry"));
+      RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+      RigidBodyTransform otherTransform = new RigidBodyTransform(transform);
+      otherTransform.appendTranslation(0.1, -0.2, 0.05);
+      otherTransform.appendYawRotation(0.05);
+
+      StateEstimator confidentEstimator = createLimbEstimator("confident", transform);
+      StateEstimator uncertainEstimator = createLimbEstimator("uncertain", otherTransform);
+      DMatrixRMaj covariance = nextCovariance(confidentEstimator.getRobotState().getSize(), random);
+      confidentEstimator.setCovariance(covariance);
+      CommonOps_DDRM.scale(100.0, covariance);
+      uncertainEstimator.setCovariance(covariance);
+      federatedEstimator.addSubFilter(confidentEstimator, null);
+      federatedEstimator.addSubFilter(uncertainEstimator, null);
+
+      federatedEstimator.fuse();
+
+      FramePoint3D confidentPosition = new FramePoint3D();
+      FramePoint3D uncertainPosition = new FramePoint3D();
+      confidentEstimator.getRobotState().getPoseState().getPosition(confidentPosition);
+      uncertainEstimator.getRobotState().getPoseState().getPosition(uncertainPosition);
+      EuclidCoreTestTools.assertTuple3DEquals(confidentPosition, uncertainPosition, EPSILON);
+      assertTrue(confidentPosition.distance(transform.getTranslation()) < confidentPosition.distance(otherTransform.getTranslation()));
+
+      FrameQuaternion confidentOrientation = new FrameQuaternion();
+      FrameQuaternion uncertainOrientation = new FrameQuaternion();
+      confidentEstimator.getRobotState().getPoseState().getOrientation(confidentOrientation);
+      uncertainEstimator.getRobotState().getPoseState().getOrientation(uncertainOrientation);
+      EuclidCoreTestTools.assertQuaternionGeometricallyEquals(confidentOrientation, uncertainOrientation, EPSILON);
+
+      DMatrixRMaj fusedPoseCovariance = new DMatrixRMaj(0, 0);
+      federatedEstimator.getFusedPoseCovariance(fusedPoseCovariance);
+      DMatrixRMaj actualCovariance = new DMatrixRMaj(0, 0);
+      for (StateEstimator estimator : new StateEstimator[] {confidentEstimator, uncertainEstimator})
+      {
+         estimator.getCovariance(actualCovariance);
+         TestTools.assertBlockEquals(0, 0, fusedPoseCovariance, actualCovariance, EPSILON);
+         assertTrue(DecompositionFactory_DDRM.chol(actualCovariance.getNumRows(), true).decompose(actualCovariance.copy()));
+      }
+   }
+
+   @Test
+   public void testParallelUpdate()
+   {
+      Random random = new Random(4621L);
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      try
+      {
+         FederatedStateEstimator federatedEstimator = new FederatedStateEstimator(executor, new YoRegistry("TestRegistry"));
+         RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+         for (int i = 0; i < 3; i++)
+         {
+            federatedEstimator.addSubFilter(createLimbEstimator("limb" + i, transform), null);
+         }
+
+         for (int i = 0; i < 100; i++)
+         {
+            federatedEstimator.update();
+         }
+
+         FramePoint3D expectedPosition = new FramePoint3D();
+         FramePoint3D actualPosition = new FramePoint3D();
+         federatedEstimator.getSubFilter(0).getRobotState().getPoseState().getPosition(expectedPosition);
+         for (int i = 1; i < federatedEstimator.getNumberOfSubFilters(); i++)
+         {
+            federatedEstimator.getSubFilter(i).getRobotState().getPoseState().getPosition(actualPosition);
+            EuclidCoreTestTools.assertTuple3DEquals(expectedPosition, actualPosition, EPSILON);
+         }
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+
+   private StateEstimator createLimbEstimator(String limbName, RigidBodyTransform transform)
+   {
+      YoRegistry registry = new YoRegistry(limbName);
+      PoseState poseState = new PoseState("body", DT, bodyFrame, registry);
+      poseState.initialize(transform, new Twist(bodyFrame, bodyFrame.getParent(), bodyFrame));
+
+      String jointName = limbName + "Joint";
+      JointState jointState = new JointState(jointName, DT, registry);
+      jointState.initialize(0.2, 0.0);
+      JointPositionSensor jointSensor = new JointPositionSensor(jointName, DT, registry);
+      jointSensor.setJointPositionMeasurement(0.3);
+
+      RobotState robotState = new RobotState(poseState, Collections.singletonList(jointState));
+      List<Sensor> sensors = new ArrayList<>();
+      sensors.add(jointSensor);
+      return new StateEstimator(sensors, robotState, registry);
+   }
+
+   private static DMatrixRMaj nextCovariance(int size, Random random)
+   {
+      DMatrixRMaj A = TestTools.nextMatrix(size, random, -1.0, 1.0);
+      DMatrixRMaj covariance = new DMatrixRMaj(size, size);
+      CommonOps_DDRM.multTransB(A, A, covariance);
+      for (int i = 0; i < size; i++)
+      {
+         covariance.add(i, i, 0.1);
+      }
+      return covariance;
+   }
+}
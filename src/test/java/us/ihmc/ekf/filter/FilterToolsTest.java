@@ -14,9 +14,30 @@ import gnu.trove.map.TObjectIntMap;
 import gnu.trove.map.hash.TObjectIntHashMap;
 import us.ihmc.commons.MutationTestFacilitator;
 import us.ihmc.ekf.TestTools;
+import us.ihmc.yoVariables.parameters.DoubleParameter;
+import us.ihmc.yoVariables.registry.YoRegistry;
 
 public class FilterToolsTest
 {
+   @Test
+   public void testFindOrCreate()
+   {
+      YoRegistry registry = new YoRegistry("Test");
+      DoubleParameter existing = new DoubleParameter("Existing", registry, 1.0);
+      Assertions.assertSame(existing, FilterTools.findOrCreate("Existing", registry, 2.0));
+
+      DoubleParameter created = FilterTools.findOrCreate("Created", registry, 3.0);
+      Assertions.assertSame(created, FilterTools.findOrCreate("Created", registry, 4.0));
+      Assertions.assertEquals(2, registry.getParameters().size());
+
+      DoubleParameter addedLater = new DoubleParameter("AddedLater", registry, 5.0);
+      Assertions.assertSame(addedLater, FilterTools.findOrCreate("AddedLater", registry, 6.0));
+
+      // Registries with the same name are independent.
+      YoRegistry otherRegistry = new YoRegistry("Test");
+      Assertions.assertNotSame(created, FilterTools.findOrCreate("Created", otherRegistry, 3.0));
+   }
+
    @Test
    public void testInsertForVelocitySimpleCase()
    {
@@ -0,0 +1,107 @@
+package us.ihmc.ekf.filter;
+
+import java.util.Random;
+
+import org.apache.commons.math3.util.Precision;
+import org.ejml.data.DMatrixRMaj;
+
+import us.ihmc.commons.Conversions;
+import us.ihmc.ekf.TestTools;
+
+/**
+ * Measures the per call overhead of the native measurement update for the small filter sizes used by the
+ * {@link us.ihmc.ekf.ImuOrientationEstimator}. Compares the separate gain, state, and covariance calls to
+ * the fused {@link NativeFilterMatrixOps#correct} call through JNI and, on runtimes that support it, through the Foreign
+ * Function &amp; Memory API (see {@link ForeignFilterMatrixOps}).
+ */
+public class FusedCorrectionBenchmark
+{
+   private static final int[] stateSizes = {15, 18, 21};
+   private static final int measurementSize = 9;
+   private static final int warmupIterations = 20000;
+   private static final int iterations = 200000;
+
+   public static void main(String[] args)
+   {
+      Random random = new Random(3829L);
+
+      if (!NativeFilterMatrixOps.hasFusedCorrection() || !NativeFilterMatrixOps.hasFixedSizeKernels())
+      {
+         System.out.println("The native library was built without the fused correction and fixed size kernels. Rebuild it from nativeEKF.");
+      }
+      boolean foreign = NativeFilterMatrixOps.isUsingForeignBackend();
+      NativeFilterMatrixOpsWrapper wrapper = new NativeFilterMatrixOpsWrapper();
+
+      for (int m : stateSizes)
+      {
+         DMatrixRMaj x = TestTools.nextMatrix(m, 1, random, -1.0, 1.0);
+         DMatrixRMaj P = TestTools.nextSymmetricMatrix(m, random, 0.1, 1.0);
+         DMatrixRMaj H = TestTools.nextMatrix(measurementSize, m, random, -1.0, 1.0);
+         DMatrixRMaj R = TestTools.nextDiagonalMatrix(measurementSize, random, 1.0, 100.0);
+         DMatrixRMaj r = TestTools.nextMatrix(measurementSize, 1, random, -1.0, 1.0);
+
+         DMatrixRMaj K = new DMatrixRMaj(m, measurementSize);
+         DMatrixRMaj xResult = new DMatrixRMaj(m, 1);
+         DMatrixRMaj PResult = new DMatrixRMaj(m, m);
+
+         for (int i = 0; i < warmupIterations; i++)
+         {
+            separate(xResult, PResult, K, x, P, H, R, r);
+            jni(wrapper, xResult, PResult, K, x, P, H, R, r);
+            if (foreign)
+            {
+               ForeignFilterMatrixOps.correct(xResult.data, PResult.data, K.data, x.data, P.data, H.data, R.data, r.data, measurementSize, m);
+            }
+         }
+
+         long startTime = System.nanoTime();
+         for (int i = 0; i < iterations; i++)
+         {
+            separate(xResult, PResult, K, x, P, H, R, r);
+         }
+         double separateInMs = Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime) / iterations);
+
+         startTime = System.nanoTime();
+         for (int i = 0; i < iterations; i++)
+         {
+            jni(wrapper, xResult, PResult, K, x, P, H, R, r);
+         }
+         double fusedInMs = Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime) / iterations);
+
+         String result = "State size " + m + ": separate calls took " + Precision.round(separateInMs, 5) + "ms, fused call took "
+               + Precision.round(fusedInMs, 5) + "ms";
+         if (foreign)
+         {
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+            {
+               ForeignFilterMatrixOps.correct(xResult.data, PResult.data, K.data, x.data, P.data, H.data, R.data, r.data, measurementSize, m);
+            }
+            double foreignInMs = Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime) / iterations);
+            result += ", foreign call took " + Precision.round(foreignInMs, 5) + "ms";
+         }
+         System.out.println(result);
+      }
+   }
+
+   private static void jni(NativeFilterMatrixOpsWrapper wrapper, DMatrixRMaj xResult, DMatrixRMaj PResult, DMatrixRMaj K, DMatrixRMaj x, DMatrixRMaj P,
+                           DMatrixRMaj H, DMatrixRMaj R, DMatrixRMaj r)
+   {
+      if (NativeFilterMatrixOps.hasFusedCorrection())
+      {
+         wrapper.correct(xResult.data, PResult.data, K.data, x.data, P.data, H.data, R.data, r.data, R.numRows, P.numRows);
+      }
+      else
+      {
+         separate(xResult, PResult, K, x, P, H, R, r);
+      }
+   }
+
+   private static void separate(DMatrixRMaj xResult, DMatrixRMaj PResult, DMatrixRMaj K, DMatrixRMaj x, DMatrixRMaj P, DMatrixRMaj H, DMatrixRMaj R,
+                                DMatrixRMaj r)
+   {
+      NativeFilterMatrixOps.computeKalmanGain(K, P, H, R);
+      NativeFilterMatrixOps.updateState(xResult, x, K, r);
+      NativeFilterMatrixOps.updateErrorCovariance(PResult, K, H, P);
+   }
+}
@@ -1,6 +1,8 @@
 package us.ihmc.ekf.filter;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static us.ihmc.ekf.TestTools.ITERATIONS;
 
 import java.util.Random;
@@ -142,6 +144,135 @@ public class NativeFilterMatrixOpsTest
       }
    }
 
+   @Test
+   public void testCorrect()
+   {
+      // Without this the test would compare the separate calls to themselves.
+      assertTrue(NativeFilterMatrixOps.hasFusedCorrection(), "The native library was built without the fused correction. Rebuild it from nativeEKF.");
+
+      for (int i = 0; i < ITERATIONS; i++)
+      {
+         int n = random.nextInt(100) + 1;
+         int m = random.nextInt(100) + 1;
+
+         DMatrixRMaj x = TestTools.nextMatrix(m, 1, random, -1.0, 1.0);
+         DMatrixRMaj P = TestTools.nextSymmetricMatrix(m, random, 0.1, 1.0);
+         DMatrixRMaj H = TestTools.nextMatrix(n, m, random, -1.0, 1.0);
+         DMatrixRMaj R = TestTools.nextDiagonalMatrix(n, random, 1.0, 100.0);
+         DMatrixRMaj r = TestTools.nextMatrix(n, 1, random, -1.0, 1.0);
+
+         DMatrixRMaj expectedK = new DMatrixRMaj(0, 0);
+         DMatrixRMaj expectedX = new DMatrixRMaj(0, 0);
+         DMatrixRMaj expectedP = new DMatrixRMaj(0, 0);
+         NativeFilterMatrixOps.computeKalmanGain(expectedK, P, H, R);
+         NativeFilterMatrixOps.updateState(expectedX, x, expectedK, r);
+         NativeFilterMatrixOps.updateErrorCovariance(expectedP, expectedK, H, P);
+
+         DMatrixRMaj actualK = new DMatrixRMaj(0, 0);
+         DMatrixRMaj actualX = new DMatrixRMaj(0, 0);
+         DMatrixRMaj actualP = new DMatrixRMaj(0, 0);
+         NativeFilterMatrixOps.correct(actualX, actualP, actualK, x, P, H, R, r);
+
+         TestTools.assertEquals(expectedK, actualK, EPSILON);
+         TestTools.assertEquals(expectedX, actualX, EPSILON);
+         TestTools.assertEquals(expectedP, actualP, EPSILON);
+      }
+   }
+
+   @Test
+   public void testFixedSizeKernels()
+   {
+      // Without this the test would pass on the dynamic implementation of a stale build.
+      assertTrue(NativeFilterMatrixOps.hasFixedSizeKernels(), "The native library was built without the fixed size kernels. Rebuild it from nativeEKF.");
+
+      // These sizes are handled by the fixed size kernels in the native library.
+      int[] stateSizes = {15, 18, 21};
+      int[] measurementSizes = {3, 6, 9};
+
+      for (int m : stateSizes)
+      {
+         DMatrixRMaj F = TestTools.nextMatrix(m, random, -1.0, 1.0);
+         DMatrixRMaj P = TestTools.nextSymmetricMatrix(m, random, 0.1, 1.0);
+         DMatrixRMaj Q = TestTools.nextDiagonalMatrix(m, random, 0.1, 1.0);
+
+         DMatrixRMaj actualPprior = new DMatrixRMaj(0, 0);
+         NativeFilterMatrixOps.predictErrorCovariance(actualPprior, F, P, Q);
+         SimpleMatrix Fsimple = new SimpleMatrix(F);
+         SimpleMatrix expectedPprior = Fsimple.mult(new SimpleMatrix(P).mult(Fsimple.transpose())).plus(new SimpleMatrix(Q));
+         TestTools.assertEquals(expectedPprior.getMatrix(), actualPprior, EPSILON);
+
+         for (int n : measurementSizes)
+         {
+            DMatrixRMaj x = TestTools.nextMatrix(m, 1, random, -1.0, 1.0);
+            DMatrixRMaj H = TestTools.nextMatrix(n, m, random, -1.0, 1.0);
+            DMatrixRMaj R = TestTools.nextDiagonalMatrix(n, random, 1.0, 100.0);
+            DMatrixRMaj r = TestTools.nextMatrix(n, 1, random, -1.0, 1.0);
+
+            DMatrixRMaj actualK = new DMatrixRMaj(0, 0);
+            DMatrixRMaj actualX = new DMatrixRMaj(0, 0);
+            DMatrixRMaj actualP = new DMatrixRMaj(0, 0);
+            NativeFilterMatrixOps.correct(actualX, actualP, actualK, x, P, H, R, r);
+
+            SimpleMatrix Psimple = new SimpleMatrix(P);
+            SimpleMatrix Hsimple = new SimpleMatrix(H);
+            SimpleMatrix toInvert = Hsimple.mult(Psimple.mult(Hsimple.transpose())).plus(new SimpleMatrix(R));
+            SimpleMatrix expectedK = Psimple.mult(Hsimple.transpose()).mult(toInvert.invert());
+            SimpleMatrix expectedX = new SimpleMatrix(x).plus(expectedK.mult(new SimpleMatrix(r)));
+            SimpleMatrix expectedP = SimpleMatrix.identity(m).minus(expectedK.mult(Hsimple)).mult(Psimple);
+
+            TestTools.assertEquals(expectedK.getMatrix(), actualK, EPSILON);
+            TestTools.assertEquals(expectedX.getMatrix(), actualX, EPSILON);
+            TestTools.assertEquals(expectedP.getMatrix(), actualP, EPSILON);
+         }
+      }
+   }
+
+   @Test
+   public void testForeignBackend()
+   {
+      assumeTrue(ForeignFilterMatrixOps.isSupportedByRuntime(), "The Foreign Function & Memory API requires a newer Java version.");
+      // This also loads the native library before the foreign backend looks up its symbols.
+      assertTrue(NativeFilterMatrixOps.isUsingForeignBackend(), "The native library does not export the entry points for the foreign backend.");
+
+      // Include the fixed size kernels and a size that requires growing the workspace of this thread.
+      int[] stateSizes = {15, 21, random.nextInt(100) + 22};
+      int[] measurementSizes = {3, 9, random.nextInt(100) + 1};
+      for (int m : stateSizes)
+      {
+         DMatrixRMaj F = TestTools.nextMatrix(m, random, -1.0, 1.0);
+         DMatrixRMaj P = TestTools.nextSymmetricMatrix(m, random, 0.1, 1.0);
+         DMatrixRMaj Q = TestTools.nextDiagonalMatrix(m, random, 0.1, 1.0);
+
+         DMatrixRMaj expectedPprior = new DMatrixRMaj(m, m);
+         DMatrixRMaj actualPprior = new DMatrixRMaj(m, m);
+         new NativeFilterMatrixOpsWrapper().predictErrorCovariance(expectedPprior.data, F.data, P.data, Q.data, m);
+         ForeignFilterMatrixOps.predictErrorCovariance(actualPprior.data, F.data, P.data, Q.data, m);
+         TestTools.assertEquals(expectedPprior, actualPprior, EPSILON);
+
+         for (int n : measurementSizes)
+         {
+            DMatrixRMaj x = TestTools.nextMatrix(m, 1, random, -1.0, 1.0);
+            DMatrixRMaj H = TestTools.nextMatrix(n, m, random, -1.0, 1.0);
+            DMatrixRMaj R = TestTools.nextDiagonalMatrix(n, random, 1.0, 100.0);
+            DMatrixRMaj r = TestTools.nextMatrix(n, 1, random, -1.0, 1.0);
+
+            DMatrixRMaj expectedK = new DMatrixRMaj(m, n);
+            DMatrixRMaj expectedX = new DMatrixRMaj(m, 1);
+            DMatrixRMaj expectedP = new DMatrixRMaj(m, m);
+            new NativeFilterMatrixOpsWrapper().correct(expectedX.data, expectedP.data, expectedK.data, x.data, P.data, H.data, R.data, r.data, n, m);
+
+            DMatrixRMaj actualK = new DMatrixRMaj(m, n);
+            DMatrixRMaj actualX = new DMatrixRMaj(m, 1);
+            DMatrixRMaj actualP = new DMatrixRMaj(m, m);
+            ForeignFilterMatrixOps.correct(actualX.data, actualP.data, actualK.data, x.data, P.data, H.data, R.data, r.data, n, m);
+
+            TestTools.assertEquals(expectedK, actualK, EPSILON);
+            TestTools.assertEquals(expectedX, actualX, EPSILON);
+            TestTools.assertEquals(expectedP, actualP, EPSILON);
+         }
+      }
+   }
+
    public static void main(String[] args)
    {
       int n = 100;
@@ -0,0 +1,36 @@
+package us.ihmc.ekf.filter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.yoVariables.parameters.DoubleParameter;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+public class ParameterTableTest
+{
+   @Test
+   public void testFindOrCreate()
+   {
+      YoRegistry registry = new YoRegistry("Test");
+      DoubleParameter existing = new DoubleParameter("Existing", registry, 1.0);
+      ParameterTable parameters = new ParameterTable(registry);
+      Assertions.assertSame(registry, parameters.getRegistry());
+      Assertions.assertSame(existing, parameters.findOrCreate("Existing", 2.0));
+
+      DoubleParameter created = parameters.findOrCreate("Created", 3.0);
+      Assertions.assertSame(created, parameters.findOrCreate("Created", 4.0));
+      Assertions.assertSame(created, FilterTools.findOrCreate("Created", registry, 4.0));
+      Assertions.assertEquals(2, registry.getParameters().size());
+
+      // Parameters added to the registry without the table must still be found.
+      DoubleParameter addedLater = new DoubleParameter("AddedLater", registry, 5.0);
+      Assertions.assertSame(addedLater, parameters.findOrCreate("AddedLater", 6.0));
+      DoubleParameter addedByName = FilterTools.findOrCreate("AddedByName", registry, 7.0);
+      Assertions.assertSame(addedByName, parameters.findOrCreate("AddedByName", 8.0));
+      Assertions.assertEquals(4, registry.getParameters().size());
+
+      // Tables of different registries are independent even if the registries have the same name.
+      ParameterTable otherParameters = new ParameterTable(new YoRegistry("Test"));
+      Assertions.assertNotSame(created, otherParameters.findOrCreate("Created", 3.0));
+   }
+}
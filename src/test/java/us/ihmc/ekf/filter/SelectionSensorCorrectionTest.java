@@ -0,0 +1,166 @@
+package us.ihmc.ekf.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.TestTools;
+import us.ihmc.ekf.filter.sensor.implementations.JointEncoderArraySensor;
+import us.ihmc.ekf.filter.sensor.implementations.JointEncoderArraySensor.Quantity;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.JointState.JointModel;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+public class SelectionSensorCorrectionTest
+{
+   private static final double EPSILON = 1.0e-10;
+   private static final double DT = 0.001;
+
+   @Test
+   public void testAgainstDenseCorrection()
+   {
+      Random random = new Random(3382L);
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      RobotState robotState = createRobotState(6, registry);
+      List<String> measuredJoints = new ArrayList<>();
+      measuredJoints.add("Joint4");
+      measuredJoints.add("Joint1");
+      measuredJoints.add("Joint2");
+      SelectionSensorCorrection correction = new SelectionSensorCorrection();
+
+      for (Quantity quantity : Quantity.values())
+      {
+         JointEncoderArraySensor sensor = new JointEncoderArraySensor("Encoders" + quantity, quantity, measuredJoints, DT, registry);
+
+         for (int i = 0; i < TestTools.ITERATIONS; i++)
+         {
+            int n = robotState.getSize();
+            DMatrixRMaj x = TestTools.nextMatrix(n, 1, random, -1.0, 1.0);
+            DMatrixRMaj P = nextCovariance(n, random);
+            robotState.setStateVector(x);
+            sensor.setMeasurements(TestTools.nextMatrix(measuredJoints.size(), 1, random, -1.0, 1.0).getData());
+
+            DMatrixRMaj H = new DMatrixRMaj(0, 0);
+            DMatrixRMaj R = new DMatrixRMaj(0, 0);
+            DMatrixRMaj r = new DMatrixRMaj(0, 0);
+            sensor.getMeasurementJacobian(H, robotState);
+            sensor.getRMatrix(R);
+            sensor.getResidual(r, robotState);
+            DMatrixRMaj expectedX = new DMatrixRMaj(0, 0);
+            DMatrixRMaj expectedP = new DMatrixRMaj(0, 0);
+            DMatrixRMaj K = new DMatrixRMaj(0, 0);
+            NativeFilterMatrixOps.correct(expectedX, expectedP, K, x, P, H, R, r);
+
+            DMatrixRMaj actualX = new DMatrixRMaj(x);
+            DMatrixRMaj actualP = new DMatrixRMaj(P);
+            correction.correct(actualX, actualP, sensor, robotState, null);
+
+            TestTools.assertEquals(expectedX, actualX, EPSILON);
+            TestTools.assertEquals(expectedP, actualP, EPSILON);
+         }
+      }
+   }
+
+   @Test
+   public void testVelocityInputsAndConsiderStates()
+   {
+      Random random = new Random(9120L);
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      List<JointState> jointStates = new ArrayList<>();
+      jointStates.add(new JointState("Joint0", DT, registry));
+      jointStates.add(new JointState("Joint1", JointModel.POSITION_WITH_VELOCITY_INPUT, DT, registry));
+      jointStates.add(new JointState("Joint2", DT, registry));
+      RobotState robotState = new RobotState(null, jointStates);
+      List<String> measuredJoints = new ArrayList<>();
+      measuredJoints.add("Joint0");
+      measuredJoints.add("Joint1");
+      JointEncoderArraySensor sensor = new JointEncoderArraySensor("Encoders", Quantity.VELOCITY, measuredJoints, DT, registry);
+
+      int[] stateIndices = sensor.getStateIndices(robotState);
+      assertEquals(robotState.findJointVelocityIndex("Joint0"), stateIndices[0]);
+      assertEquals(-1, stateIndices[1]);
+
+      int n = robotState.getSize();
+      boolean[] isConsidered = new boolean[n];
+      int considerStart = robotState.getJointStartIndex("Joint2");
+      for (int i = considerStart; i < n; i++)
+      {
+         isConsidered[i] = true;
+      }
+
+      SelectionSensorCorrection correction = new SelectionSensorCorrection();
+      for (int i = 0; i < TestTools.ITERATIONS; i++)
+      {
+         DMatrixRMaj x = TestTools.nextMatrix(n, 1, random, -1.0, 1.0);
+         DMatrixRMaj P = nextCovariance(n, random);
+         sensor.setMeasurements(new double[] {random.nextDouble(), random.nextDouble()});
+
+         DMatrixRMaj actualX = new DMatrixRMaj(x);
+         DMatrixRMaj actualP = new DMatrixRMaj(P);
+         correction.correct(actualX, actualP, sensor, robotState, isConsidered);
+
+         for (int row = considerStart; row < n; row++)
+         {
+            assertEquals(x.get(row), actualX.get(row), EPSILON);
+            for (int col = considerStart; col < n; col++)
+            {
+               assertEquals(P.get(row, col), actualP.get(row, col), EPSILON);
+            }
+         }
+         DMatrixRMaj transpose = new DMatrixRMaj(actualP);
+         CommonOps_DDRM.transpose(transpose);
+         TestTools.assertEquals(transpose, actualP, EPSILON);
+      }
+   }
+
+   @Test
+   public void testStateIndicesFollowStateChanges()
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      RobotState robotState = createRobotState(3, registry);
+      List<String> measuredJoints = new ArrayList<>();
+      measuredJoints.add("Joint2");
+      measuredJoints.add("Joint0");
+      JointEncoderArraySensor sensor = new JointEncoderArraySensor("Encoders", Quantity.POSITION, measuredJoints, DT, registry);
+
+      int[] stateIndices = sensor.getStateIndices(robotState);
+      robotState.addState(new JointState("Joint3", DT, registry));
+      int[] updatedStateIndices = sensor.getStateIndices(robotState);
+      assertNotSame(stateIndices, updatedStateIndices);
+      assertEquals(robotState.findJointPositionIndex("Joint2"), updatedStateIndices[0]);
+      assertEquals(robotState.findJointPositionIndex("Joint0"), updatedStateIndices[1]);
+
+      DMatrixRMaj H = new DMatrixRMaj(0, 0);
+      sensor.getMeasurementJacobian(H, robotState);
+      assertEquals(robotState.getSize(), H.getNumCols());
+   }
+
+   private static RobotState createRobotState(int numberOfJoints, YoRegistry registry)
+   {
+      List<JointState> jointStates = new ArrayList<>();
+      for (int i = 0; i < numberOfJoints; i++)
+      {
+         jointStates.add(new JointState("Joint" + i, DT, registry));
+      }
+      return new RobotState(null, jointStates);
+   }
+
+   private static DMatrixRMaj nextCovariance(int size, Random random)
+   {
+      DMatrixRMaj A = TestTools.nextMatrix(size, random, -1.0, 1.0);
+      DMatrixRMaj covariance = new DMatrixRMaj(size, size);
+      CommonOps_DDRM.multTransB(A, A, covariance);
+      for (int i = 0; i < size; i++)
+      {
+         covariance.add(i, i, 0.1);
+      }
+      return covariance;
+   }
+}
@@ -4,19 +4,31 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import org.ejml.data.DMatrix1Row;
 import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
 import org.ejml.simple.SimpleMatrix;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import us.ihmc.ekf.TestTools;
 import us.ihmc.ekf.filter.FilterTools.ProccessNoiseModel;
+import us.ihmc.ekf.filter.StateEstimator.CorrectionForm;
 import us.ihmc.ekf.filter.sensor.ComposedSensor;
 import us.ihmc.ekf.filter.sensor.Sensor;
 import us.ihmc.ekf.filter.sensor.implementations.JointPositionSensor;
 import us.ihmc.ekf.filter.state.ComposedState;
 import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.ekf.filter.state.implementations.StrapdownPoseState;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
 import us.ihmc.euclid.tools.EuclidCoreRandomTools;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.mecano.frames.MovingReferenceFrame;
+import us.ihmc.mecano.multiBodySystem.RigidBody;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.spatial.Twist;
 import us.ihmc.yoVariables.parameters.DefaultParameterReader;
 import us.ihmc.yoVariables.registry.YoRegistry;
 
@@ -119,6 +131,428 @@ public class StateEstimatorTest
       TestTools.assertEquals(P, actualCovariance, EPSILON);
    }
 
+   @Test
+   public void testInformationFormMatchesCovarianceForm()
+   {
+      Random random = new Random(6129L);
+      double dt = 0.001;
+      int numberOfJoints = 3;
+      int stateSize = 3 * numberOfJoints;
+
+      // Sensors with more measurements than states, one with a full and one with a diagonal noise covariance.
+      List<Sensor> sensors = new ArrayList<>();
+      DMatrixRMaj randomMatrix = TestTools.nextMatrix(6, random, -1.0, 1.0);
+      DMatrixRMaj fullR = new DMatrixRMaj(6, 6);
+       CommonOps_DDRM.multTransB(randomMatrix, randomMatrix, fullR);
+      for (int i = 0; i < fullR.getNumRows(); i++)
+      {
+         fullR.add(i, i, 0.5);
+      }
+      sensors.add(new ConstantSensor("FullSensor", TestTools.nextMatrix(6, stateSize, random, -1.0, 1.0),
+                                     TestTools.nextMatrix(6, 1, random, -1.0, 1.0), fullR));
+      sensors.add(new ConstantSensor("DiagonalSensor", TestTools.nextMatrix(8, stateSize, random, -1.0, 1.0),
+                                     TestTools.nextMatrix(8, 1, random, -1.0, 1.0), TestTools.nextDiagonalMatrix(8, random, 0.1, 1.0)));
+
+      StateEstimator covarianceEstimator = createJointEstimator("Covariance", numberOfJoints, sensors, dt);
+      covarianceEstimator.setCorrectionForm(CorrectionForm.COVARIANCE);
+      StateEstimator informationEstimator = createJointEstimator("Information", numberOfJoints, sensors, dt);
+      informationEstimator.setCorrectionForm(CorrectionForm.INFORMATION);
+
+      DMatrixRMaj expected = new DMatrixRMaj(0, 0);
+      DMatrixRMaj actual = new DMatrixRMaj(0, 0);
+      for (int i = 0; i < 10; i++)
+      {
+         covarianceEstimator.predict();
+         covarianceEstimator.correct();
+         informationEstimator.predict();
+         informationEstimator.correct();
+
+         covarianceEstimator.getRobotState().getStateVector(expected);
+         informationEstimator.getRobotState().getStateVector(actual);
+         TestTools.assertEquals(expected, actual, 1.0e-8);
+         covarianceEstimator.getCovariance(expected);
+         informationEstimator.getCovariance(actual);
+         TestTools.assertEquals(expected, actual, 1.0e-8);
+      }
+   }
+
+   @Test
+   public void testNormalizedInnovationSquared()
+   {
+      Random random = new Random(8812L);
+      double dt = 0.001;
+      int numberOfJoints = 2;
+      int stateSize = 3 * numberOfJoints;
+
+      DMatrixRMaj H = TestTools.nextMatrix(4, stateSize, random, -1.0, 1.0);
+      DMatrixRMaj residual = TestTools.nextMatrix(4, 1, random, -1.0, 1.0);
+      DMatrixRMaj R = TestTools.nextDiagonalMatrix(4, random, 0.1, 1.0);
+      List<Sensor> sensors = new ArrayList<>();
+      sensors.add(new ConstantSensor("Sensor", H, residual, R));
+
+      StateEstimator estimator = createJointEstimator("Estimator", numberOfJoints, sensors, dt);
+      estimator.setCorrectionForm(CorrectionForm.COVARIANCE);
+      estimator.setComputeInnovationStatistics(true);
+      RobotState robotState = estimator.getRobotState();
+
+      DMatrixRMaj P = new DMatrixRMaj(0, 0);
+      DMatrixRMaj F = new DMatrixRMaj(0, 0);
+      DMatrixRMaj Q = new DMatrixRMaj(0, 0);
+      for (int i = 0; i < 10; i++)
+      {
+         // Compute the expected prior covariance and innovation covariance:
+         estimator.getCovariance(P);
+         robotState.getFMatrix(F);
+         robotState.getQMatrix(Q);
+         DMatrixRMaj Pprior = computeABAtPlusC(F, P, Q);
+         DMatrixRMaj S = computeABAtPlusC(H, Pprior, R);
+         double expected = new SimpleMatrix(residual).transpose().mult(new SimpleMatrix(S).invert()).mult(new SimpleMatrix(residual)).get(0, 0);
+
+         estimator.predict();
+         estimator.correct();
+         Assertions.assertEquals(expected, estimator.getNormalizedInnovationSquared(), 1.0e-8);
+         Assertions.assertEquals(4, estimator.getInnovationSize());
+      }
+
+      estimator.setCorrectionForm(CorrectionForm.INFORMATION);
+      estimator.predict();
+      estimator.correct();
+      Assertions.assertTrue(Double.isNaN(estimator.getNormalizedInnovationSquared()));
+   }
+
+   @Test
+   public void testWarmUpRestoresEstimate()
+   {
+      Random random = new Random(2240L);
+      double dt = 0.001;
+      int numberOfJoints = 3;
+      int stateSize = 3 * numberOfJoints;
+
+      List<Sensor> sensors = new ArrayList<>();
+      sensors.add(new ConstantSensor("Sensor", TestTools.nextMatrix(4, stateSize, random, -1.0, 1.0), TestTools.nextMatrix(4, 1, random, -1.0, 1.0),
+                                     TestTools.nextDiagonalMatrix(4, random, 0.1, 1.0)));
+      StateEstimator estimator = createJointEstimator("Estimator", numberOfJoints, sensors, dt);
+      StateEstimator reference = createJointEstimator("Reference", numberOfJoints, sensors, dt);
+
+      DMatrixRMaj expected = new DMatrixRMaj(0, 0);
+      DMatrixRMaj actual = new DMatrixRMaj(0, 0);
+      for (int i = 0; i < 5; i++)
+      {
+         estimator.predict();
+         estimator.correct();
+         reference.predict();
+         reference.correct();
+      }
+
+      // The warm-up must not change the estimate or the following ticks.
+      Assertions.assertEquals(500, estimator.warmUp(500));
+      for (int i = 0; i < 5; i++)
+      {
+         reference.getRobotState().getStateVector(expected);
+         estimator.getRobotState().getStateVector(actual);
+         TestTools.assertEquals(expected, actual, EPSILON);
+         reference.getCovariance(expected);
+         estimator.getCovariance(actual);
+         TestTools.assertEquals(expected, actual, EPSILON);
+
+         estimator.predict();
+         estimator.correct();
+         reference.predict();
+         reference.correct();
+      }
+   }
+
+   @Test
+   public void testWarmUpRestoresFloatingBase()
+   {
+      for (boolean strapdown : new boolean[] {false, true})
+      {
+         Random random = new Random(2241L);
+         double dt = 0.001;
+         int stateSize = (strapdown ? StrapdownPoseState.size : PoseState.size) + 3;
+
+         List<Sensor> sensors = new ArrayList<>();
+         sensors.add(new ConstantSensor("Sensor", TestTools.nextMatrix(6, stateSize, random, -1.0, 1.0), TestTools.nextMatrix(6, 1, random, -1.0, 1.0),
+                                        TestTools.nextDiagonalMatrix(6, random, 0.1, 1.0)));
+         RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+         Vector3D angularVelocity = EuclidCoreRandomTools.nextVector3D(random);
+         Vector3D linearVelocity = EuclidCoreRandomTools.nextVector3D(random);
+         StateEstimator estimator = createFloatingEstimator("Estimator", strapdown, sensors, dt, transform, angularVelocity, linearVelocity);
+         StateEstimator reference = createFloatingEstimator("Reference", strapdown, sensors, dt, transform, angularVelocity, linearVelocity);
+
+         DMatrixRMaj expected = new DMatrixRMaj(0, 0);
+         DMatrixRMaj actual = new DMatrixRMaj(0, 0);
+         RigidBodyTransform expectedTransform = new RigidBodyTransform();
+         RigidBodyTransform actualTransform = new RigidBodyTransform();
+         for (int i = 0; i < 5; i++)
+         {
+            estimator.predict();
+            estimator.correct();
+            reference.predict();
+            reference.correct();
+         }
+
+         // The orientation is not part of the state vector so it must be restored separately by the warm-up.
+         Assertions.assertEquals(500, estimator.warmUp(500));
+         for (int i = 0; i < 5; i++)
+         {
+            reference.getRobotState().getStateVector(expected);
+            estimator.getRobotState().getStateVector(actual);
+            TestTools.assertEquals(expected, actual, EPSILON);
+            reference.getCovariance(expected);
+            estimator.getCovariance(actual);
+            TestTools.assertEquals(expected, actual, EPSILON);
+            getFloatingTransform(reference.getRobotState(), expectedTransform);
+            getFloatingTransform(estimator.getRobotState(), actualTransform);
+            Assertions.assertTrue(expectedTransform.epsilonEquals(actualTransform, EPSILON));
+
+            estimator.predict();
+            estimator.correct();
+            reference.predict();
+            reference.correct();
+         }
+      }
+   }
+
+   @Test
+   public void testBuilder()
+   {
+      Random random = new Random(7731L);
+      double dt = 0.001;
+      int numberOfJoints = 4;
+      int stateSize = 3 * numberOfJoints;
+
+      List<Sensor> sensors = new ArrayList<>();
+      for (int i = 0; i < 3; i++)
+      {
+         sensors.add(new ConstantSensor("Sensor" + i, TestTools.nextMatrix(2, stateSize, random, -1.0, 1.0), TestTools.nextMatrix(2, 1, random, -1.0, 1.0),
+                                        TestTools.nextDiagonalMatrix(2, random, 0.1, 1.0)));
+      }
+
+      YoRegistry registry = new YoRegistry("Built");
+      StateEstimatorBuilder builder = new StateEstimatorBuilder(registry);
+      for (int jointIdx = 0; jointIdx < numberOfJoints; jointIdx++)
+      {
+         builder.addJointState(new JointState("Joint" + jointIdx, dt, builder.getParameters()));
+      }
+      StateEstimator built = builder.addSensors(sensors).setCorrectionForm(CorrectionForm.COVARIANCE).build();
+      StateEstimator reference = createJointEstimator("Reference", numberOfJoints, sensors, dt);
+      reference.setCorrectionForm(CorrectionForm.COVARIANCE);
+
+      DMatrixRMaj expected = new DMatrixRMaj(0, 0);
+      DMatrixRMaj actual = new DMatrixRMaj(0, 0);
+      for (int i = 0; i < 10; i++)
+      {
+         built.predict();
+         built.correct();
+         reference.predict();
+         reference.correct();
+
+         reference.getRobotState().getStateVector(expected);
+         built.getRobotState().getStateVector(actual);
+         TestTools.assertEquals(expected, actual, EPSILON);
+         reference.getCovariance(expected);
+         built.getCovariance(actual);
+         TestTools.assertEquals(expected, actual, EPSILON);
+      }
+   }
+
+   @Test
+   public void testCovarianceBlocks()
+   {
+      Random random = new Random(5127L);
+      double dt = 0.001;
+      int numberOfJoints = 3;
+      int stateSize = 3 * numberOfJoints;
+
+      List<Sensor> sensors = new ArrayList<>();
+      sensors.add(new ConstantSensor("Sensor", TestTools.nextMatrix(4, stateSize, random, -1.0, 1.0), TestTools.nextMatrix(4, 1, random, -1.0, 1.0),
+                                     TestTools.nextDiagonalMatrix(4, random, 0.1, 1.0)));
+      StateEstimator estimator = createJointEstimator("Estimator", numberOfJoints, sensors, dt);
+      RobotState robotState = estimator.getRobotState();
+      JointState joint0 = robotState.getJointState("Joint0");
+      JointState joint2 = robotState.getJointState("Joint2");
+      CovarianceView view = estimator.getCovarianceView(joint2);
+      CovarianceView crossView = estimator.getCrossCovarianceView(joint0, joint2);
+
+      DMatrixRMaj covariance = new DMatrixRMaj(0, 0);
+      DMatrixRMaj expected = new DMatrixRMaj(3, 3);
+      DMatrixRMaj actual = new DMatrixRMaj(0, 0);
+      for (int i = 0; i < 5; i++)
+      {
+         estimator.predict();
+         estimator.correct();
+         estimator.getCovariance(covariance);
+
+         for (String jointName : robotState.getJointNames())
+         {
+            JointState jointState = robotState.getJointState(jointName);
+            int start = robotState.getStartIndex(jointState);
+            CommonOps_DDRM.extract(covariance, start, start + 3, start, start + 3, expected, 0, 0);
+            estimator.getCovariance(jointState, actual);
+            TestTools.assertEquals(expected, actual, EPSILON);
+         }
+
+         CommonOps_DDRM.extract(covariance, 0, 3, 6, 9, expected, 0, 0);
+         estimator.getCrossCovariance(joint0, joint2, actual);
+         TestTools.assertEquals(expected, actual, EPSILON);
+         crossView.get(actual);
+         TestTools.assertEquals(expected, actual, EPSILON);
+         estimator.getCovarianceBlock(0, 6, 3, 3, actual);
+         TestTools.assertEquals(expected, actual, EPSILON);
+         double[] packedBlock = new double[11];
+         crossView.get(packedBlock, 2);
+         for (int entry = 0; entry < 9; entry++)
+         {
+            Assertions.assertEquals(expected.get(entry), packedBlock[2 + entry]);
+         }
+
+         // The view must follow the estimate without being recreated.
+         for (int row = 0; row < 3; row++)
+         {
+            for (int col = 0; col < 3; col++)
+            {
+               Assertions.assertEquals(covariance.get(6 + row, 6 + col), view.get(row, col));
+               Assertions.assertEquals(covariance.get(row, 6 + col), crossView.get(row, col));
+            }
+         }
+      }
+
+      Assertions.assertThrows(RuntimeException.class, () -> view.get(3, 0));
+      Assertions.assertThrows(RuntimeException.class, () -> estimator.getCovarianceView(7, 0, 3, 3));
+      Assertions.assertThrows(RuntimeException.class, () -> estimator.getCovarianceBlock(0, 7, 3, 3, new DMatrixRMaj(0, 0)));
+      Assertions.assertThrows(RuntimeException.class, () -> estimator.getCovarianceBlock(2, 2, -1, 3, new DMatrixRMaj(0, 0)));
+      Assertions.assertThrows(RuntimeException.class, () -> estimator.getCovarianceBlock(2, 2, 3, -2, new DMatrixRMaj(0, 0)));
+   }
+
+   @Test
+   public void testExtrapolateCovariance()
+   {
+      Random random = new Random(3318L);
+      double dt = 0.001;
+      int numberOfJoints = 3;
+
+      // Without sensors the posterior covariance after a tick is the prediction.
+      StateEstimator estimator = createJointEstimator("Estimator", numberOfJoints, new ArrayList<>(), dt);
+      DMatrixRMaj initialCovariance = TestTools.nextSymmetricMatrix(3 * numberOfJoints, random, -1.0, 1.0);
+      estimator.setCovariance(initialCovariance);
+
+      DMatrixRMaj extrapolated = new DMatrixRMaj(0, 0);
+      DMatrixRMaj actual = new DMatrixRMaj(0, 0);
+      estimator.extrapolateCovariance(0, extrapolated);
+      TestTools.assertEquals(initialCovariance, extrapolated, EPSILON);
+
+      estimator.extrapolateCovariance(4, extrapolated);
+      estimator.getCovariance(actual);
+      TestTools.assertEquals(initialCovariance, actual, 0.0);
+
+      for (int i = 0; i < 4; i++)
+      {
+         estimator.predict();
+         estimator.correct();
+      }
+      estimator.getCovariance(actual);
+      TestTools.assertEquals(actual, extrapolated, EPSILON);
+
+      Assertions.assertThrows(RuntimeException.class, () -> estimator.extrapolateCovariance(-1, new DMatrixRMaj(0, 0)));
+   }
+
+   private static StateEstimator createJointEstimator(String name, int numberOfJoints, List<Sensor> sensors, double dt)
+   {
+      YoRegistry registry = new YoRegistry(name);
+      List<JointState> jointStates = new ArrayList<>();
+      for (int jointIdx = 0; jointIdx < numberOfJoints; jointIdx++)
+      {
+         jointStates.add(new JointState("Joint" + jointIdx, dt, registry));
+      }
+      return new StateEstimator(sensors, new RobotState(null, jointStates), registry);
+   }
+
+   private static StateEstimator createFloatingEstimator(String name, boolean strapdown, List<Sensor> sensors, double dt, RigidBodyTransform transform,
+                                                         Vector3D angularVelocity, Vector3D linearVelocity)
+   {
+      YoRegistry registry = new YoRegistry(name);
+      SixDoFJoint rootJoint = new SixDoFJoint(name + "RootJoint", new RigidBody(name + "Elevator", ReferenceFrame.getWorldFrame()));
+      MovingReferenceFrame bodyFrame = rootJoint.getFrameAfterJoint();
+      Twist twist = new Twist(bodyFrame, bodyFrame.getParent(), bodyFrame, angularVelocity, linearVelocity);
+      List<JointState> jointStates = new ArrayList<>();
+      jointStates.add(new JointState("Joint", dt, registry));
+
+      RobotState robotState;
+      if (strapdown)
+      {
+         StrapdownPoseState poseState = new StrapdownPoseState("Body", dt, bodyFrame, registry);
+         poseState.initialize(transform, twist);
+         poseState.setImuInput(angularVelocity, new Vector3D(0.1, -0.2, 9.9));
+         robotState = new RobotState(poseState, jointStates);
+      }
+      else
+      {
+         PoseState poseState = new PoseState("Body", dt, bodyFrame, registry);
+         poseState.initialize(transform, twist);
+         robotState = new RobotState(poseState, jointStates);
+      }
+      return new StateEstimator(sensors, robotState, registry);
+   }
+
+   private static void getFloatingTransform(RobotState robotState, RigidBodyTransform transformToPack)
+   {
+      if (robotState.getPoseState() != null)
+      {
+         robotState.getPoseState().getTransform(transformToPack);
+      }
+      else
+      {
+         robotState.getStrapdownPoseState().getTransform(transformToPack);
+      }
+   }
+
+   private static class ConstantSensor extends Sensor
+   {
+      private final String name;
+      private final DMatrixRMaj H;
+      private final DMatrixRMaj residual;
+      private final DMatrixRMaj R;
+
+      public ConstantSensor(String name, DMatrixRMaj H, DMatrixRMaj residual, DMatrixRMaj R)
+      {
+         this.name = name;
+         this.H = H;
+         this.residual = residual;
+         this.R = R;
+      }
+
+      @Override
+      public String getName()
+      {
+         return name;
+      }
+
+      @Override
+      public int getMeasurementSize()
+      {
+         return residual.getNumRows();
+      }
+
+      @Override
+      public void getMeasurementJacobian(DMatrix1Row jacobianToPack, RobotState robotState)
+      {
+         jacobianToPack.set(H);
+      }
+
+      @Override
+      public void getResidual(DMatrix1Row residualToPack, RobotState robotState)
+      {
+         residualToPack.set(residual);
+      }
+
+      @Override
+      public void getRMatrix(DMatrix1Row noiseCovarianceToPack)
+      {
+         noiseCovarianceToPack.set(R);
+      }
+   }
+
    private static DMatrixRMaj invert(DMatrixRMaj matrix)
    {
       return new SimpleMatrix(matrix).invert().getMatrix();
@@ -0,0 +1,185 @@
+package us.ihmc.ekf.filter.publishing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.mutable.MutableInt;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.TestTools;
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.publishing.EstimateSnapshotLayout.CovarianceMode;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.euclid.referenceFrame.FrameQuaternion;
+import us.ihmc.euclid.referenceFrame.FrameVector3D;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.tools.EuclidCoreRandomTools;
+import us.ihmc.euclid.tools.EuclidCoreTestTools;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Point3D;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple4D.Quaternion;
+import us.ihmc.mecano.frames.MovingReferenceFrame;
+import us.ihmc.mecano.multiBodySystem.RigidBody;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.mecano.tools.MecanoRandomTools;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+public class EstimatePublisherTest
+{
+   private static final double DT = 0.001;
+
+   @Test
+   public void testSnapshotContent()
+   {
+      Random random = new Random(9421L);
+      YoRegistry registry = new YoRegistry("TestRegistry");
+
+      SixDoFJoint rootJoint = new SixDoFJoint("rootJoint", new RigidBody("elevator", ReferenceFrame.getWorldFrame()));
+      MovingReferenceFrame bodyFrame = rootJoint.getFrameAfterJoint();
+      PoseState poseState = new PoseState("body", DT, bodyFrame, registry);
+      List<JointState> jointStates = new ArrayList<>();
+      jointStates.add(new JointState("joint0", DT, registry));
+      jointStates.add(new JointState("joint1", DT, registry));
+      RobotState robotState = new RobotState(poseState, jointStates);
+      StateEstimator estimator = new StateEstimator(Collections.emptyList(), robotState, registry);
+
+      RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+      Twist twist = MecanoRandomTools.nextTwist(random, bodyFrame, bodyFrame.getParent(), bodyFrame);
+      poseState.initialize(transform, twist);
+      jointStates.get(0).initialize(0.3, -0.2);
+      jointStates.get(1).initialize(-1.1, 0.7);
+
+      EstimatePublisher publisher = new EstimatePublisher(estimator, CovarianceMode.FULL);
+      EstimateSnapshot snapshot = publisher.createSnapshot();
+      assertFalse(publisher.read(snapshot));
+
+      publisher.publish(42L);
+      assertTrue(publisher.read(snapshot));
+      assertEquals(42L, snapshot.getTimestamp());
+      assertEquals(1L, snapshot.getSequence());
+
+      FrameQuaternion expectedOrientation = new FrameQuaternion();
+      poseState.getOrientation(expectedOrientation);
+      Quaternion actualOrientation = new Quaternion();
+      snapshot.getOrientation(actualOrientation);
+      EuclidCoreTestTools.assertQuaternionEquals(expectedOrientation, actualOrientation, 0.0);
+
+      FrameVector3D expectedVelocity = new FrameVector3D();
+      poseState.getAngularVelocity(expectedVelocity);
+      Vector3D actualVelocity = new Vector3D();
+      snapshot.getAngularVelocity(actualVelocity);
+      EuclidCoreTestTools.assertTuple3DEquals(expectedVelocity, actualVelocity, 0.0);
+      poseState.getLinearVelocity(expectedVelocity);
+      snapshot.getLinearVelocity(actualVelocity);
+      EuclidCoreTestTools.assertTuple3DEquals(expectedVelocity, actualVelocity, 0.0);
+
+      Point3D actualPosition = new Point3D();
+      snapshot.getPosition(actualPosition);
+      DMatrixRMaj state = new DMatrixRMaj(0, 0);
+      robotState.getStateVector(state);
+      assertEquals(state.get(robotState.findPositionIndex()), actualPosition.getX());
+
+      for (JointState jointState : jointStates)
+      {
+         int offset = publisher.getLayout().getJointOffset(jointState.getJointName());
+         assertEquals(jointState.getQ(), snapshot.getJointPosition(offset));
+         assertEquals(jointState.getQd(), snapshot.getJointVelocity(offset));
+         assertEquals(jointState.getQdd(), snapshot.getJointAcceleration(offset));
+      }
+
+      DMatrixRMaj expectedCovariance = new DMatrixRMaj(0, 0);
+      estimator.getCovariance(expectedCovariance);
+      DMatrixRMaj actualCovariance = new DMatrixRMaj(0, 0);
+      snapshot.getCovariance(actualCovariance);
+      TestTools.assertEquals(expectedCovariance, actualCovariance);
+      assertEquals(expectedCovariance.get(4, 4), snapshot.getVariance(4));
+
+      publisher.publish(43L);
+      publisher.read(snapshot);
+      assertEquals(2L, snapshot.getSequence());
+   }
+
+   @Test
+   public void testConcurrentReaders() throws InterruptedException
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      List<JointState> jointStates = new ArrayList<>();
+      for (int i = 0; i < 10; i++)
+      {
+         jointStates.add(new JointState("joint" + i, DT, registry));
+      }
+      RobotState robotState = new RobotState(null, jointStates);
+      StateEstimator estimator = new StateEstimator(Collections.emptyList(), robotState, registry);
+      EstimatePublisher publisher = new EstimatePublisher(estimator, CovarianceMode.NONE);
+
+      int publications = 20000;
+      int readers = 3;
+      AtomicBoolean done = new AtomicBoolean(false);
+      MutableInt errors = new MutableInt();
+      List<Thread> readerThreads = new ArrayList<>();
+      for (int readerIdx = 0; readerIdx < readers; readerIdx++)
+      {
+         EstimateSnapshot snapshot = publisher.createSnapshot();
+         Thread reader = new Thread(() ->
+         {
+            long lastSequence = 0;
+            while (!done.get())
+            {
+               if (publisher.read(snapshot))
+               {
+                  // All entries of a consistent snapshot have the same value which matches the timestamp.
+                  double[] data = snapshot.getData();
+                  boolean consistent = snapshot.getSequence() >= lastSequence;
+                  for (int i = 0; i < data.length; i++)
+                  {
+                     consistent &= data[i] == snapshot.getTimestamp();
+                  }
+                  if (!consistent)
+                  {
+                     synchronized (errors)
+                     {
+                        errors.increment();
+                     }
+                  }
+                  lastSequence = snapshot.getSequence();
+               }
+               Thread.yield();
+            }
+         });
+         readerThreads.add(reader);
+         reader.start();
+      }
+
+      DMatrixRMaj state = new DMatrixRMaj(robotState.getSize(), 1);
+      for (int i = 0; i < publications; i++)
+      {
+         CommonOps_DDRM.fill(state, i);
+         robotState.setStateVector(state);
+         publisher.publish(i);
+         if (i % 10 == 0)
+         {
+            Thread.yield();
+         }
+      }
+      done.set(true);
+      for (Thread reader : readerThreads)
+      {
+         reader.join();
+      }
+
+      assertEquals(0, errors.intValue());
+   }
+}
@@ -0,0 +1,202 @@
+package us.ihmc.ekf.filter.publishing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.ejml.data.DMatrixRMaj;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.filter.state.implementations.BiasState;
+import us.ihmc.yoVariables.registry.YoRegistry;
+import us.ihmc.yoVariables.variable.YoDouble;
+
+public class EstimatorTelemetryTest
+{
+   private static final double DT = 0.001;
+
+   @Test
+   public void testDecimation()
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      EstimatorTelemetry telemetry = new EstimatorTelemetry(registry);
+      telemetry.setPublishSynchronously(false);
+      CountingGroup fast = new CountingGroup("Fast");
+      CountingGroup slow = new CountingGroup("Slow");
+      telemetry.addGroup(fast, 1);
+      telemetry.addGroup(slow, 10);
+
+      assertEquals(0, telemetry.publish());
+      for (int tick = 0; tick < 100; tick++)
+      {
+         telemetry.update();
+      }
+      assertEquals(100, fast.writes);
+      assertEquals(10, slow.writes);
+
+      // Only the latest values are published and only once.
+      assertEquals(2, telemetry.publish());
+      assertEquals(0, telemetry.publish());
+      assertEquals(1, fast.publishes);
+      assertEquals(100.0, fast.lastPublished);
+      assertEquals(10.0, slow.lastPublished);
+
+      telemetry.setEnabled("Slow", false);
+      telemetry.setDecimation("Fast", 5);
+      for (int tick = 0; tick < 100; tick++)
+      {
+         telemetry.update();
+      }
+      assertEquals(120, fast.writes);
+      assertEquals(10, slow.writes);
+      assertEquals(1, telemetry.publish());
+
+      telemetry.setEnabled(false);
+      telemetry.update();
+      assertEquals(120, fast.writes);
+
+      assertThrows(RuntimeException.class, () -> telemetry.addGroup(new CountingGroup("Fast"), 1));
+      assertThrows(RuntimeException.class, () -> telemetry.setDecimation("Fast", 0));
+      assertThrows(RuntimeException.class, () -> telemetry.setEnabled("Unknown", true));
+   }
+
+   @Test
+   public void testSynchronousPublishing()
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      EstimatorTelemetry telemetry = new EstimatorTelemetry(registry);
+      CountingGroup group = new CountingGroup("Group");
+      telemetry.addGroup(group, 5);
+      assertTrue(telemetry.isPublishingSynchronously());
+
+      // Every write is published in the same tick.
+      for (int tick = 0; tick < 20; tick++)
+      {
+         telemetry.update();
+         assertEquals(group.writes, group.publishes);
+         assertEquals(group.writes, group.lastPublished);
+      }
+      assertEquals(4, group.writes);
+      assertEquals(0, telemetry.publish());
+
+      telemetry.start(1000);
+      assertFalse(telemetry.isPublishingSynchronously());
+      telemetry.stop();
+      assertTrue(telemetry.isPublishingSynchronously());
+   }
+
+   @Test
+   public void testStateTelemetryGroup()
+   {
+      Random random = new Random(4891L);
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      BiasState biasState = new BiasState("Test", DT, registry);
+      EstimatorTelemetry telemetry = new EstimatorTelemetry(registry);
+      telemetry.setPublishSynchronously(false);
+      telemetry.addGroup(new StateTelemetryGroup(biasState.getName(), biasState, registry), 1);
+
+      DMatrixRMaj bias = new DMatrixRMaj(3, 1);
+      for (int i = 0; i < 3; i++)
+      {
+         bias.set(i, random.nextDouble());
+      }
+      biasState.setStateVector(bias);
+
+      // Setting the state does not change the variables until the telemetry is updated and published.
+      YoDouble yoBias = (YoDouble) registry.findVariable("TestBias1");
+      assertEquals(0.0, yoBias.getValue());
+      telemetry.update();
+      assertEquals(0.0, yoBias.getValue());
+      telemetry.publish();
+      for (int i = 0; i < 3; i++)
+      {
+         assertEquals(bias.get(i), ((YoDouble) registry.findVariable("TestBias" + i)).getValue());
+      }
+   }
+
+   @Test
+   public void testConsistency() throws InterruptedException
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      EstimatorTelemetry telemetry = new EstimatorTelemetry(registry);
+      telemetry.setPublishSynchronously(false);
+      CountingGroup group = new CountingGroup("Group");
+      telemetry.addGroup(group, 1);
+
+      AtomicBoolean running = new AtomicBoolean(true);
+      Thread writer = new Thread(() ->
+      {
+         while (running.get())
+         {
+            telemetry.update();
+         }
+      });
+      writer.start();
+
+      long end = System.nanoTime() + 200000000L;
+      while (System.nanoTime() < end)
+      {
+         telemetry.publish();
+      }
+      running.set(false);
+      writer.join();
+
+      assertTrue(group.publishes > 0);
+      assertEquals(0, group.inconsistentPublishes);
+   }
+
+   private static class CountingGroup implements TelemetryGroup
+   {
+      private final String name;
+      private int writes = 0;
+      private int publishes = 0;
+      private int inconsistentPublishes = 0;
+      private double lastPublished = Double.NaN;
+
+      public CountingGroup(String name)
+      {
+         this.name = name;
+      }
+
+      @Override
+      public String getName()
+      {
+         return name;
+      }
+
+      @Override
+      public int getSize()
+      {
+         return 8;
+      }
+
+      @Override
+      public void write(double[] dataToPack)
+      {
+         writes++;
+         for (int i = 0; i < dataToPack.length; i++)
+         {
+            dataToPack[i] = writes;
+         }
+      }
+
+      @Override
+      public void publish(double[] data)
+      {
+         publishes++;
+         for (int i = 1; i < data.length; i++)
+         {
+            if (data[i] != data[0])
+            {
+               inconsistentPublishes++;
+               break;
+            }
+         }
+         lastPublished = data[0];
+      }
+   }
+}
@@ -0,0 +1,241 @@
+package us.ihmc.ekf.filter.publishing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.DMatrixRMaj;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.euclid.referenceFrame.FrameQuaternion;
+import us.ihmc.euclid.referenceFrame.FrameVector3D;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.tools.EuclidCoreRandomTools;
+import us.ihmc.euclid.tools.EuclidCoreTestTools;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Point3D;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple4D.Quaternion;
+import us.ihmc.mecano.frames.MovingReferenceFrame;
+import us.ihmc.mecano.multiBodySystem.RigidBody;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.mecano.tools.MecanoRandomTools;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+public class MappedEstimateExporterTest
+{
+   private static final double DT = 0.001;
+
+   @Test
+   public void testExportAndRead() throws IOException
+   {
+      Random random = new Random(2281L);
+      YoRegistry registry = new YoRegistry("TestRegistry");
+
+      SixDoFJoint rootJoint = new SixDoFJoint("rootJoint", new RigidBody("elevator", ReferenceFrame.getWorldFrame()));
+      MovingReferenceFrame bodyFrame = rootJoint.getFrameAfterJoint();
+      PoseState poseState = new PoseState("body", DT, bodyFrame, registry);
+      List<JointState> jointStates = new ArrayList<>();
+      jointStates.add(new JointState("joint0", DT, registry));
+      jointStates.add(new JointState("joint1", DT, registry));
+      RobotState robotState = new RobotState(poseState, jointStates);
+      StateEstimator estimator = new StateEstimator(Collections.emptyList(), robotState, registry);
+
+      RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+      Twist twist = MecanoRandomTools.nextTwist(random, bodyFrame, bodyFrame.getParent(), bodyFrame);
+      poseState.initialize(transform, twist);
+      jointStates.get(0).initialize(0.3, -0.2);
+      jointStates.get(1).initialize(-1.1, 0.7);
+
+      List<CovarianceBlock> blocks = new ArrayList<>();
+      blocks.add(new CovarianceBlock("position", robotState.findPositionIndex(), 3));
+      blocks.add(new CovarianceBlock("joint1", robotState.findJointPositionIndex("joint1"), 3));
+
+      Path path = Files.createTempFile("estimate", ".bin");
+      try (MappedEstimateExporter exporter = new MappedEstimateExporter(estimator, path, blocks);
+            MappedEstimateReader reader = new MappedEstimateReader(path))
+      {
+         assertFalse(reader.read());
+         assertEquals(robotState.getSize(), reader.getStateSize());
+         assertTrue(reader.isFloating());
+         assertEquals(robotState.getJointNames(), reader.getJointNames());
+
+         exporter.export(17L);
+         assertTrue(reader.read());
+         assertEquals(17L, reader.getTimestamp());
+         assertEquals(1L, reader.getSequence());
+
+         FrameQuaternion expectedOrientation = new FrameQuaternion();
+         poseState.getOrientation(expectedOrientation);
+         Quaternion actualOrientation = new Quaternion();
+         reader.getOrientation(actualOrientation);
+         EuclidCoreTestTools.assertQuaternionEquals(expectedOrientation, actualOrientation, 0.0);
+
+         FrameVector3D expectedVelocity = new FrameVector3D();
+         poseState.getLinearVelocity(expectedVelocity);
+         Vector3D actualVelocity = new Vector3D();
+         reader.getLinearVelocity(actualVelocity);
+         EuclidCoreTestTools.assertTuple3DEquals(expectedVelocity, actualVelocity, 0.0);
+
+         DMatrixRMaj state = new DMatrixRMaj(0, 0);
+         robotState.getStateVector(state);
+         Point3D actualPosition = new Point3D();
+         reader.getPosition(actualPosition);
+         assertEquals(state.get(robotState.findPositionIndex() + 2), actualPosition.getZ());
+         for (int i = 0; i < state.getNumRows(); i++)
+         {
+            assertEquals(state.get(i), reader.getStateEntry(i));
+         }
+
+         for (JointState jointState : jointStates)
+         {
+            int offset = reader.getJointOffset(jointState.getJointName());
+            assertEquals(jointState.getQ(), reader.getJointPosition(offset));
+            assertEquals(jointState.getQd(), reader.getJointVelocity(offset));
+            assertEquals(jointState.getQdd(), reader.getJointAcceleration(offset));
+         }
+
+         DMatrixRMaj covariance = new DMatrixRMaj(0, 0);
+         estimator.getCovariance(covariance);
+         for (CovarianceBlock block : reader.getCovarianceBlocks())
+         {
+            int offset = reader.getCovarianceBlockOffset(block.getName());
+            for (int row = 0; row < block.getSize(); row++)
+            {
+               for (int col = 0; col < block.getSize(); col++)
+               {
+                  double expected = covariance.get(block.getStartIndex() + row, block.getStartIndex() + col);
+                  assertEquals(expected, reader.getCovarianceBlockEntry(offset, block.getSize(), row, col));
+               }
+            }
+         }
+
+         exporter.export(18L);
+         assertTrue(reader.read());
+         assertEquals(18L, reader.getTimestamp());
+         assertEquals(2L, reader.getSequence());
+      }
+      finally
+      {
+         Files.deleteIfExists(path);
+      }
+   }
+
+   @Test
+   public void testReplacedFileIsStale() throws IOException
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      StateEstimator estimator = createJointEstimator(registry);
+
+      Path path = Files.createTempFile("estimate", ".bin");
+      try (MappedEstimateExporter exporter = new MappedEstimateExporter(estimator, path, Collections.emptyList());
+            MappedEstimateReader reader = new MappedEstimateReader(path))
+      {
+         exporter.export(1L);
+         assertTrue(reader.read());
+         assertFalse(reader.isStale());
+
+         try (MappedEstimateExporter newExporter = new MappedEstimateExporter(estimator, path, Collections.emptyList());
+               MappedEstimateReader newReader = new MappedEstimateReader(path))
+         {
+            assertTrue(newExporter.getGeneration() != exporter.getGeneration());
+
+            // The old reader keeps its mapping of the replaced file and must notice that it is no longer written.
+            exporter.export(2L);
+            assertFalse(reader.read());
+            assertTrue(reader.isStale());
+            assertEquals(1L, reader.getTimestamp());
+
+            newExporter.export(3L);
+            assertTrue(newReader.read());
+            assertFalse(newReader.isStale());
+            assertEquals(3L, newReader.getTimestamp());
+            assertEquals(1L, newReader.getSequence());
+         }
+      }
+      finally
+      {
+         Files.deleteIfExists(path);
+      }
+   }
+
+   @Test
+   public void testReadGivesUpOnInterruptedWrite() throws IOException
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      StateEstimator estimator = createJointEstimator(registry);
+
+      Path path = Files.createTempFile("estimate", ".bin");
+      try (MappedEstimateExporter exporter = new MappedEstimateExporter(estimator, path, Collections.emptyList());
+            MappedEstimateReader reader = new MappedEstimateReader(path);
+            RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw"))
+      {
+         exporter.export(1L);
+         assertTrue(reader.read());
+
+         // Simulate an exporter that died in the middle of a write by leaving the sequence odd.
+         MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+         buffer.order(MappedEstimateFormat.BYTE_ORDER);
+         int sequenceOffset = buffer.getInt(MappedEstimateFormat.DATA_OFFSET_OFFSET) + MappedEstimateFormat.SEQUENCE_OFFSET;
+         buffer.putLong(sequenceOffset, buffer.getLong(sequenceOffset) + 1);
+
+         assertFalse(reader.read());
+         assertFalse(reader.isStale());
+         assertEquals(1L, reader.getTimestamp());
+         assertEquals(1L, reader.getSequence());
+      }
+      finally
+      {
+         Files.deleteIfExists(path);
+      }
+   }
+
+   @Test
+   public void testRetiredFileIsRejected() throws IOException
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      StateEstimator estimator = createJointEstimator(registry);
+
+      Path path = Files.createTempFile("estimate", ".bin");
+      Path link = path.resolveSibling(path.getFileName() + ".link");
+      try (MappedEstimateExporter exporter = new MappedEstimateExporter(estimator, path, Collections.emptyList()))
+      {
+         // The link keeps pointing to the first file after it was replaced.
+         Files.createLink(link, path);
+         try (MappedEstimateExporter newExporter = new MappedEstimateExporter(estimator, path, Collections.emptyList()))
+         {
+            assertThrows(RuntimeException.class, () -> new MappedEstimateReader(link));
+         }
+      }
+      finally
+      {
+         Files.deleteIfExists(path);
+         Files.deleteIfExists(link);
+      }
+   }
+
+   private static StateEstimator createJointEstimator(YoRegistry registry)
+   {
+      List<JointState> jointStates = new ArrayList<>();
+      jointStates.add(new JointState("joint0", DT, registry));
+      RobotState robotState = new RobotState((PoseState) null, jointStates);
+      return new StateEstimator(Collections.emptyList(), robotState, registry);
+   }
+}
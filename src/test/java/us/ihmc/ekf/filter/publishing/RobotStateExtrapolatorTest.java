@@ -0,0 +1,115 @@
+package us.ihmc.ekf.filter.publishing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.DMatrixRMaj;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.publishing.EstimateSnapshotLayout.CovarianceMode;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.JointState.JointModel;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.tools.EuclidCoreRandomTools;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.mecano.frames.MovingReferenceFrame;
+import us.ihmc.mecano.multiBodySystem.RigidBody;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.mecano.tools.MecanoRandomTools;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+public class RobotStateExtrapolatorTest
+{
+   private static final double DT = 0.001;
+   private static final double EPSILON = 1.0e-12;
+
+   @Test
+   public void testMatchesPrediction()
+   {
+      Random random = new Random(6650L);
+      YoRegistry registry = new YoRegistry("TestRegistry");
+
+      SixDoFJoint rootJoint = new SixDoFJoint("rootJoint", new RigidBody("elevator", ReferenceFrame.getWorldFrame()));
+      MovingReferenceFrame bodyFrame = rootJoint.getFrameAfterJoint();
+      PoseState poseState = new PoseState("body", DT, bodyFrame, registry);
+      List<JointState> jointStates = new ArrayList<>();
+      jointStates.add(new JointState("joint0", DT, registry));
+      jointStates.add(new JointState("joint1", JointModel.CONSTANT_VELOCITY, DT, registry));
+      jointStates.add(new JointState("joint2", JointModel.POSITION_WITH_VELOCITY_INPUT, DT, registry));
+      RobotState robotState = new RobotState(poseState, jointStates);
+      StateEstimator estimator = new StateEstimator(Collections.emptyList(), robotState, registry);
+
+      RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+      Twist twist = MecanoRandomTools.nextTwist(random, bodyFrame, bodyFrame.getParent(), bodyFrame);
+      poseState.initialize(transform, twist);
+      for (JointState jointState : jointStates)
+      {
+         jointState.initialize(EuclidCoreRandomTools.nextDouble(random, 1.0), EuclidCoreRandomTools.nextDouble(random, 1.0));
+      }
+
+      // Add some accelerations so all terms of the models are used.
+      DMatrixRMaj state = new DMatrixRMaj(0, 0);
+      robotState.getStateVector(state);
+      for (int axis = 0; axis < 3; axis++)
+      {
+         state.set(robotState.findAngularAccelerationIndex() + axis, EuclidCoreRandomTools.nextDouble(random, 5.0));
+         state.set(robotState.findLinearAccelerationIndex() + axis, EuclidCoreRandomTools.nextDouble(random, 5.0));
+      }
+      state.set(robotState.findJointAccelerationIndex("joint0"), EuclidCoreRandomTools.nextDouble(random, 5.0));
+      robotState.setStateVector(state);
+
+      EstimateSnapshotLayout layout = new EstimateSnapshotLayout(robotState, CovarianceMode.NONE);
+      EstimateSnapshotWriter writer = new EstimateSnapshotWriter(estimator, layout);
+      RobotStateExtrapolator extrapolator = new RobotStateExtrapolator(robotState, layout, DT);
+
+      EstimateSnapshot estimate = new EstimateSnapshot(layout);
+      EstimateSnapshot expected = new EstimateSnapshot(layout);
+      EstimateSnapshot extrapolated = new EstimateSnapshot(layout);
+      writer.write(estimate);
+
+      extrapolator.extrapolate(estimate, 0.0, extrapolated);
+      assertArrayEquals(estimate.getData(), extrapolated.getData(), 0.0);
+
+      double[] original = estimate.getData().clone();
+      for (int ticks = 1; ticks <= 5; ticks++)
+      {
+         robotState.predict();
+         writer.write(expected);
+         extrapolator.extrapolate(estimate, ticks * DT, extrapolated);
+         assertArrayEquals(expected.getData(), extrapolated.getData(), EPSILON);
+      }
+
+      // The source estimate is not modified.
+      assertArrayEquals(original, estimate.getData(), 0.0);
+
+      // Extrapolating in place in two parts matches a single extrapolation.
+      extrapolator.extrapolate(estimate, 2.0 * DT, extrapolated);
+      extrapolator.extrapolate(extrapolated, 3.0 * DT, extrapolated);
+      assertArrayEquals(expected.getData(), extrapolated.getData(), EPSILON);
+
+      // The joints are extrapolated in closed form for any duration.
+      double duration = 0.0037;
+      extrapolator.extrapolate(estimate, duration, extrapolated);
+      for (JointState jointState : jointStates)
+      {
+         int offset = layout.getJointOffset(jointState.getJointName());
+         double q = estimate.getJointPosition(offset);
+         double qd = estimate.getJointVelocity(offset);
+         double qdd = estimate.getJointAcceleration(offset);
+         assertEquals(q + duration * qd + 0.5 * duration * duration * qdd, extrapolated.getJointPosition(offset), EPSILON);
+         assertEquals(qd + duration * qdd, extrapolated.getJointVelocity(offset), EPSILON);
+      }
+
+      assertThrows(RuntimeException.class, () -> extrapolator.extrapolate(estimate, -DT, extrapolated));
+   }
+}
@@ -0,0 +1,142 @@
+package us.ihmc.ekf.filter.sensor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.mutable.MutableDouble;
+import org.apache.commons.lang3.mutable.MutableInt;
+import org.apache.commons.lang3.mutable.MutableLong;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.euclid.tuple3D.Vector3D;
+
+public class MeasurementQueueTest
+{
+   @Test
+   public void testDrainForwardsLatest()
+   {
+      MutableLong lastTimestamp = new MutableLong(-1L);
+      MutableDouble lastValue = new MutableDouble(Double.NaN);
+      MeasurementQueue queue = new MeasurementQueue(1, 4, (timestamp, values) ->
+      {
+         lastTimestamp.setValue(timestamp);
+         lastValue.setValue(values[0]);
+      });
+
+      assertEquals(0, queue.drain());
+      assertEquals(-1L, lastTimestamp.longValue());
+
+      queue.offer(1L, 1.0);
+      queue.offer(2L, 2.0);
+      queue.offer(3L, 3.0);
+      assertEquals(3, queue.drain());
+      assertEquals(3L, lastTimestamp.longValue());
+      assertEquals(3.0, lastValue.doubleValue());
+      assertEquals(0, queue.drain());
+   }
+
+   @Test
+   public void testFullQueueKeepsLatest()
+   {
+      MutableLong lastTimestamp = new MutableLong(-1L);
+      MutableDouble lastValue = new MutableDouble(Double.NaN);
+      MeasurementQueue queue = new MeasurementQueue(3, 3, (timestamp, values) ->
+      {
+         lastTimestamp.setValue(timestamp);
+         lastValue.setValue(values[0]);
+      });
+      assertEquals(4, queue.getCapacity());
+
+      for (int i = 0; i < queue.getCapacity(); i++)
+      {
+         queue.offer(i, i, i, i);
+      }
+      assertEquals(0L, queue.getDroppedMeasurements());
+
+      // A full queue overwrites the oldest measurement so the newest one is not lost.
+      queue.offer(10L, 10.0, 0.0, 0.0);
+      assertEquals(1L, queue.getDroppedMeasurements());
+      assertEquals(5, queue.drain());
+      assertEquals(10L, lastTimestamp.longValue());
+      assertEquals(10.0, lastValue.doubleValue());
+
+      queue.offer(11L, 11.0, 0.0, 0.0);
+      assertEquals(1, queue.drain());
+      assertEquals(11L, lastTimestamp.longValue());
+      assertEquals(1L, queue.getDroppedMeasurements());
+
+      assertEquals(2, new MeasurementQueue(1, 1, (timestamp, values) ->
+      {
+      }).getCapacity());
+   }
+
+   @Test
+   public void testWrongSize()
+   {
+      MeasurementQueue queue = new MeasurementQueue(2, 2, (timestamp, values) ->
+      {
+      });
+      try
+      {
+         queue.offer(0L, 1.0);
+         throw new AssertionError("Expected an exception for a measurement with the wrong size.");
+      }
+      catch (RuntimeException e)
+      {
+         // expected
+      }
+      queue.offer(0L, new double[] {1.0, 2.0});
+      assertEquals(1, queue.drain());
+   }
+
+   @Test
+   public void testVector3DQueue()
+   {
+      Vector3D measurement = new Vector3D();
+      MeasurementQueue queue = MeasurementQueues.createVector3DQueue(8, measurement::set);
+      queue.offer(0L, 1.0, 2.0, 3.0);
+      queue.drain();
+      assertEquals(new Vector3D(1.0, 2.0, 3.0), measurement);
+   }
+
+   @Test
+   public void testConcurrentProducer() throws InterruptedException
+   {
+      int measurements = 100000;
+      MutableLong lastTimestamp = new MutableLong(-1L);
+      MutableInt errors = new MutableInt();
+      // A small queue so the producer overwrites slots while the consumer reads them.
+      MeasurementQueue queue = new MeasurementQueue(3, 4, (timestamp, values) ->
+      {
+         // Timestamps must be increasing and the values must all belong to the same measurement.
+         if (timestamp <= lastTimestamp.longValue() || values[0] != timestamp || values[1] != -timestamp || values[2] != 2.0 * timestamp)
+         {
+            errors.increment();
+         }
+         lastTimestamp.setValue(timestamp);
+      });
+
+      AtomicBoolean done = new AtomicBoolean(false);
+      Thread producer = new Thread(() ->
+      {
+         for (long i = 0; i < measurements; i++)
+         {
+            queue.offer(i, i, -i, 2.0 * i);
+         }
+         done.set(true);
+      });
+      producer.start();
+
+      while (!done.get())
+      {
+         queue.drain();
+         Thread.yield();
+      }
+      producer.join();
+      queue.drain();
+
+      assertEquals(0, errors.intValue());
+      assertEquals(measurements - 1, lastTimestamp.longValue());
+   }
+}
@@ -0,0 +1,123 @@
+package us.ihmc.ekf.filter.sensor;
+
+import static us.ihmc.ekf.TestTools.ITERATIONS;
+
+import java.util.Collections;
+import java.util.Random;
+
+import org.ejml.data.DMatrixRMaj;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.TestTools;
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.sensor.implementations.AngularVelocitySensor;
+import us.ihmc.ekf.filter.sensor.implementations.LinearAccelerationSensor;
+import us.ihmc.ekf.filter.sensor.implementations.LinearVelocitySensor;
+import us.ihmc.ekf.filter.sensor.implementations.RigidBodyAngularVelocitySensor;
+import us.ihmc.ekf.filter.sensor.implementations.RigidBodyLinearAccelerationSensor;
+import us.ihmc.ekf.filter.sensor.implementations.RigidBodyLinearVelocitySensor;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.tools.EuclidCoreRandomTools;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.mecano.frames.MovingReferenceFrame;
+import us.ihmc.mecano.multiBodySystem.RigidBody;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.multiBodySystem.interfaces.RigidBodyBasics;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.mecano.tools.MecanoRandomTools;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Makes sure the closed form sensors for a single floating body match the general sensors that use the multi body
+ * model.
+ */
+public class RigidBodySensorsTest
+{
+   private static final double EPSILON = 1.0e-10;
+   private static final double DT = 0.001;
+
+   @Test
+   public void testEquivalenceWithMultiBodySensors()
+   {
+      Random random = new Random(82457L);
+
+      RigidBodyBasics elevator = new RigidBody("elevator", ReferenceFrame.getWorldFrame());
+      SixDoFJoint joint = new SixDoFJoint("imu_joint", elevator);
+      RigidBodyBasics body = new RigidBody("imu_body", joint, 0.1, 0.1, 0.1, 1.0, new Vector3D());
+      MovingReferenceFrame frame = joint.getFrameAfterJoint();
+
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      PoseState poseState = new PoseState(body.getName(), DT, frame, registry);
+
+      YoRegistry multiBodyRegistry = new YoRegistry("MultiBodyRegistry");
+      AngularVelocitySensor angularVelocitySensor = new AngularVelocitySensor("AngularVelocity", DT, body, frame, true, multiBodyRegistry);
+      LinearVelocitySensor linearVelocitySensor = new LinearVelocitySensor("LinearVelocity", DT, body, frame, true, multiBodyRegistry);
+      LinearAccelerationSensor linearAccelerationSensor = new LinearAccelerationSensor("LinearAcceleration", DT, body, frame, true, multiBodyRegistry);
+      ComposedSensor multiBodySensor = new ComposedSensor("MultiBody");
+      multiBodySensor.addSensor(angularVelocitySensor);
+      multiBodySensor.addSensor(linearVelocitySensor);
+      multiBodySensor.addSensor(linearAccelerationSensor);
+      RobotState multiBodyState = new RobotState(poseState, Collections.emptyList());
+      multiBodyState.addState(multiBodySensor.getSensorState());
+
+      YoRegistry rigidBodyRegistry = new YoRegistry("RigidBodyRegistry");
+      RigidBodyAngularVelocitySensor rigidBodyAngularVelocitySensor = new RigidBodyAngularVelocitySensor("AngularVelocity", DT, true, rigidBodyRegistry);
+      RigidBodyLinearVelocitySensor rigidBodyLinearVelocitySensor = new RigidBodyLinearVelocitySensor("LinearVelocity", DT, true, rigidBodyRegistry);
+      RigidBodyLinearAccelerationSensor rigidBodyLinearAccelerationSensor = new RigidBodyLinearAccelerationSensor("LinearAcceleration", DT, poseState, true,
+                                                                                                                  rigidBodyRegistry);
+      ComposedSensor rigidBodySensor = new ComposedSensor("RigidBody");
+      rigidBodySensor.addSensor(rigidBodyAngularVelocitySensor);
+      rigidBodySensor.addSensor(rigidBodyLinearVelocitySensor);
+      rigidBodySensor.addSensor(rigidBodyLinearAccelerationSensor);
+      RobotState rigidBodyState = new RobotState(poseState, Collections.emptyList());
+      rigidBodyState.addState(rigidBodySensor.getSensorState());
+
+      DMatrixRMaj expectedJacobian = new DMatrixRMaj(0, 0);
+      DMatrixRMaj actualJacobian = new DMatrixRMaj(0, 0);
+      DMatrixRMaj expectedResidual = new DMatrixRMaj(0, 0);
+      DMatrixRMaj actualResidual = new DMatrixRMaj(0, 0);
+      RigidBodyTransform transform = new RigidBodyTransform();
+      Twist twist = new Twist();
+
+      for (int i = 0; i < ITERATIONS; i++)
+      {
+         // Random state with zero orientation error so the pose state is not modified twice.
+         RigidBodyTransform initialTransform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+         Twist initialTwist = MecanoRandomTools.nextTwist(random, frame, frame.getParent(), frame);
+         poseState.initialize(initialTransform, initialTwist);
+         DMatrixRMaj state = TestTools.nextMatrix(multiBodyState.getSize(), 1, random, -1.0, 1.0);
+         for (int j = 0; j < 3; j++)
+         {
+            state.set(PoseState.orientationStart + j, 0.0);
+         }
+         multiBodyState.setStateVector(state);
+         rigidBodyState.setStateVector(state);
+
+         poseState.getTransform(transform);
+         joint.setJointConfiguration(transform);
+         poseState.getTwist(twist);
+         joint.setJointTwist(twist);
+         joint.updateFramesRecursively();
+
+         Vector3D angularVelocity = EuclidCoreRandomTools.nextVector3D(random);
+         Vector3D linearVelocity = EuclidCoreRandomTools.nextVector3D(random);
+         Vector3D linearAcceleration = EuclidCoreRandomTools.nextVector3D(random);
+         angularVelocitySensor.setMeasurement(angularVelocity);
+         linearVelocitySensor.setMeasurement(linearVelocity);
+         linearAccelerationSensor.setMeasurement(linearAcceleration);
+         rigidBodyAngularVelocitySensor.setMeasurement(angularVelocity);
+         rigidBodyLinearVelocitySensor.setMeasurement(linearVelocity);
+         rigidBodyLinearAccelerationSensor.setMeasurement(linearAcceleration);
+
+         multiBodySensor.getMeasurementJacobian(expectedJacobian, multiBodyState);
+         rigidBodySensor.getMeasurementJacobian(actualJacobian, rigidBodyState);
+         TestTools.assertEquals(expectedJacobian, actualJacobian, EPSILON);
+
+         multiBodySensor.getResidual(expectedResidual, multiBodyState);
+         rigidBodySensor.getResidual(actualResidual, rigidBodyState);
+         TestTools.assertEquals(expectedResidual, actualResidual, EPSILON);
+      }
+   }
+}
@@ -0,0 +1,78 @@
+package us.ihmc.ekf.filter.sensor;
+
+import static us.ihmc.ekf.TestTools.ITERATIONS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.data.DMatrixRMaj;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.TestTools;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.tools.EuclidCoreRandomTools;
+import us.ihmc.mecano.algorithms.GeometricJacobianCalculator;
+import us.ihmc.mecano.multiBodySystem.RevoluteJoint;
+import us.ihmc.mecano.multiBodySystem.RigidBody;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.multiBodySystem.interfaces.RigidBodyBasics;
+
+public class TreeKinematicsCalculatorTest
+{
+   private static final double EPSILON = 1.0e-10;
+
+   @Test
+   public void testAgainstGeometricJacobianCalculator()
+   {
+      Random random = new Random(4928L);
+
+      // Create a floating robot with randomly branching revolute joints:
+      RigidBodyBasics rootBody = new RigidBody("RootBody", ReferenceFrame.getWorldFrame());
+      SixDoFJoint floatingJoint = new SixDoFJoint("FloatingJoint", rootBody);
+      List<RigidBodyBasics> bodies = new ArrayList<>();
+      bodies.add(new RigidBody("BaseBody", floatingJoint, 0.1, 0.1, 0.1, 1.0, EuclidCoreRandomTools.nextVector3D(random)));
+      List<RevoluteJoint> revoluteJoints = new ArrayList<>();
+      for (int i = 0; i < 20; i++)
+      {
+         RigidBodyBasics parentBody = bodies.get(random.nextInt(bodies.size()));
+         RevoluteJoint joint = new RevoluteJoint("Joint" + i, parentBody, EuclidCoreRandomTools.nextRigidBodyTransform(random),
+                                                 EuclidCoreRandomTools.nextVector3DWithFixedLength(random, 1.0));
+         bodies.add(new RigidBody("Body" + i, joint, 0.1, 0.1, 0.1, 1.0, EuclidCoreRandomTools.nextVector3D(random)));
+         revoluteJoints.add(joint);
+      }
+
+      TreeKinematicsCalculator calculator = new TreeKinematicsCalculator(rootBody);
+      GeometricJacobianCalculator expectedCalculator = new GeometricJacobianCalculator();
+      DMatrixRMaj actual = new DMatrixRMaj(0, 0);
+
+      for (int i = 0; i < ITERATIONS; i++)
+      {
+         floatingJoint.setJointOrientation(EuclidCoreRandomTools.nextQuaternion(random));
+         floatingJoint.setJointPosition(EuclidCoreRandomTools.nextVector3D(random));
+         floatingJoint.setJointAngularVelocity(EuclidCoreRandomTools.nextVector3D(random));
+         floatingJoint.setJointLinearVelocity(EuclidCoreRandomTools.nextVector3D(random));
+         for (RevoluteJoint joint : revoluteJoints)
+         {
+            joint.setQ(EuclidCoreRandomTools.nextDouble(random, Math.PI));
+            joint.setQd(EuclidCoreRandomTools.nextDouble(random, 5.0));
+         }
+         rootBody.updateFramesRecursively();
+         calculator.update();
+
+         for (RigidBodyBasics body : bodies)
+         {
+            // Any frame fixed to the body can be used as measurement frame.
+            ReferenceFrame frame = random.nextBoolean() ? body.getBodyFixedFrame() : body.getParentJoint().getFrameAfterJoint();
+            expectedCalculator.setKinematicChain(rootBody, body);
+            expectedCalculator.setJacobianFrame(frame);
+
+            calculator.getJacobian(body, frame, actual);
+            TestTools.assertEquals(new DMatrixRMaj(expectedCalculator.getJacobianMatrix()), actual, EPSILON);
+
+            calculator.getConvectiveTerm(body, frame, actual);
+            TestTools.assertEquals(new DMatrixRMaj(expectedCalculator.getConvectiveTermMatrix()), actual, EPSILON);
+         }
+      }
+   }
+}
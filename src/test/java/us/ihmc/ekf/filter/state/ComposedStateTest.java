@@ -14,6 +14,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import us.ihmc.ekf.TestTools;
+import us.ihmc.ekf.filter.ModelDependency;
 
 public class ComposedStateTest
 {
@@ -44,6 +45,79 @@ public class ComposedStateTest
       }
    }
 
+   @Test
+   public void testAddingStatesInBulk()
+   {
+      List<State> subStates = new ArrayList<State>();
+      for (int i = 0; i < 50; i++)
+      {
+         subStates.add(nextState(RANDOM, 10, "SubState" + i));
+      }
+      ComposedState bulkState = new ComposedState("Bulk");
+      bulkState.addStates(subStates);
+      ComposedState state = new ComposedState("Single");
+      subStates.forEach(state::addState);
+
+      Assertions.assertEquals(state.getSize(), bulkState.getSize());
+      DMatrixRMaj expected = new DMatrixRMaj(0, 0);
+      DMatrixRMaj actual = new DMatrixRMaj(0, 0);
+      state.getStateVector(expected);
+      bulkState.getStateVector(actual);
+      TestTools.assertEquals(expected, actual, 0.0);
+      state.getFMatrix(expected);
+      bulkState.getFMatrix(actual);
+      TestTools.assertEquals(expected, actual, 0.0);
+      for (State subState : subStates)
+      {
+         Assertions.assertEquals(state.getStartIndex(subState), bulkState.getStartIndex(subState));
+      }
+   }
+
+   @Test
+   public void testModelCaching()
+   {
+      Random random = new Random(4829L);
+      CachingTestState constantState = new CachingTestState("Constant", 3, ModelDependency.CONSTANT, ModelDependency.PARAMETERS, random);
+      CachingTestState varyingState = new CachingTestState("Varying", 4, ModelDependency.STATE, ModelDependency.STATE, random);
+      ComposedState state = new ComposedState("Test");
+      state.addState(constantState);
+      state.addState(varyingState);
+      state.setCacheParameterDependentModels(true);
+
+      DMatrixRMaj F = new DMatrixRMaj(0, 0);
+      DMatrixRMaj Q = new DMatrixRMaj(0, 0);
+      state.getFMatrix(F);
+      state.getQMatrix(Q);
+      DMatrixRMaj cachedF = new DMatrixRMaj(constantState.F);
+      DMatrixRMaj cachedQ = new DMatrixRMaj(constantState.Q);
+
+      // Only the state dependent blocks must be updated.
+      constantState.randomize(random);
+      varyingState.randomize(random);
+      state.getFMatrix(F);
+      state.getQMatrix(Q);
+      TestTools.assertBlockEquals(0, 0, cachedF, F);
+      TestTools.assertBlockEquals(0, 0, cachedQ, Q);
+      TestTools.assertBlockEquals(3, 3, varyingState.F, F);
+      TestTools.assertBlockEquals(3, 3, varyingState.Q, Q);
+
+      // Parameter dependent blocks are updated once the cache is invalidated.
+      state.invalidateCache();
+      state.getFMatrix(F);
+      state.getQMatrix(Q);
+      TestTools.assertBlockEquals(0, 0, constantState.F, F);
+      TestTools.assertBlockEquals(0, 0, constantState.Q, Q);
+
+      // Without caching of parameter dependent blocks only the constant block is cached.
+      state.setCacheParameterDependentModels(false);
+      state.getFMatrix(F);
+      constantState.randomize(random);
+      state.getFMatrix(F);
+      state.getQMatrix(Q);
+      TestTools.assertBlockEquals(0, 0, constantState.Q, Q);
+      Assertions.assertEquals(ModelDependency.STATE, state.getFMatrixDependency());
+   }
+
    public void testComposedState(Random random, int maxStates, int maxSubStateSize)
    {
       List<State> subStates = new ArrayList<State>();
@@ -171,4 +245,84 @@ public class ComposedStateTest
          }
       };
    }
+
+   private static class CachingTestState extends State
+   {
+      private final String name;
+      private final ModelDependency fDependency;
+      private final ModelDependency qDependency;
+      private final DMatrixRMaj F;
+      private final DMatrixRMaj Q;
+      private final DMatrixRMaj x;
+
+      public CachingTestState(String name, int size, ModelDependency fDependency, ModelDependency qDependency, Random random)
+      {
+         this.name = name;
+         this.fDependency = fDependency;
+         this.qDependency = qDependency;
+         F = new DMatrixRMaj(size, size);
+         Q = new DMatrixRMaj(size, size);
+         x = new DMatrixRMaj(size, 1);
+         randomize(random);
+      }
+
+      public void randomize(Random random)
+      {
+         F.set(TestTools.nextMatrix(F.getNumRows(), random, -1.0, 1.0));
+         Q.set(TestTools.nextMatrix(Q.getNumRows(), random, -1.0, 1.0));
+      }
+
+      @Override
+      public String getName()
+      {
+         return name;
+      }
+
+      @Override
+      public void setStateVector(DMatrix1Row newState)
+      {
+         x.set(newState);
+      }
+
+      @Override
+      public void getStateVector(DMatrix1Row stateVectorToPack)
+      {
+         stateVectorToPack.set(x);
+      }
+
+      @Override
+      public int getSize()
+      {
+         return x.getNumRows();
+      }
+
+      @Override
+      public void predict()
+      {
+      }
+
+      @Override
+      public void getFMatrix(DMatrix1Row fMatrixToPack)
+      {
+         fMatrixToPack.set(F);
+      }
+
+      @Override
+      public void getQMatrix(DMatrix1Row noiseCovarianceToPack)
+      {
+         noiseCovarianceToPack.set(Q);
+      }
+
+      @Override
+      public ModelDependency getFMatrixDependency()
+      {
+         return fDependency;
+      }
+
+      @Override
+      public ModelDependency getQMatrixDependency()
+      {
+         return qDependency;
+      }
+   }
 }
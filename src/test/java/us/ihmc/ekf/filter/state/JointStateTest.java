@@ -3,13 +3,17 @@ package us.ihmc.ekf.filter.state;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static us.ihmc.ekf.TestTools.ITERATIONS;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
 import org.junit.jupiter.api.Test;
 
+import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.filter.state.implementations.JointState.JointModel;
 import us.ihmc.euclid.tools.EuclidCoreRandomTools;
 import us.ihmc.yoVariables.parameters.DefaultParameterReader;
 import us.ihmc.yoVariables.registry.YoRegistry;
@@ -161,6 +165,104 @@ public class JointStateTest
       }
    }
 
+   @Test
+   public void testReducedModelSizes()
+   {
+      Random random = new Random(4922L);
+      for (JointModel jointModel : JointModel.values())
+      {
+         YoRegistry registry = new YoRegistry("Test");
+         JointState state = new JointState("Joint", jointModel, random.nextDouble(), registry);
+         new DefaultParameterReader().readParametersInRegistry(registry);
+         assertEquals(jointModel.getSize(), state.getSize());
+
+         DMatrixRMaj matrix = new DMatrixRMaj(0, 0);
+         state.getFMatrix(matrix);
+         assertEquals(state.getSize(), matrix.getNumRows());
+         assertEquals(state.getSize(), matrix.getNumCols());
+         state.getQMatrix(matrix);
+         assertEquals(state.getSize(), matrix.getNumRows());
+         assertEquals(state.getSize(), matrix.getNumCols());
+      }
+   }
+
+   @Test
+   public void testConstantVelocityPrediction()
+   {
+      Random random = new Random(4922L);
+
+      for (int test = 0; test < ITERATIONS; test++)
+      {
+         double q = EuclidCoreRandomTools.nextDouble(random, 10.0);
+         double qd = EuclidCoreRandomTools.nextDouble(random, 10.0);
+         double dt = EuclidCoreRandomTools.nextDouble(random, 1.0);
+
+         JointState state = new JointState("TestJoint", JointModel.CONSTANT_VELOCITY, dt, new YoRegistry("TestRegistry"));
+         state.initialize(q, qd);
+
+         DMatrixRMaj initialState = new DMatrixRMaj(0, 0);
+         state.getStateVector(initialState);
+         DMatrixRMaj F = new DMatrixRMaj(0, 0);
+         state.getFMatrix(F);
+         DMatrixRMaj linearized = new DMatrixRMaj(state.getSize(), 1);
+          CommonOps_DDRM.mult(F, initialState, linearized);
+
+         state.predict();
+         assertEquals(q + dt * qd, state.getQ(), EPSILON);
+         assertEquals(qd, state.getQd(), EPSILON);
+         assertEquals(0.0, state.getQdd(), Double.MIN_VALUE);
+         assertEquals(linearized.get(0), state.getQ(), EPSILON);
+         assertEquals(linearized.get(1), state.getQd(), EPSILON);
+      }
+   }
+
+   @Test
+   public void testVelocityInputPrediction()
+   {
+      Random random = new Random(4922L);
+
+      for (int test = 0; test < ITERATIONS; test++)
+      {
+         double q = EuclidCoreRandomTools.nextDouble(random, 10.0);
+         double qd = EuclidCoreRandomTools.nextDouble(random, 10.0);
+         double dt = EuclidCoreRandomTools.nextDouble(random, 1.0);
+
+         JointState state = new JointState("TestJoint", JointModel.POSITION_WITH_VELOCITY_INPUT, dt, new YoRegistry("TestRegistry"));
+         state.initialize(q, 0.0);
+         state.setVelocityInput(qd);
+
+         state.predict();
+         assertEquals(q + dt * qd, state.getQ(), EPSILON);
+         assertEquals(qd, state.getQd(), Double.MIN_VALUE);
+         assertEquals(0.0, state.getQdd(), Double.MIN_VALUE);
+      }
+   }
+
+   @Test
+   public void testRobotStateIndices()
+   {
+      YoRegistry registry = new YoRegistry("TestRegistry");
+      List<JointState> jointStates = new ArrayList<>();
+      jointStates.add(new JointState("Joint0", JointModel.POSITION_WITH_VELOCITY_INPUT, 0.001, registry));
+      jointStates.add(new JointState("Joint1", JointModel.CONSTANT_VELOCITY, 0.001, registry));
+      jointStates.add(new JointState("Joint2", JointModel.CONSTANT_ACCELERATION, 0.001, registry));
+      RobotState robotState = new RobotState(null, jointStates);
+
+      assertEquals(6, robotState.getSize());
+      assertEquals(0, robotState.findJointPositionIndex("Joint0"));
+      assertEquals(-1, robotState.findJointVelocityIndex("Joint0"));
+      assertEquals(-1, robotState.findJointAccelerationIndex("Joint0"));
+      assertEquals(1, robotState.findJointPositionIndex("Joint1"));
+      assertEquals(2, robotState.findJointVelocityIndex("Joint1"));
+      assertEquals(-1, robotState.findJointAccelerationIndex("Joint1"));
+      assertEquals(3, robotState.findJointPositionIndex("Joint2"));
+      assertEquals(4, robotState.findJointVelocityIndex("Joint2"));
+      assertEquals(5, robotState.findJointAccelerationIndex("Joint2"));
+
+      jointStates.get(0).setVelocityInput(0.7);
+      assertEquals(0.7, robotState.getJointVelocityInput("Joint0"), Double.MIN_VALUE);
+   }
+
    private static State createState(Random random, YoRegistry registry)
    {
       JointState jointState = new JointState("Joint", random.nextDouble(), registry);
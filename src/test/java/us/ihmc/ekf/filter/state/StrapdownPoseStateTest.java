@@ -0,0 +1,157 @@
+package us.ihmc.ekf.filter.state;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static us.ihmc.ekf.TestTools.ITERATIONS;
+
+import java.util.Random;
+
+import org.ejml.data.DMatrixRMaj;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.TestTools;
+import us.ihmc.ekf.filter.state.implementations.StrapdownPoseState;
+import us.ihmc.euclid.referenceFrame.FrameQuaternion;
+import us.ihmc.euclid.referenceFrame.FrameVector3D;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.referenceFrame.tools.EuclidFrameRandomTools;
+import us.ihmc.euclid.tools.EuclidCoreRandomTools;
+import us.ihmc.euclid.tools.EuclidCoreTestTools;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple4D.Quaternion;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+public class StrapdownPoseStateTest
+{
+   private static final double EPSILON = 1.0e-10;
+   private static final double DT = 0.01;
+
+   @Test
+   public void testSize()
+   {
+      ReferenceFrame bodyFrame = EuclidFrameRandomTools.nextReferenceFrame(new Random(4922L));
+      State state = new StrapdownPoseState("root", DT, bodyFrame, new YoRegistry("Test"));
+      assertEquals(15, state.getSize());
+
+      DMatrixRMaj matrix = new DMatrixRMaj(0, 0);
+
+      state.getFMatrix(matrix);
+      assertEquals(state.getSize(), matrix.getNumRows());
+      assertEquals(state.getSize(), matrix.getNumCols());
+
+      state.getQMatrix(matrix);
+      assertEquals(state.getSize(), matrix.getNumRows());
+      assertEquals(state.getSize(), matrix.getNumCols());
+   }
+
+   @Test
+   public void testPredictionAtRest()
+   {
+      Random random = new Random(1284L);
+      ReferenceFrame bodyFrame = EuclidFrameRandomTools.nextReferenceFrame(random);
+
+      for (int i = 0; i < ITERATIONS; i++)
+      {
+         RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+         StrapdownPoseState state = new StrapdownPoseState("root", DT, bodyFrame, new YoRegistry("Test"));
+         state.initialize(transform, new Twist(bodyFrame, bodyFrame.getParent(), bodyFrame));
+
+         // The initialization sets the IMU input to what a resting IMU would measure.
+         for (int j = 0; j < 100; j++)
+         {
+            state.predict();
+         }
+
+         RigidBodyTransform actualTransform = new RigidBodyTransform();
+         state.getTransform(actualTransform);
+         EuclidCoreTestTools.assertRigidBodyTransformGeometricallyEquals(transform, actualTransform, EPSILON);
+
+         FrameVector3D linearVelocity = new FrameVector3D();
+         state.getLinearVelocity(linearVelocity);
+         EuclidCoreTestTools.assertTuple3DIsSetToZero(linearVelocity, EPSILON);
+      }
+   }
+
+   @Test
+   public void testLinearization()
+   {
+      Random random = new Random(7731L);
+      ReferenceFrame bodyFrame = EuclidFrameRandomTools.nextReferenceFrame(random);
+      double delta = 1.0e-6;
+
+      for (int i = 0; i < ITERATIONS; i++)
+      {
+         RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+         Twist twist = new Twist(bodyFrame, bodyFrame.getParent(), bodyFrame);
+         twist.getLinearPart().set(EuclidCoreRandomTools.nextVector3D(random));
+         Vector3D angularVelocity = EuclidCoreRandomTools.nextVector3D(random);
+         Vector3D specificForce = EuclidCoreRandomTools.nextVector3D(random, 10.0);
+         DMatrixRMaj x = TestTools.nextMatrix(StrapdownPoseState.size, 1, random, -0.1, 0.1);
+         for (int j = 0; j < 3; j++)
+         {
+            x.set(StrapdownPoseState.orientationStart + j, 0.0);
+            x.set(StrapdownPoseState.positionStart + j, transform.getTranslation().getElement(j));
+            x.set(StrapdownPoseState.linearVelocityStart + j, twist.getLinearPart().getElement(j));
+         }
+
+         StrapdownPoseState state = new StrapdownPoseState("root", DT, bodyFrame, new YoRegistry("Test"));
+         state.initialize(transform, twist);
+         state.setImuInput(angularVelocity, specificForce);
+         state.setStateVector(x);
+         state.predict();
+         DMatrixRMaj F = new DMatrixRMaj(0, 0);
+         state.getFMatrix(F);
+
+         DMatrixRMaj expectedF = new DMatrixRMaj(StrapdownPoseState.size, StrapdownPoseState.size);
+         DMatrixRMaj plus = new DMatrixRMaj(0, 0);
+         DMatrixRMaj minus = new DMatrixRMaj(0, 0);
+         for (int col = 0; col < StrapdownPoseState.size; col++)
+         {
+            DMatrixRMaj perturbed = new DMatrixRMaj(x);
+            perturbed.add(col, 0, delta);
+            predictError(plus, state, perturbed, transform, twist, angularVelocity, specificForce, bodyFrame);
+            perturbed.add(col, 0, -2.0 * delta);
+            predictError(minus, state, perturbed, transform, twist, angularVelocity, specificForce, bodyFrame);
+            for (int row = 0; row < StrapdownPoseState.size; row++)
+            {
+               expectedF.set(row, col, (plus.get(row) - minus.get(row)) / (2.0 * delta));
+            }
+         }
+
+         // The orientation integration is only linearized to first order in dt.
+         TestTools.assertEquals(expectedF, F, DT * DT);
+      }
+   }
+
+   /**
+    * Predicts a state with the provided initial value and packs the error w.r.t. the nominal prediction.
+    */
+   private static void predictError(DMatrixRMaj errorToPack, StrapdownPoseState nominal, DMatrixRMaj x, RigidBodyTransform transform, Twist twist,
+                                    Vector3D angularVelocity, Vector3D specificForce, ReferenceFrame bodyFrame)
+   {
+      StrapdownPoseState state = new StrapdownPoseState("root", DT, bodyFrame, new YoRegistry("Test"));
+      state.initialize(transform, twist);
+      state.setImuInput(angularVelocity, specificForce);
+      state.setStateVector(x);
+      state.predict();
+
+      DMatrixRMaj nominalVector = new DMatrixRMaj(0, 0);
+      nominal.getStateVector(nominalVector);
+      state.getStateVector(errorToPack);
+      for (int i = 0; i < StrapdownPoseState.size; i++)
+      {
+         errorToPack.add(i, 0, -nominalVector.get(i));
+      }
+
+      FrameQuaternion orientation = new FrameQuaternion();
+      FrameQuaternion nominalOrientation = new FrameQuaternion();
+      state.getOrientation(orientation);
+      nominal.getOrientation(nominalOrientation);
+      Quaternion orientationError = new Quaternion(orientation);
+      orientationError.multiplyConjugateOther(nominalOrientation);
+      Vector3D rotationVector = new Vector3D();
+      orientationError.getRotationVector(rotationVector);
+      rotationVector.get(StrapdownPoseState.orientationStart, errorToPack);
+   }
+}
@@ -0,0 +1,130 @@
+package us.ihmc.ekf.interfaces;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.state.implementations.PoseState;
+import us.ihmc.ekf.robots.RobotTools;
+import us.ihmc.ekf.robots.fixedBaseArm.FixedBaseArmRobot;
+import us.ihmc.ekf.robots.simpleArm.SimpleArmRobot;
+import us.ihmc.euclid.referenceFrame.ReferenceFrame;
+import us.ihmc.euclid.tools.EuclidCoreRandomTools;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.mecano.frames.MovingReferenceFrame;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.multiBodySystem.interfaces.OneDoFJointBasics;
+import us.ihmc.mecano.spatial.Twist;
+import us.ihmc.mecano.tools.MecanoRandomTools;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+public class FullRobotModelRobotStateTest
+{
+   private static final double DT = 0.001;
+   private static final double EPSILON = 1.0e-12;
+
+   @BeforeAll
+   public static void disableGraphics()
+   {
+      RobotTools.setLoadGraphics(false);
+   }
+
+   @Test
+   public void testFixedBaseFrameUpdate()
+   {
+      FixedBaseArmRobot robot = new FixedBaseArmRobot();
+      FullRobotModel fullRobotModel = robot.createFullRobotModel();
+      fullRobotModel.initialize(robot.getRobot());
+      testFrameUpdate(fullRobotModel, new Random(4729L));
+   }
+
+   @Test
+   public void testFloatingFrameUpdate()
+   {
+      SimpleArmRobot robot = new SimpleArmRobot();
+      FullRobotModel fullRobotModel = robot.createFullRobotModel();
+      fullRobotModel.initialize(robot.getRobot());
+      testFrameUpdate(fullRobotModel, new Random(1853L));
+   }
+
+   /**
+    * Modifies random joints of the estimated state and checks that updating the frames of the modified subtrees gives
+    * the same frames as updating the whole model.
+    */
+   private static void testFrameUpdate(FullRobotModel fullRobotModel, Random random)
+   {
+      FullRobotModelRobotState fullRobotModelRobotState = new FullRobotModelRobotState(DT, fullRobotModel, new YoRegistry("TestRegistry"));
+      RobotState robotState = fullRobotModelRobotState.getRobotState();
+      OneDoFJointBasics[] joints = fullRobotModel.getBodyJointsInOrder();
+      SixDoFJoint rootJoint = fullRobotModel.getRootJoint();
+
+      List<ReferenceFrame> frames = new ArrayList<>();
+      if (rootJoint != null)
+      {
+         frames.add(rootJoint.getFrameAfterJoint());
+      }
+      for (OneDoFJointBasics joint : joints)
+      {
+         frames.add(joint.getFrameBeforeJoint());
+         frames.add(joint.getFrameAfterJoint());
+      }
+
+      for (int iteration = 0; iteration < 100; iteration++)
+      {
+         // Defer the frame update over multiple changes like the estimator does between prediction and correction.
+         int changes = 1 + random.nextInt(2);
+         for (int change = 0; change < changes; change++)
+         {
+            for (OneDoFJointBasics joint : joints)
+            {
+               if (random.nextBoolean())
+               {
+                  robotState.getJointState(joint.getName()).initialize(EuclidCoreRandomTools.nextDouble(random, Math.PI), random.nextGaussian());
+               }
+            }
+            if (rootJoint != null && random.nextInt(4) == 0)
+            {
+               initializeRandomPose(robotState.getPoseState(), rootJoint, random);
+            }
+            fullRobotModelRobotState.setFullRobotModelFromState(false);
+         }
+
+         boolean pending = fullRobotModelRobotState.hasPendingFrameUpdate();
+         fullRobotModelRobotState.updateFrames();
+         Assertions.assertFalse(fullRobotModelRobotState.hasPendingFrameUpdate());
+         if (!pending)
+         {
+            continue;
+         }
+
+         List<RigidBodyTransform> incrementalTransforms = new ArrayList<>();
+         for (ReferenceFrame frame : frames)
+         {
+            RigidBodyTransform transform = new RigidBodyTransform();
+            frame.getTransformToDesiredFrame(transform, ReferenceFrame.getWorldFrame());
+            incrementalTransforms.add(transform);
+         }
+
+         fullRobotModel.updateFrames();
+         RigidBodyTransform expectedTransform = new RigidBodyTransform();
+         for (int i = 0; i < frames.size(); i++)
+         {
+            frames.get(i).getTransformToDesiredFrame(expectedTransform, ReferenceFrame.getWorldFrame());
+            Assertions.assertTrue(expectedTransform.epsilonEquals(incrementalTransforms.get(i), EPSILON), "Frame " + frames.get(i).getName() + " was not updated.");
+         }
+      }
+   }
+
+   private static void initializeRandomPose(PoseState poseState, SixDoFJoint rootJoint, Random random)
+   {
+      MovingReferenceFrame bodyFrame = rootJoint.getFrameAfterJoint();
+      RigidBodyTransform transform = EuclidCoreRandomTools.nextRigidBodyTransform(random);
+      Twist twist = MecanoRandomTools.nextTwist(random, bodyFrame, bodyFrame.getParent(), bodyFrame);
+      poseState.initialize(transform, twist);
+   }
+}
@@ -0,0 +1,80 @@
+package us.ihmc.ekf.robots;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.robots.HeadlessSimulationRunner.RobotType;
+import us.ihmc.ekf.robots.MonteCarloEvaluator.MonteCarloResult;
+
+public class MonteCarloEvaluatorTest
+{
+   private static final double SIMULATION_DT = 0.001;
+   private static final double DURATION = 0.1;
+
+   @BeforeAll
+   public static void disableGraphics()
+   {
+      RobotTools.setLoadGraphics(false);
+   }
+
+   @Test
+   public void testAggregation()
+   {
+      int realizations = 3;
+      MonteCarloResult single;
+      MonteCarloResult sequential;
+      MonteCarloResult parallel;
+      try (MonteCarloEvaluator sequentialEvaluator = createEvaluator(1); MonteCarloEvaluator parallelEvaluator = createEvaluator(realizations))
+      {
+         single = sequentialEvaluator.evaluate(1, 42L);
+         sequential = sequentialEvaluator.evaluate(realizations, 42L);
+         parallel = parallelEvaluator.evaluate(realizations, 42L);
+      }
+
+      // Every realization contributes the same number of samples.
+      int estimatorTicks = (int) Math.round(DURATION / SIMULATION_DT);
+      Assertions.assertEquals(1, single.getRealizations());
+      Assertions.assertEquals(estimatorTicks, single.getEstimatorTicks());
+      Assertions.assertTrue(single.getNeesDimension() > 0);
+      Assertions.assertTrue(single.getJointPositionError().getCount() > 0);
+      Assertions.assertEquals(realizations, sequential.getRealizations());
+      Assertions.assertEquals(single.getNeesDimension(), sequential.getNeesDimension());
+      Assertions.assertEquals(realizations * single.getJointPositionError().getCount(), sequential.getJointPositionError().getCount());
+      Assertions.assertEquals(realizations * single.getJointVelocityError().getCount(), sequential.getJointVelocityError().getCount());
+      Assertions.assertEquals(realizations * single.getNees().getCount(), sequential.getNees().getCount());
+      for (int tick = 0; tick < estimatorTicks; tick++)
+      {
+         Assertions.assertEquals(realizations * single.getNeesPerTick(tick).getCount(), sequential.getNeesPerTick(tick).getCount());
+      }
+
+      // The realizations are seeded so the result does not depend on how they are split between threads.
+      assertStatisticsEquals(sequential.getNees(), parallel.getNees());
+      assertStatisticsEquals(sequential.getNis(), parallel.getNis());
+      assertStatisticsEquals(sequential.getInnovationSize(), parallel.getInnovationSize());
+      assertStatisticsEquals(sequential.getJointPositionError(), parallel.getJointPositionError());
+      assertStatisticsEquals(sequential.getJointVelocityError(), parallel.getJointVelocityError());
+      for (int tick = 0; tick < estimatorTicks; tick++)
+      {
+         assertStatisticsEquals(sequential.getNeesPerTick(tick), parallel.getNeesPerTick(tick));
+      }
+   }
+
+   private static MonteCarloEvaluator createEvaluator(int parallelism)
+   {
+      return new MonteCarloEvaluator(RobotType.FIXED_BASE_ARM, SIMULATION_DT, 1, DURATION, registry ->
+      {
+      }, parallelism);
+   }
+
+   private static void assertStatisticsEquals(RunningStatistics expected, RunningStatistics actual)
+   {
+      // The merge order may differ so the values are only equal up to round off.
+      double epsilon = 1.0e-9;
+      Assertions.assertEquals(expected.getCount(), actual.getCount());
+      Assertions.assertEquals(expected.getMean(), actual.getMean(), epsilon * Math.max(1.0, Math.abs(expected.getMean())));
+      Assertions.assertEquals(expected.getVariance(), actual.getVariance(), epsilon * Math.max(1.0, Math.abs(expected.getVariance())));
+      Assertions.assertEquals(expected.getMin(), actual.getMin());
+      Assertions.assertEquals(expected.getMax(), actual.getMax());
+   }
+}
@@ -0,0 +1,174 @@
+package us.ihmc.ekf.robots;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import us.ihmc.ekf.robots.flyingBox.FlyingBoxRobot;
+import us.ihmc.ekf.robots.simpleArm.SimpleArmRobot;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.robotics.robotDescription.ForceSensorDescription;
+import us.ihmc.robotics.robotDescription.IMUSensorDescription;
+import us.ihmc.robotics.robotDescription.JointDescription;
+import us.ihmc.robotics.robotDescription.LinkDescription;
+import us.ihmc.robotics.robotDescription.OneDoFJointDescription;
+import us.ihmc.robotics.robotDescription.RobotDescription;
+
+public class RobotDescriptionCacheTest
+{
+   private static final double EPSILON = 0.0;
+
+   @Test
+   public void testFlyingBoxRoundTrip() throws IOException
+   {
+      testRoundTrip(FlyingBoxRobot.robotName);
+   }
+
+   @Test
+   public void testSimpleArmRoundTrip() throws IOException
+   {
+      testRoundTrip(SimpleArmRobot.robotName);
+   }
+
+   @Test
+   public void testInvalidCache() throws IOException
+   {
+      byte[] sdfContent = RobotTools.readResource(FlyingBoxRobot.robotName + ".sdf");
+      RobotDescription description = RobotTools.loadRobotDescription(FlyingBoxRobot.robotName, sdfContent, null);
+      byte[] hash = RobotDescriptionCache.computeHash(sdfContent);
+
+      Path cacheFile = Files.createTempFile("robotDescription", ".cache");
+      try
+      {
+         Assertions.assertTrue(RobotDescriptionCache.save(description, cacheFile, hash));
+
+         // A cache of a different model file is ignored.
+         byte[] otherHash = RobotDescriptionCache.computeHash(new byte[] {1, 2, 3});
+         Assertions.assertNull(RobotDescriptionCache.load(cacheFile, otherHash));
+
+         // A truncated cache is ignored.
+         byte[] content = Files.readAllBytes(cacheFile);
+         Files.write(cacheFile, Arrays.copyOf(content, content.length / 2));
+         Assertions.assertNull(RobotDescriptionCache.load(cacheFile, hash));
+
+         Files.delete(cacheFile);
+         Assertions.assertNull(RobotDescriptionCache.load(cacheFile, hash));
+      }
+      finally
+      {
+         Files.deleteIfExists(cacheFile);
+      }
+   }
+
+   private static void testRoundTrip(String robotName) throws IOException
+   {
+      byte[] sdfContent = RobotTools.readResource(robotName + ".sdf");
+      RobotDescription expected = RobotTools.loadRobotDescription(robotName, sdfContent, null);
+      byte[] hash = RobotDescriptionCache.computeHash(sdfContent);
+
+      Path cacheFile = Files.createTempFile(robotName, ".cache");
+      try
+      {
+         Assertions.assertTrue(RobotDescriptionCache.save(expected, cacheFile, hash));
+         RobotDescription actual = RobotDescriptionCache.load(cacheFile, hash);
+         Assertions.assertNotNull(actual);
+         Assertions.assertEquals(expected.getName(), actual.getName());
+         assertJointsEqual(expected.getRootJoints(), actual.getRootJoints());
+      }
+      finally
+      {
+         Files.deleteIfExists(cacheFile);
+      }
+   }
+
+   private static void assertJointsEqual(List<JointDescription> expectedJoints, List<JointDescription> actualJoints)
+   {
+      Assertions.assertEquals(expectedJoints.size(), actualJoints.size());
+      for (int i = 0; i < expectedJoints.size(); i++)
+      {
+         assertJointEquals(expectedJoints.get(i), actualJoints.get(i));
+      }
+   }
+
+   private static void assertJointEquals(JointDescription expected, JointDescription actual)
+   {
+      String name = expected.getName();
+      Assertions.assertEquals(name, actual.getName());
+      Assertions.assertEquals(expected.getClass(), actual.getClass(), name);
+      Assertions.assertEquals(expected.isDynamic(), actual.isDynamic(), name);
+
+      Vector3D expectedOffset = new Vector3D();
+      Vector3D actualOffset = new Vector3D();
+      expected.getOffsetFromParentJoint(expectedOffset);
+      actual.getOffsetFromParentJoint(actualOffset);
+      Assertions.assertTrue(expectedOffset.epsilonEquals(actualOffset, EPSILON), name);
+
+      if (expected instanceof OneDoFJointDescription)
+      {
+         OneDoFJointDescription expectedOneDoF = (OneDoFJointDescription) expected;
+         OneDoFJointDescription actualOneDoF = (OneDoFJointDescription) actual;
+         Vector3D expectedAxis = new Vector3D();
+         Vector3D actualAxis = new Vector3D();
+         expectedOneDoF.getJointAxis(expectedAxis);
+         actualOneDoF.getJointAxis(actualAxis);
+         Assertions.assertTrue(expectedAxis.epsilonEquals(actualAxis, EPSILON), name);
+         Assertions.assertEquals(expectedOneDoF.getDamping(), actualOneDoF.getDamping(), name);
+         Assertions.assertEquals(expectedOneDoF.getStiction(), actualOneDoF.getStiction(), name);
+         Assertions.assertEquals(expectedOneDoF.getEffortLimit(), actualOneDoF.getEffortLimit(), name);
+         Assertions.assertEquals(expectedOneDoF.getVelocityLimit(), actualOneDoF.getVelocityLimit(), name);
+         Assertions.assertEquals(expectedOneDoF.getVelocityDamping(), actualOneDoF.getVelocityDamping(), name);
+         Assertions.assertEquals(expectedOneDoF.containsLimitStops(), actualOneDoF.containsLimitStops(), name);
+         if (expectedOneDoF.containsLimitStops())
+         {
+            Assertions.assertArrayEquals(expectedOneDoF.getLimitStopParameters(), actualOneDoF.getLimitStopParameters(), name);
+         }
+      }
+
+      LinkDescription expectedLink = expected.getLink();
+      LinkDescription actualLink = actual.getLink();
+      Assertions.assertEquals(expectedLink.getName(), actualLink.getName(), name);
+      Assertions.assertEquals(expectedLink.getMass(), actualLink.getMass(), name);
+      Assertions.assertTrue(expectedLink.getCenterOfMassOffset().epsilonEquals(actualLink.getCenterOfMassOffset(), EPSILON), name);
+      Assertions.assertTrue(expectedLink.getMomentOfInertiaCopy().epsilonEquals(actualLink.getMomentOfInertiaCopy(), EPSILON), name);
+
+      List<IMUSensorDescription> expectedImus = expected.getIMUSensors();
+      List<IMUSensorDescription> actualImus = actual.getIMUSensors();
+      Assertions.assertEquals(expectedImus.size(), actualImus.size(), name);
+      for (int i = 0; i < expectedImus.size(); i++)
+      {
+         IMUSensorDescription expectedImu = expectedImus.get(i);
+         IMUSensorDescription actualImu = actualImus.get(i);
+         Assertions.assertEquals(expectedImu.getName(), actualImu.getName());
+         // The transform is stored as quaternion and translation so the rotation is only equal up to round off.
+         Assertions.assertTrue(expectedImu.getTransformToJoint().epsilonEquals(actualImu.getTransformToJoint(), 1.0e-12), expectedImu.getName());
+         Assertions.assertEquals(expectedImu.getAccelerationNoiseMean(), actualImu.getAccelerationNoiseMean());
+         Assertions.assertEquals(expectedImu.getAccelerationNoiseStandardDeviation(), actualImu.getAccelerationNoiseStandardDeviation());
+         Assertions.assertEquals(expectedImu.getAccelerationBiasMean(), actualImu.getAccelerationBiasMean());
+         Assertions.assertEquals(expectedImu.getAccelerationBiasStandardDeviation(), actualImu.getAccelerationBiasStandardDeviation());
+         Assertions.assertEquals(expectedImu.getAngularVelocityNoiseMean(), actualImu.getAngularVelocityNoiseMean());
+         Assertions.assertEquals(expectedImu.getAngularVelocityNoiseStandardDeviation(), actualImu.getAngularVelocityNoiseStandardDeviation());
+         Assertions.assertEquals(expectedImu.getAngularVelocityBiasMean(), actualImu.getAngularVelocityBiasMean());
+         Assertions.assertEquals(expectedImu.getAngularVelocityBiasStandardDeviation(), actualImu.getAngularVelocityBiasStandardDeviation());
+      }
+
+      List<ForceSensorDescription> expectedForceSensors = expected.getForceSensors();
+      List<ForceSensorDescription> actualForceSensors = actual.getForceSensors();
+      Assertions.assertEquals(expectedForceSensors.size(), actualForceSensors.size(), name);
+      for (int i = 0; i < expectedForceSensors.size(); i++)
+      {
+         ForceSensorDescription expectedForceSensor = expectedForceSensors.get(i);
+         ForceSensorDescription actualForceSensor = actualForceSensors.get(i);
+         Assertions.assertEquals(expectedForceSensor.getName(), actualForceSensor.getName());
+         Assertions.assertTrue(expectedForceSensor.getTransformToJoint().epsilonEquals(actualForceSensor.getTransformToJoint(), 1.0e-12));
+         Assertions.assertEquals(expectedForceSensor.getUseGroundContactPoints(), actualForceSensor.getUseGroundContactPoints());
+         Assertions.assertEquals(expectedForceSensor.getUseShapeCollision(), actualForceSensor.getUseShapeCollision());
+      }
+
+      assertJointsEqual(expected.getChildrenJoints(), actual.getChildrenJoints());
+   }
+}
@@ -0,0 +1,105 @@
+package us.ihmc.ekf.robots;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RunningStatisticsTest
+{
+   private static final double EPSILON = 1.0e-10;
+
+   @Test
+   public void testSinglePass()
+   {
+      double[] samples = {1.0, 4.0, -2.0, 3.5, 0.5};
+      RunningStatistics statistics = new RunningStatistics();
+      for (double sample : samples)
+      {
+         statistics.add(sample);
+      }
+
+      double mean = 0.0;
+      double meanSquare = 0.0;
+      for (double sample : samples)
+      {
+         mean += sample / samples.length;
+         meanSquare += sample * sample / samples.length;
+      }
+      double variance = 0.0;
+      for (double sample : samples)
+      {
+         variance += (sample - mean) * (sample - mean) / (samples.length - 1);
+      }
+
+      Assertions.assertEquals(samples.length, statistics.getCount());
+      Assertions.assertEquals(mean, statistics.getMean(), EPSILON);
+      Assertions.assertEquals(variance, statistics.getVariance(), EPSILON);
+      Assertions.assertEquals(Math.sqrt(meanSquare), statistics.getRootMeanSquare(), EPSILON);
+      Assertions.assertEquals(-2.0, statistics.getMin());
+      Assertions.assertEquals(4.0, statistics.getMax());
+   }
+
+   @Test
+   public void testMergeMatchesSinglePass()
+   {
+      Random random = new Random(3924L);
+      for (int iteration = 0; iteration < 100; iteration++)
+      {
+         RunningStatistics singlePass = new RunningStatistics();
+         RunningStatistics merged = new RunningStatistics();
+
+         // Split the samples into a random number of chunks of random size, some of them empty.
+         int chunks = 1 + random.nextInt(6);
+         for (int chunk = 0; chunk < chunks; chunk++)
+         {
+            RunningStatistics part = new RunningStatistics();
+            int samples = random.nextInt(20);
+            double offset = 100.0 * random.nextGaussian();
+            for (int i = 0; i < samples; i++)
+            {
+               double sample = offset + random.nextGaussian();
+               singlePass.add(sample);
+               part.add(sample);
+            }
+            merged.add(part);
+         }
+
+         Assertions.assertEquals(singlePass.getCount(), merged.getCount());
+         if (singlePass.getCount() == 0)
+         {
+            Assertions.assertTrue(Double.isNaN(merged.getMean()));
+            continue;
+         }
+         double scale = Math.max(1.0, Math.abs(singlePass.getMean()));
+         Assertions.assertEquals(singlePass.getMean(), merged.getMean(), EPSILON * scale);
+         Assertions.assertEquals(singlePass.getRootMeanSquare(), merged.getRootMeanSquare(), EPSILON * scale);
+         Assertions.assertEquals(singlePass.getMin(), merged.getMin());
+         Assertions.assertEquals(singlePass.getMax(), merged.getMax());
+         if (singlePass.getCount() > 1)
+         {
+            Assertions.assertEquals(singlePass.getVariance(), merged.getVariance(), EPSILON * Math.max(1.0, singlePass.getVariance()));
+         }
+      }
+   }
+
+   @Test
+   public void testMergeIntoEmpty()
+   {
+      RunningStatistics statistics = new RunningStatistics();
+      statistics.add(2.0);
+      statistics.add(5.0);
+
+      RunningStatistics empty = new RunningStatistics();
+      empty.add(statistics);
+      Assertions.assertEquals(2, empty.getCount());
+      Assertions.assertEquals(3.5, empty.getMean(), EPSILON);
+      Assertions.assertEquals(4.5, empty.getVariance(), EPSILON);
+      Assertions.assertEquals(2.0, empty.getMin());
+      Assertions.assertEquals(5.0, empty.getMax());
+
+      statistics.add(new RunningStatistics());
+      Assertions.assertEquals(2, statistics.getCount());
+      Assertions.assertEquals(3.5, statistics.getMean(), EPSILON);
+   }
+}
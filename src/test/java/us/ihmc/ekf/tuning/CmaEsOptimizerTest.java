@@ -0,0 +1,48 @@
+package us.ihmc.ekf.tuning;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CmaEsOptimizerTest
+{
+   @Test
+   public void testEllipsoid()
+   {
+      int dimension = 5;
+      double[] optimum = {1.0, -2.0, 0.5, 3.0, -1.0};
+
+      // A badly scaled and rotated quadratic requires the covariance adaptation to converge quickly.
+      CmaEsOptimizer.CostFunction ellipsoid = x ->
+      {
+         double cost = 0.0;
+         for (int i = 0; i < dimension; i++)
+         {
+            double rotated = (x[i] - optimum[i]) + 0.5 * (x[(i + 1) % dimension] - optimum[(i + 1) % dimension]);
+            cost += Math.pow(100.0, (double) i / (dimension - 1)) * rotated * rotated;
+         }
+         return cost;
+      };
+
+      CmaEsOptimizer optimizer = new CmaEsOptimizer(dimension, 12, 4382L);
+      double[] solution = optimizer.optimize(ellipsoid, new double[dimension], 1.0, 2000, new ForkJoinPool(2));
+
+      Assertions.assertTrue(optimizer.getBestCost() < 1.0e-10, "Cost " + optimizer.getBestCost() + " too high.");
+      for (int i = 0; i < dimension; i++)
+      {
+         Assertions.assertEquals(optimum[i], solution[i], 1.0e-4);
+      }
+   }
+
+   @Test
+   public void testReproducible()
+   {
+      CmaEsOptimizer.CostFunction sphere = x -> x[0] * x[0] + x[1] * x[1];
+      ForkJoinPool pool = new ForkJoinPool(4);
+
+      double[] first = new CmaEsOptimizer(2, 8, 12L).optimize(sphere, new double[] {3.0, 3.0}, 1.0, 20, pool);
+      double[] second = new CmaEsOptimizer(2, 8, 12L).optimize(sphere, new double[] {3.0, 3.0}, 1.0, 20, pool);
+      Assertions.assertArrayEquals(first, second, 0.0);
+   }
+}
@@ -1,27 +1,27 @@
 package us.ihmc.ekf.interfaces;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.ejml.data.DMatrixRMaj;
-
 import us.ihmc.commons.Conversions;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.publishing.EstimatorTelemetry;
+import us.ihmc.ekf.filter.publishing.StateTelemetryGroup;
+import us.ihmc.ekf.filter.sensor.Sensor;
 import us.ihmc.simulationconstructionset.util.RobotController;
 import us.ihmc.yoVariables.registry.YoRegistry;
 import us.ihmc.yoVariables.variable.YoDouble;
 
 public class EstimatorController implements RobotController
 {
+   /** The estimator internals are written to the telemetry every this many ticks. */
+   private static final int telemetryDecimation = 10;
+
    private final YoRegistry registry = new YoRegistry(getClass().getSimpleName());
 
    private final RobotSensorReader sensorReader;
    private final StateEstimator estimator;
    private final FullRobotModelRobotState fullRobotModelRobotState;
 
-   private final DMatrixRMaj stateVector = new DMatrixRMaj(0, 0);
-   private final List<YoDouble> yoState = new ArrayList<>();
+   private final EstimatorTelemetry telemetry;
 
    private final YoDouble estimationTime = new YoDouble("EstimationTimeMs", registry);
 
@@ -31,10 +31,16 @@ public class EstimatorController implements RobotController
       this.sensorReader = sensorReader;
       RobotState robotState = fullRobotModelRobotState.getRobotState();
       estimator = new StateEstimator(sensorReader.getSensors(), robotState, registry);
+      estimator.setTreeKinematicsCalculator(sensorReader.getTreeKinematicsCalculator());
 
-      for (int stateIdx = 0; stateIdx < robotState.getSize(); stateIdx++)
+      telemetry = new EstimatorTelemetry(registry);
+      telemetry.addGroup(new StateTelemetryGroup("x", robotState, registry), telemetryDecimation);
+      for (Sensor sensor : sensorReader.getSensors())
       {
-         yoState.add(new YoDouble("x" + stateIdx, registry));
+         if (sensor.getSensorState() != null)
+         {
+            telemetry.addGroup(new StateTelemetryGroup(sensor.getSensorState().getName(), sensor.getSensorState(), registry), telemetryDecimation);
+         }
       }
    }
 
@@ -46,21 +52,40 @@ public class EstimatorController implements RobotController
       sensorReader.read();
 
       estimator.predict();
-      fullRobotModelRobotState.setFullRobotModelFromState();
+      fullRobotModelRobotState.setFullRobotModelFromState(false);
+      // The sensors use the frames of the model so they must be up to date before the correction.
+      fullRobotModelRobotState.updateFrames();
 
       estimator.correct();
-      fullRobotModelRobotState.setFullRobotModelFromState();
+      // The frames are only needed for the next correction so they are updated together with the next prediction.
+      fullRobotModelRobotState.setFullRobotModelFromState(false);
 
-      RobotState robotState = fullRobotModelRobotState.getRobotState();
-      robotState.getStateVector(stateVector);
-      for (int stateIdx = 0; stateIdx < robotState.getSize(); stateIdx++)
-      {
-         yoState.get(stateIdx).set(stateVector.get(stateIdx));
-      }
+      // Publishes synchronously unless the telemetry was started on its own thread.
+      telemetry.update();
 
       estimationTime.set(Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime)));
    }
 
+   public StateEstimator getStateEstimator()
+   {
+      return estimator;
+   }
+
+   /**
+    * The telemetry publishes the state vector and the sensor states to YoVariables. By default this happens in
+    * {@link #doControl()} so the variables stay in sync with the simulation ticks. On a real-time system the telemetry
+    * can be started to publish on a background thread instead.
+    */
+   public EstimatorTelemetry getTelemetry()
+   {
+      return telemetry;
+   }
+
+   public RobotState getRobotState()
+   {
+      return fullRobotModelRobotState.getRobotState();
+   }
+
    @Override
    public void initialize()
    {
@@ -3,6 +3,8 @@ package us.ihmc.ekf.interfaces;
 import java.util.ArrayList;
 import java.util.List;
 
+import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ParameterTable;
 import us.ihmc.ekf.filter.RobotState;
 import us.ihmc.ekf.filter.state.implementations.JointState;
 import us.ihmc.ekf.filter.state.implementations.PoseState;
@@ -10,15 +12,34 @@ import us.ihmc.euclid.referenceFrame.ReferenceFrame;
 import us.ihmc.euclid.transform.RigidBodyTransform;
 import us.ihmc.mecano.multiBodySystem.RevoluteJoint;
 import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.multiBodySystem.interfaces.JointBasics;
 import us.ihmc.mecano.multiBodySystem.interfaces.OneDoFJointBasics;
 import us.ihmc.mecano.spatial.Twist;
 import us.ihmc.mecano.tools.MultiBodySystemTools;
+import us.ihmc.yoVariables.providers.DoubleProvider;
 import us.ihmc.yoVariables.registry.YoRegistry;
 
+/**
+ * Keeps a {@link FullRobotModel} in sync with the estimated {@link RobotState}.
+ * <p>
+ * To avoid updating the frames of the whole robot in every call the joint values written to the model are tracked.
+ * Only joints whose estimate changed by more than a threshold are written and only the frames of their subtrees are
+ * updated. Frame updates can also be deferred so that multiple state changes in one tick result in a single update.
+ * </p>
+ * <p>
+ * While an update is deferred the joint values of the model are current but its reference frames are not. The frames
+ * must be updated with {@link #updateFrames()} or a call to {@link #setFullRobotModelFromState()} before anything uses
+ * them. In particular this is required before the estimator corrects since the sensors compute their measurement models
+ * from the frames.
+ * </p>
+ */
 public class FullRobotModelRobotState
 {
+   // The root joint values that were last written to the model.
    private final RigidBodyTransform rootTransform = new RigidBodyTransform();
    private final Twist rootTwist = new Twist();
+   private final RigidBodyTransform estimatedRootTransform = new RigidBodyTransform();
+   private final Twist estimatedRootTwist = new Twist();
 
    private final RobotState robotState;
    private final PoseState poseState;
@@ -26,9 +47,17 @@ public class FullRobotModelRobotState
 
    private final FullRobotModel fullRobotModel;
 
+   private final DoubleProvider jointPositionThreshold;
+   private final DoubleProvider jointVelocityThreshold;
+   private final int[] parentJointIndices;
+   private final boolean[] isJointDirty;
+   private boolean isRootJointDirty = false;
+
    public FullRobotModelRobotState(double dt, FullRobotModel fullRobotModel, YoRegistry registry)
    {
       this.fullRobotModel = fullRobotModel;
+      jointPositionThreshold = FilterTools.findOrCreate("ModelJointPositionUpdateThreshold", registry, 0.0);
+      jointVelocityThreshold = FilterTools.findOrCreate("ModelJointVelocityUpdateThreshold", registry, 0.0);
 
       OneDoFJointBasics[] robotJoints = fullRobotModel.getBodyJointsInOrder();
       RevoluteJoint[] revoluteJoints = MultiBodySystemTools.filterJoints(robotJoints, RevoluteJoint.class);
@@ -55,14 +84,34 @@ public class FullRobotModelRobotState
          poseState = null;
       }
 
+      ParameterTable parameters = new ParameterTable(registry);
       for (OneDoFJointBasics joint : robotJoints)
       {
-         JointState jointState = new JointState(joint.getName(), dt, registry);
+         JointState jointState = new JointState(joint.getName(), dt, parameters);
          jointState.initialize(joint.getQ(), joint.getQd());
          jointStates.add(jointState);
       }
 
       robotState = new RobotState(poseState, jointStates);
+
+      parentJointIndices = new int[robotJoints.length];
+      isJointDirty = new boolean[robotJoints.length];
+      for (int i = 0; i < robotJoints.length; i++)
+      {
+         parentJointIndices[i] = indexOf(robotJoints[i].getPredecessor().getParentJoint(), robotJoints);
+      }
+   }
+
+   private static int indexOf(JointBasics joint, OneDoFJointBasics[] joints)
+   {
+      for (int i = 0; i < joints.length; i++)
+      {
+         if (joints[i] == joint)
+         {
+            return i;
+         }
+      }
+      return -1;
    }
 
    public RobotState getRobotState()
@@ -70,17 +119,41 @@ public class FullRobotModelRobotState
       return robotState;
    }
 
+   /**
+    * Writes the estimated state to the robot model and updates the frames of all joints that changed.
+    */
    public void setFullRobotModelFromState()
+   {
+      setFullRobotModelFromState(true);
+   }
+
+   /**
+    * Writes the estimated state to the robot model. Joints whose position and velocity did not change by more than
+    * the respective threshold are not modified. The same thresholds are applied to the entries of the root joint pose
+    * and twist.
+    *
+    * @param updateFrames whether to update the frames of the modified subtrees. If {@code false} the modified joints are
+    *           remembered and the frames of the model are stale until {@link #updateFrames()} is called or this method
+    *           is called with {@code true}.
+    */
+   public void setFullRobotModelFromState(boolean updateFrames)
    {
       SixDoFJoint rootJoint = fullRobotModel.getRootJoint();
       boolean isFloating = rootJoint != null;
       if (isFloating)
       {
-         poseState.getTransform(rootTransform);
-         rootJoint.setJointConfiguration(rootTransform);
-
-         poseState.getTwist(rootTwist);
-         rootJoint.setJointTwist(rootTwist);
+         poseState.getTransform(estimatedRootTransform);
+         poseState.getTwist(estimatedRootTwist);
+         boolean poseChanged = !estimatedRootTransform.epsilonEquals(rootTransform, jointPositionThreshold.getValue());
+         boolean twistChanged = !estimatedRootTwist.epsilonEquals(rootTwist, jointVelocityThreshold.getValue());
+         if (poseChanged || twistChanged)
+         {
+            rootTransform.set(estimatedRootTransform);
+            rootJoint.setJointConfiguration(rootTransform);
+            rootTwist.setIncludingFrame(estimatedRootTwist);
+            rootJoint.setJointTwist(rootTwist);
+            isRootJointDirty = true;
+         }
       }
 
       OneDoFJointBasics[] robotJoints = fullRobotModel.getBodyJointsInOrder();
@@ -88,10 +161,83 @@ public class FullRobotModelRobotState
       {
          OneDoFJointBasics joint = robotJoints[i];
          JointState jointState = jointStates.get(i);
-         joint.setQ(jointState.getQ());
-         joint.setQd(jointState.getQd());
+         boolean positionChanged = Math.abs(jointState.getQ() - joint.getQ()) > jointPositionThreshold.getValue();
+         boolean velocityChanged = Math.abs(jointState.getQd() - joint.getQd()) > jointVelocityThreshold.getValue();
+         if (positionChanged || velocityChanged)
+         {
+            joint.setQ(jointState.getQ());
+            joint.setQd(jointState.getQd());
+            isJointDirty[i] = true;
+         }
+      }
+
+      if (updateFrames)
+      {
+         updateFrames();
       }
+   }
 
-      fullRobotModel.updateFrames();
+   /**
+    * @return whether joints of the model were modified without updating their frames.
+    */
+   public boolean hasPendingFrameUpdate()
+   {
+      if (isRootJointDirty)
+      {
+         return true;
+      }
+      for (int i = 0; i < isJointDirty.length; i++)
+      {
+         if (isJointDirty[i])
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Updates the frames of the subtrees of all joints that were modified since the last frame update. Afterwards the
+    * frames of the model are the same as after a call to {@link FullRobotModel#updateFrames()}.
+    */
+   public void updateFrames()
+   {
+      if (isRootJointDirty)
+      {
+         // The root joint moves the whole robot.
+         fullRobotModel.updateFrames();
+      }
+      else
+      {
+         OneDoFJointBasics[] robotJoints = fullRobotModel.getBodyJointsInOrder();
+         for (int i = 0; i < robotJoints.length; i++)
+         {
+            // The subtree of a joint is already updated with the subtree of a modified ancestor.
+            if (isJointDirty[i] && !hasDirtyAncestor(i))
+            {
+               robotJoints[i].updateFramesRecursively();
+            }
+         }
+      }
+
+      isRootJointDirty = false;
+      for (int i = 0; i < isJointDirty.length; i++)
+      {
+         isJointDirty[i] = false;
+      }
+   }
+
+   private boolean hasDirtyAncestor(int jointIndex)
+   {
+      int parentIndex = parentJointIndices[jointIndex];
+      while (parentIndex >= 0)
+      {
+         if (isJointDirty[parentIndex])
+         {
+            return true;
+         }
+         parentIndex = parentJointIndices[parentIndex];
+      }
+      return false;
    }
 }
@@ -2,7 +2,7 @@ package us.ihmc.ekf.interfaces;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import us.ihmc.ekf.filter.sensor.implementations.AngularVelocitySensor;
 import us.ihmc.ekf.filter.sensor.implementations.JointPositionSensor;
@@ -29,17 +29,20 @@ public class MeasurementCorruptor
    private static final double angularVelocityRandomWalk = 1.0e-7;
    private static final double linearAccelerationRandomWalk = 1.0e-6;
 
-   private final Random random = new Random(1L);
+   // Each sensor draws its noise from an independent stream split off this generator.
+   private final SplittableRandom random;
 
    private final List<JointPositionSensor> jointPositionSensors = new ArrayList<>();
    private final List<OneDegreeOfFreedomJoint> simulatedJoints = new ArrayList<>();
 
    private final List<AngularVelocitySensor> angularVelocitySensors = new ArrayList<>();
    private final List<Vector3DBasics> angularVelocityBias = new ArrayList<>();
+   private final List<SplittableRandom> angularVelocityRandoms = new ArrayList<>();
    private final List<IMUMount> simulatedIMUsForAngularVelocity = new ArrayList<>();
 
    private final List<LinearAccelerationSensor> linearAccelerationSensors = new ArrayList<>();
    private final List<Vector3DBasics> linearAccelerationBias = new ArrayList<>();
+   private final List<SplittableRandom> linearAccelerationRandoms = new ArrayList<>();
    private final List<IMUMount> simulatedIMUsForLinearAcceleration = new ArrayList<>();
 
    private final Vector3D tempNoise = new Vector3D();
@@ -48,9 +51,19 @@ public class MeasurementCorruptor
    private final double sqrtHz;
 
    public MeasurementCorruptor(double dt)
+   {
+      this(dt, 1L);
+   }
+
+   /**
+    * @param dt the sensor update period.
+    * @param seed the seed of the noise. Corruptors with the same seed and sensors produce the same noise.
+    */
+   public MeasurementCorruptor(double dt, long seed)
    {
       // ~31.6 for 1Khz
       sqrtHz = 1.0 / Math.sqrt(dt);
+      random = new SplittableRandom(seed);
    }
 
    public void addJointPositionSensor(JointPositionSensor sensor, OneDegreeOfFreedomJoint simulatedJoint)
@@ -64,6 +77,7 @@ public class MeasurementCorruptor
       angularVelocitySensors.add(sensor);
       angularVelocityBias.add(new YoFrameVector3D("TrueBias" + angularVelocityBias.size() + "AngularVelocity", null, registry));
       simulatedIMUsForAngularVelocity.add(simulatedImu);
+      angularVelocityRandoms.add(random.split());
    }
 
    public void addLinearAccelerationSensor(LinearAccelerationSensor sensor, IMUMount simulatedImu, YoRegistry registry)
@@ -71,6 +85,7 @@ public class MeasurementCorruptor
       linearAccelerationSensors.add(sensor);
       linearAccelerationBias.add(new YoFrameVector3D("TrueBias" + linearAccelerationBias.size() + "LinearAcceleration", null, registry));
       simulatedIMUsForLinearAcceleration.add(simulatedImu);
+      linearAccelerationRandoms.add(random.split());
    }
 
    public void corrupt()
@@ -84,39 +99,58 @@ public class MeasurementCorruptor
 
       for (int sensorIndex = 0; sensorIndex < angularVelocitySensors.size(); sensorIndex++)
       {
-         createGaussianNoise(angularVelocitySensorVariance, tempNoise);
+         SplittableRandom sensorRandom = angularVelocityRandoms.get(sensorIndex);
+         createGaussianNoise(sensorRandom, angularVelocitySensorVariance, tempNoise);
          simulatedIMUsForAngularVelocity.get(sensorIndex).getAngularVelocityInBody(tempMeasurement);
          tempMeasurement.add(angularVelocityBias.get(sensorIndex));
          tempMeasurement.add(tempNoise);
          angularVelocitySensors.get(sensorIndex).setMeasurement(tempMeasurement);
 
-         createGaussianNoise(angularVelocityRandomWalk, tempNoise);
+         createGaussianNoise(sensorRandom, angularVelocityRandomWalk, tempNoise);
          angularVelocityBias.get(sensorIndex).add(tempNoise);
       }
 
       for (int sensorIndex = 0; sensorIndex < linearAccelerationSensors.size(); sensorIndex++)
       {
-         createGaussianNoise(linearAccelerationSensorVariance, tempNoise);
+         SplittableRandom sensorRandom = linearAccelerationRandoms.get(sensorIndex);
+         createGaussianNoise(sensorRandom, linearAccelerationSensorVariance, tempNoise);
          simulatedIMUsForLinearAcceleration.get(sensorIndex).getLinearAccelerationInBody(tempMeasurement);
          tempMeasurement.add(linearAccelerationBias.get(sensorIndex));
          tempMeasurement.add(tempNoise);
          linearAccelerationSensors.get(sensorIndex).setMeasurement(tempMeasurement);
 
-         createGaussianNoise(linearAccelerationRandomWalk, tempNoise);
+         createGaussianNoise(sensorRandom, linearAccelerationRandomWalk, tempNoise);
          linearAccelerationBias.get(sensorIndex).add(tempNoise);
       }
    }
 
-   private void createGaussianNoise(double variance, Vector3DBasics noiseToPack)
+   private void createGaussianNoise(SplittableRandom random, double variance, Vector3DBasics noiseToPack)
    {
       for (int i = 0; i < 3; i++)
       {
-         noiseToPack.setElement(i, createGaussianNoise(variance));
+         noiseToPack.setElement(i, createGaussianNoise(random, variance));
       }
    }
 
-   private double createGaussianNoise(double variance)
+   private double createGaussianNoise(SplittableRandom random, double variance)
+   {
+      return nextGaussian(random) * Math.sqrt(variance * sqrtHz);
+   }
+
+   /**
+    * Samples a standard normal distribution using the polar method since {@link SplittableRandom} does not provide
+    * Gaussian samples.
+    */
+   private static double nextGaussian(SplittableRandom random)
    {
-      return random.nextGaussian() * Math.sqrt(variance * sqrtHz);
+      double v1, v2, s;
+      do
+      {
+         v1 = 2.0 * random.nextDouble() - 1.0;
+         v2 = 2.0 * random.nextDouble() - 1.0;
+         s = v1 * v1 + v2 * v2;
+      }
+      while (s >= 1.0 || s == 0.0);
+      return v1 * Math.sqrt(-2.0 * Math.log(s) / s);
    }
 }
@@ -3,10 +3,20 @@ package us.ihmc.ekf.interfaces;
 import java.util.List;
 
 import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.sensor.TreeKinematicsCalculator;
 
 public interface RobotSensorReader
 {
    public abstract void read();
 
    public abstract List<Sensor> getSensors();
+
+   /**
+    * @return the kinematics calculator shared by the sensors or {@code null} if the sensors compute their kinematics
+    *         individually.
+    */
+   public default TreeKinematicsCalculator getTreeKinematicsCalculator()
+   {
+      return null;
+   }
 }
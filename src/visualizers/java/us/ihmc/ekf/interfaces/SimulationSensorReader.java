@@ -6,7 +6,9 @@ import java.util.List;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
 import us.ihmc.ekf.filter.FilterTools;
+import us.ihmc.ekf.filter.ParameterTable;
 import us.ihmc.ekf.filter.sensor.Sensor;
+import us.ihmc.ekf.filter.sensor.TreeKinematicsCalculator;
 import us.ihmc.ekf.filter.sensor.implementations.AngularVelocitySensor;
 import us.ihmc.ekf.filter.sensor.implementations.JointPositionSensor;
 import us.ihmc.ekf.filter.sensor.implementations.LinearAccelerationSensor;
@@ -35,27 +37,42 @@ public class SimulationSensorReader implements RobotSensorReader
    private final List<ImmutablePair<IMUMount, LinearAccelerationSensor>> linearAccelerationSensors = new ArrayList<>();
 
    private final MeasurementCorruptor measurementCorruptor;
+   private final TreeKinematicsCalculator treeKinematics;
 
    public SimulationSensorReader(RobotFromDescription robot, FullRobotModel fullRobotModel, double dt, boolean addBaseVelocitySensor)
    {
-      addJointPositionSensorsRecursive(dt, robot.getRootJoints().get(0), jointPositionSensors, registry);
+      this(robot, fullRobotModel, dt, addBaseVelocitySensor, 1L);
+   }
+
+   /**
+    * @param noiseSeed the seed of the simulated sensor noise. Allows running independent noise realizations.
+    */
+   public SimulationSensorReader(RobotFromDescription robot, FullRobotModel fullRobotModel, double dt, boolean addBaseVelocitySensor, long noiseSeed)
+   {
+      treeKinematics = new TreeKinematicsCalculator(fullRobotModel.getElevator());
+
+      addJointPositionSensorsRecursive(dt, robot.getRootJoints().get(0), jointPositionSensors, new ParameterTable(registry));
       jointPositionSensors.stream().forEach(s -> allSensors.add(s.getRight()));
 
       fullRobotModel.getImuDefinitions().stream().forEach(imu -> addIMUSensor(dt, imu, robot, angularVelocitySensors, linearAccelerationSensors, registry));
       angularVelocitySensors.stream().forEach(s -> allSensors.add(s.getRight()));
       linearAccelerationSensors.stream().forEach(s -> allSensors.add(s.getRight()));
+      angularVelocitySensors.stream().forEach(s -> s.getRight().setTreeKinematicsCalculator(treeKinematics));
+      linearAccelerationSensors.stream().forEach(s -> s.getRight().setTreeKinematicsCalculator(treeKinematics));
 
       // This adds a zero velocity sensor to the base of the robot.
       if (addBaseVelocitySensor)
       {
          RigidBodyBasics baseBody = fullRobotModel.getRootJoint().getSuccessor();
          String sensorName = FilterTools.stringToPrefix(baseBody.getName()) + "LinearVelocity";
-         allSensors.add(new LinearVelocitySensor(sensorName, dt, baseBody, baseBody.getBodyFixedFrame(), false, registry));
+         LinearVelocitySensor baseVelocitySensor = new LinearVelocitySensor(sensorName, dt, baseBody, baseBody.getBodyFixedFrame(), false, registry);
+         baseVelocitySensor.setTreeKinematicsCalculator(treeKinematics);
+         allSensors.add(baseVelocitySensor);
       }
 
       if (addSimulatedNoise)
       {
-         measurementCorruptor = new MeasurementCorruptor(dt);
+         measurementCorruptor = new MeasurementCorruptor(dt, noiseSeed);
          jointPositionSensors.forEach(pair -> measurementCorruptor.addJointPositionSensor(pair.getRight(), pair.getLeft()));
          angularVelocitySensors.forEach(pair -> measurementCorruptor.addAngularVelocitySensor(pair.getRight(), pair.getLeft(), registry));
          linearAccelerationSensors.forEach(pair -> measurementCorruptor.addLinearAccelerationSensor(pair.getRight(), pair.getLeft(), registry));
@@ -93,13 +110,13 @@ public class SimulationSensorReader implements RobotSensorReader
    }
 
    private static void addJointPositionSensorsRecursive(double dt, Joint joint, List<ImmutablePair<PinJoint, JointPositionSensor>> sensors,
-                                                        YoRegistry registry)
+                                                        ParameterTable parameters)
    {
       if (joint instanceof PinJoint)
       {
          PinJoint pinJoint = (PinJoint) joint;
          String jointName = pinJoint.getName();
-         JointPositionSensor sensor = new JointPositionSensor(jointName, dt, registry);
+         JointPositionSensor sensor = new JointPositionSensor(jointName, dt, parameters);
          sensors.add(new ImmutablePair<>(pinJoint, sensor));
          LogTools.info("Created joint position sensor for '" + jointName + "'");
       }
@@ -110,7 +127,7 @@ public class SimulationSensorReader implements RobotSensorReader
 
       for (Joint child : joint.getChildrenJoints())
       {
-         addJointPositionSensorsRecursive(dt, child, sensors, registry);
+         addJointPositionSensorsRecursive(dt, child, sensors, parameters);
       }
    }
 
@@ -156,6 +173,12 @@ public class SimulationSensorReader implements RobotSensorReader
       return allSensors;
    }
 
+   @Override
+   public TreeKinematicsCalculator getTreeKinematicsCalculator()
+   {
+      return treeKinematics;
+   }
+
    public YoRegistry getRegistry()
    {
       return registry;
@@ -0,0 +1,543 @@
+package us.ihmc.ekf.robots;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import us.ihmc.commons.Conversions;
+import us.ihmc.ekf.interfaces.EstimatorController;
+import us.ihmc.ekf.interfaces.FullRobotModel;
+import us.ihmc.ekf.interfaces.SimulationSensorReader;
+import us.ihmc.ekf.robots.fixedBaseArm.FixedBaseArmRobot;
+import us.ihmc.ekf.robots.flyingBox.FlyingBoxRobot;
+import us.ihmc.ekf.robots.simpleArm.SimpleArmController;
+import us.ihmc.ekf.robots.simpleArm.SimpleArmRobot;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.mecano.multiBodySystem.SixDoFJoint;
+import us.ihmc.mecano.multiBodySystem.interfaces.OneDoFJointBasics;
+import us.ihmc.simulationconstructionset.FloatingRootJointRobot;
+import us.ihmc.simulationconstructionset.OneDegreeOfFreedomJoint;
+import us.ihmc.simulationconstructionset.RobotFromDescription;
+import us.ihmc.simulationconstructionset.UnreasonableAccelerationException;
+import us.ihmc.simulationconstructionset.util.RobotController;
+import us.ihmc.yoVariables.parameters.XmlParameterReader;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Runs the example simulations without the Simulation Construction Set GUI. The simulation and the estimator are
+ * stepped as fast as possible and multiple scenarios are run in parallel, each with its own robot and registry. For
+ * each scenario the estimation errors with respect to the simulated robot are summarized.
+ * <p>
+ * The runner owns the threads that step the scenarios in parallel and must be closed once it is no longer needed.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class HeadlessSimulationRunner implements AutoCloseable
+{
+   static final String parameterFile = "parameters.xml";
+
+   /**
+    * The example robots that can be simulated.
+    */
+   public enum RobotType
+   {
+      FLYING_BOX, SIMPLE_ARM, FIXED_BASE_ARM
+   }
+
+   /**
+    * A single simulation run of a robot.
+    */
+   public static class Scenario
+   {
+      private final String name;
+      private final RobotType robotType;
+      private final double duration;
+      private final Consumer<YoRegistry> parameterModifier;
+      private final long noiseSeed;
+
+      public Scenario(String name, RobotType robotType, double duration)
+      {
+         this(name, robotType, duration, registry ->
+         {
+         });
+      }
+
+      /**
+       * @param name the name of the scenario used in the summary.
+       * @param robotType the robot to simulate.
+       * @param duration the simulated time in seconds.
+       * @param parameterModifier called with the registry of the estimator after the default parameters were loaded.
+       *           Allows changing the estimator tuning per scenario.
+       */
+      public Scenario(String name, RobotType robotType, double duration, Consumer<YoRegistry> parameterModifier)
+      {
+         this(name, robotType, duration, parameterModifier, 1L);
+      }
+
+      /**
+       * @param name the name of the scenario used in the summary.
+       * @param robotType the robot to simulate.
+       * @param duration the simulated time in seconds.
+       * @param parameterModifier called with the registry of the estimator after the default parameters were loaded.
+       * @param noiseSeed the seed of the simulated sensor noise.
+       */
+      public Scenario(String name, RobotType robotType, double duration, Consumer<YoRegistry> parameterModifier, long noiseSeed)
+      {
+         this.name = name;
+         this.robotType = robotType;
+         this.duration = duration;
+         this.parameterModifier = parameterModifier;
+         this.noiseSeed = noiseSeed;
+      }
+
+      public String getName()
+      {
+         return name;
+      }
+
+      public RobotType getRobotType()
+      {
+         return robotType;
+      }
+
+      public double getDuration()
+      {
+         return duration;
+      }
+
+      public Consumer<YoRegistry> getParameterModifier()
+      {
+         return parameterModifier;
+      }
+
+      public long getNoiseSeed()
+      {
+         return noiseSeed;
+      }
+   }
+
+   /**
+    * The summarized estimation errors of a scenario.
+    */
+   public static class ScenarioResult
+   {
+      public static final String CSV_HEADER = "name,ticks,wallTimeMs,jointPositionRms,jointPositionMax,jointVelocityRms,rootPositionRms";
+
+      private final String name;
+      private final int ticks;
+      private final double wallTimeMs;
+      private final double jointPositionRms;
+      private final double jointPositionMax;
+      private final double jointVelocityRms;
+      private final double rootPositionRms;
+
+      public ScenarioResult(String name, int ticks, double wallTimeMs, double jointPositionRms, double jointPositionMax, double jointVelocityRms,
+                            double rootPositionRms)
+      {
+         this.name = name;
+         this.ticks = ticks;
+         this.wallTimeMs = wallTimeMs;
+         this.jointPositionRms = jointPositionRms;
+         this.jointPositionMax = jointPositionMax;
+         this.jointVelocityRms = jointVelocityRms;
+         this.rootPositionRms = rootPositionRms;
+      }
+
+      public String getName()
+      {
+         return name;
+      }
+
+      public int getTicks()
+      {
+         return ticks;
+      }
+
+      public double getWallTimeMs()
+      {
+         return wallTimeMs;
+      }
+
+      public double getJointPositionRms()
+      {
+         return jointPositionRms;
+      }
+
+      public double getJointPositionMax()
+      {
+         return jointPositionMax;
+      }
+
+      public double getJointVelocityRms()
+      {
+         return jointVelocityRms;
+      }
+
+      /**
+       * @return the RMS error of the root position or {@code NaN} for fixed base robots.
+       */
+      public double getRootPositionRms()
+      {
+         return rootPositionRms;
+      }
+
+      public String toCsvLine()
+      {
+         return name + "," + ticks + "," + wallTimeMs + "," + jointPositionRms + "," + jointPositionMax + "," + jointVelocityRms + "," + rootPositionRms;
+      }
+   }
+
+   private final double simulationDT;
+   private final int ticksPerEstimatorTick;
+   private final ForkJoinPool pool;
+
+   /**
+    * @param simulationDT the time step of the simulation.
+    * @param ticksPerEstimatorTick the number of simulation ticks per estimator tick.
+    * @param parallelism the number of scenarios that are simulated at the same time.
+    */
+   public HeadlessSimulationRunner(double simulationDT, int ticksPerEstimatorTick, int parallelism)
+   {
+      this.simulationDT = simulationDT;
+      this.ticksPerEstimatorTick = ticksPerEstimatorTick;
+      this.pool = new ForkJoinPool(parallelism);
+   }
+
+   /**
+    * Runs all scenarios in parallel and blocks until they are done. The robots are created one after the other before
+    * the simulations are stepped in parallel.
+    *
+    * @return the results in the order of the scenarios.
+    */
+   public List<ScenarioResult> run(List<Scenario> scenarios)
+   {
+      List<SimulatedRobot> simulatedRobots = new ArrayList<>();
+      for (Scenario scenario : scenarios)
+      {
+         simulatedRobots.add(createRobot(scenario));
+      }
+
+      try
+      {
+         return pool.submit(() -> IntStream.range(0, scenarios.size()).parallel().mapToObj(i -> simulate(scenarios.get(i), simulatedRobots.get(i)))
+                                           .collect(Collectors.toList()))
+                    .get();
+      }
+      catch (InterruptedException | ExecutionException e)
+      {
+         throw new RuntimeException("Failed to run scenarios.", e);
+      }
+   }
+
+   /**
+    * Runs a single scenario on the calling thread.
+    */
+   public ScenarioResult run(Scenario scenario)
+   {
+      return simulate(scenario, createRobot(scenario));
+   }
+
+   /**
+    * Stops the threads of this runner. Scenarios that are running are completed.
+    */
+   @Override
+   public void close()
+   {
+      pool.shutdown();
+   }
+
+   private SimulatedRobot createRobot(Scenario scenario)
+   {
+      return new SimulatedRobot(scenario.getRobotType(), simulationDT, ticksPerEstimatorTick, scenario.getNoiseSeed(), scenario.getParameterModifier());
+   }
+
+   private ScenarioResult simulate(Scenario scenario, SimulatedRobot simulatedRobot)
+   {
+      ErrorAccumulator errors = new ErrorAccumulator(simulatedRobot.getRobot(), simulatedRobot.getFullRobotModel());
+      int ticks = (int) Math.round(scenario.getDuration() / simulationDT);
+
+      simulatedRobot.setEstimatorListener(errors::accumulate);
+
+      long startTime = System.nanoTime();
+      for (int tick = 0; tick < ticks; tick++)
+      {
+         simulatedRobot.step();
+      }
+      double wallTimeMs = Conversions.nanosecondsToMilliseconds((double) (System.nanoTime() - startTime));
+
+      return new ScenarioResult(scenario.getName(), ticks, wallTimeMs, errors.getJointPositionRms(), errors.getJointPositionMax(),
+                                errors.getJointVelocityRms(), errors.getRootPositionRms());
+   }
+
+   /**
+    * One of the example robots together with its estimator that can be stepped without the simulation GUI.
+    */
+   public static class SimulatedRobot
+   {
+      private static final Object constructionLock = new Object();
+
+      private final RobotFromDescription robot;
+      private final FullRobotModel fullRobotModel;
+      private final EstimatorController estimatorController;
+      private final RobotController motionController;
+
+      private final double simulationDT;
+      private final int ticksPerEstimatorTick;
+      private int tick = 0;
+      private Runnable estimatorListener = null;
+
+      /**
+       * @param robotType the robot to simulate.
+       * @param simulationDT the time step of the simulation.
+       * @param ticksPerEstimatorTick the number of simulation ticks per estimator tick.
+       * @param noiseSeed the seed of the simulated sensor noise.
+       * @param parameterModifier called with the registry of the estimator after the default parameters were loaded.
+       */
+      public SimulatedRobot(RobotType robotType, double simulationDT, int ticksPerEstimatorTick, long noiseSeed, Consumer<YoRegistry> parameterModifier)
+      {
+         this.simulationDT = simulationDT;
+         this.ticksPerEstimatorTick = ticksPerEstimatorTick;
+
+         // The robots, the models, and the estimator create reference frames under the shared world frame. This is not
+         // thread safe so robots must be created one at a time.
+         synchronized (constructionLock)
+         {
+            boolean addBaseVelocitySensor = false;
+            switch (robotType)
+            {
+            case FLYING_BOX:
+               FlyingBoxRobot flyingBoxRobot = new FlyingBoxRobot();
+               robot = flyingBoxRobot.getRobot();
+               fullRobotModel = flyingBoxRobot.createFullRobotModel();
+               motionController = null;
+               break;
+            case SIMPLE_ARM:
+               SimpleArmRobot simpleArmRobot = new SimpleArmRobot();
+               FloatingRootJointRobot simpleArm = simpleArmRobot.getRobot();
+               robot = simpleArm;
+               fullRobotModel = simpleArmRobot.createFullRobotModel();
+               addBaseVelocitySensor = true;
+               motionController = new SimpleArmController(simpleArm);
+               break;
+            case FIXED_BASE_ARM:
+               FixedBaseArmRobot fixedBaseArmRobot = new FixedBaseArmRobot();
+               robot = fixedBaseArmRobot.getRobot();
+               fullRobotModel = fixedBaseArmRobot.createFullRobotModel();
+               motionController = null;
+               break;
+            default:
+               throw new RuntimeException("Unknown robot type " + robotType);
+            }
+            fullRobotModel.initialize(robot);
+
+            double estimatorDT = simulationDT * ticksPerEstimatorTick;
+            SimulationSensorReader sensorReader = new SimulationSensorReader(robot, fullRobotModel, estimatorDT, addBaseVelocitySensor, noiseSeed);
+            estimatorController = new EstimatorController(sensorReader, fullRobotModel, estimatorDT);
+            // Headless runs are evaluated from the results so the debug telemetry is not needed.
+            estimatorController.getTelemetry().setEnabled(false);
+
+            YoRegistry registry = estimatorController.getYoRegistry();
+            registry.addChild(sensorReader.getRegistry());
+            try (InputStream parameterStream = getClass().getClassLoader().getResourceAsStream(parameterFile))
+            {
+               new XmlParameterReader(parameterStream).readParametersInRegistry(registry);
+            }
+            catch (IOException e)
+            {
+               throw new RuntimeException("Failed to read " + parameterFile, e);
+            }
+            parameterModifier.accept(registry);
+         }
+      }
+
+      /**
+       * Sets a listener that is called after each estimator tick before the dynamics are integrated. At that point the
+       * estimate and the simulated robot refer to the same time.
+       */
+      public void setEstimatorListener(Runnable estimatorListener)
+      {
+         this.estimatorListener = estimatorListener;
+      }
+
+      /**
+       * Advances the simulation by one tick running the controllers before the dynamics as in the simulation.
+       *
+       * @return whether the estimator was run in this tick.
+       */
+      public boolean step()
+      {
+         boolean estimatorTick = tick % ticksPerEstimatorTick == 0;
+         if (estimatorTick)
+         {
+            estimatorController.doControl();
+            if (estimatorListener != null)
+            {
+               estimatorListener.run();
+            }
+         }
+         if (motionController != null)
+         {
+            motionController.doControl();
+         }
+
+         try
+         {
+            robot.doDynamicsAndIntegrate(simulationDT);
+         }
+         catch (UnreasonableAccelerationException e)
+         {
+            throw new RuntimeException("Simulation failed at tick " + tick, e);
+         }
+
+         tick++;
+         return estimatorTick;
+      }
+
+      public RobotFromDescription getRobot()
+      {
+         return robot;
+      }
+
+      public FullRobotModel getFullRobotModel()
+      {
+         return fullRobotModel;
+      }
+
+      public EstimatorController getEstimatorController()
+      {
+         return estimatorController;
+      }
+   }
+
+   /**
+    * Writes the results as CSV file with one line per scenario.
+    */
+   public static void writeSummary(List<ScenarioResult> results, Path file) throws IOException
+   {
+      List<String> lines = new ArrayList<>();
+      lines.add(ScenarioResult.CSV_HEADER);
+      results.forEach(result -> lines.add(result.toCsvLine()));
+      Files.write(file, lines);
+   }
+
+   /**
+    * Compares the estimated robot model to the simulated robot.
+    */
+   private static class ErrorAccumulator
+   {
+      private final OneDoFJointBasics[] estimatedJoints;
+      private final OneDegreeOfFreedomJoint[] simulatedJoints;
+      private final SixDoFJoint estimatedRootJoint;
+      private final FloatingRootJointRobot floatingRobot;
+
+      private final RigidBodyTransform estimatedRootTransform = new RigidBodyTransform();
+      private final RigidBodyTransform simulatedRootTransform = new RigidBodyTransform();
+      private final Vector3D rootPositionError = new Vector3D();
+
+      private int jointSamples = 0;
+      private int rootSamples = 0;
+      private double jointPositionSquaredSum = 0.0;
+      private double jointVelocitySquaredSum = 0.0;
+      private double jointPositionMax = 0.0;
+      private double rootPositionSquaredSum = 0.0;
+
+      public ErrorAccumulator(RobotFromDescription robot, FullRobotModel fullRobotModel)
+      {
+         Map<String, OneDegreeOfFreedomJoint> simulatedJointsByName = new HashMap<>();
+         for (OneDegreeOfFreedomJoint joint : robot.getOneDegreeOfFreedomJoints())
+         {
+            simulatedJointsByName.put(joint.getName(), joint);
+         }
+
+         estimatedJoints = fullRobotModel.getBodyJointsInOrder();
+         simulatedJoints = new OneDegreeOfFreedomJoint[estimatedJoints.length];
+         for (int i = 0; i < estimatedJoints.length; i++)
+         {
+            simulatedJoints[i] = simulatedJointsByName.get(estimatedJoints[i].getName());
+            if (simulatedJoints[i] == null)
+            {
+               throw new RuntimeException("Could not find joint " + estimatedJoints[i].getName() + " in simulated robot.");
+            }
+         }
+
+         estimatedRootJoint = fullRobotModel.getRootJoint();
+         floatingRobot = estimatedRootJoint == null ? null : (FloatingRootJointRobot) robot;
+      }
+
+      public void accumulate()
+      {
+         for (int i = 0; i < estimatedJoints.length; i++)
+         {
+            double positionError = Math.abs(estimatedJoints[i].getQ() - simulatedJoints[i].getQ());
+            double velocityError = estimatedJoints[i].getQd() - simulatedJoints[i].getQD();
+            jointPositionSquaredSum += positionError * positionError;
+            jointVelocitySquaredSum += velocityError * velocityError;
+            jointPositionMax = Math.max(jointPositionMax, positionError);
+            jointSamples++;
+         }
+
+         if (floatingRobot != null)
+         {
+            estimatedRootJoint.getJointConfiguration(estimatedRootTransform);
+            floatingRobot.getRootJoint().getTransformToWorld(simulatedRootTransform);
+            rootPositionError.sub(estimatedRootTransform.getTranslation(), simulatedRootTransform.getTranslation());
+            rootPositionSquaredSum += rootPositionError.lengthSquared();
+            rootSamples++;
+         }
+      }
+
+      public double getJointPositionRms()
+      {
+         return jointSamples == 0 ? 0.0 : Math.sqrt(jointPositionSquaredSum / jointSamples);
+      }
+
+      public double getJointPositionMax()
+      {
+         return jointPositionMax;
+      }
+
+      public double getJointVelocityRms()
+      {
+         return jointSamples == 0 ? 0.0 : Math.sqrt(jointVelocitySquaredSum / jointSamples);
+      }
+
+      public double getRootPositionRms()
+      {
+         return rootSamples == 0 ? Double.NaN : Math.sqrt(rootPositionSquaredSum / rootSamples);
+      }
+   }
+
+   public static void main(String[] args) throws IOException
+   {
+      RobotTools.setLoadGraphics(false);
+
+      List<Scenario> scenarios = new ArrayList<>();
+      scenarios.add(new Scenario("FlyingBox", RobotType.FLYING_BOX, 2.0));
+      scenarios.add(new Scenario("SimpleArm", RobotType.SIMPLE_ARM, 4.0));
+      scenarios.add(new Scenario("FixedBaseArm", RobotType.FIXED_BASE_ARM, 4.0));
+
+      List<ScenarioResult> results;
+      try (HeadlessSimulationRunner runner = new HeadlessSimulationRunner(0.001, 1, Runtime.getRuntime().availableProcessors()))
+      {
+         results = runner.run(scenarios);
+      }
+      results.forEach(result -> System.out.println(result.toCsvLine()));
+
+      Path summaryFile = Paths.get(args.length > 0 ? args[0] : "simulationSummary.csv");
+      writeSummary(results, summaryFile);
+      System.out.println("Wrote summary to " + summaryFile.toAbsolutePath());
+   }
+}
@@ -0,0 +1,388 @@
+package us.ihmc.ekf.robots;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
+
+import us.ihmc.ekf.filter.RobotState;
+import us.ihmc.ekf.filter.StateEstimator;
+import us.ihmc.ekf.filter.StateEstimator.CorrectionForm;
+import us.ihmc.ekf.filter.state.implementations.JointState;
+import us.ihmc.ekf.robots.HeadlessSimulationRunner.RobotType;
+import us.ihmc.ekf.robots.HeadlessSimulationRunner.SimulatedRobot;
+import us.ihmc.mecano.multiBodySystem.interfaces.OneDoFJointBasics;
+import us.ihmc.simulationconstructionset.OneDegreeOfFreedomJoint;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Evaluates the consistency of the estimator by running many independent noise realizations of a simulated scenario
+ * in parallel.
+ * <p>
+ * For each estimator tick the normalized estimation error squared (NEES) of the joint states and the normalized
+ * innovation squared (NIS) of the sensors are computed. For a consistent filter their averages match the dimension of
+ * the joint states and of the innovation respectively. All quantities are accumulated in {@link RunningStatistics} so
+ * the memory does not grow with the number of realizations.
+ * </p>
+ * <p>
+ * The evaluator owns the threads that run the realizations and must be closed once it is no longer needed.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class MonteCarloEvaluator implements AutoCloseable
+{
+   /**
+    * The statistics accumulated over all realizations.
+    */
+   public static class MonteCarloResult
+   {
+      private final RunningStatistics nees = new RunningStatistics();
+      private final RunningStatistics nis = new RunningStatistics();
+      private final RunningStatistics innovationSize = new RunningStatistics();
+      private final RunningStatistics jointPositionError = new RunningStatistics();
+      private final RunningStatistics jointVelocityError = new RunningStatistics();
+      private final RunningStatistics[] neesPerTick;
+      private int neesDimension = 0;
+      private int realizations = 0;
+
+      public MonteCarloResult(int estimatorTicks)
+      {
+         neesPerTick = new RunningStatistics[estimatorTicks];
+         for (int i = 0; i < estimatorTicks; i++)
+         {
+            neesPerTick[i] = new RunningStatistics();
+         }
+      }
+
+      /**
+       * Adds the statistics of the other result to this one.
+       *
+       * @return this result.
+       */
+      public MonteCarloResult merge(MonteCarloResult other)
+      {
+         nees.add(other.nees);
+         nis.add(other.nis);
+         innovationSize.add(other.innovationSize);
+         jointPositionError.add(other.jointPositionError);
+         jointVelocityError.add(other.jointVelocityError);
+         for (int i = 0; i < neesPerTick.length; i++)
+         {
+            neesPerTick[i].add(other.neesPerTick[i]);
+         }
+         neesDimension = Math.max(neesDimension, other.neesDimension);
+         realizations += other.realizations;
+         return this;
+      }
+
+      public int getRealizations()
+      {
+         return realizations;
+      }
+
+      /**
+       * @return the dimension of the joint states used for the NEES. The average NEES of a consistent filter matches it.
+       */
+      public int getNeesDimension()
+      {
+         return neesDimension;
+      }
+
+      public RunningStatistics getNees()
+      {
+         return nees;
+      }
+
+      public RunningStatistics getNis()
+      {
+         return nis;
+      }
+
+      /**
+       * @return the statistics of the innovation size. The average NIS of a consistent filter matches its mean.
+       */
+      public RunningStatistics getInnovationSize()
+      {
+         return innovationSize;
+      }
+
+      public RunningStatistics getJointPositionError()
+      {
+         return jointPositionError;
+      }
+
+      public RunningStatistics getJointVelocityError()
+      {
+         return jointVelocityError;
+      }
+
+      /**
+       * @return the NEES of each estimator tick averaged over the realizations.
+       */
+      public RunningStatistics getNeesPerTick(int estimatorTick)
+      {
+         return neesPerTick[estimatorTick];
+      }
+
+      public int getEstimatorTicks()
+      {
+         return neesPerTick.length;
+      }
+   }
+
+   private final RobotType robotType;
+   private final double simulationDT;
+   private final int ticksPerEstimatorTick;
+   private final double duration;
+   private final Consumer<YoRegistry> parameterModifier;
+   private final ForkJoinPool pool;
+
+   /**
+    * @param robotType the robot to simulate.
+    * @param simulationDT the time step of the simulation.
+    * @param ticksPerEstimatorTick the number of simulation ticks per estimator tick.
+    * @param duration the simulated time of each realization in seconds.
+    * @param parameterModifier called with the registry of each estimator after the default parameters were loaded.
+    * @param parallelism the number of realizations that are simulated at the same time.
+    */
+   public MonteCarloEvaluator(RobotType robotType, double simulationDT, int ticksPerEstimatorTick, double duration, Consumer<YoRegistry> parameterModifier,
+                              int parallelism)
+   {
+      this.robotType = robotType;
+      this.simulationDT = simulationDT;
+      this.ticksPerEstimatorTick = ticksPerEstimatorTick;
+      this.duration = duration;
+      this.parameterModifier = parameterModifier;
+      this.pool = new ForkJoinPool(parallelism);
+   }
+
+   /**
+    * Runs the realizations in parallel and blocks until all of them are done.
+    *
+    * @param realizations the number of independent noise realizations.
+    * @param seed the seed from which the seeds of the realizations are drawn.
+    */
+   public MonteCarloResult evaluate(int realizations, long seed)
+   {
+      SplittableRandom random = new SplittableRandom(seed);
+      long[] seeds = new long[realizations];
+      for (int i = 0; i < realizations; i++)
+      {
+         seeds[i] = random.nextLong();
+      }
+
+      try
+      {
+         return pool.submit(() -> Arrays.stream(seeds).parallel().mapToObj(this::runRealization).reduce(MonteCarloResult::merge)
+                                        .orElseGet(() -> new MonteCarloResult(getEstimatorTicks())))
+                    .get();
+      }
+      catch (InterruptedException | ExecutionException e)
+      {
+         throw new RuntimeException("Failed to run realizations.", e);
+      }
+   }
+
+   /**
+    * Stops the threads of this evaluator. Realizations that are running are completed.
+    */
+   @Override
+   public void close()
+   {
+      pool.shutdown();
+   }
+
+   private int getEstimatorTicks()
+   {
+      int ticks = (int) Math.round(duration / simulationDT);
+      return (ticks + ticksPerEstimatorTick - 1) / ticksPerEstimatorTick;
+   }
+
+   private MonteCarloResult runRealization(long seed)
+   {
+      SimulatedRobot simulatedRobot = new SimulatedRobot(robotType, simulationDT, ticksPerEstimatorTick, seed, parameterModifier);
+      StateEstimator estimator = simulatedRobot.getEstimatorController().getStateEstimator();
+      // The innovation statistics are not available in information form.
+      estimator.setCorrectionForm(CorrectionForm.COVARIANCE);
+      estimator.setComputeInnovationStatistics(true);
+
+      MonteCarloResult result = new MonteCarloResult(getEstimatorTicks());
+      ConsistencyAccumulator accumulator = new ConsistencyAccumulator(simulatedRobot, result);
+      simulatedRobot.setEstimatorListener(accumulator::accumulate);
+
+      int ticks = (int) Math.round(duration / simulationDT);
+      for (int tick = 0; tick < ticks; tick++)
+      {
+         simulatedRobot.step();
+      }
+
+      result.neesDimension = accumulator.getDimension();
+      result.realizations = 1;
+      return result;
+   }
+
+   /**
+    * Compares the joint states of one estimator to the simulated robot.
+    */
+   private static class ConsistencyAccumulator
+   {
+      private final StateEstimator estimator;
+      private final RobotState robotState;
+      private final MonteCarloResult result;
+
+      private final int[] stateIndices;
+      private final OneDegreeOfFreedomJoint[] simulatedJoints;
+      private final int[] derivatives;
+
+      private final DMatrixRMaj stateVector = new DMatrixRMaj(0, 0);
+      private final DMatrixRMaj covariance = new DMatrixRMaj(0, 0);
+      private final DMatrixRMaj errorCovariance;
+      private final DMatrixRMaj error;
+      private final DMatrixRMaj weightedError;
+      private final LinearSolverDense<DMatrixRMaj> solver;
+
+      private int estimatorTick = 0;
+
+      public ConsistencyAccumulator(SimulatedRobot simulatedRobot, MonteCarloResult result)
+      {
+         this.estimator = simulatedRobot.getEstimatorController().getStateEstimator();
+         this.robotState = simulatedRobot.getEstimatorController().getRobotState();
+         this.result = result;
+
+         Map<String, OneDegreeOfFreedomJoint> simulatedJointsByName = new HashMap<>();
+         for (OneDegreeOfFreedomJoint joint : simulatedRobot.getRobot().getOneDegreeOfFreedomJoints())
+         {
+            simulatedJointsByName.put(joint.getName(), joint);
+         }
+
+         // Collect the state entries of all joints together with the matching simulated quantity:
+         List<Integer> indexList = new ArrayList<>();
+         List<OneDegreeOfFreedomJoint> jointList = new ArrayList<>();
+         List<Integer> derivativeList = new ArrayList<>();
+         for (OneDoFJointBasics joint : simulatedRobot.getFullRobotModel().getBodyJointsInOrder())
+         {
+            JointState jointState = robotState.getJointState(joint.getName());
+            OneDegreeOfFreedomJoint simulatedJoint = simulatedJointsByName.get(joint.getName());
+            if (simulatedJoint == null)
+            {
+               throw new RuntimeException("Could not find joint " + joint.getName() + " in simulated robot.");
+            }
+            int startIndex = robotState.getStartIndex(jointState);
+            int[] jointIndices = {JointState.positionIndex, jointState.getVelocityIndex(), jointState.getAccelerationIndex()};
+            for (int derivative = 0; derivative < jointIndices.length; derivative++)
+            {
+               if (jointIndices[derivative] >= 0)
+               {
+                  indexList.add(startIndex + jointIndices[derivative]);
+                  jointList.add(simulatedJoint);
+                  derivativeList.add(derivative);
+               }
+            }
+         }
+
+         int size = indexList.size();
+         stateIndices = indexList.stream().mapToInt(Integer::intValue).toArray();
+         simulatedJoints = jointList.toArray(new OneDegreeOfFreedomJoint[size]);
+         derivatives = derivativeList.stream().mapToInt(Integer::intValue).toArray();
+         errorCovariance = new DMatrixRMaj(size, size);
+         error = new DMatrixRMaj(size, 1);
+         weightedError = new DMatrixRMaj(size, 1);
+         solver = LinearSolverFactory_DDRM.symmPosDef(size);
+      }
+
+      public int getDimension()
+      {
+         return stateIndices.length;
+      }
+
+      public void accumulate()
+      {
+         robotState.getStateVector(stateVector);
+         estimator.getCovariance(covariance);
+
+         for (int i = 0; i < stateIndices.length; i++)
+         {
+            double trueValue;
+            switch (derivatives[i])
+            {
+            case 0:
+               trueValue = simulatedJoints[i].getQ();
+               break;
+            case 1:
+               trueValue = simulatedJoints[i].getQD();
+               break;
+            default:
+               trueValue = simulatedJoints[i].getQDD();
+               break;
+            }
+            double stateError = stateVector.get(stateIndices[i]) - trueValue;
+            error.set(i, stateError);
+
+            if (derivatives[i] == 0)
+            {
+               result.jointPositionError.add(stateError);
+            }
+            else if (derivatives[i] == 1)
+            {
+               result.jointVelocityError.add(stateError);
+            }
+
+            for (int j = 0; j < stateIndices.length; j++)
+            {
+               errorCovariance.set(i, j, covariance.get(stateIndices[i], stateIndices[j]));
+            }
+         }
+
+         if (solver.setA(errorCovariance))
+         {
+            solver.solve(error, weightedError);
+            double nees = CommonOps_DDRM.dot(error, weightedError);
+            result.nees.add(nees);
+            if (estimatorTick < result.neesPerTick.length)
+            {
+               result.neesPerTick[estimatorTick].add(nees);
+            }
+         }
+
+         double nis = estimator.getNormalizedInnovationSquared();
+         if (!Double.isNaN(nis))
+         {
+            result.nis.add(nis);
+            result.innovationSize.add(estimator.getInnovationSize());
+         }
+
+         estimatorTick++;
+      }
+   }
+
+   public static void main(String[] args)
+   {
+      RobotTools.setLoadGraphics(false);
+
+      int realizations = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+      MonteCarloResult result;
+      try (MonteCarloEvaluator evaluator = new MonteCarloEvaluator(RobotType.FIXED_BASE_ARM, 0.001, 1, 2.0, registry ->
+      {
+      }, Runtime.getRuntime().availableProcessors()))
+      {
+         result = evaluator.evaluate(realizations, 1L);
+      }
+
+      System.out.println("Realizations: " + result.getRealizations());
+      System.out.println("Average NEES: " + result.getNees().getMean() + " (expected " + result.getNeesDimension() + ")");
+      System.out.println("Average NIS: " + result.getNis().getMean() + " (expected " + result.getInnovationSize().getMean() + ")");
+      System.out.println("Joint position RMS: " + result.getJointPositionError().getRootMeanSquare());
+      System.out.println("Joint velocity RMS: " + result.getJointVelocityError().getRootMeanSquare());
+   }
+}
@@ -0,0 +1,363 @@
+package us.ihmc.ekf.robots;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import us.ihmc.ekf.filter.FilterDivergenceException;
+import us.ihmc.ekf.robots.HeadlessSimulationRunner.RobotType;
+import us.ihmc.ekf.robots.HeadlessSimulationRunner.Scenario;
+import us.ihmc.ekf.robots.HeadlessSimulationRunner.ScenarioResult;
+import us.ihmc.ekf.robots.HeadlessSimulationRunner.SimulatedRobot;
+import us.ihmc.ekf.tuning.CmaEsOptimizer;
+import us.ihmc.log.LogTools;
+import us.ihmc.simulationconstructionset.UnreasonableAccelerationException;
+import us.ihmc.yoVariables.parameters.DoubleParameter;
+import us.ihmc.yoVariables.parameters.XmlParameterReader;
+import us.ihmc.yoVariables.parameters.YoParameter;
+import us.ihmc.yoVariables.registry.YoRegistry;
+
+/**
+ * Tunes the process and measurement variances of the estimator offline. All {@link DoubleParameter}s of the estimator
+ * registry whose name ends in "Variance" are searched with {@link CmaEsOptimizer} in logarithmic space. Each candidate
+ * is scored by running headless simulations of the robot with several sensor noise realizations and averaging the
+ * estimation error with respect to the simulated ground truth. All candidates use the same realizations so their costs
+ * are comparable. Candidates are clamped to the bounds of the default parameter file before they are simulated. The
+ * candidates of a generation are simulated in parallel. The best tuning is written as a parameter file in the same
+ * format as the default parameters keeping the bounds of the default parameters. The tuner must be closed once it is
+ * no longer needed.
+ *
+ * @author Georg Wiedebach
+ */
+public class ParameterTuner implements AutoCloseable
+{
+   private static final String varianceSuffix = "Variance";
+
+   private final RobotType robotType;
+   private final double duration;
+   private final HeadlessSimulationRunner runner;
+   private final long[] noiseSeeds;
+
+   private final YoRegistry referenceRegistry;
+   private final List<DoubleParameter> variances = new ArrayList<>();
+   private final double[] initialValues;
+   /** The min and max attribute of each parameter in the default parameter file. */
+   private final Map<String, String[]> parameterBounds;
+   private final double[] minValues;
+   private final double[] maxValues;
+
+   /**
+    * @param robotType the robot to tune the estimator for.
+    * @param duration the simulated time in seconds used to score a candidate.
+    * @param simulationDT the time step of the simulation.
+    * @param ticksPerEstimatorTick the number of simulation ticks per estimator tick.
+    * @param noiseRealizations the number of sensor noise realizations the cost of a candidate is averaged over.
+    */
+   public ParameterTuner(RobotType robotType, double duration, double simulationDT, int ticksPerEstimatorTick, int noiseRealizations)
+   {
+      if (noiseRealizations < 1)
+      {
+         throw new RuntimeException("Need at least one noise realization.");
+      }
+      this.robotType = robotType;
+      this.duration = duration;
+      this.runner = new HeadlessSimulationRunner(simulationDT, ticksPerEstimatorTick, 1);
+
+      // The seeds are drawn like in the MonteCarloEvaluator.
+      SplittableRandom random = new SplittableRandom(1L);
+      noiseSeeds = new long[noiseRealizations];
+      for (int i = 0; i < noiseRealizations; i++)
+      {
+         noiseSeeds[i] = random.nextLong();
+      }
+      parameterBounds = readParameterBounds();
+
+      // Create the estimator once to find the parameters and their default values.
+      SimulatedRobot reference = new SimulatedRobot(robotType, simulationDT, ticksPerEstimatorTick, 1L, registry ->
+      {
+      });
+      referenceRegistry = reference.getEstimatorController().getYoRegistry();
+      collectVariances(referenceRegistry);
+      if (variances.isEmpty())
+      {
+         throw new RuntimeException("No variance parameters found for " + robotType);
+      }
+
+      initialValues = new double[variances.size()];
+      minValues = new double[variances.size()];
+      maxValues = new double[variances.size()];
+      for (int i = 0; i < variances.size(); i++)
+      {
+         String[] bounds = parameterBounds.get(variances.get(i).getName());
+         minValues[i] = bounds == null ? 0.0 : parseBound(bounds[0], 0.0);
+         maxValues[i] = bounds == null ? Double.POSITIVE_INFINITY : parseBound(bounds[1], Double.POSITIVE_INFINITY);
+         initialValues[i] = variances.get(i).getValue();
+         if (!(initialValues[i] > 0.0))
+         {
+            throw new RuntimeException("Variance " + variances.get(i).getName() + " must be positive to be tuned in log space.");
+         }
+      }
+   }
+
+   private static double parseBound(String bound, double defaultValue)
+   {
+      return bound.isEmpty() ? defaultValue : Double.parseDouble(bound);
+   }
+
+   private void collectVariances(YoRegistry registry)
+   {
+      for (YoParameter parameter : registry.getParameters())
+      {
+         if (parameter instanceof DoubleParameter && parameter.getName().endsWith(varianceSuffix))
+         {
+            variances.add((DoubleParameter) parameter);
+         }
+      }
+      registry.getChildren().forEach(this::collectVariances);
+   }
+
+   /**
+    * Runs the search.
+    *
+    * @param populationSize the number of candidates simulated per generation.
+    * @param generations the maximum number of generations.
+    * @param parallelism the number of simulations run at the same time.
+    * @param seed the seed of the search.
+    * @return the best variances found in the order of {@link #getParameterNames()}.
+    */
+   public double[] tune(int populationSize, int generations, int parallelism, long seed)
+   {
+      double[] initialMean = new double[initialValues.length];
+      for (int i = 0; i < initialValues.length; i++)
+      {
+         initialMean[i] = Math.log10(initialValues[i]);
+      }
+
+      CmaEsOptimizer optimizer = new CmaEsOptimizer(initialValues.length, populationSize, seed);
+      optimizer.setStopTolerance(1.0e-3);
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      double[] best;
+      try
+      {
+         // A step of one decade allows the search to leave a badly chosen default.
+         best = optimizer.optimize(this::computeCost, initialMean, 1.0, generations, pool);
+      }
+      finally
+      {
+         pool.shutdown();
+      }
+      LogTools.info("Best cost " + optimizer.getBestCost() + " after " + optimizer.getGeneration() + " generations.");
+      return toVariances(best);
+   }
+
+   /**
+    * Scores a candidate in log space by the average estimation error of simulations using the candidate variances. Each
+    * simulation uses a different sensor noise realization. A candidate for which the estimator or the simulation
+    * diverges has an infinite cost.
+    */
+   public double computeCost(double[] logVariances)
+   {
+      byte[] parameters = createParameterFile(toVariances(logVariances)).getBytes(StandardCharsets.UTF_8);
+      double totalCost = 0.0;
+      for (long noiseSeed : noiseSeeds)
+      {
+         Scenario scenario = new Scenario("candidate", robotType, duration, registry ->
+         {
+            try (InputStream parameterStream = new ByteArrayInputStream(parameters))
+            {
+               new XmlParameterReader(parameterStream).readParametersInRegistry(registry);
+            }
+            catch (IOException e)
+            {
+               throw new RuntimeException("Failed to read candidate parameters.", e);
+            }
+         }, noiseSeed);
+
+         ScenarioResult result;
+         try
+         {
+            result = runner.run(scenario);
+         }
+         catch (RuntimeException e)
+         {
+            // A diverging estimator can crash the simulation: such a candidate is just a bad one. Any other failure is
+            // a problem with the setup that must not be hidden.
+            if (!isDivergence(e))
+            {
+               throw e;
+            }
+            return Double.POSITIVE_INFINITY;
+         }
+
+         double cost = result.getJointPositionRms();
+         if (!Double.isNaN(result.getRootPositionRms()))
+         {
+            cost += result.getRootPositionRms();
+         }
+         if (Double.isNaN(cost))
+         {
+            return Double.POSITIVE_INFINITY;
+         }
+         totalCost += cost;
+      }
+      return totalCost / noiseSeeds.length;
+   }
+
+   @Override
+   public void close()
+   {
+      runner.close();
+   }
+
+   private static boolean isDivergence(Throwable e)
+   {
+      for (Throwable cause = e; cause != null; cause = cause.getCause())
+      {
+         if (cause instanceof FilterDivergenceException || cause instanceof UnreasonableAccelerationException)
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Converts a candidate from log space and clamps it to the bounds of the default parameter file.
+    */
+   private double[] toVariances(double[] logVariances)
+   {
+      double[] values = new double[logVariances.length];
+      for (int i = 0; i < logVariances.length; i++)
+      {
+         values[i] = Math.min(Math.max(Math.pow(10.0, logVariances[i]), minValues[i]), maxValues[i]);
+      }
+      return values;
+   }
+
+   public List<String> getParameterNames()
+   {
+      List<String> names = new ArrayList<>();
+      variances.forEach(parameter -> names.add(parameter.getName()));
+      return names;
+   }
+
+   public double[] getInitialValues()
+   {
+      return Arrays.copyOf(initialValues, initialValues.length);
+   }
+
+   /**
+    * Creates a parameter file containing the parameters of the default parameter file and the provided variances. The
+    * bounds of the parameters are kept.
+    *
+    * @param values the variances in the order of {@link #getParameterNames()}.
+    */
+   public String createParameterFile(double[] values)
+   {
+      Map<YoParameter, Double> overrides = new HashMap<>();
+      for (int i = 0; i < variances.size(); i++)
+      {
+         overrides.put(variances.get(i), values[i]);
+      }
+
+      StringBuilder builder = new StringBuilder();
+      builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+      builder.append("<parameters>\n");
+      appendRegistry(builder, referenceRegistry, overrides, parameterBounds, "    ");
+      builder.append("</parameters>\n");
+      return builder.toString();
+   }
+
+   private static void appendRegistry(StringBuilder builder, YoRegistry registry, Map<YoParameter, Double> overrides, Map<String, String[]> bounds,
+                                      String indent)
+   {
+      builder.append(indent).append("<registry name=\"").append(registry.getName()).append("\">\n");
+      for (YoParameter parameter : registry.getParameters())
+      {
+         if (!(parameter instanceof DoubleParameter))
+         {
+            continue;
+         }
+         Double override = overrides.get(parameter);
+         String[] parameterBounds = bounds.get(parameter.getName());
+         if (override == null && parameterBounds == null)
+         {
+            // Parameters that are not in the default file keep their default value.
+            continue;
+         }
+         double value = override == null ? ((DoubleParameter) parameter).getValue() : override;
+         String min = parameterBounds == null ? "0.0" : parameterBounds[0];
+         String max = parameterBounds == null ? Double.toString(Math.max(1.0, value)) : parameterBounds[1];
+         builder.append(indent).append("    <parameter name=\"").append(parameter.getName()).append("\" type=\"DoubleParameter\" min=\"").append(min)
+                .append("\" max=\"").append(max).append("\" value=\"").append(value).append("\"/>\n");
+      }
+      for (YoRegistry child : registry.getChildren())
+      {
+         appendRegistry(builder, child, overrides, bounds, indent + "    ");
+      }
+      builder.append(indent).append("</registry>\n");
+   }
+
+   private static Map<String, String[]> readParameterBounds()
+   {
+      Map<String, String[]> bounds = new HashMap<>();
+      try (InputStream parameterStream = ParameterTuner.class.getClassLoader().getResourceAsStream(HeadlessSimulationRunner.parameterFile))
+      {
+         NodeList parameters = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(parameterStream).getElementsByTagName("parameter");
+         for (int i = 0; i < parameters.getLength(); i++)
+         {
+            Element parameter = (Element) parameters.item(i);
+            bounds.put(parameter.getAttribute("name"), new String[] {parameter.getAttribute("min"), parameter.getAttribute("max")});
+         }
+      }
+      catch (IOException | ParserConfigurationException | SAXException e)
+      {
+         throw new RuntimeException("Failed to read " + HeadlessSimulationRunner.parameterFile, e);
+      }
+      return bounds;
+   }
+
+   public static void main(String[] args) throws IOException
+   {
+      RobotTools.setLoadGraphics(false);
+
+      RobotType robotType = args.length > 0 ? RobotType.valueOf(args[0]) : RobotType.SIMPLE_ARM;
+      Path outputFile = Paths.get(args.length > 1 ? args[1] : "tunedParameters.xml");
+
+      try (ParameterTuner tuner = new ParameterTuner(robotType, 4.0, 0.001, 1, 4))
+      {
+         List<String> names = tuner.getParameterNames();
+         double[] initialValues = tuner.getInitialValues();
+         LogTools.info("Tuning " + names.size() + " variances for " + robotType);
+         LogTools.info("Initial cost " + tuner.computeCost(Arrays.stream(initialValues).map(Math::log10).toArray()));
+
+         int parallelism = Runtime.getRuntime().availableProcessors();
+         double[] tunedValues = tuner.tune(Math.max(parallelism, 8), 50, parallelism, 1L);
+         for (int i = 0; i < names.size(); i++)
+         {
+            LogTools.info(names.get(i) + ": " + initialValues[i] + " -> " + tunedValues[i]);
+         }
+
+         Files.write(outputFile, tuner.createParameterFile(tunedValues).getBytes(StandardCharsets.UTF_8));
+         LogTools.info("Wrote tuned parameters to " + outputFile.toAbsolutePath());
+      }
+   }
+}
@@ -0,0 +1,431 @@
+package us.ihmc.ekf.robots;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+import us.ihmc.ekf.tempClasses.ContactPointDefinitionHolder;
+import us.ihmc.ekf.tempClasses.ModelFileLoaderConversionsHelper;
+import us.ihmc.euclid.matrix.Matrix3D;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Vector3D;
+import us.ihmc.euclid.tuple4D.Quaternion;
+import us.ihmc.log.LogTools;
+import us.ihmc.robotics.robotDescription.ExternalForcePointDescription;
+import us.ihmc.robotics.robotDescription.FloatingJointDescription;
+import us.ihmc.robotics.robotDescription.ForceSensorDescription;
+import us.ihmc.robotics.robotDescription.GroundContactPointDescription;
+import us.ihmc.robotics.robotDescription.IMUSensorDescription;
+import us.ihmc.robotics.robotDescription.JointDescription;
+import us.ihmc.robotics.robotDescription.LinkDescription;
+import us.ihmc.robotics.robotDescription.LinkGraphicsDescription;
+import us.ihmc.robotics.robotDescription.OneDoFJointDescription;
+import us.ihmc.robotics.robotDescription.PinJointDescription;
+import us.ihmc.robotics.robotDescription.RobotDescription;
+import us.ihmc.robotics.robotDescription.SliderJointDescription;
+
+/**
+ * Stores the physical part of a {@link RobotDescription} that was parsed from an SDF file in a binary file so it can
+ * be loaded without JAXB. The cache contains the joint tree with offsets, axes, limits, and damping, the link
+ * inertias, and the IMU and force sensors. Graphics are not cached: a description loaded from the cache has empty link
+ * graphics and is meant for headless use.
+ * <p>
+ * The cache is keyed by a hash of the SDF content and is ignored if the SDF changed. Ground contact points are defined
+ * in code rather than in the SDF so they are not part of the cache and are added with
+ * {@link #addGroundContactPoints(RobotDescription, ContactPointDefinitionHolder)} after loading.
+ * </p>
+ *
+ * @author Georg Wiedebach
+ */
+public class RobotDescriptionCache
+{
+   private static final int MAGIC = 0x454B4643;
+   private static final int VERSION = 1;
+
+   private static final byte FLOATING = 0;
+   private static final byte PIN = 1;
+   private static final byte SLIDER = 2;
+
+   /**
+    * Computes the key of the cache from the content of the model file.
+    */
+   public static byte[] computeHash(byte[] modelContent)
+   {
+      try
+      {
+         MessageDigest digest = MessageDigest.getInstance("SHA-256");
+         digest.update(ByteBuffer.allocate(4).putInt(VERSION).array());
+         return digest.digest(modelContent);
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         throw new RuntimeException("SHA-256 is not available.", e);
+      }
+   }
+
+   /**
+    * Gets the location of the cache for a model file. If the model is a file on disk the cache is stored next to it.
+    * Otherwise, e.g. if the model is packaged in a jar, the cache is stored in the temporary directory.
+    */
+   public static Path getCacheFile(URL modelUrl, String modelFileName)
+   {
+      String cacheFileName = modelFileName + ".cache";
+      if (modelUrl != null && "file".equals(modelUrl.getProtocol()))
+      {
+         try
+         {
+            return Paths.get(modelUrl.toURI()).resolveSibling(cacheFileName);
+         }
+         catch (URISyntaxException e)
+         {
+            LogTools.warn("Can not resolve " + modelUrl + ": " + e.getMessage());
+         }
+      }
+      return Paths.get(System.getProperty("java.io.tmpdir"), "ekfModelCache", cacheFileName);
+   }
+
+   /**
+    * Loads a description from the cache. The cache is small so it is read into memory at once.
+    *
+    * @return the description or {@code null} if the cache does not exist, is corrupt, or was created for a different
+    *         model file.
+    */
+   public static RobotDescription load(Path cacheFile, byte[] hash)
+   {
+      if (!Files.isRegularFile(cacheFile))
+      {
+         return null;
+      }
+
+      try
+      {
+         ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+         if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+         {
+            return null;
+         }
+         byte[] storedHash = new byte[hash.length];
+         buffer.get(storedHash);
+         if (!Arrays.equals(hash, storedHash))
+         {
+            return null;
+         }
+
+         RobotDescription description = new RobotDescription(readString(buffer));
+         int rootJoints = buffer.getInt();
+         for (int i = 0; i < rootJoints; i++)
+         {
+            description.addRootJoint(readJoint(buffer));
+         }
+         return description;
+      }
+      catch (IOException | BufferUnderflowException | IllegalArgumentException e)
+      {
+         LogTools.warn("Ignoring invalid model cache " + cacheFile + ": " + e.getMessage());
+         return null;
+      }
+   }
+
+   /**
+    * Writes the description to the cache. Failing to write the cache is not an error since the model can always be
+    * loaded from the SDF instead.
+    *
+    * @return whether the cache was written.
+    */
+   public static boolean save(RobotDescription description, Path cacheFile, byte[] hash)
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream output = new DataOutputStream(bytes))
+      {
+         output.writeInt(MAGIC);
+         output.writeInt(VERSION);
+         output.write(hash);
+         writeString(output, description.getName());
+         output.writeInt(description.getRootJoints().size());
+         for (JointDescription rootJoint : description.getRootJoints())
+         {
+            writeJoint(output, rootJoint);
+         }
+      }
+      catch (IOException | UnsupportedOperationException e)
+      {
+         LogTools.warn("Can not cache " + description.getName() + ": " + e.getMessage());
+         return false;
+      }
+
+      // Write to a temporary file first so concurrent processes never read a partial cache.
+      try
+      {
+         Files.createDirectories(cacheFile.getParent());
+         Path tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+         Files.write(tempFile, bytes.toByteArray());
+         Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         return true;
+      }
+      catch (IOException e)
+      {
+         LogTools.warn("Can not write model cache " + cacheFile + ": " + e.getMessage());
+         return false;
+      }
+   }
+
+   /**
+    * Adds the ground contact points and matching external force points to the description in the same way
+    * {@link us.ihmc.ekf.tempClasses.RobotDescriptionFromSDFLoader} does but without graphics.
+    */
+   public static void addGroundContactPoints(RobotDescription description, ContactPointDefinitionHolder contactPointHolder)
+   {
+      Map<String, Integer> counters = new LinkedHashMap<>();
+      for (ImmutablePair<String, Vector3D> jointContactPoint : contactPointHolder.getJointNameGroundContactPointMap())
+      {
+         String jointName = jointContactPoint.getLeft();
+         JointDescription jointDescription = findJoint(description.getRootJoints(), jointName);
+         if (jointDescription == null)
+         {
+            throw new RuntimeException("Can not find joint " + jointName + " to add a contact point to.");
+         }
+
+         int count = counters.getOrDefault(jointName, 0);
+         String sanitizedName = ModelFileLoaderConversionsHelper.sanitizeJointName(jointName);
+         Vector3D offset = jointContactPoint.getRight();
+         int groupIdentifier = contactPointHolder.getGroupIdentifier(jointContactPoint);
+         jointDescription.addGroundContactPoint(new GroundContactPointDescription("gc_" + sanitizedName + "_" + count++, offset, groupIdentifier));
+         jointDescription.addExternalForcePoint(new ExternalForcePointDescription("ef_" + sanitizedName + "_" + count++, offset));
+         counters.put(jointName, count);
+      }
+   }
+
+   private static JointDescription findJoint(List<JointDescription> joints, String name)
+   {
+      for (JointDescription joint : joints)
+      {
+         if (joint.getName().equals(name))
+         {
+            return joint;
+         }
+         JointDescription match = findJoint(joint.getChildrenJoints(), name);
+         if (match != null)
+         {
+            return match;
+         }
+      }
+      return null;
+   }
+
+   private static void writeJoint(DataOutputStream output, JointDescription joint) throws IOException
+   {
+      if (!joint.getCameraSensors().isEmpty() || !joint.getLidarSensors().isEmpty())
+      {
+         throw new UnsupportedOperationException("Camera and lidar sensors are not supported.");
+      }
+
+      if (joint instanceof FloatingJointDescription)
+      {
+         output.writeByte(FLOATING);
+         writeString(output, joint.getName());
+      }
+      else if (joint instanceof OneDoFJointDescription)
+      {
+         OneDoFJointDescription oneDoFJoint = (OneDoFJointDescription) joint;
+         output.writeByte(joint instanceof PinJointDescription ? PIN : SLIDER);
+         writeString(output, joint.getName());
+         Vector3D offset = new Vector3D();
+         joint.getOffsetFromParentJoint(offset);
+         writeVector(output, offset);
+         Vector3D axis = new Vector3D();
+         oneDoFJoint.getJointAxis(axis);
+         writeVector(output, axis);
+         output.writeDouble(oneDoFJoint.getDamping());
+         output.writeDouble(oneDoFJoint.getStiction());
+         output.writeDouble(oneDoFJoint.getEffortLimit());
+         output.writeDouble(oneDoFJoint.getVelocityLimit());
+         output.writeDouble(oneDoFJoint.getVelocityDamping());
+         output.writeBoolean(oneDoFJoint.containsLimitStops());
+         if (oneDoFJoint.containsLimitStops())
+         {
+            for (double parameter : oneDoFJoint.getLimitStopParameters())
+            {
+               output.writeDouble(parameter);
+            }
+         }
+      }
+      else
+      {
+         throw new UnsupportedOperationException("Joint type " + joint.getClass().getSimpleName() + " is not supported.");
+      }
+      output.writeBoolean(joint.isDynamic());
+
+      LinkDescription link = joint.getLink();
+      writeString(output, link.getName());
+      output.writeDouble(link.getMass());
+      writeVector(output, link.getCenterOfMassOffset());
+      Matrix3D inertia = link.getMomentOfInertiaCopy();
+      for (int row = 0; row < 3; row++)
+      {
+         for (int col = 0; col < 3; col++)
+         {
+            output.writeDouble(inertia.getElement(row, col));
+         }
+      }
+
+      output.writeInt(joint.getIMUSensors().size());
+      for (IMUSensorDescription imu : joint.getIMUSensors())
+      {
+         writeString(output, imu.getName());
+         writeTransform(output, imu.getTransformToJoint());
+         output.writeDouble(imu.getAccelerationNoiseMean());
+         output.writeDouble(imu.getAccelerationNoiseStandardDeviation());
+         output.writeDouble(imu.getAccelerationBiasMean());
+         output.writeDouble(imu.getAccelerationBiasStandardDeviation());
+         output.writeDouble(imu.getAngularVelocityNoiseMean());
+         output.writeDouble(imu.getAngularVelocityNoiseStandardDeviation());
+         output.writeDouble(imu.getAngularVelocityBiasMean());
+         output.writeDouble(imu.getAngularVelocityBiasStandardDeviation());
+      }
+
+      output.writeInt(joint.getForceSensors().size());
+      for (ForceSensorDescription forceSensor : joint.getForceSensors())
+      {
+         writeString(output, forceSensor.getName());
+         writeTransform(output, forceSensor.getTransformToJoint());
+         output.writeBoolean(forceSensor.getUseGroundContactPoints());
+         output.writeBoolean(forceSensor.getUseShapeCollision());
+      }
+
+      output.writeInt(joint.getChildrenJoints().size());
+      for (JointDescription child : joint.getChildrenJoints())
+      {
+         writeJoint(output, child);
+      }
+   }
+
+   private static JointDescription readJoint(ByteBuffer buffer)
+   {
+      byte type = buffer.get();
+      String name = readString(buffer);
+
+      JointDescription joint;
+      switch (type)
+      {
+      case FLOATING:
+         joint = new FloatingJointDescription(name);
+         break;
+      case PIN:
+      case SLIDER:
+         Vector3D offset = readVector(buffer);
+         Vector3D axis = readVector(buffer);
+         OneDoFJointDescription oneDoFJoint = type == PIN ? new PinJointDescription(name, offset, axis) : new SliderJointDescription(name, offset, axis);
+         oneDoFJoint.setDamping(buffer.getDouble());
+         oneDoFJoint.setStiction(buffer.getDouble());
+         oneDoFJoint.setEffortLimit(buffer.getDouble());
+         double velocityLimit = buffer.getDouble();
+         double velocityDamping = buffer.getDouble();
+         oneDoFJoint.setVelocityLimits(velocityLimit, velocityDamping);
+         if (buffer.get() != 0)
+         {
+            oneDoFJoint.setLimitStops(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+         }
+         joint = oneDoFJoint;
+         break;
+      default:
+         throw new IllegalArgumentException("Unknown joint type " + type);
+      }
+      joint.setIsDynamic(buffer.get() != 0);
+
+      LinkDescription link = new LinkDescription(readString(buffer));
+      link.setMass(buffer.getDouble());
+      link.setCenterOfMassOffset(readVector(buffer));
+      link.setMomentOfInertia(new Matrix3D(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                                           buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble()));
+      link.setLinkGraphics(new LinkGraphicsDescription());
+      joint.setLink(link);
+
+      int imus = buffer.getInt();
+      for (int i = 0; i < imus; i++)
+      {
+         IMUSensorDescription imu = new IMUSensorDescription(readString(buffer), readTransform(buffer));
+         imu.setAccelerationNoiseParameters(buffer.getDouble(), buffer.getDouble());
+         imu.setAccelerationBiasParameters(buffer.getDouble(), buffer.getDouble());
+         imu.setAngularVelocityNoiseParameters(buffer.getDouble(), buffer.getDouble());
+         imu.setAngularVelocityBiasParameters(buffer.getDouble(), buffer.getDouble());
+         joint.addIMUSensor(imu);
+      }
+
+      int forceSensors = buffer.getInt();
+      for (int i = 0; i < forceSensors; i++)
+      {
+         ForceSensorDescription forceSensor = new ForceSensorDescription(readString(buffer), readTransform(buffer));
+         forceSensor.setUseGroundContactPoints(buffer.get() != 0);
+         forceSensor.setUseShapeCollision(buffer.get() != 0);
+         joint.addForceSensor(forceSensor);
+      }
+
+      int children = buffer.getInt();
+      for (int i = 0; i < children; i++)
+      {
+         joint.addJoint(readJoint(buffer));
+      }
+      return joint;
+   }
+
+   private static void writeString(DataOutputStream output, String string) throws IOException
+   {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+   }
+
+   private static String readString(ByteBuffer buffer)
+   {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   private static void writeVector(DataOutputStream output, Vector3D vector) throws IOException
+   {
+      output.writeDouble(vector.getX());
+      output.writeDouble(vector.getY());
+      output.writeDouble(vector.getZ());
+   }
+
+   private static Vector3D readVector(ByteBuffer buffer)
+   {
+      return new Vector3D(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+   }
+
+   private static void writeTransform(DataOutputStream output, RigidBodyTransform transform) throws IOException
+   {
+      Quaternion orientation = new Quaternion();
+      Vector3D translation = new Vector3D();
+      transform.get(orientation, translation);
+      output.writeDouble(orientation.getX());
+      output.writeDouble(orientation.getY());
+      output.writeDouble(orientation.getZ());
+      output.writeDouble(orientation.getS());
+      writeVector(output, translation);
+   }
+
+   private static RigidBodyTransform readTransform(ByteBuffer buffer)
+   {
+      Quaternion orientation = new Quaternion(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+      return new RigidBodyTransform(orientation, readVector(buffer));
+   }
+}
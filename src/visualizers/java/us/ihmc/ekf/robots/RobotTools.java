@@ -1,6 +1,10 @@
 package us.ihmc.ekf.robots;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -18,6 +22,7 @@ import us.ihmc.graphicsDescription.appearance.AppearanceDefinition;
 import us.ihmc.graphicsDescription.appearance.YoAppearance;
 import us.ihmc.graphicsDescription.instructions.Graphics3DInstruction;
 import us.ihmc.graphicsDescription.instructions.Graphics3DPrimitiveInstruction;
+import us.ihmc.log.LogTools;
 import us.ihmc.robotics.robotDescription.JointDescription;
 import us.ihmc.robotics.robotDescription.RobotDescription;
 import us.ihmc.simulationconstructionset.FloatingRootJointRobot;
@@ -31,19 +36,94 @@ import us.ihmc.yoVariables.registry.YoRegistry;
 
 public class RobotTools
 {
+   private static boolean loadGraphics = true;
+
+   /**
+    * Headless applications do not need the robot graphics. If disabled, the robot descriptions are loaded from a binary
+    * cache without graphics and the SDF is only parsed if the cache is missing or outdated. Must be called before the
+    * first robot is created.
+    */
+   public static void setLoadGraphics(boolean loadGraphics)
+   {
+      RobotTools.loadGraphics = loadGraphics;
+   }
+
    public static RobotDescription getRobotDescription(String robotName, AppearanceDefinition apperance, ContactPointDefinitionHolder contactPoints)
    {
-      String[] resourceDirectories = {""};
       String file = robotName + ".sdf";
-      InputStream sdfFile = FlyingBoxRobot.class.getClassLoader().getResourceAsStream(file);
-      JaxbSDFLoader loader = DRCRobotSDFLoader.loadDRCRobot(resourceDirectories, sdfFile, null);
-      GeneralizedSDFRobotModel generalizedSDFRobotModel = loader.getGeneralizedSDFRobotModel(robotName);
-      RobotDescriptionFromSDFLoader descriptionLoader = new RobotDescriptionFromSDFLoader();
-      RobotDescription description = descriptionLoader.loadRobotDescriptionFromSDF(generalizedSDFRobotModel, null, contactPoints, false);
+      byte[] sdfContent = readResource(file);
+
+      if (!loadGraphics)
+      {
+         return getCachedRobotDescription(robotName, file, sdfContent, contactPoints);
+      }
+
+      RobotDescription description = loadRobotDescription(robotName, sdfContent, contactPoints);
       RobotTools.recursivelyModyfyGraphics(description.getChildrenJoints().get(0), apperance);
       return description;
    }
 
+   private static RobotDescription getCachedRobotDescription(String robotName, String file, byte[] sdfContent, ContactPointDefinitionHolder contactPoints)
+   {
+      byte[] hash = RobotDescriptionCache.computeHash(sdfContent);
+      Path cacheFile = RobotDescriptionCache.getCacheFile(FlyingBoxRobot.class.getClassLoader().getResource(file), file);
+      RobotDescription description = RobotDescriptionCache.load(cacheFile, hash);
+
+      if (description == null)
+      {
+         // The contact points are defined in code and are added after caching so robots sharing an SDF share the cache.
+         description = loadRobotDescription(robotName, sdfContent, null);
+         if (RobotDescriptionCache.save(description, cacheFile, hash))
+         {
+            LogTools.info("Cached " + robotName + " in " + cacheFile);
+         }
+         // Load from the cache also on a miss so the description is identical in both cases.
+         RobotDescription cachedDescription = RobotDescriptionCache.load(cacheFile, hash);
+         if (cachedDescription != null)
+         {
+            description = cachedDescription;
+         }
+      }
+
+      if (contactPoints != null)
+      {
+         RobotDescriptionCache.addGroundContactPoints(description, contactPoints);
+      }
+      return description;
+   }
+
+   static RobotDescription loadRobotDescription(String robotName, byte[] sdfContent, ContactPointDefinitionHolder contactPoints)
+   {
+      String[] resourceDirectories = {""};
+      JaxbSDFLoader loader = DRCRobotSDFLoader.loadDRCRobot(resourceDirectories, new ByteArrayInputStream(sdfContent), null);
+      GeneralizedSDFRobotModel generalizedSDFRobotModel = loader.getGeneralizedSDFRobotModel(robotName);
+      RobotDescriptionFromSDFLoader descriptionLoader = new RobotDescriptionFromSDFLoader();
+      return descriptionLoader.loadRobotDescriptionFromSDF(generalizedSDFRobotModel, null, contactPoints, false);
+   }
+
+   static byte[] readResource(String file)
+   {
+      try (InputStream stream = FlyingBoxRobot.class.getClassLoader().getResourceAsStream(file))
+      {
+         if (stream == null)
+         {
+            throw new RuntimeException("Can not find " + file);
+         }
+         ByteArrayOutputStream content = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         int read;
+         while ((read = stream.read(buffer)) != -1)
+         {
+            content.write(buffer, 0, read);
+         }
+         return content.toByteArray();
+      }
+      catch (IOException e)
+      {
+         throw new RuntimeException("Failed to read " + file, e);
+      }
+   }
+
    public static void setupGroundContactModel(Robot robot, double zStiffness, double zDamping, double xyStiffness, double xyDamping)
    {
       YoRegistry robotRegistry = robot.getRobotsYoRegistry();
@@ -0,0 +1,86 @@
+package us.ihmc.ekf.robots;
+
+/**
+ * Accumulates the mean and variance of a stream of samples without storing them (Welford's algorithm). Statistics that
+ * were accumulated on different threads can be merged.
+ *
+ * @author Georg Wiedebach
+ */
+public class RunningStatistics
+{
+   private long count = 0;
+   private double mean = 0.0;
+   private double m2 = 0.0;
+   private double min = Double.POSITIVE_INFINITY;
+   private double max = Double.NEGATIVE_INFINITY;
+
+   public void add(double value)
+   {
+      count++;
+      double delta = value - mean;
+      mean += delta / count;
+      m2 += delta * (value - mean);
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+   }
+
+   /**
+    * Adds all samples of the other statistics to this one.
+    */
+   public void add(RunningStatistics other)
+   {
+      if (other.count == 0)
+      {
+         return;
+      }
+
+      long combinedCount = count + other.count;
+      double delta = other.mean - mean;
+      mean += delta * other.count / combinedCount;
+      m2 += other.m2 + delta * delta * count * other.count / combinedCount;
+      count = combinedCount;
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+   }
+
+   public long getCount()
+   {
+      return count;
+   }
+
+   public double getMean()
+   {
+      return count == 0 ? Double.NaN : mean;
+   }
+
+   /**
+    * @return the unbiased sample variance.
+    */
+   public double getVariance()
+   {
+      return count < 2 ? Double.NaN : m2 / (count - 1);
+   }
+
+   public double getStandardDeviation()
+   {
+      return Math.sqrt(getVariance());
+   }
+
+   /**
+    * @return the square root of the mean of the squared samples.
+    */
+   public double getRootMeanSquare()
+   {
+      return count == 0 ? Double.NaN : Math.sqrt(mean * mean + m2 / count);
+   }
+
+   public double getMin()
+   {
+      return min;
+   }
+
+   public double getMax()
+   {
+      return max;
+   }
+}